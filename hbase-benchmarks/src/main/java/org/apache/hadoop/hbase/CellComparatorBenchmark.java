@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CellComparatorImpl#compare(Cell, Cell)} for on heap {@link KeyValue}s and off
+ * heap {@link ByteBufferKeyValue}s. The two cells share a row prefix of the given length and differ
+ * in the last row byte, which is the common case inside a data block.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CellComparatorBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("qualifier");
+
+  @Param({ "16", "64", "256" })
+  public int rowLength;
+
+  private final CellComparator comparator = CellComparatorImpl.COMPARATOR;
+  private Cell onHeapLeft;
+  private Cell onHeapRight;
+  private Cell offHeapLeft;
+  private Cell offHeapRight;
+
+  @Setup
+  public void setup() {
+    byte[] leftRow = new byte[rowLength];
+    byte[] rightRow = new byte[rowLength];
+    Bytes.random(leftRow);
+    System.arraycopy(leftRow, 0, rightRow, 0, rowLength);
+    rightRow[rowLength - 1] = (byte) (leftRow[rowLength - 1] + 1);
+    KeyValue left = new KeyValue(leftRow, FAMILY, QUALIFIER, 1L, new byte[8]);
+    KeyValue right = new KeyValue(rightRow, FAMILY, QUALIFIER, 1L, new byte[8]);
+    onHeapLeft = left;
+    onHeapRight = right;
+    offHeapLeft = toOffHeap(left);
+    offHeapRight = toOffHeap(right);
+  }
+
+  private static Cell toOffHeap(KeyValue kv) {
+    ByteBuffer buf = ByteBuffer.allocateDirect(kv.getLength());
+    buf.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+    return new ByteBufferKeyValue(buf, 0, kv.getLength());
+  }
+
+  @Benchmark
+  public int compareOnHeap() {
+    return comparator.compare(onHeapLeft, onHeapRight);
+  }
+
+  @Benchmark
+  public int compareOffHeap() {
+    return comparator.compare(offHeapLeft, offHeapRight);
+  }
+
+  @Benchmark
+  public int compareMixed() {
+    return comparator.compare(onHeapLeft, offHeapRight);
+  }
+
+  @Benchmark
+  public int compareRows() {
+    return comparator.compareRows(onHeapLeft, onHeapRight);
+  }
+}
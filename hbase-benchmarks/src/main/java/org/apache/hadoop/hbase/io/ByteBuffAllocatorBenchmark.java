@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures an {@link ByteBuffAllocator#allocate(int)} / {@link ByteBuff#release()} round trip with
+ * the reservoir enabled and disabled. Sizes below the min allocation size go to the heap, the
+ * others are served from the pooled direct buffers.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ByteBuffAllocatorBenchmark {
+
+  @Param({ "true", "false" })
+  public boolean reservoirEnabled;
+
+  @Param({ "1024", "65536", "200000" })
+  public int size;
+
+  private ByteBuffAllocator allocator;
+
+  @Setup
+  public void setup() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(ByteBuffAllocator.MAX_BUFFER_COUNT_KEY, 4096);
+    allocator = ByteBuffAllocator.create(conf, reservoirEnabled);
+  }
+
+  @TearDown
+  public void tearDown() {
+    allocator.clean();
+  }
+
+  private int allocateAndRelease() {
+    ByteBuff buf = allocator.allocate(size);
+    try {
+      return buf.capacity();
+    } finally {
+      buf.release();
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public int allocate() {
+    return allocateAndRelease();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public int allocateContended() {
+    return allocateAndRelease();
+  }
+}
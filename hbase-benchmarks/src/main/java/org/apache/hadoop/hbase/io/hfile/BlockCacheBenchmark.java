@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.util.ChecksumType;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BlockCache#getBlock} and {@link BlockCache#cacheBlock} on {@link LruBlockCache}
+ * and an off heap {@link BucketCache} with many threads hitting the same cache. The cache is sized
+ * to hold about half of the generated blocks, so gets see a mix of hits and misses and puts keep
+ * the eviction running.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BlockCacheBenchmark {
+
+  private static final int BLOCK_SIZE = 16 * 1024;
+
+  @Param({ "lru", "lru-sampled", "bucket" })
+  public String cacheType;
+
+  @Param({ "8192" })
+  public int blocks;
+
+  private BlockCache cache;
+  private BlockCacheKey[] keys;
+  private HFileBlock[] values;
+
+  @Setup
+  public void setup() throws IOException {
+    long capacity = (long) blocks * BLOCK_SIZE / 2;
+    if ("bucket".equals(cacheType)) {
+      cache = new BucketCache("offheap", capacity, BLOCK_SIZE, null, 3, 64, null, 60 * 1000,
+        HBaseConfiguration.create());
+    } else {
+      Configuration conf = HBaseConfiguration.create();
+      if ("lru-sampled".equals(cacheType)) {
+        conf.set(LruBlockCache.LRU_EVICTION_MODE_CONFIG_NAME, LruBlockCache.EVICTION_MODE_SAMPLED);
+      }
+      cache = new LruBlockCache(capacity, BLOCK_SIZE, true, conf);
+    }
+    keys = new BlockCacheKey[blocks];
+    values = new HFileBlock[blocks];
+    for (int i = 0; i < blocks; i++) {
+      keys[i] = new BlockCacheKey("benchmark-hfile", (long) i * BLOCK_SIZE);
+      values[i] = createBlock();
+      cache.cacheBlock(keys[i], values[i]);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    cache.shutdown();
+  }
+
+  private static HFileBlock createBlock() {
+    ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+    ThreadLocalRandom.current().nextBytes(buf.array());
+    BlockType.DATA.write(buf);
+    buf.putInt(BLOCK_SIZE);
+    buf.putInt(BLOCK_SIZE);
+    buf.putLong(-1);
+    buf.rewind();
+    HFileContext meta = new HFileContextBuilder().withHBaseCheckSum(false).withIncludesMvcc(false)
+      .withIncludesTags(false).withCompression(Compression.Algorithm.NONE).withBytesPerCheckSum(0)
+      .withChecksumType(ChecksumType.NULL).build();
+    return new HFileBlock(BlockType.DATA, BLOCK_SIZE, BLOCK_SIZE, -1, ByteBuff.wrap(buf),
+      HFileBlock.DONT_FILL_HEADER, BLOCK_SIZE, BLOCK_SIZE + HConstants.HFILEBLOCK_HEADER_SIZE, -1,
+      meta, ByteBuffAllocator.HEAP);
+  }
+
+  @Benchmark
+  public boolean get() {
+    Cacheable block =
+      cache.getBlock(keys[ThreadLocalRandom.current().nextInt(blocks)], true, false, true);
+    if (block == null) {
+      return false;
+    }
+    block.release();
+    return true;
+  }
+
+  @Benchmark
+  public void put() {
+    int i = ThreadLocalRandom.current().nextInt(blocks);
+    cache.cacheBlock(keys[i], values[i]);
+  }
+}
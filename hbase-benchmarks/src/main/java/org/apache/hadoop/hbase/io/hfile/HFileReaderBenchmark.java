@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link HFileScanner#seekTo(Cell)} and {@link HFileScanner#next()} over an HFile written
+ * to the local file system with each {@link DataBlockEncoding}. All blocks are cached on heap
+ * during the warm up so the numbers reflect the decoding and seeking cost and not the disk.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HFileReaderBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  @Param({ "NONE", "PREFIX", "DIFF", "FAST_DIFF", "ROW_INDEX_V1", "ROW_INDEX_V2" })
+  public DataBlockEncoding encoding;
+
+  @Param({ "100000" })
+  public int cells;
+
+  private FileSystem fs;
+  private Path path;
+  private BlockCache blockCache;
+  private HFile.Reader reader;
+  private HFileScanner scanner;
+  private KeyValue[] keys;
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    fs = FileSystem.getLocal(conf);
+    path = new Path(System.getProperty("java.io.tmpdir"),
+      "HFileReaderBenchmark-" + encoding + "-" + System.nanoTime());
+    HFileContext context = new HFileContextBuilder().withBlockSize(64 * 1024)
+      .withDataBlockEncoding(encoding).withIncludesTags(false).build();
+    keys = new KeyValue[cells];
+    byte[] value = new byte[32];
+    try (HFile.Writer writer =
+      HFile.getWriterFactoryNoCache(conf).withPath(fs, path).withFileContext(context).create()) {
+      for (int i = 0; i < cells; i++) {
+        byte[] row = Bytes.toBytes(String.format("row-%010d", i));
+        Bytes.random(value);
+        KeyValue kv = new KeyValue(row, FAMILY, QUALIFIER, 1L, value);
+        writer.append(kv);
+        keys[i] = KeyValueUtil.createFirstOnRow(row);
+      }
+    }
+    blockCache = new LruBlockCache(256L * 1024 * 1024, 64 * 1024, conf);
+    reader = HFile.createReader(fs, path, new CacheConfig(conf, blockCache), true, conf);
+    scanner = reader.getScanner(conf, true, true);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    scanner.close();
+    reader.close();
+    blockCache.shutdown();
+    fs.delete(path, false);
+  }
+
+  @Benchmark
+  public int seek() throws IOException {
+    return scanner.seekTo(keys[ThreadLocalRandom.current().nextInt(cells)]);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 20)
+  @Measurement(iterations = 20)
+  public void scan(Blackhole bh) throws IOException {
+    if (!scanner.seekTo()) {
+      return;
+    }
+    do {
+      bh.consume(scanner.getCell());
+    } while (scanner.next());
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileBlock;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many calls per second an {@link RpcExecutor} gets through when every call blocks for
+ * the given time, like a Get reading a block from HDFS, with a pool of handler threads and with
+ * virtual threads. The virtual thread runs need JDK 21 or later.
+ * <p>
+ * Parking does not pin the carrier thread of a virtual thread, while the file system client blocks
+ * in synchronized code, which does before JDK 24. So the calls of {@link #hfilePreads()} also read
+ * a random block of an HFile of the local file system through its input stream, as a Get missing
+ * the block cache does. The file is likely in the page cache, so they measure the read path rather
+ * than the disk.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RpcExecutorBenchmark {
+
+  private static final int CALLS = 2000;
+
+  @Param({ "false", "true" })
+  public boolean virtualThreads;
+
+  @Param({ "30", "300" })
+  public int handlerCount;
+
+  @Param({ "1000" })
+  public long readLatencyMicros;
+
+  private static final int HFILE_BLOCK_SIZE = 64 * 1024;
+  private static final int HFILE_CELLS = 100000;
+
+  private RpcExecutor executor;
+  private FileSystem fs;
+  private Path path;
+  private HFile.Reader reader;
+  private long[] dataBlockOffsets;
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setBoolean(VirtualThreadRpcHandler.VIRTUAL_THREADS_ENABLED_KEY, virtualThreads);
+    if (virtualThreads && !VirtualThreadRpcHandler.isEnabled("benchmark", conf)) {
+      throw new IllegalStateException("Virtual threads need JDK 21 or later");
+    }
+    executor =
+      new FastPathBalancedQueueRpcExecutor("benchmark", handlerCount, CALLS, null, conf, null);
+    executor.start(0);
+    createHFile(conf);
+  }
+
+  private void createHFile(Configuration conf) throws IOException {
+    fs = FileSystem.getLocal(conf);
+    path =
+      new Path(System.getProperty("java.io.tmpdir"), "RpcExecutorBenchmark-" + System.nanoTime());
+    HFileContext context = new HFileContextBuilder().withBlockSize(HFILE_BLOCK_SIZE).build();
+    byte[] family = Bytes.toBytes("f");
+    byte[] qualifier = Bytes.toBytes("q");
+    byte[] value = new byte[64];
+    try (HFile.Writer writer =
+      HFile.getWriterFactoryNoCache(conf).withPath(fs, path).withFileContext(context).create()) {
+      for (int i = 0; i < HFILE_CELLS; i++) {
+        Bytes.random(value);
+        writer.append(
+          new KeyValue(Bytes.toBytes(String.format("row-%010d", i)), family, qualifier, 1L, value));
+      }
+    }
+    reader = HFile.createReader(fs, path, CacheConfig.DISABLED, true, conf);
+    List<Long> offsets = new ArrayList<>();
+    long offset = 0;
+    long end = reader.getTrailer().getLoadOnOpenDataOffset();
+    while (offset < end) {
+      HFileBlock block = reader.readBlock(offset, -1, false, true, false, true, null, null);
+      if (block.getBlockType() == BlockType.DATA) {
+        offsets.add(offset);
+      }
+      offset += block.getOnDiskSizeWithHeader();
+      block.release();
+    }
+    dataBlockOffsets = offsets.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    executor.stop();
+    reader.close();
+    fs.delete(path, false);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void blockingReads() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(CALLS);
+    long readLatencyNanos = TimeUnit.MICROSECONDS.toNanos(readLatencyMicros);
+    for (int i = 0; i < CALLS; i++) {
+      CallRunner cr = new CallRunner(null, null) {
+        @Override
+        public void run() {
+          LockSupport.parkNanos(readLatencyNanos);
+          done.countDown();
+        }
+      };
+      while (!executor.dispatch(cr)) {
+        // the queues are full, as the RpcServer would reject the call let the client back off
+        LockSupport.parkNanos(readLatencyNanos);
+      }
+    }
+    done.await();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS)
+  public void hfilePreads() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(CALLS);
+    for (int i = 0; i < CALLS; i++) {
+      CallRunner cr = new CallRunner(null, null) {
+        @Override
+        public void run() {
+          long offset =
+            dataBlockOffsets[ThreadLocalRandom.current().nextInt(dataBlockOffsets.length)];
+          try {
+            reader.readBlock(offset, -1, false, true, false, true, BlockType.DATA, null).release();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } finally {
+            done.countDown();
+          }
+        }
+      };
+      while (!executor.dispatch(cr)) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(readLatencyMicros));
+      }
+    }
+    done.await();
+  }
+}
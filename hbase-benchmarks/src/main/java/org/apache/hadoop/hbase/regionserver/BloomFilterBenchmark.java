@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.hfile.BlockCache;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.io.hfile.LruBlockCache;
+import org.apache.hadoop.hbase.util.BloomFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the general row bloom filter of a store file, i.e.
+ * {@link org.apache.hadoop.hbase.io.hfile.CompoundBloomFilter#contains}, for keys which are in the
+ * file and for keys which are not. The bloom chunks are cached on heap after the first lookups.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BloomFilterBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  @Param({ "ROW" })
+  public BloomType bloomType;
+
+  @Param({ "1000000" })
+  public int rows;
+
+  private FileSystem fs;
+  private Path dir;
+  private BlockCache blockCache;
+  private HStoreFile storeFile;
+  private BloomFilter bloom;
+  private byte[][] present;
+  private byte[][] absent;
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    fs = FileSystem.getLocal(conf);
+    dir =
+      new Path(System.getProperty("java.io.tmpdir"), "BloomFilterBenchmark-" + System.nanoTime());
+    blockCache = new LruBlockCache(256L * 1024 * 1024, 64 * 1024, conf);
+    CacheConfig cacheConf = new CacheConfig(conf, blockCache);
+    HFileContext context = new HFileContextBuilder().withBlockSize(64 * 1024).build();
+    StoreFileWriter writer = new StoreFileWriter.Builder(conf, cacheConf, fs).withOutputDir(dir)
+      .withBloomType(bloomType).withMaxKeyCount(rows).withFileContext(context).build();
+    present = new byte[rows][];
+    absent = new byte[rows][];
+    byte[] value = new byte[8];
+    for (int i = 0; i < rows; i++) {
+      present[i] = Bytes.toBytes(String.format("row-%010d", i));
+      absent[i] = Bytes.toBytes(String.format("row-%010d-absent", i));
+      writer.append(new KeyValue(present[i], FAMILY, QUALIFIER, 1L, value));
+    }
+    writer.close();
+    storeFile = new HStoreFile(fs, writer.getPath(), conf, cacheConf, bloomType, true);
+    storeFile.initReader();
+    bloom = storeFile.getReader().getGeneralBloomFilter();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    storeFile.closeStoreFile(true);
+    blockCache.shutdown();
+    fs.delete(dir, true);
+  }
+
+  @Benchmark
+  public boolean containsPresent() {
+    byte[] row = present[ThreadLocalRandom.current().nextInt(rows)];
+    return bloom.contains(row, 0, row.length, null);
+  }
+
+  @Benchmark
+  public boolean containsAbsent() {
+    byte[] row = absent[ThreadLocalRandom.current().nextInt(rows)];
+    return bloom.contains(row, 0, row.length, null);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeepDeletedCells;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.CollectionBackedScanner;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures merging of several sorted scanners, first through a bare {@link KeyValueHeap} and then
+ * through a user {@link StoreScanner} which adds the query matcher on top of the heap. Cells are
+ * interleaved round robin across the scanners so every next() has to re-heapify.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KeyValueHeapBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  @Param({ "1", "4", "16" })
+  public int scanners;
+
+  @Param({ "100000" })
+  public int cells;
+
+  private List<List<Cell>> data;
+  private ScanInfo scanInfo;
+  private List<KeyValueScanner> current;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Configuration conf = HBaseConfiguration.create();
+    scanInfo = new ScanInfo(conf, FAMILY, 0, 1, HConstants.FOREVER, KeepDeletedCells.FALSE,
+      HConstants.DEFAULT_BLOCKSIZE, 0, CellComparator.getInstance(), false);
+    data = new ArrayList<>(scanners);
+    for (int i = 0; i < scanners; i++) {
+      data.add(new ArrayList<>(cells / scanners + 1));
+    }
+    byte[] value = new byte[64];
+    for (int i = 0; i < cells; i++) {
+      byte[] row = Bytes.toBytes(String.format("row-%010d", i));
+      data.get(i % scanners).add(new KeyValue(row, FAMILY, QUALIFIER, i, value));
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void createScanners() {
+    current = new ArrayList<>(scanners);
+    for (List<Cell> list : data) {
+      current.add(new CollectionBackedScanner(new ArrayList<>(list), CellComparator.getInstance()));
+    }
+  }
+
+  @Benchmark
+  public void keyValueHeapNext(Blackhole bh) throws IOException {
+    KeyValueHeap heap = new KeyValueHeap(current, CellComparator.getInstance());
+    try {
+      for (Cell c; (c = heap.next()) != null;) {
+        bh.consume(c);
+      }
+    } finally {
+      heap.close();
+    }
+  }
+
+  @Benchmark
+  public void storeScannerNext(Blackhole bh) throws IOException {
+    List<Cell> results = new ArrayList<>();
+    try (StoreScanner scanner = new StoreScanner(new Scan(), scanInfo, null, current)) {
+      while (scanner.next(results)) {
+        bh.consume(results);
+        results.clear();
+      }
+      bh.consume(results);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MultiVersionConcurrencyControl#begin()} followed by
+ * {@link MultiVersionConcurrencyControl#complete(MultiVersionConcurrencyControl.WriteEntry)}, the
+ * sequence every mutation goes through, with one and many writer threads on the same region, for
+ * each write queue type.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MVCCBenchmark {
+
+  @Param({ MultiVersionConcurrencyControl.WRITE_QUEUE_TYPE_LINKED,
+    MultiVersionConcurrencyControl.WRITE_QUEUE_TYPE_RING })
+  public String writeQueueType;
+
+  private MultiVersionConcurrencyControl mvcc;
+
+  @Setup
+  public void setup() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(MultiVersionConcurrencyControl.WRITE_QUEUE_TYPE_KEY, writeQueueType);
+    mvcc = new MultiVersionConcurrencyControl("benchmark", conf);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean beginComplete() {
+    return mvcc.complete(mvcc.begin());
+  }
+
+  @Benchmark
+  @Threads(16)
+  public boolean beginCompleteContended() {
+    return mvcc.complete(mvcc.begin());
+  }
+}
@@ -45,6 +45,12 @@ public enum MemoryCompactionPolicy {
    * Adaptive compaction adapts to the workload. It applies either index compaction or data
    * compaction based on the ratio of duplicate cells in the data.
    */
-  ADAPTIVE
+  ADAPTIVE,
+  /**
+   * Self-tuning compaction measures the ratio of duplicate cells and the size of the cells of each
+   * store. It compacts the data of stores with enough duplicates and only compacts the index of the
+   * others, and picks the flat index that suits the size of their cells.
+   */
+  SELF_TUNING
 
 }
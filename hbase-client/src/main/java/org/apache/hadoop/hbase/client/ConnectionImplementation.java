@@ -232,6 +232,7 @@ public class ConnectionImplementation implements ClusterConnection, Closeable {
 
   private String metricsScope = null;
   private final MetricsConnection metrics;
+  private final ReplicaHedgingPolicy replicaHedgingPolicy;
 
   protected User user;
 
@@ -331,6 +332,7 @@ public class ConnectionImplementation implements ClusterConnection, Closeable {
       } else {
         this.metrics = null;
       }
+      this.replicaHedgingPolicy = ReplicaHedgingPolicy.create(conf, this.metrics);
       this.metaCache = new MetaCache(this.metrics);
 
       this.rpcClient = RpcClientFactory.createClient(this.conf, this.clusterId, this.metrics);
@@ -548,6 +550,11 @@ public class ConnectionImplementation implements ClusterConnection, Closeable {
     return this.metrics;
   }
 
+  /** Returns the policy of the timeline consistent Gets, or null if it is the fixed timeout */
+  ReplicaHedgingPolicy getReplicaHedgingPolicy() {
+    return this.replicaHedgingPolicy;
+  }
+
   @Override
   public User getUser() {
     return user;
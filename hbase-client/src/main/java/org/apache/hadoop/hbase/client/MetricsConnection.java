@@ -36,6 +36,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.net.Address;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.ipc.RemoteException;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -125,6 +126,7 @@ public final class MetricsConnection implements StatisticTrackable {
   private static final String DRTN_BASE = "rpcCallDurationMs_";
   private static final String REQ_BASE = "rpcCallRequestSizeBytes_";
   private static final String RESP_BASE = "rpcCallResponseSizeBytes_";
+  private static final String SERVER_GET_DRTN_BASE = "serverGetDurationMs_";
   private static final String MEMLOAD_BASE = "memstoreLoad_";
   private static final String HEAP_BASE = "heapOccupancy_";
   private static final String CACHE_BASE = "cacheDroppingExceptions_";
@@ -693,6 +695,34 @@ public final class MetricsConnection implements StatisticTrackable {
     this.reporter.stop();
   }
 
+  /**
+   * Report RPC context to metrics system, also tracking the durations of the successful Gets of
+   * each server.
+   */
+  public void updateRpc(MethodDescriptor method, Address server, Message param, CallStats stats,
+    Throwable e) {
+    if (
+      e == null && server != null && method.getService() == ClientService.getDescriptor()
+        && method.getIndex() == 0
+    ) {
+      updateServerGetDuration(server, stats.getCallTimeMs());
+    }
+    updateRpc(method, param, stats, e);
+  }
+
+  /** Adds a duration to the Gets of the given server, e.g. of a Get cancelled after that long */
+  public void updateServerGetDuration(Address server, long callTimeMs) {
+    getMetric(SERVER_GET_DRTN_BASE + server, rpcHistograms, histogramFactory).update(callTimeMs);
+  }
+
+  /**
+   * Returns the durations of the successful or cancelled Gets sent to the given server, or null if
+   * none
+   */
+  public Histogram getServerGetDurationHist(Address server) {
+    return rpcHistograms.get(SERVER_GET_DRTN_BASE + server);
+  }
+
   /** Report RPC context to metrics system. */
   public void updateRpc(MethodDescriptor method, Message param, CallStats stats, Throwable e) {
     int callsPerServer = stats.getConcurrentCallsPerServer();
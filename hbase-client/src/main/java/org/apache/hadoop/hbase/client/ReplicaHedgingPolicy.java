@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import com.codahale.metrics.Histogram;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides when a timeline consistent Get gives up waiting for the primary replica and asks the
+ * secondary replicas too. Instead of the fixed
+ * {@link ConnectionConfiguration#PRIMARY_CALL_TIMEOUT_MICROSECOND}, the Get waits for the
+ * configured percentile of the durations of the Gets recently answered by the server of the
+ * primary, as tracked by {@link MetricsConnection}, so only the slowest Gets are sent twice. The
+ * secondaries may only be asked for up to a budget share of the Gets, beyond it a Get waits for its
+ * primary, and only goes to the secondaries if the primary fails.
+ */
+@InterfaceAudience.Private
+public class ReplicaHedgingPolicy {
+  private static final Logger LOG = LoggerFactory.getLogger(ReplicaHedgingPolicy.class);
+
+  /** Whether to wait for the primary based on the durations of the previous Gets of its server */
+  public static final String ADAPTIVE_PRIMARY_CALL_TIMEOUT_KEY =
+    "hbase.client.primaryCallTimeout.get.adaptive";
+  public static final boolean DEFAULT_ADAPTIVE_PRIMARY_CALL_TIMEOUT = false;
+
+  /** The percentile of the durations of the Gets of the primary's server to wait for */
+  public static final String PRIMARY_CALL_TIMEOUT_PERCENTILE_KEY =
+    "hbase.client.primaryCallTimeout.get.percentile";
+  public static final double DEFAULT_PRIMARY_CALL_TIMEOUT_PERCENTILE = 0.95;
+
+  /** How many Gets a server must have answered before its durations are used */
+  public static final String PRIMARY_CALL_TIMEOUT_MIN_SAMPLES_KEY =
+    "hbase.client.primaryCallTimeout.get.min.samples";
+  public static final long DEFAULT_PRIMARY_CALL_TIMEOUT_MIN_SAMPLES = 100;
+
+  /** The largest share of the timeline consistent Gets which may be sent to the secondaries */
+  public static final String HEDGE_BUDGET_KEY = "hbase.client.primaryCallTimeout.get.budget";
+  public static final double DEFAULT_HEDGE_BUDGET = 0.1;
+
+  // How long a computed timeout is used before it is computed again from the durations.
+  private static final long REFRESH_INTERVAL_MS = 1000;
+  // Unused budget saved for bursts of slow Gets, in Gets sent to the secondaries.
+  private static final long MAX_SAVED_HEDGES = 100;
+  private static final long UNITS_PER_HEDGE = 1000000;
+
+  private final MetricsConnection metrics;
+  private final double percentile;
+  private final long minSamples;
+  private final long unitsPerGet;
+  private final long maxUnits;
+  // The budget left, in millionths of a Get sent to the secondaries.
+  private final AtomicLong budget;
+  private final ConcurrentMap<ServerName, PrimaryCallTimeout> timeouts = new ConcurrentHashMap<>();
+
+  private static final class PrimaryCallTimeout {
+    final long timeoutMicros;
+    final long computedAt;
+
+    PrimaryCallTimeout(long timeoutMicros, long computedAt) {
+      this.timeoutMicros = timeoutMicros;
+      this.computedAt = computedAt;
+    }
+  }
+
+  ReplicaHedgingPolicy(Configuration conf, MetricsConnection metrics) {
+    this.metrics = metrics;
+    this.percentile =
+      conf.getDouble(PRIMARY_CALL_TIMEOUT_PERCENTILE_KEY, DEFAULT_PRIMARY_CALL_TIMEOUT_PERCENTILE);
+    this.minSamples =
+      conf.getLong(PRIMARY_CALL_TIMEOUT_MIN_SAMPLES_KEY, DEFAULT_PRIMARY_CALL_TIMEOUT_MIN_SAMPLES);
+    double budgetShare =
+      Math.min(1.0, Math.max(0.0, conf.getDouble(HEDGE_BUDGET_KEY, DEFAULT_HEDGE_BUDGET)));
+    this.unitsPerGet = (long) (budgetShare * UNITS_PER_HEDGE);
+    this.maxUnits =
+      budgetShare > 0 ? Math.max(1, (long) (budgetShare * MAX_SAVED_HEDGES)) * UNITS_PER_HEDGE : 0;
+    this.budget = new AtomicLong(maxUnits);
+  }
+
+  /**
+   * Returns the policy for the Gets of the given connection, or null if it waits for the primary
+   * for a fixed time.
+   */
+  static ReplicaHedgingPolicy create(Configuration conf, MetricsConnection metrics) {
+    if (
+      !conf.getBoolean(ADAPTIVE_PRIMARY_CALL_TIMEOUT_KEY, DEFAULT_ADAPTIVE_PRIMARY_CALL_TIMEOUT)
+    ) {
+      return null;
+    }
+    if (metrics == null) {
+      LOG.warn("{} needs {} to be enabled, using a fixed primary call timeout",
+        ADAPTIVE_PRIMARY_CALL_TIMEOUT_KEY, MetricsConnection.CLIENT_SIDE_METRICS_ENABLED_KEY);
+      return null;
+    }
+    return new ReplicaHedgingPolicy(conf, metrics);
+  }
+
+  /**
+   * Returns how long a Get waits for the given server of its primary replica before asking the
+   * secondaries, in microseconds. Adds the share of a Get to the budget, so to be called once for
+   * each Get.
+   * @param defaultTimeoutMicros the timeout while the server answered too few Gets
+   */
+  long getPrimaryCallTimeoutMicros(ServerName primary, long defaultTimeoutMicros) {
+    budget.accumulateAndGet(unitsPerGet, (left, units) -> Math.min(left + units, maxUnits));
+    if (primary == null) {
+      return defaultTimeoutMicros;
+    }
+    long now = EnvironmentEdgeManager.currentTime();
+    PrimaryCallTimeout timeout = timeouts.get(primary);
+    if (timeout == null || now - timeout.computedAt > REFRESH_INTERVAL_MS) {
+      timeout = new PrimaryCallTimeout(computeTimeoutMicros(primary, defaultTimeoutMicros), now);
+      timeouts.put(primary, timeout);
+    }
+    return timeout.timeoutMicros;
+  }
+
+  private long computeTimeoutMicros(ServerName primary, long defaultTimeoutMicros) {
+    Histogram durations = metrics.getServerGetDurationHist(primary.getAddress());
+    if (durations == null || durations.getCount() < minSamples) {
+      return defaultTimeoutMicros;
+    }
+    // the durations are in millis, do not ask the secondaries right away for sub milli Gets
+    double timeoutMs = Math.max(1.0, durations.getSnapshot().getValue(percentile));
+    return (long) (timeoutMs * TimeUnit.MILLISECONDS.toMicros(1));
+  }
+
+  /**
+   * Counts a Get whose primary was cancelled because a secondary answered first. Only the Gets the
+   * server answered are tracked by the client metrics, so without it the slowest Gets, the ones
+   * sent to the secondaries, would drop out of the durations and the timeout would keep shrinking.
+   * @param elapsedMs how long the primary had been waited for, a lower bound of its duration
+   */
+  void primaryLost(ServerName primary, long elapsedMs) {
+    metrics.updateServerGetDuration(primary.getAddress(), elapsedMs);
+  }
+
+  /**
+   * Takes a Get sent to the secondaries out of the budget.
+   * @return false if the budget is spent, the Get should keep waiting for its primary
+   */
+  boolean tryHedge() {
+    for (;;) {
+      long left = budget.get();
+      if (left < UNITS_PER_HEDGE) {
+        return false;
+      }
+      if (budget.compareAndSet(left, left - UNITS_PER_HEDGE)) {
+        return true;
+      }
+    }
+  }
+}
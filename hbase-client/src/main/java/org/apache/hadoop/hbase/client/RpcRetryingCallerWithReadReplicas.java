@@ -33,6 +33,7 @@ import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HBaseIOException;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.RegionLocations;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.ipc.HBaseRpcController;
 import org.apache.hadoop.hbase.ipc.RpcControllerFactory;
@@ -49,7 +50,9 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos;
 /**
  * Caller that goes to replica if the primary region does no answer within a configurable timeout.
  * If the timeout is reached, it calls all the secondary replicas, and returns the first answer. If
- * the answer comes from one of the secondary replica, it will be marked as stale.
+ * the answer comes from one of the secondary replica, it will be marked as stale. The timeout can
+ * also follow the durations of the previous Gets of the primary's server, see
+ * {@link ReplicaHedgingPolicy}.
  */
 @InterfaceAudience.Private
 public class RpcRetryingCallerWithReadReplicas {
@@ -67,6 +70,7 @@ public class RpcRetryingCallerWithReadReplicas {
   private final int retries;
   private final RpcControllerFactory rpcControllerFactory;
   private final RpcRetryingCallerFactory rpcRetryingCallerFactory;
+  private final ReplicaHedgingPolicy hedgingPolicy;
 
   public RpcRetryingCallerWithReadReplicas(RpcControllerFactory rpcControllerFactory,
     TableName tableName, ClusterConnection cConnection, final Get get, ExecutorService pool,
@@ -83,6 +87,9 @@ public class RpcRetryingCallerWithReadReplicas {
     this.timeBeforeReplicas = timeBeforeReplicas;
     this.rpcRetryingCallerFactory =
       new RpcRetryingCallerFactory(conf, cConnection.getConnectionConfiguration());
+    this.hedgingPolicy = cConnection instanceof ConnectionImplementation
+      ? ((ConnectionImplementation) cConnection).getReplicaHedgingPolicy()
+      : null;
   }
 
   /**
@@ -197,6 +204,12 @@ public class RpcRetryingCallerWithReadReplicas {
       new ResultBoundedCompletionService<>(this.rpcRetryingCallerFactory, pool, rl.size());
     int startIndex = 0;
     int endIndex = rl.size();
+    // with the adaptive policy the whole Get, waiting for the primary included, is bounded by the
+    // operation timeout
+    final long startNs = System.nanoTime();
+    final long deadlineNs = startNs + TimeUnit.MILLISECONDS.toNanos(operationTimeout);
+    // the server of the primary, when the policy should learn how long it made the Get wait
+    ServerName hedgedPrimary = null;
 
     if (isTargetReplicaSpecified) {
       addCallsForReplica(cs, rl, get.getReplicaId(), get.getReplicaId());
@@ -205,9 +218,25 @@ public class RpcRetryingCallerWithReadReplicas {
       if (!skipPrimary) {
         addCallsForReplica(cs, rl, 0, 0);
         try {
+          long primaryCallTimeout = timeBeforeReplicas;
+          if (hedgingPolicy != null) {
+            HRegionLocation primary = rl.getRegionLocation(0);
+            hedgedPrimary = primary != null ? primary.getServerName() : null;
+            primaryCallTimeout =
+              hedgingPolicy.getPrimaryCallTimeoutMicros(hedgedPrimary, timeBeforeReplicas);
+          }
           // wait for the timeout to see whether the primary responds back
-          Future<Result> f = cs.poll(timeBeforeReplicas, TimeUnit.MICROSECONDS); // Yes,
+          Future<Result> f = cs.poll(primaryCallTimeout, TimeUnit.MICROSECONDS); // Yes,
                                                                                  // microseconds
+          if (f == null && hedgingPolicy != null && !hedgingPolicy.tryHedge()) {
+            // over the budget, only go to the secondaries if the primary fails
+            f = cs.poll(deadlineNs - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (f == null) {
+              cs.cancelAll();
+              throw new RetriesExhaustedException("Timed out after " + operationTimeout
+                + "ms. Get is sent to replicas with startIndex: 0, endIndex: 1, Locations: " + rl);
+            }
+          }
           if (f != null) {
             return f.get(); // great we got a response
           }
@@ -236,9 +265,12 @@ public class RpcRetryingCallerWithReadReplicas {
       addCallsForReplica(cs, rl, 1, rl.size() - 1);
     }
     try {
+      long timeout = hedgingPolicy != null
+        ? Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNs - System.nanoTime()))
+        : operationTimeout;
       ResultBoundedCompletionService<Result>.QueueingFuture<Result> f =
-        cs.pollForFirstSuccessfullyCompletedTask(operationTimeout, TimeUnit.MILLISECONDS,
-          startIndex, endIndex);
+        cs.pollForFirstSuccessfullyCompletedTask(timeout, TimeUnit.MILLISECONDS, startIndex,
+          endIndex);
       if (f == null) {
         throw new RetriesExhaustedException(
           "Timed out after " + operationTimeout + "ms. Get is sent to replicas with startIndex: "
@@ -250,6 +282,14 @@ public class RpcRetryingCallerWithReadReplicas {
       ) {
         cConnection.getConnectionMetrics().incrHedgedReadWin();
       }
+      if (
+        hedgedPrimary != null && startIndex == 0
+          && f.getReplicaId() != RegionReplicaUtil.DEFAULT_REPLICA_ID
+      ) {
+        // the primary is cancelled, it would have taken at least as long as the Get took so far
+        hedgingPolicy.primaryLost(hedgedPrimary,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs));
+      }
       return f.get();
     } catch (ExecutionException e) {
       throwEnrichedException(e, retries);
@@ -36,5 +36,10 @@ public enum BloomType {
   /**
    * Bloom enabled with Table row prefix as Key, specify the length of the prefix
    */
-  ROWPREFIX_FIXED_LENGTH
+  ROWPREFIX_FIXED_LENGTH,
+  /**
+   * Bloom enabled with Table row as Key, laid out in blocks of a cache line so that checking a key
+   * reads a single cache line
+   */
+  ROW_BLOCKED
 }
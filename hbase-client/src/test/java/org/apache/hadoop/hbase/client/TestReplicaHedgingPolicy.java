@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLocations;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.ipc.RpcControllerFactory;
+import org.apache.hadoop.hbase.testclassification.ClientTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hbase.thirdparty.com.google.protobuf.Descriptors.MethodDescriptor;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ClientService;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ClientService.BlockingInterface;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.GetRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.GetResponse;
+
+@Category({ ClientTests.class, SmallTests.class })
+public class TestReplicaHedgingPolicy {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestReplicaHedgingPolicy.class);
+
+  private static final String SCOPE = "test-replica-hedging";
+  private static final MethodDescriptor GET = ClientService.getDescriptor().findMethodByName("Get");
+  private static final ServerName PRIMARY = ServerName.valueOf("primary", 16020, 1);
+  private static final ServerName OTHER = ServerName.valueOf("other", 16020, 1);
+  private static final long DEFAULT_TIMEOUT = 10000;
+
+  private MetricsConnection metrics;
+  private final AtomicLong now = new AtomicLong(1);
+
+  @Before
+  public void setUp() {
+    metrics = MetricsConnection.getMetricsConnection(SCOPE, () -> null, () -> null);
+    EnvironmentEdgeManager.injectEdge(now::get);
+  }
+
+  @After
+  public void tearDown() {
+    EnvironmentEdgeManager.reset();
+    MetricsConnection.deleteMetricsConnection(SCOPE);
+  }
+
+  private void get(ServerName server, long callTimeMs, Throwable error) {
+    MetricsConnection.CallStats stats = MetricsConnection.newCallStats();
+    stats.setCallTimeMs(callTimeMs);
+    metrics.updateRpc(GET, server.getAddress(), GetRequest.getDefaultInstance(), stats, error);
+  }
+
+  @Test
+  public void testCreate() {
+    Configuration conf = HBaseConfiguration.create();
+    assertNull(ReplicaHedgingPolicy.create(conf, metrics));
+    conf.setBoolean(ReplicaHedgingPolicy.ADAPTIVE_PRIMARY_CALL_TIMEOUT_KEY, true);
+    assertNotNull(ReplicaHedgingPolicy.create(conf, metrics));
+    // the durations are tracked by the client metrics
+    assertNull(ReplicaHedgingPolicy.create(conf, null));
+  }
+
+  @Test
+  public void testTimeoutFollowsServerDurations() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setLong(ReplicaHedgingPolicy.PRIMARY_CALL_TIMEOUT_MIN_SAMPLES_KEY, 100);
+    ReplicaHedgingPolicy policy = new ReplicaHedgingPolicy(conf, metrics);
+    for (int i = 1; i < 100; i++) {
+      get(PRIMARY, i, null);
+    }
+    // failed Gets and the Gets of other servers are not counted
+    get(PRIMARY, 1000, new DoNotRetryIOException("failed"));
+    get(OTHER, 1000, null);
+    assertEquals(DEFAULT_TIMEOUT, policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT));
+
+    get(PRIMARY, 100, null);
+    now.addAndGet(1001);
+    long timeout = policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT);
+    assertTrue("timeout=" + timeout, timeout >= 90000 && timeout <= 100000);
+    assertEquals(DEFAULT_TIMEOUT, policy.getPrimaryCallTimeoutMicros(OTHER, DEFAULT_TIMEOUT));
+    assertEquals(DEFAULT_TIMEOUT, policy.getPrimaryCallTimeoutMicros(null, DEFAULT_TIMEOUT));
+
+    // the timeout is only computed again once in a while
+    for (int i = 0; i < 1000; i++) {
+      get(PRIMARY, 1000, null);
+    }
+    assertEquals(timeout, policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT));
+    now.addAndGet(1001);
+    assertEquals(1000000, policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT));
+  }
+
+  @Test
+  public void testSubMilliGets() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setLong(ReplicaHedgingPolicy.PRIMARY_CALL_TIMEOUT_MIN_SAMPLES_KEY, 10);
+    ReplicaHedgingPolicy policy = new ReplicaHedgingPolicy(conf, metrics);
+    for (int i = 0; i < 10; i++) {
+      get(PRIMARY, 0, null);
+    }
+    assertEquals(1000, policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT));
+  }
+
+  @Test
+  public void testBudget() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setDouble(ReplicaHedgingPolicy.HEDGE_BUDGET_KEY, 0.1);
+    ReplicaHedgingPolicy policy = new ReplicaHedgingPolicy(conf, metrics);
+    // a burst of slow Gets may use the budget saved
+    for (int i = 0; i < 10; i++) {
+      assertTrue(policy.tryHedge());
+    }
+    assertFalse(policy.tryHedge());
+    // then one Get in ten may go to the secondaries
+    for (int i = 0; i < 9; i++) {
+      policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT);
+      assertFalse(policy.tryHedge());
+    }
+    policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT);
+    assertTrue(policy.tryHedge());
+    assertFalse(policy.tryHedge());
+
+    conf.setDouble(ReplicaHedgingPolicy.HEDGE_BUDGET_KEY, 0);
+    policy = new ReplicaHedgingPolicy(conf, metrics);
+    policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT);
+    assertFalse(policy.tryHedge());
+  }
+
+  private static RegionLocations locations(TableName tableName) {
+    RegionInfo primary = RegionInfoBuilder.newBuilder(tableName).build();
+    return new RegionLocations(new HRegionLocation(primary, PRIMARY),
+      new HRegionLocation(RegionReplicaUtil.getRegionInfoForReplica(primary, 1), OTHER));
+  }
+
+  /** Returns a connection whose primary replica hangs and whose secondary answers right away */
+  private ConnectionImplementation mockConnection(Configuration conf, ReplicaHedgingPolicy policy,
+    TableName tableName, RegionLocations locations) throws Exception {
+    BlockingInterface primaryStub = mock(BlockingInterface.class);
+    when(primaryStub.get(any(), any())).thenAnswer(invocation -> {
+      Thread.sleep(60000);
+      return null;
+    });
+    BlockingInterface secondaryStub = mock(BlockingInterface.class);
+    when(secondaryStub.get(any(), any())).thenReturn(
+      GetResponse.newBuilder().setResult(ClientProtos.Result.newBuilder().setStale(true)).build());
+    ConnectionImplementation conn = mock(ConnectionImplementation.class);
+    when(conn.getConfiguration()).thenReturn(conf);
+    when(conn.getConnectionConfiguration()).thenReturn(new ConnectionConfiguration(conf));
+    when(conn.getConnectionMetrics()).thenReturn(metrics);
+    when(conn.getReplicaHedgingPolicy()).thenReturn(policy);
+    when(conn.locateRegion(eq(tableName), any(), anyBoolean(), anyBoolean(), anyInt()))
+      .thenReturn(locations);
+    when(conn.getClient(PRIMARY)).thenReturn(primaryStub);
+    when(conn.getClient(OTHER)).thenReturn(secondaryStub);
+    return conn;
+  }
+
+  @Test
+  public void testHedgesWinningKeepTimeout() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setLong(ReplicaHedgingPolicy.PRIMARY_CALL_TIMEOUT_MIN_SAMPLES_KEY, 100);
+    conf.setDouble(ReplicaHedgingPolicy.HEDGE_BUDGET_KEY, 1.0);
+    ReplicaHedgingPolicy policy = new ReplicaHedgingPolicy(conf, metrics);
+    for (int i = 0; i < 90; i++) {
+      get(PRIMARY, 1, null);
+    }
+    for (int i = 0; i < 10; i++) {
+      get(PRIMARY, 100, null);
+    }
+    long timeout = policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT);
+    assertEquals(100000, timeout);
+
+    TableName tableName = TableName.valueOf("test");
+    ConnectionImplementation conn = mockConnection(conf, policy, tableName, locations(tableName));
+    ExecutorService pool = Executors.newCachedThreadPool();
+    try {
+      // the slow Gets of the primary keep losing to the secondary while the fast ones succeed
+      for (int i = 0; i < 20; i++) {
+        for (int j = 0; j < 9; j++) {
+          get(PRIMARY, 1, null);
+        }
+        Get get = new Get(Bytes.toBytes("row"));
+        get.setConsistency(Consistency.TIMELINE);
+        Result result =
+          new RpcRetryingCallerWithReadReplicas(RpcControllerFactory.instantiate(conf), tableName,
+            conn, get, pool, 1, 10000, 60000, 1000).call(10000);
+        assertTrue(result.isStale());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(20, metrics.getHedgedReadWin().getCount());
+    // the cancelled primaries are counted with how long they were waited for, so the slowest Gets
+    // do not drop out of the durations
+    assertEquals(300, metrics.getServerGetDurationHist(PRIMARY.getAddress()).getCount());
+    now.addAndGet(1001);
+    assertTrue(policy.getPrimaryCallTimeoutMicros(PRIMARY, DEFAULT_TIMEOUT) >= timeout);
+  }
+
+  @Test
+  public void testRefusedHedgeKeepsOperationTimeout() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setDouble(ReplicaHedgingPolicy.HEDGE_BUDGET_KEY, 0);
+    ReplicaHedgingPolicy policy = new ReplicaHedgingPolicy(conf, metrics);
+    TableName tableName = TableName.valueOf("test");
+    byte[] row = Bytes.toBytes("row");
+    RegionLocations locations = locations(tableName);
+    ConnectionImplementation conn = mockConnection(conf, policy, tableName, locations);
+    ExecutorService pool = Executors.newCachedThreadPool();
+    try {
+      int operationTimeout = 500;
+      Get get = new Get(row);
+      get.setConsistency(Consistency.TIMELINE);
+      RpcRetryingCallerWithReadReplicas caller =
+        new RpcRetryingCallerWithReadReplicas(RpcControllerFactory.instantiate(conf), tableName,
+          conn, get, pool, 1, operationTimeout, 60000, 1000);
+      long start = System.nanoTime();
+      try {
+        caller.call(operationTimeout);
+        fail("the primary never answers");
+      } catch (RetriesExhaustedException e) {
+        // expected
+      }
+      long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      assertTrue("elapsed=" + elapsedMs, elapsedMs < 2 * operationTimeout);
+      // the budget refused the hedge, the secondary was never asked
+      assertEquals(0, metrics.getHedgedReadOps().getCount());
+      verify(conn, never()).getClient(OTHER);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
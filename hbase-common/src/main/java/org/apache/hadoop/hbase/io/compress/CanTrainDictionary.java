@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.compress;
+
+import java.util.List;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * This is an interface that indicates if a codec can train a compression dictionary from samples of
+ * the data it is going to compress. The compressors and decompressors of such a codec accept the
+ * trained dictionary through setDictionary(byte[], int, int) and keep it until they are next
+ * reinitialized via {@link CanReinit#reinit(org.apache.hadoop.conf.Configuration)}.
+ */
+@InterfaceAudience.Private
+public interface CanTrainDictionary {
+
+  /**
+   * Train a dictionary from the given samples.
+   * @param samples           samples of the data to compress
+   * @param maxDictionarySize upper bound on the size of the dictionary
+   * @return the dictionary, or null if the samples were not sufficient to train one
+   */
+  byte[] trainDictionary(List<byte[]> samples, int maxDictionarySize);
+
+}
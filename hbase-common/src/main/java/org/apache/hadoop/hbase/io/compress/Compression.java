@@ -23,6 +23,7 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
@@ -512,6 +513,29 @@ public final class Compression {
       }
     }
 
+    /**
+     * Returns true if the codec of this algorithm can train compression dictionaries.
+     * @see CanTrainDictionary
+     */
+    public boolean canTrainDictionary() {
+      return getCodec(conf) instanceof CanTrainDictionary;
+    }
+
+    /**
+     * Train a compression dictionary for the codec of this algorithm.
+     * @param samples           samples of the data to compress
+     * @param maxDictionarySize upper bound on the size of the dictionary
+     * @return the dictionary, or null if the codec cannot train dictionaries or the samples were
+     *         not sufficient to train one
+     */
+    public byte[] trainDictionary(List<byte[]> samples, int maxDictionarySize) {
+      CompressionCodec codec = getCodec(conf);
+      if (!(codec instanceof CanTrainDictionary)) {
+        return null;
+      }
+      return ((CanTrainDictionary) codec).trainDictionary(samples, maxDictionarySize);
+    }
+
     public String getName() {
       return compressName;
     }
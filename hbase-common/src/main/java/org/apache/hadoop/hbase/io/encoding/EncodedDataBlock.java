@@ -285,8 +285,12 @@ public class EncodedDataBlock {
       // outputstream with Encoder ROW_INDEX_V1 dump to byte array (baosBytes).
       // The if branch is necessary because Encoders excepts ROW_INDEX_V1 write integer in
       // baosBytes directly, without if branch and do toByteArray() again, baosBytes won't
-      // contains the integer wrotten in endBlockEncoding.
-      if (this.encoding.equals(DataBlockEncoding.ROW_INDEX_V1)) {
+      // contains the integer wrotten in endBlockEncoding. ROW_INDEX_V2 writes the whole block in
+      // endBlockEncoding.
+      if (
+        this.encoding.equals(DataBlockEncoding.ROW_INDEX_V1)
+          || this.encoding.equals(DataBlockEncoding.ROW_INDEX_V2)
+      ) {
         baosBytes = baos.toByteArray();
       }
     } catch (IOException e) {
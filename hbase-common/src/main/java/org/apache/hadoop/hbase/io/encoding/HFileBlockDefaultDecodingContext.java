@@ -46,6 +46,8 @@ public class HFileBlockDefaultDecodingContext implements HFileBlockDecodingConte
   private final Configuration conf;
   private final HFileContext fileContext;
   private TagCompressionContext tagCompressionContext;
+  /** Dictionary the blocks were compressed with, if trained for the file */
+  private byte[] compressionDictionary;
 
   public HFileBlockDefaultDecodingContext(Configuration conf, HFileContext fileContext) {
     this.conf = conf;
@@ -99,6 +101,9 @@ public class HFileBlockDefaultDecodingContext implements HFileBlockDecodingConte
           if (decompressor instanceof CanReinit) {
             ((CanReinit) decompressor).reinit(conf);
           }
+          if (compressionDictionary != null) {
+            decompressor.setDictionary(compressionDictionary, 0, compressionDictionary.length);
+          }
           try (InputStream is =
             compression.createDecompressionStream(dataInputStream, decompressor, 0)) {
             BlockIOUtils.readFullyWithHeapBuffer(is, blockBufferWithoutHeader,
@@ -106,6 +111,10 @@ public class HFileBlockDefaultDecodingContext implements HFileBlockDecodingConte
           }
         } finally {
           if (decompressor != null) {
+            if (compressionDictionary != null && decompressor instanceof CanReinit) {
+              // Drop the dictionary of this file before the decompressor goes back to the pool
+              ((CanReinit) decompressor).reinit(conf);
+            }
             compression.returnDecompressor(decompressor);
           }
         }
@@ -119,6 +128,16 @@ public class HFileBlockDefaultDecodingContext implements HFileBlockDecodingConte
     }
   }
 
+  /**
+   * Set the dictionary trained for the file that the blocks were compressed with, see
+   * {@link org.apache.hadoop.hbase.io.compress.CanTrainDictionary}. The decompressors keep the
+   * array as the key of their prepared dictionary, so it should not change while the file is open.
+   * @param dictionary the dictionary, or null if the blocks were compressed without one
+   */
+  public void setCompressionDictionary(byte[] dictionary) {
+    this.compressionDictionary = dictionary;
+  }
+
   @Override
   public HFileContext getHFileContext() {
     return this.fileContext;
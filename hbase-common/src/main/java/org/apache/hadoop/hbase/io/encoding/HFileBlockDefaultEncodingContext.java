@@ -55,6 +55,8 @@ public class HFileBlockDefaultEncodingContext implements HFileBlockEncodingConte
 
   /** Compressor, which is also reused between consecutive blocks. */
   private Compressor compressor;
+  /** True if the compressor was given a dictionary trained for the file being written */
+  private boolean compressorHasDictionary;
   /** Compression output stream */
   private CompressionOutputStream compressionStream;
   /** Underlying stream to write compressed bytes to */
@@ -72,6 +74,8 @@ public class HFileBlockDefaultEncodingContext implements HFileBlockEncodingConte
 
   private EncodingState encoderState;
 
+  private final Configuration conf;
+
   /**
    * @param conf        configuraton
    * @param encoding    encoding used
@@ -80,6 +84,7 @@ public class HFileBlockDefaultEncodingContext implements HFileBlockEncodingConte
    */
   public HFileBlockDefaultEncodingContext(Configuration conf, DataBlockEncoding encoding,
     byte[] headerBytes, HFileContext fileContext) {
+    this.conf = conf;
     this.encodingAlgo = encoding;
     this.fileContext = fileContext;
     Compression.Algorithm compressionAlgorithm =
@@ -123,6 +128,20 @@ public class HFileBlockDefaultEncodingContext implements HFileBlockEncodingConte
     }
   }
 
+  /**
+   * Compress the following blocks with a dictionary trained for the file being written, see
+   * {@link org.apache.hadoop.hbase.io.compress.CanTrainDictionary}.
+   * @param dictionary the dictionary
+   */
+  public void setCompressionDictionary(byte[] dictionary) {
+    if (compressor == null) {
+      throw new IllegalStateException(
+        "Compression " + fileContext.getCompression() + " does not take a dictionary");
+    }
+    compressor.setDictionary(dictionary, 0, dictionary.length);
+    compressorHasDictionary = true;
+  }
+
   @Override
   public void postEncoding(BlockType blockType) throws IOException {
     this.blockType = blockType;
@@ -229,6 +248,11 @@ public class HFileBlockDefaultEncodingContext implements HFileBlockEncodingConte
   @Override
   public void close() {
     if (compressor != null) {
+      if (compressorHasDictionary) {
+        // Drop the dictionary of this file before the compressor goes back to the pool
+        compressor.reinit(conf);
+        compressorHasDictionary = false;
+      }
       this.fileContext.getCompression().returnCompressor(compressor);
       compressor = null;
     }
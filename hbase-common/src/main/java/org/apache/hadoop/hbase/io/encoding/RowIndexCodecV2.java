@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.encoding;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Stores the cells of a block column-wise, so that seeks are binary searches over rows and then
+ * over the cells of a row, comparing timestamps and types straight out of primitive arrays. Format,
+ * all integers and longs fixed width:
+ * <ul>
+ * <li>header: flags (1 if mvcc included, 2 if tags included), number of cells, number of rows,
+ * number of distinct columns, then the sizes of the row, column, value and tag data</li>
+ * <li>long[cells] timestamps, then long[cells] sequence ids if mvcc included</li>
+ * <li>int[rows] index of each row's first cell, int[rows + 1] offsets of the rows in the row
+ * data</li>
+ * <li>int[columns + 1] offsets of the columns in the column data, int[cells] column of each
+ * cell</li>
+ * <li>int[cells + 1] offsets of the values, then int[cells + 1] offsets of the tags if tags
+ * included</li>
+ * <li>byte[cells] types</li>
+ * <li>row data, column data (family length, family, qualifier), value data, tag data</li>
+ * </ul>
+ */
+@InterfaceAudience.Private
+public class RowIndexCodecV2 extends AbstractDataBlockEncoder {
+
+  private static class RowIndexEncodingState extends EncodingState {
+    RowIndexEncoderV2 encoder = null;
+
+    @Override
+    public void beforeShipped() {
+      // The encoder copies what it needs of every cell
+    }
+  }
+
+  @Override
+  public void startBlockEncoding(HFileBlockEncodingContext blkEncodingCtx, DataOutputStream out)
+    throws IOException {
+    if (blkEncodingCtx.getClass() != HFileBlockDefaultEncodingContext.class) {
+      throw new IOException(this.getClass().getName() + " only accepts "
+        + HFileBlockDefaultEncodingContext.class.getName() + " as the " + "encoding context.");
+    }
+
+    HFileBlockDefaultEncodingContext encodingCtx =
+      (HFileBlockDefaultEncodingContext) blkEncodingCtx;
+    encodingCtx.prepareEncoding(out);
+
+    RowIndexEncoderV2 encoder = new RowIndexEncoderV2(out, encodingCtx);
+    RowIndexEncodingState state = new RowIndexEncodingState();
+    state.encoder = encoder;
+    blkEncodingCtx.setEncodingState(state);
+  }
+
+  @Override
+  public void encode(Cell cell, HFileBlockEncodingContext encodingCtx, DataOutputStream out)
+    throws IOException {
+    RowIndexEncodingState state = (RowIndexEncodingState) encodingCtx.getEncodingState();
+    state.encoder.write(cell);
+  }
+
+  @Override
+  public void endBlockEncoding(HFileBlockEncodingContext encodingCtx, DataOutputStream out,
+    byte[] uncompressedBytesWithHeader) throws IOException {
+    RowIndexEncodingState state = (RowIndexEncodingState) encodingCtx.getEncodingState();
+    state.encoder.flush();
+    postEncoding(encodingCtx);
+  }
+
+  @Override
+  public ByteBuffer decodeKeyValues(DataInputStream source, HFileBlockDecodingContext decodingCtx)
+    throws IOException {
+    ByteBuffer sourceAsBuffer = ByteBufferUtils.drainInputStreamToBuffer(source);// waste
+    RowIndexSeekerV2 seeker = new RowIndexSeekerV2(decodingCtx);
+    seeker.setCurrentBuffer(new SingleByteBuff(sourceAsBuffer));
+    boolean includesTags = decodingCtx.getHFileContext().isIncludesTags();
+    boolean includesMvcc = decodingCtx.getHFileContext().isIncludesMvcc();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    do {
+      Cell cell = seeker.getCell();
+      KeyValueUtil.oswrite(cell, out, false);
+      if (includesTags) {
+        int tagsLength = cell.getTagsLength();
+        out.writeShort(tagsLength);
+        if (tagsLength > 0) {
+          PrivateCellUtil.writeTags(out, cell, tagsLength);
+        }
+      }
+      if (includesMvcc) {
+        WritableUtils.writeVLong(out, cell.getSequenceId());
+      }
+    } while (seeker.next());
+    out.flush();
+    return ByteBuffer.wrap(baos.getBuffer(), 0, baos.size());
+  }
+
+  @Override
+  public Cell getFirstKeyCellInBlock(ByteBuff block) {
+    return RowIndexSeekerV2.getFirstKey(block);
+  }
+
+  @Override
+  public EncodedSeeker createSeeker(HFileBlockDecodingContext decodingCtx) {
+    return new RowIndexSeekerV2(decodingCtx);
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.encoding;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the cells of a block column by column and writes them out in the layout described in
+ * {@link RowIndexCodecV2} once the block is complete. The cell bytes are copied as they come in, so
+ * no reference to a cell is kept after {@link #write(Cell)} returns.
+ */
+@InterfaceAudience.Private
+public class RowIndexEncoderV2 {
+  private static final Logger LOG = LoggerFactory.getLogger(RowIndexEncoderV2.class);
+
+  static final int FLAG_MVCC = 1;
+  static final int FLAG_TAGS = 2;
+
+  private final DataOutputStream out;
+  private final HFileBlockEncodingContext context;
+  private final boolean includesMvcc;
+  private final boolean includesTags;
+
+  private int cellCount = 0;
+  private final ByteArrayOutputStream rowFirstCells = new ByteArrayOutputStream(64 * 4);
+  private final ByteArrayOutputStream rowOffsets = new ByteArrayOutputStream(64 * 4);
+  private final ByteArrayOutputStream rowData = new ByteArrayOutputStream(64 * 16);
+  private int lastRowOffset = -1;
+
+  private final Map<ByteBuffer, Integer> columnIds = new HashMap<>();
+  private final ByteArrayOutputStream columnOffsets = new ByteArrayOutputStream(16 * 4);
+  private final ByteArrayOutputStream columnData = new ByteArrayOutputStream(16 * 16);
+  private byte[] lastFamily = null;
+  private byte[] lastQualifier = null;
+  private int lastColumnId = -1;
+
+  private final ByteArrayOutputStream cellColumns = new ByteArrayOutputStream(256 * 4);
+  private final ByteArrayOutputStream timestamps = new ByteArrayOutputStream(256 * 8);
+  private final ByteArrayOutputStream types = new ByteArrayOutputStream(256);
+  private final ByteArrayOutputStream valueOffsets = new ByteArrayOutputStream(256 * 4);
+  private final ByteArrayOutputStream valueData = new ByteArrayOutputStream(256 * 16);
+  private final ByteArrayOutputStream tagOffsets = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream tagData = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream sequenceIds = new ByteArrayOutputStream();
+
+  public RowIndexEncoderV2(DataOutputStream out, HFileBlockDefaultEncodingContext encodingCtx) {
+    this.out = out;
+    this.context = encodingCtx;
+    this.includesMvcc = encodingCtx.getHFileContext().isIncludesMvcc();
+    this.includesTags = encodingCtx.getHFileContext().isIncludesTags();
+  }
+
+  public void write(Cell cell) throws IOException {
+    if (cell == null) {
+      throw new IOException("Key cannot be null or empty");
+    }
+    int encodedSize = Bytes.SIZEOF_INT + Bytes.SIZEOF_LONG + Bytes.SIZEOF_BYTE + Bytes.SIZEOF_INT
+      + cell.getValueLength();
+    if (!checkRow(cell)) {
+      lastRowOffset = rowData.size();
+      rowFirstCells.writeInt(cellCount);
+      rowOffsets.writeInt(lastRowOffset);
+      PrivateCellUtil.writeRow(rowData, cell, cell.getRowLength());
+      encodedSize += 2 * Bytes.SIZEOF_INT + cell.getRowLength();
+    }
+    int columnId = lastColumnId;
+    if (
+      lastColumnId < 0 || !CellUtil.matchingFamily(cell, lastFamily)
+        || !CellUtil.matchingQualifier(cell, lastQualifier)
+    ) {
+      lastFamily = CellUtil.cloneFamily(cell);
+      lastQualifier = CellUtil.cloneQualifier(cell);
+      byte[] column = new byte[1 + lastFamily.length + lastQualifier.length];
+      column[0] = (byte) lastFamily.length;
+      System.arraycopy(lastFamily, 0, column, 1, lastFamily.length);
+      System.arraycopy(lastQualifier, 0, column, 1 + lastFamily.length, lastQualifier.length);
+      Integer id = columnIds.get(ByteBuffer.wrap(column));
+      if (id == null) {
+        id = columnIds.size();
+        columnIds.put(ByteBuffer.wrap(column), id);
+        columnOffsets.writeInt(columnData.size());
+        columnData.write(column, 0, column.length);
+        encodedSize += Bytes.SIZEOF_INT + column.length;
+      }
+      columnId = id;
+      lastColumnId = columnId;
+    }
+    cellColumns.writeInt(columnId);
+    writeLong(timestamps, cell.getTimestamp());
+    types.write(cell.getTypeByte());
+    valueOffsets.writeInt(valueData.size());
+    PrivateCellUtil.writeValue(valueData, cell, cell.getValueLength());
+    if (includesTags) {
+      tagOffsets.writeInt(tagData.size());
+      int tagsLength = cell.getTagsLength();
+      if (tagsLength > 0) {
+        PrivateCellUtil.writeTags(tagData, cell, tagsLength);
+      }
+      encodedSize += Bytes.SIZEOF_INT + tagsLength;
+    }
+    if (includesMvcc) {
+      writeLong(sequenceIds, cell.getSequenceId());
+      encodedSize += Bytes.SIZEOF_LONG;
+    }
+    cellCount++;
+    context.getEncodingState().postCellEncode(unencodedSize(cell), encodedSize);
+  }
+
+  private int unencodedSize(Cell cell) {
+    int size =
+      KeyValue.KEYVALUE_INFRASTRUCTURE_SIZE + KeyValueUtil.keyLength(cell) + cell.getValueLength();
+    if (includesTags) {
+      size += KeyValue.TAGS_LENGTH_SIZE + cell.getTagsLength();
+    }
+    if (includesMvcc) {
+      size += WritableUtils.getVIntSize(cell.getSequenceId());
+    }
+    return size;
+  }
+
+  /** Returns true if the cell is in the same row as the previous one */
+  private boolean checkRow(final Cell cell) throws IOException {
+    if (lastRowOffset < 0) {
+      return false;
+    }
+    int keyComp = context.getHFileContext().getCellComparator().compareRows(cell,
+      rowData.getBuffer(), lastRowOffset, rowData.size() - lastRowOffset);
+    if (keyComp < 0) {
+      throw new IOException("Added a key not lexically larger than previous. Current cell = " + cell
+        + ", lastRow = "
+        + Bytes.toStringBinary(rowData.getBuffer(), lastRowOffset, rowData.size() - lastRowOffset));
+    }
+    return keyComp == 0;
+  }
+
+  public void flush() throws IOException {
+    int startOffset = out.size();
+    int rowCount = rowFirstCells.size() / Bytes.SIZEOF_INT;
+    rowOffsets.writeInt(rowData.size());
+    columnOffsets.writeInt(columnData.size());
+    valueOffsets.writeInt(valueData.size());
+    int flags = 0;
+    if (includesMvcc) {
+      flags |= FLAG_MVCC;
+    }
+    if (includesTags) {
+      flags |= FLAG_TAGS;
+      tagOffsets.writeInt(tagData.size());
+    }
+    out.writeInt(flags);
+    out.writeInt(cellCount);
+    out.writeInt(rowCount);
+    out.writeInt(columnIds.size());
+    out.writeInt(rowData.size());
+    out.writeInt(columnData.size());
+    out.writeInt(valueData.size());
+    out.writeInt(tagData.size());
+    // The fixed width columns come first, longs ahead of ints ahead of bytes
+    write(timestamps);
+    write(sequenceIds);
+    write(rowFirstCells);
+    write(rowOffsets);
+    write(columnOffsets);
+    write(cellColumns);
+    write(valueOffsets);
+    write(tagOffsets);
+    write(types);
+    write(rowData);
+    write(columnData);
+    write(valueData);
+    write(tagData);
+    if (LOG.isTraceEnabled()) {
+      LOG.trace("Cells: {}, rows: {}, columns: {}, totalOnDiskSize: {}", cellCount, rowCount,
+        columnIds.size(), out.size() - startOffset);
+    }
+  }
+
+  private void write(ByteArrayOutputStream section) throws IOException {
+    if (section.size() > 0) {
+      out.write(section.getBuffer(), 0, section.size());
+    }
+  }
+
+  private static void writeLong(ByteArrayOutputStream section, long value) {
+    section.writeInt((int) (value >>> Integer.SIZE));
+    section.writeInt((int) value);
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.encoding;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.apache.hadoop.hbase.ByteBufferExtendedCell;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.io.encoding.AbstractDataBlockEncoder.AbstractEncodedSeeker;
+import org.apache.hadoop.hbase.io.encoding.BufferedDataBlockEncoder.OffheapDecodedExtendedCell;
+import org.apache.hadoop.hbase.io.encoding.BufferedDataBlockEncoder.OnheapDecodedCell;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ObjectIntPair;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Seeks in a block written by {@link RowIndexEncoderV2}. Positioning the seeker is only a matter of
+ * changing the cell index: timestamps, types and column ids are read straight from their arrays,
+ * and a seek is a binary search over the rows followed by one over the cells of the row, neither of
+ * which materializes a key. Keys and cells are only built when asked for.
+ */
+@InterfaceAudience.Private
+public class RowIndexSeekerV2 extends AbstractEncodedSeeker {
+
+  // A temp pair object which will be reused by ByteBuff#asSubByteBuffer calls. This avoids too
+  // many object creations.
+  private final ObjectIntPair<ByteBuffer> tmpPair = new ObjectIntPair<>();
+  private final CellComparator cellComparator;
+
+  private ByteBuff block;
+  private Layout layout;
+  /** The columns of the block, each the family length, the family and the qualifier */
+  private byte[][] columns;
+
+  private int current;
+  private int currentRow;
+  // The key of the current cell, built lazily
+  private byte[] keyBuffer = new byte[64];
+  private int keyLength = -1;
+  private final KeyValue.KeyOnlyKeyValue currentKey = new KeyValue.KeyOnlyKeyValue();
+
+  public RowIndexSeekerV2(HFileBlockDecodingContext decodingCtx) {
+    super(decodingCtx);
+    this.cellComparator = decodingCtx.getHFileContext().getCellComparator();
+  }
+
+  @Override
+  public void setCurrentBuffer(ByteBuff buffer) {
+    block = buffer.slice();
+    layout = new Layout(block);
+    columns = new byte[layout.columnCount][];
+    for (int i = 0; i < columns.length; i++) {
+      int offset = block.getInt(layout.columnOffsets + i * Bytes.SIZEOF_INT);
+      int length = block.getInt(layout.columnOffsets + (i + 1) * Bytes.SIZEOF_INT) - offset;
+      columns[i] = new byte[length];
+      block.get(layout.columnData + offset, columns[i], 0, length);
+    }
+    moveTo(0, 0);
+  }
+
+  @Override
+  public Cell getKey() {
+    ensureKey();
+    return new KeyValue.KeyOnlyKeyValue(Arrays.copyOf(keyBuffer, keyLength), 0, keyLength);
+  }
+
+  @Override
+  public ByteBuffer getValueShallowCopy() {
+    int offset = layout.valueOffset(block, current);
+    int length = layout.valueOffset(block, current + 1) - offset;
+    block.asSubByteBuffer(layout.valueData + offset, length, tmpPair);
+    ByteBuffer dup = tmpPair.getFirst().duplicate();
+    dup.position(tmpPair.getSecond());
+    dup.limit(tmpPair.getSecond() + length);
+    return dup.slice();
+  }
+
+  @Override
+  public Cell getCell() {
+    ensureKey();
+    byte[] key = Arrays.copyOf(keyBuffer, keyLength);
+    KeyValue.KeyOnlyKeyValue kv = new KeyValue.KeyOnlyKeyValue(key, 0, keyLength);
+    long seqId =
+      layout.hasMvcc ? block.getLong(layout.sequenceIds + current * Bytes.SIZEOF_LONG) : 0L;
+    int valueOffset = layout.valueOffset(block, current);
+    int valueLength = layout.valueOffset(block, current + 1) - valueOffset;
+    block.asSubByteBuffer(layout.valueData + valueOffset, valueLength, tmpPair);
+    ByteBuffer valueBuf = tmpPair.getFirst();
+    int vOffset = tmpPair.getSecond();
+    ByteBuffer tagsBuf = HConstants.EMPTY_BYTE_BUFFER;
+    int tOffset = 0;
+    int tagsLength = 0;
+    if (layout.hasTags) {
+      int tagsOffset = block.getInt(layout.tagOffsets + current * Bytes.SIZEOF_INT);
+      tagsLength = block.getInt(layout.tagOffsets + (current + 1) * Bytes.SIZEOF_INT) - tagsOffset;
+      if (tagsLength > 0) {
+        block.asSubByteBuffer(layout.tagData + tagsOffset, tagsLength, tmpPair);
+        tagsBuf = tmpPair.getFirst();
+        tOffset = tmpPair.getSecond();
+      }
+    }
+    if (valueBuf.hasArray()) {
+      byte[] tagsArray = HConstants.EMPTY_BYTE_ARRAY;
+      if (tagsLength > 0) {
+        if (tagsBuf.hasArray()) {
+          tagsArray = tagsBuf.array();
+          tOffset += tagsBuf.arrayOffset();
+        } else {
+          tagsArray = new byte[tagsLength];
+          ByteBufferUtils.copyFromBufferToArray(tagsArray, tagsBuf, tOffset, 0, tagsLength);
+          tOffset = 0;
+        }
+      }
+      return new OnheapDecodedCell(key, kv.getRowLength(), kv.getFamilyOffset(),
+        kv.getFamilyLength(), kv.getQualifierOffset(), kv.getQualifierLength(), kv.getTimestamp(),
+        kv.getTypeByte(), valueBuf.array(), valueBuf.arrayOffset() + vOffset, valueLength, seqId,
+        tagsArray, tOffset, tagsLength);
+    }
+    return new OffheapDecodedExtendedCell(ByteBuffer.wrap(key), kv.getRowLength(),
+      kv.getFamilyOffset(), kv.getFamilyLength(), kv.getQualifierOffset(), kv.getQualifierLength(),
+      kv.getTimestamp(), kv.getTypeByte(), valueBuf, vOffset, valueLength, seqId, tagsBuf, tOffset,
+      tagsLength);
+  }
+
+  @Override
+  public void rewind() {
+    moveTo(0, 0);
+  }
+
+  @Override
+  public boolean next() {
+    if (current + 1 >= layout.cellCount) {
+      return false;
+    }
+    int row = currentRow;
+    if (row + 1 < layout.rowCount && layout.rowFirstCell(block, row + 1) == current + 1) {
+      row++;
+    }
+    moveTo(current + 1, row);
+    return true;
+  }
+
+  @Override
+  public int seekToKeyInBlock(Cell seekCell, boolean seekBefore) {
+    // The last row not after the seek key
+    int low = 0;
+    int high = layout.rowCount - 1;
+    int rowComp = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comp = compareRow(seekCell, mid);
+      if (comp > 0) {
+        low = mid + 1;
+      } else if (comp < 0) {
+        high = mid - 1;
+      } else {
+        high = mid;
+        rowComp = 0;
+        break;
+      }
+    }
+    int row = high;
+    if (row < 0) {
+      return HConstants.INDEX_KEY_MAGIC; // using optimized index key
+    }
+    int cell = layout.rowFirstCell(block, row + 1 < layout.rowCount ? row + 1 : -1) - 1;
+    if (rowComp == 0) {
+      // The last cell of the row not after the seek key, or strictly before it on seekBefore
+      int first = layout.rowFirstCell(block, row);
+      int lowCell = first;
+      int highCell = cell;
+      while (lowCell <= highCell) {
+        int mid = (lowCell + highCell) >>> 1;
+        int comp = compareWithoutRow(seekCell, mid);
+        if (comp > 0 || (comp == 0 && !seekBefore)) {
+          lowCell = mid + 1;
+        } else {
+          highCell = mid - 1;
+        }
+      }
+      cell = highCell;
+      if (cell < first) {
+        // Before the whole row, so on the last cell of the previous one
+        row--;
+        if (row < 0) {
+          return HConstants.INDEX_KEY_MAGIC; // using optimized index key
+        }
+      }
+      moveTo(cell, row);
+      return cell >= first && !seekBefore && compareWithoutRow(seekCell, cell) == 0 ? 0 : 1;
+    }
+    moveTo(cell, row);
+    return 1;
+  }
+
+  @Override
+  public int compareKey(CellComparator comparator, Cell key) {
+    ensureKey();
+    return PrivateCellUtil.compareKeyIgnoresMvcc(comparator, key, currentKey);
+  }
+
+  private void moveTo(int cell, int row) {
+    current = cell;
+    currentRow = row;
+    keyLength = -1;
+  }
+
+  /**
+   * Compares the row of the seek key with the given row of the block.
+   */
+  private int compareRow(Cell seekCell, int row) {
+    int offset = layout.rowOffset(block, row);
+    int length = layout.rowOffset(block, row + 1) - offset;
+    block.asSubByteBuffer(layout.rowData + offset, length, tmpPair);
+    ByteBuffer buf = tmpPair.getFirst();
+    int pos = tmpPair.getSecond();
+    if (buf.hasArray()) {
+      return cellComparator.compareRows(seekCell, buf.array(), buf.arrayOffset() + pos, length);
+    }
+    ByteBuffer rowBuf = buf.duplicate();
+    rowBuf.limit(pos + length);
+    rowBuf.position(pos);
+    return -cellComparator.compareRows(rowBuf, seekCell);
+  }
+
+  /**
+   * Compares the seek key with the given cell of the block, which must be in the same row. Follows
+   * {@link org.apache.hadoop.hbase.CellComparatorImpl#compareWithoutRow(Cell, Cell)}.
+   */
+  private int compareWithoutRow(Cell seekCell, int cell) {
+    byte[] column = columns[block.getInt(layout.cellColumns + cell * Bytes.SIZEOF_INT)];
+    byte cellType = block.get(layout.types + cell);
+    int familyLength = column[0];
+    int qualifierLength = column.length - 1 - familyLength;
+    if (
+      seekCell.getFamilyLength() + seekCell.getQualifierLength() == 0
+        && seekCell.getTypeByte() == KeyValue.Type.Minimum.getCode()
+    ) {
+      return 1;
+    }
+    if (familyLength + qualifierLength == 0 && cellType == KeyValue.Type.Minimum.getCode()) {
+      return -1;
+    }
+    int diff;
+    if (seekCell instanceof ByteBufferExtendedCell) {
+      ByteBufferExtendedCell bbCell = (ByteBufferExtendedCell) seekCell;
+      diff = ByteBufferUtils.compareTo(bbCell.getFamilyByteBuffer(), bbCell.getFamilyPosition(),
+        bbCell.getFamilyLength(), column, 1, familyLength);
+      if (diff == 0) {
+        diff =
+          ByteBufferUtils.compareTo(bbCell.getQualifierByteBuffer(), bbCell.getQualifierPosition(),
+            bbCell.getQualifierLength(), column, 1 + familyLength, qualifierLength);
+      }
+    } else {
+      diff = Bytes.compareTo(seekCell.getFamilyArray(), seekCell.getFamilyOffset(),
+        seekCell.getFamilyLength(), column, 1, familyLength);
+      if (diff == 0) {
+        diff = Bytes.compareTo(seekCell.getQualifierArray(), seekCell.getQualifierOffset(),
+          seekCell.getQualifierLength(), column, 1 + familyLength, qualifierLength);
+      }
+    }
+    if (diff != 0) {
+      return diff;
+    }
+    // Later timestamps and higher types sort first
+    diff = Long.compare(block.getLong(layout.timestamps + cell * Bytes.SIZEOF_LONG),
+      seekCell.getTimestamp());
+    if (diff != 0) {
+      return diff;
+    }
+    return (0xff & cellType) - (0xff & seekCell.getTypeByte());
+  }
+
+  private void ensureKey() {
+    if (keyLength >= 0) {
+      return;
+    }
+    byte[] column = columns[block.getInt(layout.cellColumns + current * Bytes.SIZEOF_INT)];
+    keyLength = layout.keyLength(block, currentRow, column);
+    if (keyBuffer.length < keyLength) {
+      keyBuffer = new byte[Integer.highestOneBit(keyLength - 1) << 1];
+    }
+    layout.writeKey(block, current, currentRow, column, keyBuffer);
+    currentKey.setKey(keyBuffer, 0, keyLength);
+  }
+
+  /**
+   * Returns the key of the first cell of a block positioned at its encoded data.
+   */
+  static Cell getFirstKey(ByteBuff buffer) {
+    ByteBuff block = buffer.slice();
+    Layout layout = new Layout(block);
+    int columnId = block.getInt(layout.cellColumns);
+    int offset = block.getInt(layout.columnOffsets + columnId * Bytes.SIZEOF_INT);
+    int length = block.getInt(layout.columnOffsets + (columnId + 1) * Bytes.SIZEOF_INT) - offset;
+    byte[] column = new byte[length];
+    block.get(layout.columnData + offset, column, 0, length);
+    byte[] key = new byte[layout.keyLength(block, 0, column)];
+    layout.writeKey(block, 0, 0, column, key);
+    return new KeyValue.KeyOnlyKeyValue(key, 0, key.length);
+  }
+
+  /**
+   * The offsets of the sections of a block, see {@link RowIndexCodecV2}.
+   */
+  static final class Layout {
+    static final int HEADER_SIZE = 8 * Bytes.SIZEOF_INT;
+
+    final boolean hasMvcc;
+    final boolean hasTags;
+    final int cellCount;
+    final int rowCount;
+    final int columnCount;
+    final int timestamps;
+    final int sequenceIds;
+    final int rowFirstCells;
+    final int rowOffsets;
+    final int columnOffsets;
+    final int cellColumns;
+    final int valueOffsets;
+    final int tagOffsets;
+    final int types;
+    final int rowData;
+    final int columnData;
+    final int valueData;
+    final int tagData;
+
+    Layout(ByteBuff block) {
+      int flags = block.getInt(0);
+      hasMvcc = (flags & RowIndexEncoderV2.FLAG_MVCC) != 0;
+      hasTags = (flags & RowIndexEncoderV2.FLAG_TAGS) != 0;
+      cellCount = block.getInt(Bytes.SIZEOF_INT);
+      rowCount = block.getInt(2 * Bytes.SIZEOF_INT);
+      columnCount = block.getInt(3 * Bytes.SIZEOF_INT);
+      int rowDataSize = block.getInt(4 * Bytes.SIZEOF_INT);
+      int columnDataSize = block.getInt(5 * Bytes.SIZEOF_INT);
+      int valueDataSize = block.getInt(6 * Bytes.SIZEOF_INT);
+      timestamps = HEADER_SIZE;
+      sequenceIds = timestamps + cellCount * Bytes.SIZEOF_LONG;
+      rowFirstCells = sequenceIds + (hasMvcc ? cellCount * Bytes.SIZEOF_LONG : 0);
+      rowOffsets = rowFirstCells + rowCount * Bytes.SIZEOF_INT;
+      columnOffsets = rowOffsets + (rowCount + 1) * Bytes.SIZEOF_INT;
+      cellColumns = columnOffsets + (columnCount + 1) * Bytes.SIZEOF_INT;
+      valueOffsets = cellColumns + cellCount * Bytes.SIZEOF_INT;
+      tagOffsets = valueOffsets + (cellCount + 1) * Bytes.SIZEOF_INT;
+      types = tagOffsets + (hasTags ? (cellCount + 1) * Bytes.SIZEOF_INT : 0);
+      rowData = types + cellCount;
+      columnData = rowData + rowDataSize;
+      valueData = columnData + columnDataSize;
+      tagData = valueData + valueDataSize;
+    }
+
+    /**
+     * Returns the index of the first cell of the row, or the number of cells for -1.
+     */
+    int rowFirstCell(ByteBuff block, int row) {
+      return row < 0 ? cellCount : block.getInt(rowFirstCells + row * Bytes.SIZEOF_INT);
+    }
+
+    int rowOffset(ByteBuff block, int row) {
+      return block.getInt(rowOffsets + row * Bytes.SIZEOF_INT);
+    }
+
+    int valueOffset(ByteBuff block, int cell) {
+      return block.getInt(valueOffsets + cell * Bytes.SIZEOF_INT);
+    }
+
+    int keyLength(ByteBuff block, int row, byte[] column) {
+      return KeyValue.ROW_LENGTH_SIZE + rowOffset(block, row + 1) - rowOffset(block, row)
+        + column.length + KeyValue.TIMESTAMP_TYPE_SIZE;
+    }
+
+    /**
+     * Writes the key of the cell in the {@link KeyValue} key format.
+     */
+    void writeKey(ByteBuff block, int cell, int row, byte[] column, byte[] key) {
+      int rowOffset = rowOffset(block, row);
+      int rowLength = rowOffset(block, row + 1) - rowOffset;
+      int pos = Bytes.putShort(key, 0, (short) rowLength);
+      block.get(rowData + rowOffset, key, pos, rowLength);
+      pos += rowLength;
+      System.arraycopy(column, 0, key, pos, column.length);
+      pos += column.length;
+      pos = Bytes.putLong(key, pos, block.getLong(timestamps + cell * Bytes.SIZEOF_LONG));
+      key[pos] = block.get(types + cell);
+    }
+  }
+}
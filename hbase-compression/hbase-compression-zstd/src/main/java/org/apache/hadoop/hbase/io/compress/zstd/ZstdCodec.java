@@ -18,14 +18,22 @@
 package org.apache.hadoop.hbase.io.compress.zstd;
 
 import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.hbase.io.compress.CanTrainDictionary;
 import org.apache.hadoop.hbase.io.compress.DictionaryCache;
 import org.apache.hadoop.io.compress.BlockCompressorStream;
 import org.apache.hadoop.io.compress.BlockDecompressorStream;
@@ -42,13 +50,19 @@ import org.apache.yetus.audience.InterfaceAudience;
  * This is data format compatible with Hadoop's native ZStandard codec.
  */
 @InterfaceAudience.Private
-public class ZstdCodec implements Configurable, CompressionCodec {
+public class ZstdCodec implements Configurable, CompressionCodec, CanTrainDictionary {
 
   public static final String ZSTD_LEVEL_KEY = "hbase.io.compress.zstd.level";
   public static final String ZSTD_BUFFER_SIZE_KEY = "hbase.io.compress.zstd.buffersize";
   public static final int ZSTD_BUFFER_SIZE_DEFAULT = 256 * 1024;
   public static final String ZSTD_DICTIONARY_KEY = "hbase.io.compress.zstd.dictionary";
 
+  // Prepared dictionaries of the decompressors, for the dictionaries trained per file. Keyed by the
+  // identity of the array a reader hands to setDictionary, which it keeps while the file is open,
+  // so each open file prepares its dictionary once and the entry goes away with the reader.
+  private static final Map<byte[], ZstdDictDecompress> DECOMPRESS_DICTIONARIES =
+    Collections.synchronizedMap(new WeakHashMap<>());
+
   private Configuration conf;
   private int bufferSize;
   private int level;
@@ -118,6 +132,28 @@ public class ZstdCodec implements Configurable, CompressionCodec {
     return ".zst";
   }
 
+  @Override
+  public byte[] trainDictionary(List<byte[]> samples, int maxDictionarySize) {
+    long sampleSize = 0;
+    for (byte[] sample : samples) {
+      sampleSize += sample.length;
+    }
+    if (samples.isEmpty() || sampleSize > Integer.MAX_VALUE) {
+      return null;
+    }
+    ZstdDictTrainer trainer = new ZstdDictTrainer((int) sampleSize, maxDictionarySize);
+    for (byte[] sample : samples) {
+      trainer.addSample(sample);
+    }
+    try {
+      byte[] dictionary = trainer.trainSamples();
+      return dictionary.length >= 8 && isDictionary(dictionary) ? dictionary : null;
+    } catch (ZstdException e) {
+      // Usually too few samples
+      return null;
+    }
+  }
+
   // Package private
 
   static int getLevel(Configuration conf) {
@@ -158,6 +194,10 @@ public class ZstdCodec implements Configurable, CompressionCodec {
     return ByteBuffer.wrap(dictionary, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
   }
 
+  static ZstdDictDecompress getDecompressDictionary(final byte[] dictionary) {
+    return DECOMPRESS_DICTIONARIES.computeIfAbsent(dictionary, ZstdDictDecompress::new);
+  }
+
   private void init() {
     this.bufferSize = getBufferSize(conf);
     this.level = getLevel(conf);
@@ -22,6 +22,7 @@ import com.github.luben.zstd.ZstdCompressCtx;
 import com.github.luben.zstd.ZstdDictCompress;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.io.compress.CanReinit;
 import org.apache.hadoop.hbase.io.compress.CompressionUtil;
@@ -180,9 +181,16 @@ public class ZstdCompressor implements CanReinit, Compressor {
     }
   }
 
+  /**
+   * Compress with a dictionary trained for the data, see {@link ZstdCodec#trainDictionary}. The
+   * dictionary is used until the next reinit.
+   */
   @Override
   public void setDictionary(final byte[] b, final int off, final int len) {
-    throw new UnsupportedOperationException("setDictionary is not supported");
+    byte[] dictionary = Arrays.copyOfRange(b, off, off + len);
+    dictId = ZstdCodec.getDictionaryId(dictionary);
+    dict = new ZstdDictCompress(dictionary, level);
+    ctx.loadDict(dict);
   }
 
   @Override
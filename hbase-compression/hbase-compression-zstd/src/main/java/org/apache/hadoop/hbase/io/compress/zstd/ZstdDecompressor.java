@@ -21,6 +21,7 @@ import com.github.luben.zstd.ZstdDecompressCtx;
 import com.github.luben.zstd.ZstdDictDecompress;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.io.compress.CanReinit;
 import org.apache.hadoop.hbase.io.compress.CompressionUtil;
@@ -121,9 +122,17 @@ public class ZstdDecompressor implements CanReinit, Decompressor {
     return (inBuf.position() == 0);
   }
 
+  /**
+   * Decompress with the dictionary the data was compressed with, see
+   * {@link ZstdCodec#trainDictionary}. The dictionary is used until the next reinit.
+   */
   @Override
   public void setDictionary(final byte[] b, final int off, final int len) {
-    throw new UnsupportedOperationException("setDictionary is not supported");
+    // Prepared dictionaries are cached by the identity of the whole array
+    byte[] dictionary = off == 0 && len == b.length ? b : Arrays.copyOfRange(b, off, off + len);
+    dictId = ZstdCodec.getDictionaryId(dictionary);
+    dict = ZstdCodec.getDecompressDictionary(dictionary);
+    ctx.loadDict(dict);
   }
 
   @Override
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.compress.zstd;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.compress.HFileTestBase;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileInfo;
+import org.apache.hadoop.hbase.io.hfile.HFileWriterImpl;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ IOTests.class, SmallTests.class })
+public class TestZstdDictionaryTraining extends HFileTestBase {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestZstdDictionaryTraining.class);
+
+  private static Configuration conf;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    conf = TEST_UTIL.getConfiguration();
+    conf.set(Compression.ZSTD_CODEC_CLASS_KEY, ZstdCodec.class.getCanonicalName());
+    Compression.Algorithm.ZSTD.reload(conf);
+    HFileTestBase.setUpBeforeClass();
+  }
+
+  private byte[] getDictionary(Path path) throws Exception {
+    HFile.Reader reader = HFile.createReader(FS, path, new CacheConfig(conf), true, conf);
+    try {
+      return reader.getHFileInfo().get(HFileInfo.COMPRESSION_DICTIONARY);
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testTrainedDictionary() throws Exception {
+    Path plainPath = new Path(TEST_UTIL.getDataTestDir(),
+      HBaseTestingUtility.getRandomUUID().toString() + ".plain.hfile");
+    Path trainedPath = new Path(TEST_UTIL.getDataTestDir(),
+      HBaseTestingUtility.getRandomUUID().toString() + ".trained.hfile");
+    doTest(conf, plainPath, Compression.Algorithm.ZSTD);
+    assertNull(getDictionary(plainPath));
+
+    Configuration trainConf = new Configuration(conf);
+    trainConf.setBoolean(HFileWriterImpl.COMPRESSION_DICTIONARY_TRAIN_KEY, true);
+    trainConf.setInt(HFileWriterImpl.COMPRESSION_DICTIONARY_MAX_SIZE_KEY, 8 * 1024);
+    trainConf.setInt(HFileWriterImpl.COMPRESSION_DICTIONARY_SAMPLE_SIZE_KEY, 256 * 1024);
+    // Reads back every cell and seeks with the dictionary from the file info
+    doTest(trainConf, trainedPath, Compression.Algorithm.ZSTD);
+    byte[] dictionary = getDictionary(trainedPath);
+    assertNotNull("No dictionary was trained", dictionary);
+    assertTrue(ZstdCodec.isDictionary(dictionary));
+
+    long plainLen = FS.getFileStatus(plainPath).getLen();
+    long trainedLen = FS.getFileStatus(trainedPath).getLen();
+    LOG.info("Without dictionary len {}, with trained dictionary len {}", plainLen, trainedLen);
+    assertTrue("Trained dictionary did not make the file smaller", trainedLen < plainLen);
+  }
+
+}
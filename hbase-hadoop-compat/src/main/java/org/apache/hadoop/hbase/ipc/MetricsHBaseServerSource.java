@@ -89,11 +89,20 @@ public interface MetricsHBaseServerSource extends ExceptionTrackingSource {
   String NUM_LIFO_MODE_SWITCHES_NAME = "numLifoModeSwitches";
   String NUM_LIFO_MODE_SWITCHES_DESC =
     "Total number of calls in general queue which " + "were served from the tail of the queue";
+  String NUM_COALESCED_GETS_NAME = "numCoalescedGets";
+  String NUM_COALESCED_GETS_DESC =
+    "Total number of Gets which were run in the batch of another Get of the same region";
   // Direct Memory Usage metrics
   String NETTY_DM_USAGE_NAME = "nettyDirectMemoryUsage";
 
   String NETTY_DM_USAGE_DESC = "Current Netty direct memory usage.";
 
+  // Per tenant metrics of the weighted fair call queues, named tenant_<tenant>_metric_<name>
+  String TENANT_PREFIX = "tenant_";
+  String TENANT_METRIC_PREFIX = "_metric_";
+  String TENANT_QUEUE_NAME = "numCallsInQueue";
+  String TENANT_QUEUE_DESC = "Number of calls of the tenant in the call queues";
+
   void authorizationSuccess();
 
   void authorizationFailure();
@@ -114,6 +123,12 @@ public interface MetricsHBaseServerSource extends ExceptionTrackingSource {
 
   void dequeuedCall(int qTime);
 
+  /** Records the time a call of the given tenant waited in a weighted fair call queue */
+  void dequeuedTenantCall(String tenant, int qTime);
+
+  /** Removes the metrics of a tenant whose calls have become rare */
+  void removeTenant(String tenant);
+
   void processedCall(int processingTime);
 
   void queuedAndProcessedCall(int totalTime);
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.ipc;
 
+import java.util.Map;
 import org.apache.yetus.audience.InterfaceAudience;
 
 @InterfaceAudience.Private
@@ -60,4 +61,10 @@ public interface MetricsHBaseServerWrapper {
   int getActiveScanRpcHandlerCount();
 
   long getNettyDmUsage();
+
+  /** Returns the number of queued calls of each tenant of the weighted fair call queues */
+  Map<String, Integer> getTenantQueueLengths();
+
+  /** Returns the number of Gets run in the batch of another queued Get of the same region */
+  long getNumCoalescedGets();
 }
@@ -123,6 +123,12 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
    */
   void updateScanTime(long t);
 
+  /**
+   * Update the row lock wait time histogram. Only acquisitions which had to wait are recorded.
+   * @param t time spent waiting for the lock, in milliseconds
+   */
+  void updateRowLockWait(long t);
+
   /**
    * Increment the number of slow Puts that have happened.
    */
@@ -170,6 +176,35 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
    */
   void updateFlushTime(long t);
 
+  /**
+   * Update the histogram of the time updates were blocked by the global memstore limit
+   * @param t time updates were blocked, in milliseconds
+   */
+  void updateUpdatesBlockedTime(long t);
+
+  /**
+   * Increment the number of flushes started ahead of the global memstore limit
+   */
+  void incrPredictiveFlush();
+
+  /**
+   * Update the histogram of the number of segments in a compaction pipeline
+   * @param segments the number of segments the in-memory compaction was started on
+   */
+  void updateInMemoryCompactionSegments(int segments);
+
+  /**
+   * Update the histogram of the time to flatten a segment of a compaction pipeline
+   * @param t time it took, in milliseconds
+   */
+  void updateInMemoryFlattenTime(long t);
+
+  /**
+   * Add to the heap released by in-memory compactions
+   * @param bytes the number of bytes by which the heap size of the pipeline shrank
+   */
+  void incrInMemoryCompactionHeapSaved(long bytes);
+
   /**
    * Update the flush memstore size histogram
    * @param bytes the number of bytes in the memstore
@@ -339,6 +374,12 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String BLOCK_CACHE_MISS_COUNT = "blockCacheMissCount";
   String BLOCK_COUNT_MISS_COUNT_DESC =
     "Number of requests for a block that missed the block cache.";
+  String ROW_CACHE_HIT_COUNT = "rowCacheHitCount";
+  String ROW_CACHE_HIT_COUNT_DESC = "Count of Gets served by the row cache.";
+  String ROW_CACHE_MISS_COUNT = "rowCacheMissCount";
+  String ROW_CACHE_MISS_COUNT_DESC = "Count of cacheable Gets that missed the row cache.";
+  String ROW_CACHE_SIZE = "rowCacheSize";
+  String ROW_CACHE_SIZE_DESC = "Heap size of the row cache, in bytes.";
   String BLOCK_CACHE_PRIMARY_MISS_COUNT = "blockCacheMissCountPrimary";
   String BLOCK_COUNT_PRIMARY_MISS_COUNT_DESC =
     "Number of requests for a block of primary replica that missed the block cache.";
@@ -415,6 +456,12 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String L2_CACHE_HIT_RATIO_DESC = "L2 cache hit ratio.";
   String L2_CACHE_MISS_RATIO = "l2CacheMissRatio";
   String L2_CACHE_MISS_RATIO_DESC = "L2 cache miss ratio.";
+  String L2_CACHE_ADMITTED_COUNT = "l2CacheAdmittedCount";
+  String L2_CACHE_ADMITTED_COUNT_DESC =
+    "Count of blocks read on a miss which the L2 cache admission policy let into the cache.";
+  String L2_CACHE_REJECTED_COUNT = "l2CacheRejectedCount";
+  String L2_CACHE_REJECTED_COUNT_DESC =
+    "Count of blocks read on a miss which the L2 cache admission policy kept out of the cache.";
   String RS_START_TIME_NAME = "regionServerStartTime";
   String ZOOKEEPER_QUORUM_NAME = "zookeeperQuorum";
   String SERVER_NAME_NAME = "serverName";
@@ -522,6 +569,9 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String BLOCKED_REQUESTS_COUNT_DESC = "The number of blocked requests because of memstore size is "
     + "larger than blockingMemStoreSize";
 
+  String ROW_LOCK_WAIT_KEY = "rowLockWaitTime";
+  String ROW_LOCK_WAIT_DESC =
+    "Time spent waiting for row locks held by other operations, in milliseconds";
   String SPLIT_KEY = "splitTime";
   String SPLIT_REQUEST_KEY = "splitRequestCount";
   String SPLIT_REQUEST_DESC = "Number of splits requested";
@@ -530,6 +580,21 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
 
   String FLUSH_TIME = "flushTime";
   String FLUSH_TIME_DESC = "Histogram for the time in millis for memstore flush";
+  String UPDATES_BLOCKED_TIME_HISTO = "updatesBlockedTimeHistogram";
+  String UPDATES_BLOCKED_TIME_HISTO_DESC =
+    "Histogram for the time in millis updates were blocked by the global memstore limit";
+  String PREDICTIVE_FLUSH_COUNT = "predictiveFlushCount";
+  String PREDICTIVE_FLUSH_COUNT_DESC =
+    "Number of flushes started because the global memstore limit was predicted to be reached";
+  String IN_MEMORY_COMPACTION_SEGMENTS = "inMemoryCompactionSegments";
+  String IN_MEMORY_COMPACTION_SEGMENTS_DESC =
+    "Histogram for the number of pipeline segments an in-memory compaction was started on";
+  String IN_MEMORY_FLATTEN_TIME = "inMemoryFlattenTime";
+  String IN_MEMORY_FLATTEN_TIME_DESC =
+    "Histogram for the time in millis to flatten a segment of a compaction pipeline";
+  String IN_MEMORY_COMPACTION_HEAP_SAVED = "inMemoryCompactionHeapSaved";
+  String IN_MEMORY_COMPACTION_HEAP_SAVED_DESC =
+    "Number of heap bytes released by flattening, merging and compacting memstore segments";
   String FLUSH_MEMSTORE_SIZE = "flushMemstoreSize";
   String FLUSH_MEMSTORE_SIZE_DESC = "Histogram for number of bytes in the memstore for a flush";
   String FLUSH_OUTPUT_SIZE = "flushOutputSize";
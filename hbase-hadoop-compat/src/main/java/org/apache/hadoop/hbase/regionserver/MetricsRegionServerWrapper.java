@@ -299,6 +299,21 @@ public interface MetricsRegionServerWrapper {
    */
   long getBlockCacheMissCount();
 
+  /**
+   * Get the count of Gets served by the row cache.
+   */
+  long getRowCacheHitCount();
+
+  /**
+   * Get the count of cacheable Gets that missed the row cache.
+   */
+  long getRowCacheMissCount();
+
+  /**
+   * Get the heap size of the row cache.
+   */
+  long getRowCacheSize();
+
   /**
    * Get the count of misses to primary replica in the block cache.
    */
@@ -414,6 +429,16 @@ public interface MetricsRegionServerWrapper {
    */
   double getL2CacheMissRatio();
 
+  /**
+   * Count of blocks read on a miss which the L2 cache admission policy let into the cache.
+   */
+  long getL2CacheAdmittedCount();
+
+  /**
+   * Count of blocks read on a miss which the L2 cache admission policy kept out of the cache.
+   */
+  long getL2CacheRejectedCount();
+
   /**
    * Force a re-computation of the metrics.
    */
@@ -56,6 +56,13 @@ public interface MetricsRegionSource extends Comparable<MetricsRegionSource> {
   String ROW_READS_ONLY_ON_MEMSTORE_DESC = "Row reads happening completely out of memstore";
   String MIXED_ROW_READS = "mixedRowReadsCount";
   String MIXED_ROW_READS_ON_STORE_DESC = "Row reads happening out of files and memstore on store";
+  String MVCC_WRITE_QUEUE_CONTENDED_COUNT = "mvccWriteQueueContendedCount";
+  String MVCC_WRITE_QUEUE_CONTENDED_DESC =
+    "Number of times a writer found the MVCC write queue lock held or lost a race to advance the "
+      + "read point";
+  String MVCC_WRITE_QUEUE_FULL_COUNT = "mvccWriteQueueFullCount";
+  String MVCC_WRITE_QUEUE_FULL_DESC =
+    "Number of times a writer waited for a free slot in the MVCC write ring";
 
   /**
    * Close the region's metrics as this region is closing.
@@ -156,4 +156,13 @@ public interface MetricsRegionWrapper {
   /** Returns the number of row reads on memstore and file per store */
   Map<String, Long> getMixedRowReadsCount();
 
+  /**
+   * Returns the number of times a writer found the region's MVCC write queue lock held, or lost a
+   * race to advance the read point
+   */
+  long getMvccWriteQueueContendedCount();
+
+  /** Returns the number of times a writer waited for a free slot in the MVCC write ring */
+  long getMvccWriteQueueFullCount();
+
 }
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.ipc;
 
+import java.util.Map;
 import org.apache.hadoop.hbase.metrics.ExceptionTrackingSourceImpl;
 import org.apache.hadoop.hbase.metrics.Interns;
 import org.apache.hadoop.metrics2.MetricHistogram;
@@ -123,6 +124,19 @@ public class MetricsHBaseServerSourceImpl extends ExceptionTrackingSourceImpl
     queueCallTime.add(qTime);
   }
 
+  @Override
+  public void dequeuedTenantCall(String tenant, int qTime) {
+    getMetricsRegistry()
+      .getHistogram(TENANT_PREFIX + tenant + TENANT_METRIC_PREFIX + QUEUE_CALL_TIME_NAME)
+      .add(qTime);
+  }
+
+  @Override
+  public void removeTenant(String tenant) {
+    getMetricsRegistry()
+      .removeHistogramMetrics(TENANT_PREFIX + tenant + TENANT_METRIC_PREFIX + QUEUE_CALL_TIME_NAME);
+  }
+
   @Override
   public void processedCall(int processingTime) {
     processCallTime.add(processingTime);
@@ -162,6 +176,8 @@ public class MetricsHBaseServerSourceImpl extends ExceptionTrackingSourceImpl
           wrapper.getNumGeneralCallsDropped())
         .addCounter(Interns.info(NUM_LIFO_MODE_SWITCHES_NAME, NUM_LIFO_MODE_SWITCHES_DESC),
           wrapper.getNumLifoModeSwitches())
+        .addCounter(Interns.info(NUM_COALESCED_GETS_NAME, NUM_COALESCED_GETS_DESC),
+          wrapper.getNumCoalescedGets())
         .addGauge(Interns.info(WRITE_QUEUE_NAME, WRITE_QUEUE_DESC), wrapper.getWriteQueueLength())
         .addGauge(Interns.info(READ_QUEUE_NAME, READ_QUEUE_DESC), wrapper.getReadQueueLength())
         .addGauge(Interns.info(SCAN_QUEUE_NAME, SCAN_QUEUE_DESC), wrapper.getScanQueueLength())
@@ -173,6 +189,12 @@ public class MetricsHBaseServerSourceImpl extends ExceptionTrackingSourceImpl
           wrapper.getActiveScanRpcHandlerCount())
         .addGauge(Interns.info(NETTY_DM_USAGE_NAME, NETTY_DM_USAGE_DESC),
           wrapper.getNettyDmUsage());
+      for (Map.Entry<String, Integer> e : wrapper.getTenantQueueLengths().entrySet()) {
+        mrb.addGauge(
+          Interns.info(TENANT_PREFIX + e.getKey() + TENANT_METRIC_PREFIX + TENANT_QUEUE_NAME,
+            TENANT_QUEUE_DESC),
+          e.getValue());
+      }
     }
 
     metricsRegistry.snapshot(mrb, all);
@@ -47,6 +47,7 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
   private final MetricHistogram replayHisto;
   private final MetricHistogram scanSizeHisto;
   private final MetricHistogram scanTimeHisto;
+  private final MetricHistogram rowLockWaitHisto;
 
   private final MutableFastCounter slowPut;
   private final MutableFastCounter slowDelete;
@@ -61,6 +62,11 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
 
   // flush related metrics
   private final MetricHistogram flushTimeHisto;
+  private final MetricHistogram updatesBlockedTimeHisto;
+  private final MutableFastCounter predictiveFlushes;
+  private final MetricHistogram inMemoryCompactionSegmentsHisto;
+  private final MetricHistogram inMemoryFlattenTimeHisto;
+  private final MutableFastCounter inMemoryCompactionHeapSaved;
   private final MetricHistogram flushMemstoreSizeHisto;
   private final MetricHistogram flushOutputSizeHisto;
   private final MutableFastCounter flushedMemstoreBytes;
@@ -124,8 +130,19 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
     replayHisto = getMetricsRegistry().newTimeHistogram(REPLAY_KEY);
     scanSizeHisto = getMetricsRegistry().newSizeHistogram(SCAN_SIZE_KEY);
     scanTimeHisto = getMetricsRegistry().newTimeHistogram(SCAN_TIME_KEY);
+    rowLockWaitHisto = getMetricsRegistry().newTimeHistogram(ROW_LOCK_WAIT_KEY, ROW_LOCK_WAIT_DESC);
 
     flushTimeHisto = getMetricsRegistry().newTimeHistogram(FLUSH_TIME, FLUSH_TIME_DESC);
+    updatesBlockedTimeHisto = getMetricsRegistry().newTimeHistogram(UPDATES_BLOCKED_TIME_HISTO,
+      UPDATES_BLOCKED_TIME_HISTO_DESC);
+    predictiveFlushes =
+      getMetricsRegistry().newCounter(PREDICTIVE_FLUSH_COUNT, PREDICTIVE_FLUSH_COUNT_DESC, 0L);
+    inMemoryCompactionSegmentsHisto = getMetricsRegistry()
+      .newHistogram(IN_MEMORY_COMPACTION_SEGMENTS, IN_MEMORY_COMPACTION_SEGMENTS_DESC);
+    inMemoryFlattenTimeHisto =
+      getMetricsRegistry().newTimeHistogram(IN_MEMORY_FLATTEN_TIME, IN_MEMORY_FLATTEN_TIME_DESC);
+    inMemoryCompactionHeapSaved = getMetricsRegistry().newCounter(IN_MEMORY_COMPACTION_HEAP_SAVED,
+      IN_MEMORY_COMPACTION_HEAP_SAVED_DESC, 0L);
     flushMemstoreSizeHisto =
       getMetricsRegistry().newSizeHistogram(FLUSH_MEMSTORE_SIZE, FLUSH_MEMSTORE_SIZE_DESC);
     flushOutputSizeHisto =
@@ -261,11 +278,41 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
     splitTimeHisto.add(t);
   }
 
+  @Override
+  public void updateRowLockWait(long t) {
+    rowLockWaitHisto.add(t);
+  }
+
   @Override
   public void updateFlushTime(long t) {
     flushTimeHisto.add(t);
   }
 
+  @Override
+  public void updateUpdatesBlockedTime(long t) {
+    updatesBlockedTimeHisto.add(t);
+  }
+
+  @Override
+  public void incrPredictiveFlush() {
+    predictiveFlushes.incr();
+  }
+
+  @Override
+  public void updateInMemoryCompactionSegments(int segments) {
+    inMemoryCompactionSegmentsHisto.add(segments);
+  }
+
+  @Override
+  public void updateInMemoryFlattenTime(long t) {
+    inMemoryFlattenTimeHisto.add(t);
+  }
+
+  @Override
+  public void incrInMemoryCompactionHeapSaved(long bytes) {
+    inMemoryCompactionHeapSaved.incr(bytes);
+  }
+
   @Override
   public void updateFlushMemStoreSize(long bytes) {
     flushMemstoreSizeHisto.add(bytes);
@@ -374,6 +421,11 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
           rsWrap.getBlockCacheHitCachingCount())
         .addCounter(Interns.info(BLOCK_CACHE_MISS_COUNT, BLOCK_COUNT_MISS_COUNT_DESC),
           rsWrap.getBlockCacheMissCount())
+        .addCounter(Interns.info(ROW_CACHE_HIT_COUNT, ROW_CACHE_HIT_COUNT_DESC),
+          rsWrap.getRowCacheHitCount())
+        .addCounter(Interns.info(ROW_CACHE_MISS_COUNT, ROW_CACHE_MISS_COUNT_DESC),
+          rsWrap.getRowCacheMissCount())
+        .addGauge(Interns.info(ROW_CACHE_SIZE, ROW_CACHE_SIZE_DESC), rsWrap.getRowCacheSize())
         .addCounter(
           Interns.info(BLOCK_CACHE_PRIMARY_MISS_COUNT, BLOCK_COUNT_PRIMARY_MISS_COUNT_DESC),
           rsWrap.getBlockCachePrimaryMissCount())
@@ -581,6 +633,10 @@ public class MetricsRegionServerSourceImpl extends BaseSourceImpl
         rsWrap.getL2CacheHitRatio())
       .addGauge(Interns.info(L2_CACHE_MISS_RATIO, L2_CACHE_MISS_RATIO_DESC),
         rsWrap.getL2CacheMissRatio())
+      .addCounter(Interns.info(L2_CACHE_ADMITTED_COUNT, L2_CACHE_ADMITTED_COUNT_DESC),
+        rsWrap.getL2CacheAdmittedCount())
+      .addCounter(Interns.info(L2_CACHE_REJECTED_COUNT, L2_CACHE_REJECTED_COUNT_DESC),
+        rsWrap.getL2CacheRejectedCount())
       .addGauge(Interns.info(MOB_FILE_CACHE_COUNT, MOB_FILE_CACHE_COUNT_DESC),
         rsWrap.getMobFileCacheCount())
       .addGauge(Interns.info(MOB_FILE_CACHE_HIT_PERCENT, MOB_FILE_CACHE_HIT_PERCENT_DESC),
@@ -275,6 +275,14 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
         this.regionWrapper.getMaxCompactionQueueSize());
       mrb.addCounter(Interns.info(regionNamePrefix + MetricsRegionSource.MAX_FLUSH_QUEUE_SIZE,
         MetricsRegionSource.MAX_FLUSH_QUEUE_DESC), this.regionWrapper.getMaxFlushQueueSize());
+      mrb.addCounter(
+        Interns.info(regionNamePrefix + MetricsRegionSource.MVCC_WRITE_QUEUE_CONTENDED_COUNT,
+          MetricsRegionSource.MVCC_WRITE_QUEUE_CONTENDED_DESC),
+        this.regionWrapper.getMvccWriteQueueContendedCount());
+      mrb.addCounter(
+        Interns.info(regionNamePrefix + MetricsRegionSource.MVCC_WRITE_QUEUE_FULL_COUNT,
+          MetricsRegionSource.MVCC_WRITE_QUEUE_FULL_DESC),
+        this.regionWrapper.getMvccWriteQueueFullCount());
       addCounter(mrb, this.regionWrapper.getMemstoreOnlyRowReadsCount(),
         MetricsRegionSource.ROW_READS_ONLY_ON_MEMSTORE,
         MetricsRegionSource.ROW_READS_ONLY_ON_MEMSTORE_DESC);
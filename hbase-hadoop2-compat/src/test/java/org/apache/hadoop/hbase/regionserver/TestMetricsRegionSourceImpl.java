@@ -227,5 +227,15 @@ public class TestMetricsRegionSourceImpl {
       map.put("info", 0L);
       return map;
     }
+
+    @Override
+    public long getMvccWriteQueueContendedCount() {
+      return 0;
+    }
+
+    @Override
+    public long getMvccWriteQueueFullCount() {
+      return 0;
+    }
   }
 }
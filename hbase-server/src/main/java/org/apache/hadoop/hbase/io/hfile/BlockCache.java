@@ -18,6 +18,7 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import java.util.Iterator;
+import java.util.List;
 import org.apache.yetus.audience.InterfaceAudience;
 
 /**
@@ -47,6 +48,39 @@ public interface BlockCache extends Iterable<CachedBlock> {
     cacheBlock(cacheKey, buf, inMemory);
   }
 
+  /**
+   * Whether a block, just read from the file system after missing in this cache, should be cached.
+   * Lets a cache keep blocks read only once, say by a full table scan, from replacing blocks which
+   * are read over and over. Blocks cached on write or by prefetching are not checked.
+   * @param cacheKey The block's cache key.
+   * @param block    The block read.
+   * @return true to go on and cache the block
+   */
+  default boolean admitOnRead(BlockCacheKey cacheKey, Cacheable block) {
+    return true;
+  }
+
+  /**
+   * Fetch the unpacked copy of a block this cache holds packed, i.e. compressed or encrypted, if it
+   * keeps one. The returned block must be released like the ones returned by
+   * {@link #getBlock(BlockCacheKey, boolean, boolean, boolean)}.
+   * @param cacheKey The block's cache key.
+   * @return the unpacked block, or null if there is none
+   */
+  default Cacheable getUnpackedBlock(BlockCacheKey cacheKey) {
+    return null;
+  }
+
+  /**
+   * Offer the cache the unpacked copy of a block it returned packed, so it may keep the copies of
+   * the hottest blocks and spare their readers unpacking them again.
+   * @param cacheKey    The block's cache key.
+   * @param unpacked    The unpacked block.
+   * @param unpackNanos How long unpacking the block took, in nanoseconds.
+   */
+  default void cacheUnpackedBlock(BlockCacheKey cacheKey, Cacheable unpacked, long unpackNanos) {
+  }
+
   /**
    * Add block to cache (defaults to not in-memory).
    * @param cacheKey The block's cache key.
@@ -79,6 +113,24 @@ public interface BlockCache extends Iterable<CachedBlock> {
    */
   int evictBlocksByHfileName(String hfileName);
 
+  /**
+   * Returns the blocks of the given HFile in the cache, the in-memory and the multi access blocks
+   * first, then the most recently accessed first. A cache whose priorities do not tell the blocks
+   * accessed once apart may leave these out. Returns null if the cache can only find them by
+   * iterating over all of its blocks.
+   */
+  default List<CachedBlock> getBlocksOfFile(String hfileName) {
+    return null;
+  }
+
+  /**
+   * Notifies the cache that a reader was opened on the given HFile. A cache restored from a
+   * previous run uses this to tell the files still served here from those whose blocks it may drop.
+   * @param hfileName The name of the HFile.
+   */
+  default void notifyFileOpened(String hfileName) {
+  }
+
   /**
    * Get the statistics for this block cache.
    */
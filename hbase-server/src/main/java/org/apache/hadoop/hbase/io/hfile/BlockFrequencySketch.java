@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A count-min sketch estimating how often each block was requested recently, with four 4-bit
+ * counters per block. All counters are halved once the number of recorded accesses reaches ten
+ * times the expected number of blocks, so that the history of blocks which are no longer read ages
+ * out.
+ * <p>
+ * Updates are lock free and best effort: an increment that loses a race with a concurrent update of
+ * the same word is dropped rather than retried. This only makes the estimates slightly lower, which
+ * is fine for picking eviction victims.
+ */
+@InterfaceAudience.Private
+public final class BlockFrequencySketch {
+
+  private static final long[] SEEDS =
+    { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAX_FREQUENCY = 15;
+
+  private final AtomicLongArray table;
+  private final int tableMask;
+  private final int resetThreshold;
+  private final AtomicInteger additions = new AtomicInteger();
+
+  /**
+   * @param expectedBlocks roughly how many blocks the cache holds when full
+   */
+  public BlockFrequencySketch(long expectedBlocks) {
+    long blocks = Math.max(64, expectedBlocks);
+    int tableSize = (int) Math.min(1 << 30, Long.highestOneBit(blocks - 1) << 1);
+    this.table = new AtomicLongArray(tableSize);
+    this.tableMask = tableSize - 1;
+    this.resetThreshold = (int) Math.min(Integer.MAX_VALUE / 2, 10L * tableSize);
+  }
+
+  /**
+   * Records an access of the block.
+   */
+  public void increment(BlockCacheKey key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && additions.incrementAndGet() == resetThreshold) {
+      reset();
+    }
+  }
+
+  /**
+   * Returns the estimated number of recent accesses of the block, at most 15.
+   */
+  public int frequency(BlockCacheKey key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < 4; i++) {
+      long word = table.get(indexOf(hash, i));
+      int count = (int) ((word >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  public long heapSize() {
+    return ClassSize.align(ClassSize.OBJECT + 2 * ClassSize.REFERENCE + 2 * Integer.BYTES)
+      + ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE)
+      + ClassSize.align(ClassSize.ARRAY + (long) table.length() * Long.BYTES)
+      + ClassSize.ATOMIC_INTEGER;
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    long word = table.get(index);
+    if ((word & mask) == mask) {
+      return false;
+    }
+    return table.compareAndSet(index, word, word + (1L << offset));
+  }
+
+  /** Halves every counter, and the number of additions with it. */
+  private void reset() {
+    for (int i = 0; i < table.length(); i++) {
+      long word = table.get(i);
+      table.compareAndSet(i, word, (word >>> 1) & RESET_MASK);
+    }
+    additions.addAndGet(-resetThreshold / 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
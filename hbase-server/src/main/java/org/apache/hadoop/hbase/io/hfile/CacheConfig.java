@@ -94,6 +94,14 @@ public class CacheConfig implements ConfigurationObserver {
   public static final String DROP_BEHIND_CACHE_COMPACTION_KEY =
     "hbase.hfile.drop.behind.compaction";
 
+  /**
+   * Configuration key to let the block cache's admission policy decide whether data blocks read on
+   * a cache miss are cached. Can be turned off per table or family, for example for small tables
+   * which should always be cached.
+   */
+  public static final String CACHE_DATA_ON_READ_ADMISSION_KEY =
+    "hbase.block.data.cacheonread.admission";
+
   // Defaults
   public static final boolean DEFAULT_CACHE_DATA_ON_READ = true;
   public static final boolean DEFAULT_CACHE_DATA_ON_WRITE = false;
@@ -105,6 +113,7 @@ public class CacheConfig implements ConfigurationObserver {
   public static final boolean DEFAULT_PREFETCH_ON_OPEN = false;
   public static final boolean DEFAULT_CACHE_COMPACTED_BLOCKS_ON_WRITE = false;
   public static final boolean DROP_BEHIND_CACHE_COMPACTION_DEFAULT = true;
+  public static final boolean DEFAULT_CACHE_DATA_ON_READ_ADMISSION = true;
   public static final long DEFAULT_CACHE_COMPACTED_BLOCKS_ON_WRITE_THRESHOLD = Long.MAX_VALUE;
 
   /**
@@ -147,6 +156,9 @@ public class CacheConfig implements ConfigurationObserver {
 
   private final boolean dropBehindCompaction;
 
+  /** Whether the block cache may refuse data blocks read on a miss */
+  private final boolean cacheDataOnReadAdmission;
+
   // Local reference to the block cache
   private final BlockCache blockCache;
 
@@ -196,6 +208,8 @@ public class CacheConfig implements ConfigurationObserver {
     this.cacheCompactedDataOnWrite =
       conf.getBoolean(CACHE_COMPACTED_BLOCKS_ON_WRITE_KEY, DEFAULT_CACHE_COMPACTED_BLOCKS_ON_WRITE);
     this.cacheCompactedDataOnWriteThreshold = getCacheCompactedBlocksOnWriteThreshold(conf);
+    this.cacheDataOnReadAdmission =
+      conf.getBoolean(CACHE_DATA_ON_READ_ADMISSION_KEY, DEFAULT_CACHE_DATA_ON_READ_ADMISSION);
     this.blockCache = blockCache;
     this.byteBuffAllocator = byteBuffAllocator;
   }
@@ -215,6 +229,7 @@ public class CacheConfig implements ConfigurationObserver {
     this.cacheCompactedDataOnWrite = cacheConf.cacheCompactedDataOnWrite;
     this.cacheCompactedDataOnWriteThreshold = cacheConf.cacheCompactedDataOnWriteThreshold;
     this.dropBehindCompaction = cacheConf.dropBehindCompaction;
+    this.cacheDataOnReadAdmission = cacheConf.cacheDataOnReadAdmission;
     this.blockCache = cacheConf.blockCache;
     this.byteBuffAllocator = cacheConf.byteBuffAllocator;
   }
@@ -230,6 +245,7 @@ public class CacheConfig implements ConfigurationObserver {
     this.prefetchOnOpen = false;
     this.cacheCompactedDataOnWrite = false;
     this.dropBehindCompaction = false;
+    this.cacheDataOnReadAdmission = false;
     this.blockCache = null;
     this.byteBuffAllocator = ByteBuffAllocator.HEAP;
   }
@@ -256,6 +272,14 @@ public class CacheConfig implements ConfigurationObserver {
       || (prefetchOnOpen && (category != BlockCategory.META && category != BlockCategory.UNKNOWN));
   }
 
+  /**
+   * Returns true if the block cache may refuse to cache data blocks read on a miss, see
+   * {@link BlockCache#admitOnRead(BlockCacheKey, Cacheable)}
+   */
+  public boolean shouldCheckAdmissionOnRead() {
+    return cacheDataOnReadAdmission;
+  }
+
   /** Returns true if blocks in this file should be flagged as in-memory */
   public boolean isInMemory() {
     return this.inMemory;
@@ -18,6 +18,7 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import java.util.Iterator;
+import java.util.List;
 import org.apache.hadoop.hbase.io.HeapSize;
 import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -76,6 +77,23 @@ public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
     cacheBlock(cacheKey, buf, false);
   }
 
+  @Override
+  public boolean admitOnRead(BlockCacheKey cacheKey, Cacheable block) {
+    boolean metaBlock = block.getBlockType().getCategory() != BlockType.BlockCategory.DATA;
+    return metaBlock || l2Cache.admitOnRead(cacheKey, block);
+  }
+
+  @Override
+  public Cacheable getUnpackedBlock(BlockCacheKey cacheKey) {
+    // the unpacked copies are kept on heap, whichever cache holds the packed block
+    return l1Cache.getUnpackedBlock(cacheKey);
+  }
+
+  @Override
+  public void cacheUnpackedBlock(BlockCacheKey cacheKey, Cacheable unpacked, long unpackNanos) {
+    l1Cache.cacheUnpackedBlock(cacheKey, unpacked, unpackNanos);
+  }
+
   @Override
   public Cacheable getBlock(BlockCacheKey cacheKey, boolean caching, boolean repeat,
     boolean updateCacheMetrics) {
@@ -142,6 +160,21 @@ public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
     return l1Cache.evictBlocksByHfileName(hfileName) + l2Cache.evictBlocksByHfileName(hfileName);
   }
 
+  /**
+   * Returns the blocks of the given HFile in the l2Cache, where its data blocks are. The index and
+   * bloom blocks in the l1Cache are not looked up.
+   */
+  @Override
+  public List<CachedBlock> getBlocksOfFile(String hfileName) {
+    return l2Cache.getBlocksOfFile(hfileName);
+  }
+
+  @Override
+  public void notifyFileOpened(String hfileName) {
+    l1Cache.notifyFileOpened(hfileName);
+    l2Cache.notifyFileOpened(hfileName);
+  }
+
   @Override
   public CacheStats getStats() {
     return this.combinedCacheStats;
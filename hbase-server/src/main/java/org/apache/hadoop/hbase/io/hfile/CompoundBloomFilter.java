@@ -46,6 +46,10 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase implements Bloo
 
   private int hashCount;
   private Hash hash;
+  /**
+   * Whether the chunks are laid out in blocks of a cache line, see {@link BloomType#ROW_BLOCKED}
+   */
+  private final boolean blocked;
 
   private long[] numQueriesPerChunk;
   private long[] numPositivesPerChunk;
@@ -59,8 +63,22 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase implements Bloo
    */
   public CompoundBloomFilter(DataInput meta, HFile.Reader reader, BloomFilterMetrics metrics)
     throws IOException {
+    this(meta, reader, metrics, false);
+  }
+
+  /**
+   * De-serialization for compound Bloom filter metadata. Must be consistent with what
+   * {@link CompoundBloomFilterWriter} does.
+   * @param meta    serialized Bloom filter metadata without any magic blocks
+   * @param reader  reader for hfile
+   * @param metrics for collecting bloom filter metrics. may be null
+   * @param blocked whether the chunks are laid out in blocks of a cache line
+   */
+  public CompoundBloomFilter(DataInput meta, HFile.Reader reader, BloomFilterMetrics metrics,
+    boolean blocked) throws IOException {
     this.reader = reader;
     this.metrics = metrics;
+    this.blocked = blocked;
 
     totalByteSize = meta.readLong();
     hashCount = meta.readInt();
@@ -107,8 +125,13 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase implements Bloo
     HFileBlock bloomBlock = getBloomBlock(block);
     try {
       ByteBuff bloomBuf = bloomBlock.getBufferReadOnly();
-      result = BloomFilterUtil.contains(key, keyOffset, keyLength, bloomBuf,
-        bloomBlock.headerSize(), bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount);
+      if (blocked) {
+        result = BloomFilterUtil.containsBlocked(key, keyOffset, keyLength, bloomBuf,
+          bloomBlock.headerSize(), bloomBlock.getUncompressedSizeWithoutHeader());
+      } else {
+        result = BloomFilterUtil.contains(key, keyOffset, keyLength, bloomBuf,
+          bloomBlock.headerSize(), bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount);
+      }
     } finally {
       // After the use, should release the block to deallocate byte buffers.
       bloomBlock.release();
@@ -156,8 +179,13 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase implements Bloo
     HFileBlock bloomBlock = getBloomBlock(block);
     try {
       ByteBuff bloomBuf = bloomBlock.getBufferReadOnly();
-      result = BloomFilterUtil.contains(keyCell, bloomBuf, bloomBlock.headerSize(),
-        bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount, type);
+      if (blocked) {
+        result = BloomFilterUtil.containsBlocked(keyCell, bloomBuf, bloomBlock.headerSize(),
+          bloomBlock.getUncompressedSizeWithoutHeader());
+      } else {
+        result = BloomFilterUtil.contains(keyCell, bloomBuf, bloomBlock.headerSize(),
+          bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount, type);
+      }
     } finally {
       // After the use, should release the block to deallocate the byte buffers.
       bloomBlock.release();
@@ -35,6 +35,13 @@ public class CompoundBloomFilterBase implements BloomFilterBase {
    */
   public static final int VERSION = 3;
 
+  /**
+   * The version of the Bloom filters with chunks laid out in blocks of a cache line, see
+   * {@link org.apache.hadoop.hbase.regionserver.BloomType#ROW_BLOCKED}. The metadata is the same as
+   * the one of {@link #VERSION}.
+   */
+  public static final int BLOCKED_VERSION = 4;
+
   /** Target error rate for configuring the filter and for information */
   protected float errorRate;
 
@@ -394,6 +394,13 @@ public final class HFile {
 
     Optional<Cell> midKey() throws IOException;
 
+    /**
+     * Returns the first keys of the blocks referenced from the root level of the data block index,
+     * in order. Like {@link #midKey()} these are block boundaries, so they split the file into
+     * ranges of roughly equal size.
+     */
+    List<Cell> getRootIndexKeys();
+
     long length();
 
     long getEntries();
@@ -639,9 +639,10 @@ public class HFileBlock implements Cacheable {
     final Context context =
       Context.current().with(CONTEXT_KEY, new HFileContextAttributesBuilderConsumer(fileContext));
     try (Scope ignored = context.makeCurrent()) {
-      HFileBlockDecodingContext ctx = blockType == BlockType.ENCODED_DATA
-        ? reader.getBlockDecodingContext()
-        : reader.getDefaultBlockDecodingContext();
+      HFileBlockDecodingContext ctx =
+        blockType == BlockType.ENCODED_DATA || blockType == BlockType.DATA
+          ? reader.getBlockDecodingContext()
+          : reader.getDefaultBlockDecodingContext();
       // Create a duplicated buffer without the header part.
       int headerSize = this.headerSize();
       ByteBuff dup = this.bufWithoutChecksum.duplicate();
@@ -820,6 +821,20 @@ public class HFileBlock implements Cacheable {
       return dataBlockEncodingCtx.getEncodingState();
     }
 
+    /**
+     * Compress the following data blocks with a dictionary trained for this file. Other block types
+     * are still compressed without it, so that the reader can load the dictionary from the file
+     * info.
+     */
+    void setDataBlockCompressionDictionary(byte[] dictionary) {
+      if (!(dataBlockEncodingCtx instanceof HFileBlockDefaultEncodingContext)) {
+        throw new IllegalStateException(
+          "Encoding context " + dataBlockEncodingCtx + " does not take a compression dictionary");
+      }
+      ((HFileBlockDefaultEncodingContext) dataBlockEncodingCtx)
+        .setCompressionDictionary(dictionary);
+    }
+
     /**
      * @param dataBlockEncoder data block encoding algorithm to use
      */
@@ -1273,6 +1288,24 @@ public class HFileBlock implements Cacheable {
     HFileBlock readBlockData(long offset, long onDiskSize, boolean pread, boolean updateMetrics,
       boolean intoHeap) throws IOException;
 
+    /**
+     * Reads the block at the given offset together with the blocks following it, using a single
+     * positional read of the block plus up to {@code readAheadSize} bytes. Only the blocks which
+     * were read completely and passed their checksum are returned, so the list always starts with
+     * the requested block but may hold no others.
+     * @param offset        of the file to read
+     * @param onDiskSize    the on-disk size of the requested block, including all applicable
+     *                      headers
+     * @param endOffset     the offset to never read beyond, e.g. the start of the load-on-open
+     *                      section
+     * @param readAheadSize how many bytes to read beyond the requested block
+     * @param updateMetrics update the metrics or not.
+     * @param intoHeap      allocate the blocks' ByteBuffs by {@link ByteBuffAllocator} or JVM heap.
+     * @return the requested block followed by the blocks read ahead
+     */
+    List<HFileBlock> readBlocksData(long offset, long onDiskSize, long endOffset, int readAheadSize,
+      boolean updateMetrics, boolean intoHeap) throws IOException;
+
     /**
      * Creates a block iterator over the given portion of the {@link HFile}. The iterator returns
      * blocks starting with offset such that offset &lt;= startOffset &lt; endOffset. Returned
@@ -1287,7 +1320,7 @@ public class HFileBlock implements Cacheable {
     /** Closes the backing streams */
     void closeStreams() throws IOException;
 
-    /** Get a decoder for {@link BlockType#ENCODED_DATA} blocks from this file. */
+    /** Get a decoder for {@link BlockType#DATA} and {@link BlockType#ENCODED_DATA} blocks. */
     HFileBlockDecodingContext getBlockDecodingContext();
 
     /** Get the default decoder for blocks from this file. */
@@ -1297,6 +1330,12 @@ public class HFileBlock implements Cacheable {
 
     void setDataBlockEncoder(HFileDataBlockEncoder encoder, Configuration conf);
 
+    /**
+     * Set the dictionary the data blocks of this file were compressed with, if one was trained for
+     * the file. Takes effect with the next {@link #setDataBlockEncoder}.
+     */
+    void setDataBlockCompressionDictionary(byte[] dictionary);
+
     /**
      * To close the stream's socket. Note: This can be concurrently called from multiple threads and
      * implementation should take care of thread safety.
@@ -1336,6 +1375,9 @@ public class HFileBlock implements Cacheable {
     /** Default context used when BlockType != {@link BlockType#ENCODED_DATA}. */
     private final HFileBlockDefaultDecodingContext defaultDecodingCtx;
 
+    /** Dictionary the data blocks of this file were compressed with, if any */
+    private byte[] dataBlockCompressionDictionary;
+
     /**
      * Cache of the NEXT header after this. Check it is indeed next blocks header before using it.
      * TODO: Review. This overread into next block to fetch next blocks header seems unnecessary
@@ -1567,6 +1609,114 @@ public class HFileBlock implements Cacheable {
       }
     }
 
+    @Override
+    public List<HFileBlock> readBlocksData(long offset, long onDiskSizeWithHeaderL, long endOffset,
+      int readAheadSize, boolean updateMetrics, boolean intoHeap) throws IOException {
+      // Read ahead only while HBase checksums are in use, blocks failing them go through the
+      // regular path which knows how to fall back to HDFS checksums.
+      boolean doVerificationThruHBaseChecksum = streamWrapper.shouldUseHBaseChecksum();
+      int onDiskSizeWithHeader = (int) onDiskSizeWithHeaderL;
+      // Read the header after the last block too, so that its size is known when reading on
+      long readSize = Math.min(onDiskSizeWithHeaderL + readAheadSize + hdrSize, endOffset - offset);
+      if (
+        !doVerificationThruHBaseChecksum || onDiskSizeWithHeader != onDiskSizeWithHeaderL
+          || !checkOnDiskSizeWithHeader(onDiskSizeWithHeader) || offset < 0
+          || readSize <= onDiskSizeWithHeader + hdrSize
+      ) {
+        List<HFileBlock> blocks = new ArrayList<>(1);
+        blocks.add(readBlockData(offset, onDiskSizeWithHeaderL, true, updateMetrics, intoHeap));
+        return blocks;
+      }
+      List<HFileBlock> blocks = null;
+      FSDataInputStream is = streamWrapper.getStream(true);
+      final Context context =
+        Context.current().with(CONTEXT_KEY, new HFileContextAttributesBuilderConsumer(fileContext)
+          .setSkipChecksum(true).setReadType(ReadType.POSITIONAL_READ));
+      try (Scope ignored = context.makeCurrent()) {
+        long startTime = EnvironmentEdgeManager.currentTime();
+        // The blocks are slices of this buffer, each holding a reference to it, so it goes back
+        // to the allocator once the read and all the blocks read ahead released it.
+        ByteBuff buf = allocate((int) readSize, intoHeap);
+        try {
+          BlockIOUtils.preadWithExtra(buf, is, offset, (int) readSize, 0, true);
+          // the read moves the positions of the pooled buffers, which the slices start from
+          buf.rewind();
+          long duration = EnvironmentEdgeManager.currentTime() - startTime;
+          if (updateMetrics) {
+            HFile.updateReadLatency(duration, true);
+          }
+          LOG.trace("Read {} bytes ahead at offset={} of {} in {} ms", readSize, offset, pathName,
+            duration);
+          blocks = new ArrayList<>();
+          int pos = 0;
+          int blockSize = onDiskSizeWithHeader;
+          while (blockSize > 0 && pos + blockSize <= readSize) {
+            HFileBlock block = parseReadAheadBlock(buf, pos, blockSize, offset + pos, intoHeap);
+            if (block == null) {
+              break;
+            }
+            blocks.add(block);
+            pos += blockSize;
+            blockSize = block.getNextBlockOnDiskSize();
+          }
+        } finally {
+          buf.release();
+        }
+      } catch (IOException | RuntimeException e) {
+        if (blocks != null) {
+          blocks.forEach(HFileBlock::release);
+        }
+        throw e;
+      }
+      if (blocks.isEmpty()) {
+        // The requested block failed its checksum, read it again the regular way.
+        blocks.add(readBlockData(offset, onDiskSizeWithHeaderL, true, updateMetrics, intoHeap));
+      } else {
+        streamWrapper.checksumOk();
+      }
+      return blocks;
+    }
+
+    /**
+     * Slices one block out of a read ahead buffer, retaining the buffer, and validates it.
+     * @return the block, or null if it failed its checksum or its header looks wrong
+     */
+    private HFileBlock parseReadAheadBlock(ByteBuff buf, int pos, int onDiskSizeWithHeader,
+      long offset, boolean intoHeap) throws IOException {
+      ByteBuff onDiskBlock =
+        buf.duplicate().position(pos).limit(pos + onDiskSizeWithHeader).slice();
+      onDiskBlock.retain();
+      boolean initHFileBlockSuccess = false;
+      try {
+        if (!validateChecksum(offset, onDiskBlock, hdrSize)) {
+          return null;
+        }
+        if (getOnDiskSizeWithHeader(onDiskBlock, true) != onDiskSizeWithHeader) {
+          return null;
+        }
+        int nextBlockOnDiskSize = -1;
+        if (pos + onDiskSizeWithHeader + hdrSize <= buf.limit()) {
+          int parsedVal = buf.getInt(pos + onDiskSizeWithHeader + BlockType.MAGIC_LENGTH) + hdrSize;
+          if (checkOnDiskSizeWithHeader(parsedVal)) {
+            nextBlockOnDiskSize = parsedVal;
+          }
+        }
+        // remove checksum from buffer now that it's verified
+        onDiskBlock.limit(onDiskBlock.getInt(Header.ON_DISK_DATA_SIZE_WITH_HEADER_INDEX));
+        HFileBlock hFileBlock = createFromBuff(onDiskBlock, true, offset, nextBlockOnDiskSize,
+          fileContext, intoHeap ? HEAP : allocator);
+        if (!fileContext.isCompressedOrEncrypted()) {
+          hFileBlock.sanityCheckUncompressed();
+        }
+        initHFileBlockSuccess = true;
+        return hFileBlock;
+      } finally {
+        if (!initHFileBlockSuccess) {
+          onDiskBlock.release();
+        }
+      }
+    }
+
     /**
      * Check that {@code value} read from a block header seems reasonable, within a large margin of
      * error.
@@ -1838,6 +1988,19 @@ public class HFileBlock implements Cacheable {
     @Override
     public void setDataBlockEncoder(HFileDataBlockEncoder encoder, Configuration conf) {
       encodedBlockDecodingCtx = encoder.newDataBlockDecodingContext(conf, fileContext);
+      if (dataBlockCompressionDictionary != null) {
+        if (!(encodedBlockDecodingCtx instanceof HFileBlockDefaultDecodingContext)) {
+          throw new IllegalStateException("Decoding context " + encodedBlockDecodingCtx
+            + " does not take a compression dictionary");
+        }
+        ((HFileBlockDefaultDecodingContext) encodedBlockDecodingCtx)
+          .setCompressionDictionary(dataBlockCompressionDictionary);
+      }
+    }
+
+    @Override
+    public void setDataBlockCompressionDictionary(byte[] dictionary) {
+      this.dataBlockCompressionDictionary = dictionary;
     }
 
     @Override
@@ -75,6 +75,8 @@ public class HFileInfo implements SortedMap<byte[], byte[]> {
   static final byte[] CREATE_TIME_TS = Bytes.toBytes(RESERVED_PREFIX + "CREATE_TIME_TS");
   static final byte[] TAGS_COMPRESSED = Bytes.toBytes(RESERVED_PREFIX + "TAGS_COMPRESSED");
   public static final byte[] MAX_TAGS_LEN = Bytes.toBytes(RESERVED_PREFIX + "MAX_TAGS_LEN");
+  public static final byte[] COMPRESSION_DICTIONARY =
+    Bytes.toBytes(RESERVED_PREFIX + "COMPRESSION_DICTIONARY");
   private final SortedMap<byte[], byte[]> map = new TreeMap<>(Bytes.BYTES_COMPARATOR);
 
   /**
@@ -377,6 +379,7 @@ public class HFileInfo implements SortedMap<byte[], byte[]> {
       metaIndexReader.readRootIndex(metaBlockIndex, trailer.getMetaIndexCount());
       reader.setMetaBlockIndexReader(metaIndexReader);
 
+      blockReader.setDataBlockCompressionDictionary(get(COMPRESSION_DICTIONARY));
       reader.setDataBlockEncoder(HFileDataBlockEncoderImpl.createFromFileInfo(this));
       // Load-On-Open info
       HFileBlock b;
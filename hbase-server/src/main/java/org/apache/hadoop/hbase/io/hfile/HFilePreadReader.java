@@ -37,13 +37,20 @@ public class HFilePreadReader extends HFileReaderImpl {
     super(context, fileInfo, cacheConf, conf);
     // Prefetch file blocks upon open if requested
     if (cacheConf.shouldPrefetchOnOpen()) {
-      PrefetchExecutor.request(path, new Runnable() {
+      int priority = conf.getInt(PrefetchExecutor.PREFETCH_PRIORITY,
+        PrefetchExecutor.PREFETCH_PRIORITY_DEFAULT_VALUE);
+      PrefetchExecutor.request(new PrefetchExecutor.PrefetchTask(path, priority) {
+        private HFile.Reader prefetchStreamReader;
+        private long onDiskSizeOfNextBlock = -1;
+
         @Override
-        public void run() {
-          long offset = 0;
-          long end = 0;
-          HFile.Reader prefetchStreamReader = null;
-          try {
+        protected long getEnd() {
+          return getTrailer().getLoadOnOpenDataOffset();
+        }
+
+        @Override
+        protected long prefetchBlock() throws IOException {
+          if (prefetchStreamReader == null) {
             ReaderContext streamReaderContext = ReaderContextBuilder.newBuilder(context)
               .withReaderType(ReaderContext.ReaderType.STREAM)
               .withInputStreamWrapper(new FSDataInputStreamWrapper(context.getFileSystem(),
@@ -51,49 +58,47 @@ public class HFilePreadReader extends HFileReaderImpl {
               .build();
             prefetchStreamReader =
               new HFileStreamReader(streamReaderContext, fileInfo, cacheConf, conf);
-            end = getTrailer().getLoadOnOpenDataOffset();
             if (LOG.isTraceEnabled()) {
-              LOG.trace("Prefetch start " + getPathOffsetEndStr(path, offset, end));
+              LOG.trace("Prefetch start " + getPathOffsetEndStr(path, offset, getEnd()));
             }
-            // Don't use BlockIterator here, because it's designed to read load-on-open section.
-            long onDiskSizeOfNextBlock = -1;
-            while (offset < end) {
-              if (Thread.interrupted()) {
-                break;
-              }
-              // Perhaps we got our block from cache? Unlikely as this may be, if it happens, then
-              // the internal-to-hfileblock thread local which holds the overread that gets the
-              // next header, will not have happened...so, pass in the onDiskSize gotten from the
-              // cached block. This 'optimization' triggers extremely rarely I'd say.
-              HFileBlock block = prefetchStreamReader.readBlock(offset, onDiskSizeOfNextBlock,
-                /* cacheBlock= */true, /* pread= */false, false, false, null, null, true);
-              try {
-                onDiskSizeOfNextBlock = block.getNextBlockOnDiskSize();
-                offset += block.getOnDiskSizeWithHeader();
-              } finally {
-                // Ideally here the readBlock won't find the block in cache. We call this
-                // readBlock so that block data is read from FS and cached in BC. we must call
-                // returnBlock here to decrease the reference count of block.
-                block.release();
-              }
-            }
-          } catch (IOException e) {
-            // IOExceptions are probably due to region closes (relocation, etc.)
-            if (LOG.isTraceEnabled()) {
-              LOG.trace("Prefetch " + getPathOffsetEndStr(path, offset, end), e);
-            }
-          } catch (Exception e) {
-            // Other exceptions are interesting
-            LOG.warn("Prefetch " + getPathOffsetEndStr(path, offset, end), e);
+          }
+          // Don't use BlockIterator here, because it's designed to read load-on-open section.
+          // Perhaps we got our block from cache? Unlikely as this may be, if it happens, then
+          // the internal-to-hfileblock thread local which holds the overread that gets the
+          // next header, will not have happened...so, pass in the onDiskSize gotten from the
+          // cached block. This 'optimization' triggers extremely rarely I'd say.
+          HFileBlock block = prefetchStreamReader.readBlock(offset, onDiskSizeOfNextBlock,
+            /* cacheBlock= */true, /* pread= */false, false, false, null, null, true);
+          try {
+            onDiskSizeOfNextBlock = block.getNextBlockOnDiskSize();
+            return block.getOnDiskSizeWithHeader();
           } finally {
-            if (prefetchStreamReader != null) {
-              try {
-                prefetchStreamReader.close(false);
-              } catch (IOException e) {
-                LOG.warn("Close prefetch stream reader failed, path: " + path, e);
-              }
+            // Ideally here the readBlock won't find the block in cache. We call this
+            // readBlock so that block data is read from FS and cached in BC. we must call
+            // returnBlock here to decrease the reference count of block.
+            block.release();
+          }
+        }
+
+        @Override
+        protected long getHeat() {
+          return getClientBlockReads();
+        }
+
+        @Override
+        protected BlockCache getBlockCache() {
+          return cacheConf.getBlockCache().orElse(null);
+        }
+
+        @Override
+        protected void close() {
+          if (prefetchStreamReader != null) {
+            try {
+              prefetchStreamReader.close(false);
+            } catch (IOException e) {
+              LOG.warn("Close prefetch stream reader failed, path: " + path, e);
             }
-            PrefetchExecutor.complete(path);
+            prefetchStreamReader = null;
           }
         }
       });
@@ -105,7 +110,9 @@ public class HFilePreadReader extends HFileReaderImpl {
   }
 
   public void close(boolean evictOnClose) throws IOException {
-    PrefetchExecutor.cancel(path);
+    // the prefetch resumes where it stopped when the file is opened again, unless its blocks are
+    // evicted
+    PrefetchExecutor.cancel(path, !evictOnClose);
     // Deallocate blocks in load-on-open section
     this.fileInfo.close();
     // Deallocate data blocks
@@ -25,7 +25,9 @@ import java.io.DataInput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
@@ -67,6 +69,14 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
   // to navigate the source code when so many classes participating in read.
   private static final Logger LOG = LoggerFactory.getLogger(HFileReaderImpl.class);
 
+  /**
+   * The most data blocks a positional read scanner fetches in one read once it has seen that its
+   * blocks are read in sequence; the blocks beyond the requested one go to the block cache. 0 or 1
+   * disables read-ahead.
+   */
+  public static final String READ_AHEAD_BLOCKS_KEY = "hbase.hfile.pread.readahead.blocks";
+  public static final int DEFAULT_READ_AHEAD_BLOCKS = 0;
+
   /** Data block index reader keeping the root data index in memory */
   protected HFileBlockIndex.CellBasedKeyBlockIndexReader dataBlockIndexReader;
 
@@ -109,6 +119,12 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
    */
   private IdLock offsetLock = new IdLock();
 
+  /** See {@link #READ_AHEAD_BLOCKS_KEY}, 0 when blocks read on the way are not cached */
+  private final int maxReadAheadBlocks;
+
+  /** Blocks read by clients, which ranks the file among the ones waiting to be prefetched */
+  private final LongAdder clientBlockReads = new LongAdder();
+
   /** Minimum minor version supported by this HFile format */
   static final int MIN_MINOR_VERSION = 0;
 
@@ -142,9 +158,15 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
     this.fsBlockReader =
       new HFileBlock.FSReaderImpl(context, hfileContext, cacheConf.getByteBuffAllocator(), conf);
     this.dataBlockEncoder = HFileDataBlockEncoderImpl.createFromFileInfo(fileInfo);
+    fsBlockReader.setDataBlockCompressionDictionary(fileInfo.get(HFileInfo.COMPRESSION_DICTIONARY));
     fsBlockReader.setDataBlockEncoder(dataBlockEncoder, conf);
     dataBlockIndexReader = fileInfo.getDataBlockIndexReader();
     metaBlockIndexReader = fileInfo.getMetaBlockIndexReader();
+    this.maxReadAheadBlocks = cacheConf.getBlockCache().isPresent()
+      && cacheConf.shouldCacheBlockOnRead(BlockType.BlockCategory.DATA)
+        ? conf.getInt(READ_AHEAD_BLOCKS_KEY, DEFAULT_READ_AHEAD_BLOCKS)
+        : 0;
+    cacheConf.getBlockCache().ifPresent(cache -> cache.notifyFileOpened(name));
   }
 
   @SuppressWarnings("serial")
@@ -335,6 +357,10 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
     protected HFileBlock curBlock;
     // Previous blocks that were used in the course of the read
     protected final ArrayList<HFileBlock> prevBlocks = new ArrayList<>();
+    // How many blocks to read at most when the next block is not cached, see READ_AHEAD_BLOCKS_KEY
+    private final int maxReadAheadBlocks;
+    // How many blocks were read in sequence since the last seek elsewhere, capped at the above
+    private int sequentialBlocks;
 
     public HFileScannerImpl(final HFile.Reader reader, final boolean cacheBlocks,
       final boolean pread, final boolean isCompaction) {
@@ -342,6 +368,9 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
       this.cacheBlocks = cacheBlocks;
       this.pread = pread;
       this.isCompaction = isCompaction;
+      this.maxReadAheadBlocks = pread && cacheBlocks && reader instanceof HFileReaderImpl
+        ? ((HFileReaderImpl) reader).maxReadAheadBlocks
+        : 0;
     }
 
     void updateCurrBlockRef(HFileBlock block) {
@@ -664,6 +693,9 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
         // This happens if the key e.g. falls before the beginning of the file.
         return -1;
       }
+      if (!isCurrentOrNextBlock(blockWithScanInfo.getHFileBlock())) {
+        sequentialBlocks = 0;
+      }
       return loadBlockAndSeekToKey(blockWithScanInfo.getHFileBlock(),
         blockWithScanInfo.getNextIndexedKey(), rewind, key, false);
     }
@@ -675,6 +707,7 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
       if (seekToBlock == null) {
         return false;
       }
+      sequentialBlocks = 0;
       Cell firstKey = getFirstKeyCellInBlock(seekToBlock);
       if (PrivateCellUtil.compareKeyIgnoresMvcc(reader.getComparator(), firstKey, key) >= 0) {
         long previousBlockOffset = seekToBlock.getPrevBlockOffset();
@@ -704,6 +737,11 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
       return true;
     }
 
+    private boolean isCurrentOrNextBlock(HFileBlock block) {
+      return curBlock != null && (block.getOffset() == curBlock.getOffset()
+        || block.getOffset() == curBlock.getOffset() + curBlock.getOnDiskSizeWithHeader());
+    }
+
     /**
      * The curBlock will be released by shipping or close method, so only need to consider releasing
      * the block, which was read from HFile before and not referenced by curBlock.
@@ -727,6 +765,9 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
         return null;
       }
       HFileBlock block = this.curBlock;
+      if (sequentialBlocks < maxReadAheadBlocks) {
+        sequentialBlocks++;
+      }
       do {
         if (block.getOffset() >= lastDataBlockOffset) {
           releaseIfNotCurBlock(block);
@@ -738,9 +779,17 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
         }
         // We are reading the next block without block type validation, because
         // it might turn out to be a non-data block.
-        block = reader.readBlock(block.getOffset() + block.getOnDiskSizeWithHeader(),
-          block.getNextBlockOnDiskSize(), cacheBlocks, pread, isCompaction, true, null,
-          getEffectiveDataBlockEncoding());
+        if (sequentialBlocks > 1) {
+          // The blocks are read in sequence, read the following ones along if not cached
+          block = ((HFileReaderImpl) reader).readBlock(
+            block.getOffset() + block.getOnDiskSizeWithHeader(), block.getNextBlockOnDiskSize(),
+            cacheBlocks, pread, isCompaction, true, null, getEffectiveDataBlockEncoding(), false,
+            sequentialBlocks);
+        } else {
+          block = reader.readBlock(block.getOffset() + block.getOnDiskSizeWithHeader(),
+            block.getNextBlockOnDiskSize(), cacheBlocks, pread, isCompaction, true, null,
+            getEffectiveDataBlockEncoding());
+        }
         if (block != null && !block.getBlockType().isData()) {
           // Whatever block we read we will be returning it unless
           // it is a datablock. Just in case the blocks are non data blocks
@@ -925,6 +974,7 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
       }
 
       long firstDataBlockOffset = reader.getTrailer().getFirstDataBlockOffset();
+      sequentialBlocks = 0;
       if (curBlock != null && curBlock.getOffset() == firstDataBlockOffset) {
         return processFirstDataBlock();
       }
@@ -1094,7 +1144,16 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
       if (cachedBlock != null) {
         if (cacheConf.shouldCacheCompressed(cachedBlock.getBlockType().getCategory())) {
           HFileBlock compressedBlock = cachedBlock;
-          cachedBlock = compressedBlock.unpack(hfileContext, fsBlockReader);
+          HFileBlock unpackedBlock = (HFileBlock) cache.getUnpackedBlock(cacheKey);
+          if (unpackedBlock != null) {
+            cachedBlock = unpackedBlock;
+          } else {
+            long start = System.nanoTime();
+            cachedBlock = compressedBlock.unpack(hfileContext, fsBlockReader);
+            if (compressedBlock != cachedBlock) {
+              cache.cacheUnpackedBlock(cacheKey, cachedBlock, System.nanoTime() - start);
+            }
+          }
           // In case of compressed block after unpacking we can release the compressed block
           if (compressedBlock != cachedBlock) {
             compressedBlock.release();
@@ -1258,6 +1317,18 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
     boolean pread, final boolean isCompaction, boolean updateCacheMetrics,
     BlockType expectedBlockType, DataBlockEncoding expectedDataBlockEncoding, boolean cacheOnly)
     throws IOException {
+    return readBlock(dataBlockOffset, onDiskBlockSize, cacheBlock, pread, isCompaction,
+      updateCacheMetrics, expectedBlockType, expectedDataBlockEncoding, cacheOnly, 0);
+  }
+
+  /**
+   * Like the other readBlock methods but on a cache miss, reads up to {@code readAheadBlocks}
+   * blocks in one positional read and caches the ones following the requested block.
+   */
+  HFileBlock readBlock(long dataBlockOffset, long onDiskBlockSize, final boolean cacheBlock,
+    boolean pread, final boolean isCompaction, boolean updateCacheMetrics,
+    BlockType expectedBlockType, DataBlockEncoding expectedDataBlockEncoding, boolean cacheOnly,
+    int readAheadBlocks) throws IOException {
     if (dataBlockIndexReader == null) {
       throw new IOException(path + " block index not loaded");
     }
@@ -1267,6 +1338,9 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
         + ", lastDataBlockOffset: " + trailer.getLastDataBlockOffset()
         + ", trailer.getLoadOnOpenDataOffset: " + trailerOffset + ", path=" + path);
     }
+    if (updateCacheMetrics && !isCompaction && !cacheOnly) {
+      clientBlockReads.increment();
+    }
     // For any given block from any given file, synchronize reads for said
     // block.
     // Without a cache, this synchronizing is needless overhead, but really
@@ -1328,8 +1402,11 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
 
         span.addEvent("block cache miss", attributes);
         // Load block from filesystem.
-        HFileBlock hfileBlock = fsBlockReader.readBlockData(dataBlockOffset, onDiskBlockSize, pread,
-          !isCompaction, shouldUseHeap(expectedBlockType, cacheBlock));
+        HFileBlock hfileBlock = readAheadBlocks > 1 && pread && onDiskBlockSize > 0
+          ? readBlockWithReadAhead(dataBlockOffset, onDiskBlockSize, readAheadBlocks, !isCompaction,
+            shouldUseHeap(expectedBlockType, cacheBlock))
+          : fsBlockReader.readBlockData(dataBlockOffset, onDiskBlockSize, pread, !isCompaction,
+            shouldUseHeap(expectedBlockType, cacheBlock));
         try {
           validateBlockType(hfileBlock, expectedBlockType);
         } catch (IOException e) {
@@ -1359,9 +1436,15 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
         // Cache the block if necessary
         cacheConf.getBlockCache().ifPresent(cache -> {
           if (cacheBlock && cacheConf.shouldCacheBlockOnRead(category)) {
-            // Using the wait on cache during compaction and prefetching.
-            cache.cacheBlock(cacheKey, cacheCompressed ? hfileBlock : unpacked,
-              cacheConf.isInMemory(), cacheOnly);
+            HFileBlock blockToCache = cacheCompressed ? hfileBlock : unpacked;
+            // Prefetched blocks are wanted in the cache whether read before or not
+            if (
+              cacheOnly || !cacheConf.shouldCheckAdmissionOnRead()
+                || cache.admitOnRead(cacheKey, blockToCache)
+            ) {
+              // Using the wait on cache during compaction and prefetching.
+              cache.cacheBlock(cacheKey, blockToCache, cacheConf.isInMemory(), cacheOnly);
+            }
           }
         });
         if (unpacked != hfileBlock) {
@@ -1381,6 +1464,60 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
     }
   }
 
+  /**
+   * Reads the block at the given offset together with the blocks following it, and caches the data
+   * blocks among the latter. They skip the admission check on read, as prefetched blocks do.
+   * @return the block at the given offset
+   */
+  private HFileBlock readBlockWithReadAhead(long offset, long onDiskBlockSize, int readAheadBlocks,
+    boolean updateMetrics, boolean intoHeap) throws IOException {
+    int readAheadSize =
+      (int) Math.min(Integer.MAX_VALUE / 2, onDiskBlockSize * (readAheadBlocks - 1));
+    List<HFileBlock> blocks = fsBlockReader.readBlocksData(offset, onDiskBlockSize,
+      trailer.getLoadOnOpenDataOffset(), readAheadSize, updateMetrics, intoHeap);
+    int i = 1;
+    try {
+      for (; i < blocks.size(); i++) {
+        cacheReadAheadBlock(blocks.get(i));
+      }
+    } catch (IOException | RuntimeException e) {
+      // The block which failed was released already
+      for (i++; i < blocks.size(); i++) {
+        blocks.get(i).release();
+      }
+      blocks.get(0).release();
+      throw e;
+    }
+    return blocks.get(0);
+  }
+
+  private void cacheReadAheadBlock(HFileBlock block) throws IOException {
+    try {
+      BlockType.BlockCategory category = block.getBlockType().getCategory();
+      Optional<BlockCache> cache = cacheConf.getBlockCache();
+      if (
+        !block.getBlockType().isData() || !cache.isPresent()
+          || !cacheConf.shouldCacheBlockOnRead(category)
+      ) {
+        return;
+      }
+      BlockCacheKey cacheKey =
+        new BlockCacheKey(name, block.getOffset(), isPrimaryReplicaReader(), block.getBlockType());
+      HFileBlock blockToCache = cacheConf.shouldCacheCompressed(category)
+        ? block
+        : block.unpack(hfileContext, fsBlockReader);
+      try {
+        cache.get().cacheBlock(cacheKey, blockToCache, cacheConf.isInMemory());
+      } finally {
+        if (blockToCache != block) {
+          blockToCache.release();
+        }
+      }
+    } finally {
+      block.release();
+    }
+  }
+
   @Override
   public boolean hasMVCCInfo() {
     return fileInfo.shouldIncludeMemStoreTS() && fileInfo.isDecodeMemstoreTS();
@@ -1429,6 +1566,19 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
     return Optional.ofNullable(dataBlockIndexReader.midkey(this));
   }
 
+  @Override
+  public List<Cell> getRootIndexKeys() {
+    if (dataBlockIndexReader == null) {
+      throw new BlockIndexNotLoadedException(path);
+    }
+    int count = dataBlockIndexReader.getRootBlockCount();
+    List<Cell> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      keys.add(dataBlockIndexReader.getRootBlockKey(i));
+    }
+    return keys;
+  }
+
   @Override
   public void close() throws IOException {
     close(cacheConf.shouldEvictOnClose());
@@ -1631,6 +1781,11 @@ public abstract class HFileReaderImpl implements HFile.Reader, Configurable {
     return hfileContext;
   }
 
+  /** Returns the number of blocks of the file read by clients, cache hits included */
+  long getClientBlockReads() {
+    return clientBlockReads.sum();
+  }
+
   /**
    * Returns false if block prefetching was requested for this file and has not completed, true
    * otherwise
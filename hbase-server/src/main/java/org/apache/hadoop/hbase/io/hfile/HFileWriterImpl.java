@@ -33,6 +33,7 @@ import org.apache.hadoop.hbase.ByteBufferExtendedCell;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.MetaCellComparator;
 import org.apache.hadoop.hbase.PrivateCellUtil;
@@ -70,6 +71,37 @@ public class HFileWriterImpl implements HFile.Writer {
   /** Block size limit after encoding, used to unify encoded block Cache entry size */
   private final int encodedBlockSizeLimit;
 
+  /**
+   * If enabled, and the compression codec can train dictionaries, a compression dictionary is
+   * trained for each file from the first cells written to it. The dictionary is stored in the file
+   * info. Usually set per column family.
+   */
+  public static final String COMPRESSION_DICTIONARY_TRAIN_KEY =
+    "hbase.hfile.compression.dictionary.train";
+  public static final boolean DEFAULT_COMPRESSION_DICTIONARY_TRAIN = false;
+
+  /** Upper bound on the size of a trained compression dictionary */
+  public static final String COMPRESSION_DICTIONARY_MAX_SIZE_KEY =
+    "hbase.hfile.compression.dictionary.max.size";
+  public static final int DEFAULT_COMPRESSION_DICTIONARY_MAX_SIZE = 64 * 1024;
+
+  /**
+   * Serialized size of the cells held back to sample before the dictionary is trained. Zstandard
+   * recommends samples of about a hundred times the dictionary size.
+   */
+  public static final String COMPRESSION_DICTIONARY_SAMPLE_SIZE_KEY =
+    "hbase.hfile.compression.dictionary.sample.size";
+  public static final int DEFAULT_COMPRESSION_DICTIONARY_SAMPLE_SIZE = 4 * 1024 * 1024;
+
+  /**
+   * Copies of the first cells of the file, held back until the compression dictionary is trained
+   * from them. Null if no dictionary is to be trained, or once it has been.
+   */
+  private List<KeyValue> dictionarySampleCells;
+  private long dictionarySampleSize = 0;
+  private int maxDictionarySize;
+  private long dictionarySampleSizeLimit;
+
   /** The Cell previously appended. Becomes the last cell in the file. */
   protected Cell lastCell = null;
 
@@ -184,6 +216,16 @@ public class HFileWriterImpl implements HFile.Writer {
     float encodeBlockSizeRatio = conf.getFloat(UNIFIED_ENCODED_BLOCKSIZE_RATIO, 1f);
     this.encodedBlockSizeLimit = (int) (hFileContext.getBlocksize() * encodeBlockSizeRatio);
     finishInit(conf);
+    if (
+      conf.getBoolean(COMPRESSION_DICTIONARY_TRAIN_KEY, DEFAULT_COMPRESSION_DICTIONARY_TRAIN)
+        && hFileContext.getCompression().canTrainDictionary()
+    ) {
+      this.dictionarySampleCells = new ArrayList<>();
+      this.maxDictionarySize =
+        conf.getInt(COMPRESSION_DICTIONARY_MAX_SIZE_KEY, DEFAULT_COMPRESSION_DICTIONARY_MAX_SIZE);
+      this.dictionarySampleSizeLimit = conf.getLong(COMPRESSION_DICTIONARY_SAMPLE_SIZE_KEY,
+        DEFAULT_COMPRESSION_DICTIONARY_SAMPLE_SIZE);
+    }
     if (LOG.isTraceEnabled()) {
       LOG.trace("Writer" + (path != null ? " for " + path : "") + " initialized with cacheConf: "
         + cacheConf + " fileContext: " + fileContext);
@@ -588,6 +630,10 @@ public class HFileWriterImpl implements HFile.Writer {
     if (outputStream == null) {
       return;
     }
+    if (dictionarySampleCells != null) {
+      // The file is smaller than the sample size, train from what there is
+      trainCompressionDictionary();
+    }
     // Save data block encoder metadata in the file info.
     blockEncoder.saveMetadata(this);
     // Save index block encoder metadata in the file info.
@@ -718,6 +764,16 @@ public class HFileWriterImpl implements HFile.Writer {
    */
   @Override
   public void append(final Cell cell) throws IOException {
+    if (dictionarySampleCells != null) {
+      // Hold a copy of the cell back until the dictionary its block is compressed with is trained
+      KeyValue copy = KeyValueUtil.copyToNewKeyValue(cell);
+      dictionarySampleCells.add(copy);
+      dictionarySampleSize += copy.getLength();
+      if (dictionarySampleSize >= dictionarySampleSizeLimit) {
+        trainCompressionDictionary();
+      }
+      return;
+    }
     // checkKey uses comparator to check we are writing in order.
     boolean dupKey = checkKey(cell);
     if (!dupKey) {
@@ -750,6 +806,38 @@ public class HFileWriterImpl implements HFile.Writer {
     }
   }
 
+  /**
+   * Trains the compression dictionary for the data blocks of this file from the cells held back so
+   * far, then appends them. The file is written without a dictionary if none could be trained.
+   */
+  private void trainCompressionDictionary() throws IOException {
+    List<KeyValue> cells = dictionarySampleCells;
+    dictionarySampleCells = null;
+    if (cells.isEmpty()) {
+      return;
+    }
+    List<byte[]> samples = new ArrayList<>(cells.size());
+    for (KeyValue cell : cells) {
+      samples.add(cell.getBuffer());
+    }
+    long startTime = EnvironmentEdgeManager.currentTime();
+    byte[] dictionary = hFileContext.getCompression().trainDictionary(samples, maxDictionarySize);
+    if (dictionary != null) {
+      blockWriter.setDataBlockCompressionDictionary(dictionary);
+      fileInfo.append(HFileInfo.COMPRESSION_DICTIONARY, dictionary, false);
+      LOG.debug(
+        "Trained compression dictionary of {} bytes from {} cells ({} bytes) for {} in {} ms",
+        dictionary.length, cells.size(), dictionarySampleSize, name,
+        EnvironmentEdgeManager.currentTime() - startTime);
+    } else {
+      LOG.debug("Could not train a compression dictionary from {} cells ({} bytes) for {}",
+        cells.size(), dictionarySampleSize, name);
+    }
+    for (KeyValue cell : cells) {
+      append(cell);
+    }
+  }
+
   @Override
   public void beforeShipped() throws IOException {
     this.blockWriter.beforeShipped();
@@ -19,6 +19,9 @@ package org.apache.hadoop.hbase.io.hfile;
 
 import static java.util.Objects.requireNonNull;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import java.lang.ref.WeakReference;
 import java.util.EnumMap;
 import java.util.Iterator;
@@ -122,6 +125,33 @@ public class LruBlockCache implements FirstLevelBlockCache {
   private static final String LRU_IN_MEMORY_FORCE_MODE_CONFIG_NAME =
     "hbase.lru.rs.inmemoryforcemode";
 
+  /**
+   * How blocks to evict are picked once the cache is full. "full", the default, sorts every cached
+   * block by access time into priority buckets on each run. "sampled" advances a clock hand over
+   * the cached blocks instead and, for each block to evict, picks the least frequently requested
+   * one of a small sample, so each run only visits about the sample size times the number of blocks
+   * it evicts. Request frequencies come from a sketch which remembers blocks after they are
+   * evicted, so one large scan of blocks read once can not push out blocks which are read over and
+   * over.
+   */
+  static final String LRU_EVICTION_MODE_CONFIG_NAME = "hbase.lru.blockcache.eviction.mode";
+  static final String EVICTION_MODE_FULL = "full";
+  static final String EVICTION_MODE_SAMPLED = "sampled";
+
+  /** Number of blocks looked at for each block evicted in the sampled eviction mode. */
+  static final String LRU_EVICTION_SAMPLE_SIZE_CONFIG_NAME =
+    "hbase.lru.blockcache.eviction.sample.size";
+
+  /**
+   * Fraction of the cache kept for unpacked copies of the hottest data blocks, when data blocks are
+   * cached packed (see {@link CacheConfig#CACHE_DATA_BLOCKS_COMPRESSED_KEY}). Reads of these blocks
+   * skip decompressing them again, while the rest of the cache holds several times more data than
+   * it would unpacked. The copies count towards the size of the cache, and whether a block is hot
+   * enough to replace another copy is decided by how often each was requested. 0, the default,
+   * keeps no copies.
+   */
+  static final String LRU_UNPACKED_FACTOR_CONFIG_NAME = "hbase.lru.blockcache.unpacked.factor";
+
   /* Default Configuration Parameters */
 
   /* Backing Concurrent Map Configuration */
@@ -141,6 +171,10 @@ public class LruBlockCache implements FirstLevelBlockCache {
 
   private static final boolean DEFAULT_IN_MEMORY_FORCE_MODE = false;
 
+  static final int DEFAULT_EVICTION_SAMPLE_SIZE = 8;
+
+  private static final float DEFAULT_UNPACKED_FACTOR = 0f;
+
   /* Statistics thread */
   private static final int STAT_THREAD_PERIOD = 60 * 5;
   private static final String LRU_MAX_BLOCK_SIZE = "hbase.lru.max.block.size";
@@ -233,6 +267,32 @@ public class LruBlockCache implements FirstLevelBlockCache {
   /** Whether in-memory hfile's data block has higher priority when evicting */
   private boolean forceInMemory;
 
+  /** Request frequency of recently read blocks. Only used by the sampled eviction mode. */
+  private transient final BlockFrequencySketch frequencySketch;
+
+  /** Blocks looked at per block evicted, zero if using the full eviction mode */
+  private final int evictionSampleSize;
+
+  /** The clock hand of the sampled eviction mode, only moved under the eviction lock */
+  private transient Iterator<LruCachedBlock> evictionHand;
+
+  /** Unpacked copies of hot data blocks cached packed, null if none are kept */
+  private transient Cache<BlockCacheKey, Cacheable> unpackedBlocks;
+
+  /** Fraction of the cache for the unpacked copies */
+  private float unpackedFactor;
+
+  /** Hits of the unpacked copies */
+  private final LongAdder unpackedHitCount = new LongAdder();
+
+  /** Number of cached packed blocks unpacked by their readers, and the time it took */
+  private final LongAdder unpackCount = new LongAdder();
+  private final LongAdder unpackTime = new LongAdder();
+
+  /** Current size of the packed data blocks, and the size they would have unpacked */
+  private final LongAdder packedDataBlockSize = new LongAdder();
+  private final LongAdder packedDataBlockUnpackedSize = new LongAdder();
+
   /**
    * Where to send victims (blocks evicted/missing from the cache). This is used only when we use an
    * external cache as L2. Note: See org.apache.hadoop.hbase.io.hfile.MemcachedBlockCache
@@ -271,7 +331,37 @@ public class LruBlockCache implements FirstLevelBlockCache {
       conf.getFloat(LRU_MEMORY_PERCENTAGE_CONFIG_NAME, DEFAULT_MEMORY_FACTOR),
       conf.getFloat(LRU_HARD_CAPACITY_LIMIT_FACTOR_CONFIG_NAME, DEFAULT_HARD_CAPACITY_LIMIT_FACTOR),
       conf.getBoolean(LRU_IN_MEMORY_FORCE_MODE_CONFIG_NAME, DEFAULT_IN_MEMORY_FORCE_MODE),
-      conf.getLong(LRU_MAX_BLOCK_SIZE, DEFAULT_MAX_BLOCK_SIZE));
+      conf.getLong(LRU_MAX_BLOCK_SIZE, DEFAULT_MAX_BLOCK_SIZE), getEvictionSampleSize(conf));
+    float unpackedFactor = conf.getFloat(LRU_UNPACKED_FACTOR_CONFIG_NAME, DEFAULT_UNPACKED_FACTOR);
+    if (
+      unpackedFactor > 0 && conf.getBoolean(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY,
+        CacheConfig.DEFAULT_CACHE_DATA_COMPRESSED)
+    ) {
+      if (unpackedFactor >= minFactor) {
+        throw new IllegalArgumentException("unpackedFactor must be smaller than minFactor");
+      }
+      this.unpackedFactor = unpackedFactor;
+      this.unpackedBlocks = Caffeine.newBuilder().executor(Runnable::run)
+        .maximumWeight((long) (maxSize * unpackedFactor))
+        .weigher((BlockCacheKey key,
+          Cacheable value) -> (int) Math.min(value.heapSize(), Integer.MAX_VALUE))
+        .removalListener((BlockCacheKey key, Cacheable value, RemovalCause cause) -> {
+          size.addAndGet(-value.heapSize());
+          value.release();
+        }).build();
+    }
+  }
+
+  private static int getEvictionSampleSize(Configuration conf) {
+    String mode = conf.get(LRU_EVICTION_MODE_CONFIG_NAME, EVICTION_MODE_FULL);
+    if (EVICTION_MODE_SAMPLED.equalsIgnoreCase(mode)) {
+      return Math.max(1,
+        conf.getInt(LRU_EVICTION_SAMPLE_SIZE_CONFIG_NAME, DEFAULT_EVICTION_SAMPLE_SIZE));
+    }
+    if (!EVICTION_MODE_FULL.equalsIgnoreCase(mode)) {
+      throw new IllegalArgumentException("Unknown " + LRU_EVICTION_MODE_CONFIG_NAME + ": " + mode);
+    }
+    return 0;
   }
 
   public LruBlockCache(long maxSize, long blockSize, Configuration conf) {
@@ -296,6 +386,20 @@ public class LruBlockCache implements FirstLevelBlockCache {
     float mapLoadFactor, int mapConcurrencyLevel, float minFactor, float acceptableFactor,
     float singleFactor, float multiFactor, float memoryFactor, float hardLimitFactor,
     boolean forceInMemory, long maxBlockSize) {
+    this(maxSize, blockSize, evictionThread, mapInitialSize, mapLoadFactor, mapConcurrencyLevel,
+      minFactor, acceptableFactor, singleFactor, multiFactor, memoryFactor, hardLimitFactor,
+      forceInMemory, maxBlockSize, 0);
+  }
+
+  /**
+   * Configurable constructor, picking the eviction mode too.
+   * @param evictionSampleSize blocks looked at per block evicted when using sampled eviction, or
+   *                           zero to use the full eviction mode
+   */
+  public LruBlockCache(long maxSize, long blockSize, boolean evictionThread, int mapInitialSize,
+    float mapLoadFactor, int mapConcurrencyLevel, float minFactor, float acceptableFactor,
+    float singleFactor, float multiFactor, float memoryFactor, float hardLimitFactor,
+    boolean forceInMemory, long maxBlockSize, int evictionSampleSize) {
     this.maxBlockSize = maxBlockSize;
     if (
       singleFactor + multiFactor + memoryFactor != 1 || singleFactor < 0 || multiFactor < 0
@@ -323,6 +427,13 @@ public class LruBlockCache implements FirstLevelBlockCache {
     this.count = new AtomicLong(0);
     this.elements = new AtomicLong(0);
     this.overhead = calculateOverhead(maxSize, blockSize, mapConcurrencyLevel);
+    this.evictionSampleSize = evictionSampleSize;
+    if (evictionSampleSize > 0) {
+      this.frequencySketch = new BlockFrequencySketch((long) Math.ceil(1.2 * maxSize / blockSize));
+      this.overhead += frequencySketch.heapSize();
+    } else {
+      this.frequencySketch = null;
+    }
     this.size = new AtomicLong(this.overhead);
     this.hardCapacityLimitFactor = hardLimitFactor;
     if (evictionThread) {
@@ -348,6 +459,10 @@ public class LruBlockCache implements FirstLevelBlockCache {
   @Override
   public void setMaxSize(long maxSize) {
     this.maxSize = maxSize;
+    if (unpackedBlocks != null) {
+      unpackedBlocks.policy().eviction()
+        .ifPresent(eviction -> eviction.setMaximum((long) (maxSize * unpackedFactor)));
+    }
     if (this.size.get() > acceptableSize() && !evictionInProgress) {
       runEviction();
     }
@@ -497,6 +612,15 @@ public class LruBlockCache implements FirstLevelBlockCache {
         indexBlockSize.add(heapsize);
       } else if (bt.isData()) {
         dataBlockSize.add(heapsize);
+        if (cb.getBuffer() instanceof HFileBlock) {
+          HFileBlock block = (HFileBlock) cb.getBuffer();
+          if (!block.isUnpacked()) {
+            int sign = evict ? -1 : 1;
+            packedDataBlockSize.add(sign * block.getOnDiskSizeWithHeader());
+            packedDataBlockUnpackedSize
+              .add(sign * (block.headerSize() + block.getUncompressedSizeWithoutHeader()));
+          }
+        }
       }
     }
     return size.addAndGet(heapsize);
@@ -514,6 +638,9 @@ public class LruBlockCache implements FirstLevelBlockCache {
   @Override
   public Cacheable getBlock(BlockCacheKey cacheKey, boolean caching, boolean repeat,
     boolean updateCacheMetrics) {
+    if (frequencySketch != null && !repeat) {
+      frequencySketch.increment(cacheKey);
+    }
     // Note: 'map' must be a ConcurrentHashMap or the supplier may be invoked more than once.
     LruCachedBlock cb = map.computeIfPresent(cacheKey, (key, val) -> {
       // It will be referenced by RPC path, so increase here. NOTICE: Must do the retain inside
@@ -550,6 +677,39 @@ public class LruBlockCache implements FirstLevelBlockCache {
     return cb.getBuffer();
   }
 
+  @Override
+  public Cacheable getUnpackedBlock(BlockCacheKey cacheKey) {
+    if (unpackedBlocks == null) {
+      return null;
+    }
+    Cacheable unpacked = unpackedBlocks.asMap().computeIfPresent(cacheKey, (key, val) -> {
+      // Retain inside the mapping function, like getBlock does, so the copy can not be released by
+      // its eviction in between.
+      val.retain();
+      return val;
+    });
+    if (unpacked != null) {
+      unpackedHitCount.increment();
+    }
+    return unpacked;
+  }
+
+  @Override
+  public void cacheUnpackedBlock(BlockCacheKey cacheKey, Cacheable unpacked, long unpackNanos) {
+    unpackCount.increment();
+    unpackTime.add(unpackNanos);
+    if (
+      unpackedBlocks == null || unpacked.heapSize() > maxBlockSize || !map.containsKey(cacheKey)
+    ) {
+      return;
+    }
+    Cacheable block = asReferencedHeapBlock(unpacked);
+    // Released, and taken off the size again, by the removal listener, which also runs when the
+    // frequency based admission turns the copy down.
+    size.addAndGet(block.heapSize());
+    unpackedBlocks.put(cacheKey, block);
+  }
+
   /**
    * Whether the cache contains block with specified cacheKey
    * @return true if contains the block
@@ -616,6 +776,9 @@ public class LruBlockCache implements FirstLevelBlockCache {
     if (evicted.isFalse()) {
       return 0;
     }
+    if (unpackedBlocks != null) {
+      unpackedBlocks.invalidate(block.getCacheKey());
+    }
     // We evicted the block so update L1 statistics.
     updateSizeMetrics(block, true);
     long val = elements.decrementAndGet();
@@ -682,6 +845,16 @@ public class LruBlockCache implements FirstLevelBlockCache {
         return;
       }
 
+      if (evictionSampleSize > 0) {
+        long bytesFreed = evictSampled();
+        if (LOG.isTraceEnabled()) {
+          LOG.trace(
+            "Block cache sampled eviction completed; freed=" + StringUtils.byteDesc(bytesFreed)
+              + ", total=" + StringUtils.byteDesc(this.size.get()));
+        }
+        return;
+      }
+
       // Instantiate priority buckets
       BlockBucket bucketSingle = new BlockBucket("single", bytesToFree, blockSize, singleSize());
       BlockBucket bucketMulti = new BlockBucket("multi", bytesToFree, blockSize, multiSize());
@@ -781,6 +954,65 @@ public class LruBlockCache implements FirstLevelBlockCache {
     }
   }
 
+  /**
+   * Evicts one sampled victim after the other until the cache is back under its minimum size. The
+   * size is checked again after every block, so blocks freed concurrently, say by files being
+   * closed, shorten the run. Must be called holding the eviction lock.
+   * @return the number of bytes freed
+   */
+  private long evictSampled() {
+    long bytesFreed = 0;
+    long minSize = minSize();
+    while (size.get() > minSize) {
+      LruCachedBlock victim = sampleVictim();
+      if (victim == null) {
+        break;
+      }
+      bytesFreed += evictBlock(victim, true);
+    }
+    return bytesFreed;
+  }
+
+  /**
+   * Moves the clock hand over the next {@link #evictionSampleSize} blocks and returns the least
+   * frequently requested one, the least recently accessed one among equals. In-memory blocks are
+   * only picked if the whole sample is in-memory.
+   */
+  private LruCachedBlock sampleVictim() {
+    LruCachedBlock victim = null;
+    int victimFrequency = Integer.MAX_VALUE;
+    LruCachedBlock memoryVictim = null;
+    boolean wrapped = false;
+    for (int sampled = 0; sampled < evictionSampleSize;) {
+      if (evictionHand == null || !evictionHand.hasNext()) {
+        if (wrapped) {
+          // Fewer blocks cached than we wanted to sample
+          break;
+        }
+        wrapped = evictionHand != null;
+        evictionHand = map.values().iterator();
+        continue;
+      }
+      LruCachedBlock candidate = evictionHand.next();
+      sampled++;
+      if (candidate.getPriority() == BlockPriority.MEMORY) {
+        if (memoryVictim == null || candidate.compareTo(memoryVictim) > 0) {
+          memoryVictim = candidate;
+        }
+        continue;
+      }
+      int frequency = frequencySketch.frequency(candidate.getCacheKey());
+      if (
+        frequency < victimFrequency
+          || (frequency == victimFrequency && candidate.compareTo(victim) > 0)
+      ) {
+        victim = candidate;
+        victimFrequency = frequency;
+      }
+    }
+    return victim != null ? victim : memoryVictim;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).add("blockCount", getBlockCount())
@@ -926,6 +1158,38 @@ public class LruBlockCache implements FirstLevelBlockCache {
     return this.bloomBlockElements.sum();
   }
 
+  /** Returns the number of reads served by the unpacked copy of a block cached packed */
+  public long getUnpackedHitCount() {
+    return this.unpackedHitCount.sum();
+  }
+
+  /** Returns the number of times a block cached packed was unpacked by its reader */
+  public long getUnpackCount() {
+    return this.unpackCount.sum();
+  }
+
+  /** Returns the time spent unpacking blocks cached packed, in nanoseconds */
+  public long getUnpackTime() {
+    return this.unpackTime.sum();
+  }
+
+  /** Returns the current size of the unpacked copies of hot blocks */
+  public long getCurrentUnpackedSize() {
+    return unpackedBlocks == null
+      ? 0
+      : unpackedBlocks.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L);
+  }
+
+  /**
+   * Returns how many times more data the data blocks cached packed hold than they take, or 1 if
+   * there are none. This is the capacity gained by caching the blocks packed, which
+   * {@link #getUnpackTime()} is the cost of.
+   */
+  public double getPackedDataRatio() {
+    long packed = this.packedDataBlockSize.sum();
+    return packed <= 0 ? 1 : (double) this.packedDataBlockUnpackedSize.sum() / packed;
+  }
+
   EvictionThread getEvictionThread() {
     return this.evictionThread;
   }
@@ -1031,7 +1295,13 @@ public class LruBlockCache implements FirstLevelBlockCache {
         ? "0,"
         : (StringUtils.formatPercent(stats.getHitCachingRatio(), 2) + ", "))
       + "evictions=" + stats.getEvictionCount() + ", " + "evicted=" + stats.getEvictedCount() + ", "
-      + "evictedPerRun=" + stats.evictedPerEviction());
+      + "evictedPerRun=" + stats.evictedPerEviction()
+      + (getUnpackCount() == 0 && unpackedBlocks == null
+        ? ""
+        : ", packedDataRatio=" + String.format("%.2f", getPackedDataRatio()) + ", unpacks="
+          + getUnpackCount() + ", unpackTime=" + TimeUnit.NANOSECONDS.toMillis(getUnpackTime())
+          + "ms, unpackedSize=" + StringUtils.byteDesc(getCurrentUnpackedSize()) + ", unpackedHits="
+          + getUnpackedHitCount()));
   }
 
   /**
@@ -1199,6 +1469,9 @@ public class LruBlockCache implements FirstLevelBlockCache {
 
   /** Clears the cache. Used in tests. */
   public void clearCache() {
+    if (unpackedBlocks != null) {
+      unpackedBlocks.invalidateAll();
+    }
     this.map.clear();
     this.elements.set(0);
   }
@@ -18,6 +18,12 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import com.google.errorprone.annotations.RestrictedApi;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Future;
@@ -29,17 +35,36 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.regionserver.throttle.PrefetchThroughputController;
+import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
 import org.apache.hadoop.hbase.trace.TraceUtil;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Prefetches the blocks of HFiles into the block cache when they are opened. Each file waits for
+ * {@value #PREFETCH_DELAY} first, then the files ready to prefetch are read a slice of
+ * {@value #PREFETCH_SLICE_SIZE} bytes at a time, the next slice always going to the file which
+ * matters most: the one with the highest {@value #PREFETCH_PRIORITY}, which tables and families can
+ * set in their descriptors, then the one most read by clients since it was opened. So a burst of
+ * regions moved to the server gets its hot files cached first. The reads are throttled by the
+ * {@link ThroughputController} configured with {@value #PREFETCH_THROUGHPUT_CONTROLLER}.
+ * <p>
+ * Once the block cache is filled beyond {@value #PREFETCH_CACHE_FULL_FACTOR}, the data it holds was
+ * either read by clients or prefetched ahead of the files still waiting, so only the files with a
+ * priority or with client reads of their own are still prefetched. The others stop, and remember
+ * where they stopped, as do the files whose reader is closed before they finish: when the file is
+ * opened again its prefetch resumes from there.
+ */
 @InterfaceAudience.Private
 public final class PrefetchExecutor {
 
@@ -48,17 +73,53 @@ public final class PrefetchExecutor {
   public static final String PREFETCH_DELAY = "hbase.hfile.prefetch.delay";
   public static final String PREFETCH_DELAY_VARIATION = "hbase.hfile.prefetch.delay.variation";
   public static final float PREFETCH_DELAY_VARIATION_DEFAULT_VALUE = 0.2f;
+  /** Bytes prefetched from a file before the files ready to prefetch are ranked again */
+  public static final String PREFETCH_SLICE_SIZE = "hbase.hfile.prefetch.slice.size";
+  public static final long PREFETCH_SLICE_SIZE_DEFAULT_VALUE = 4L * 1024 * 1024;
+  /**
+   * Priority of the prefetch of the files of a table or family, usually set in their descriptor.
+   * Higher goes first.
+   */
+  public static final String PREFETCH_PRIORITY = "hbase.hfile.prefetch.priority";
+  public static final int PREFETCH_PRIORITY_DEFAULT_VALUE = 0;
+  /**
+   * Fraction of the block cache above which the cache is deemed full, and only the files with a
+   * priority above the default or read by clients are prefetched. 0, the default, never stops.
+   */
+  public static final String PREFETCH_CACHE_FULL_FACTOR = "hbase.hfile.prefetch.cache.full.factor";
+  public static final float PREFETCH_CACHE_FULL_FACTOR_DEFAULT_VALUE = 0f;
+  /** The {@link ThroughputController} throttling the prefetches */
+  public static final String PREFETCH_THROUGHPUT_CONTROLLER =
+    "hbase.hfile.prefetch.throughput.controller";
+
+  /** Files whose prefetch stopped before the end are remembered up to this many */
+  private static final int MAX_RESUME_OFFSETS = 10000;
 
   /** Futures for tracking block prefetch activity */
   private static final Map<Path, Future<?>> prefetchFutures = new ConcurrentSkipListMap<>();
-  /** Runnables for resetting the prefetch activity */
-  private static final Map<Path, Runnable> prefetchRunnable = new ConcurrentSkipListMap<>();
+  /** Tasks of the files being prefetched, for resetting or cancelling the prefetch activity */
+  private static final Map<Path, PrefetchTask> prefetchTasks = new ConcurrentSkipListMap<>();
+  /** Tasks whose delay has expired, the best ranked one is run next */
+  private static final List<PrefetchTask> readyTasks = new ArrayList<>();
+  /** Where the prefetch of the files which did not finish stopped, by file name */
+  private static final Map<String, Long> resumeOffsets =
+    Collections.synchronizedMap(new LinkedHashMap<String, Long>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        return size() > MAX_RESUME_OFFSETS;
+      }
+    });
+  /** Order of the requests, the last tie breaker of the ranking */
+  private static final AtomicLong requestSequence = new AtomicLong();
   /** Executor pool shared among all HFiles for block prefetch */
   private static final ScheduledExecutorService prefetchExecutorPool;
   /** Delay before beginning prefetch */
   private static int prefetchDelayMillis;
   /** Variation in prefetch delay times, to mitigate stampedes */
   private static float prefetchDelayVariation;
+  private static volatile long prefetchSliceSize;
+  private static volatile float cacheFullFactor;
+  private static volatile ThroughputController throughputController;
   static {
     // Consider doing this on demand with a configuration passed in rather
     // than in a static initializer.
@@ -68,6 +129,7 @@ public final class PrefetchExecutor {
     prefetchDelayMillis = conf.getInt(PREFETCH_DELAY, 1000);
     prefetchDelayVariation =
       conf.getFloat(PREFETCH_DELAY_VARIATION, PREFETCH_DELAY_VARIATION_DEFAULT_VALUE);
+    loadSchedulingConfiguration(conf);
     int prefetchThreads = conf.getInt("hbase.hfile.thread.prefetch", 4);
     prefetchExecutorPool = new ScheduledThreadPoolExecutor(prefetchThreads, new ThreadFactory() {
       @Override
@@ -80,6 +142,55 @@ public final class PrefetchExecutor {
     });
   }
 
+  /**
+   * Ranks the files ready to prefetch, the first one is prefetched next.
+   */
+  static final Comparator<PrefetchTask> RANKING =
+    Comparator.comparingInt((PrefetchTask t) -> t.getPriority()).reversed()
+      .thenComparing(Comparator.comparingLong((PrefetchTask t) -> t.getHeat()).reversed())
+      .thenComparingLong(t -> t.sequence);
+
+  /**
+   * The prefetch of the blocks of a file, run a slice at a time.
+   */
+  abstract static class PrefetchTask {
+    private final Path path;
+    private final int priority;
+    private long sequence;
+    private volatile boolean cancelled;
+    private volatile boolean keepProgress;
+    /** Offset of the next block to prefetch */
+    protected long offset;
+
+    protected PrefetchTask(Path path, int priority) {
+      this.path = path;
+      this.priority = priority;
+    }
+
+    Path getPath() {
+      return path;
+    }
+
+    int getPriority() {
+      return priority;
+    }
+
+    /** Returns the offset where the blocks to prefetch end */
+    protected abstract long getEnd();
+
+    /** Reads the block at {@link #offset} into the cache, and returns its size on disk */
+    protected abstract long prefetchBlock() throws IOException;
+
+    /** Returns how many blocks of the file clients have read */
+    protected abstract long getHeat();
+
+    /** Returns the block cache the prefetch fills, null if unknown */
+    protected abstract BlockCache getBlockCache();
+
+    /** Releases what the prefetch holds, once it finished, stopped or was cancelled */
+    protected abstract void close();
+  }
+
   // TODO: We want HFile, which is where the blockcache lives, to handle
   // prefetching of file blocks but the Store level is where path convention
   // knowledge should be contained
@@ -88,7 +199,8 @@ public final class PrefetchExecutor {
       + Path.SEPARATOR_CHAR + ")|(" + Path.SEPARATOR_CHAR
       + HConstants.HREGION_COMPACTIONDIR_NAME.replace(".", "\\.") + Path.SEPARATOR_CHAR + ")");
 
-  public static void request(Path path, Runnable runnable) {
+  static void request(PrefetchTask task) {
+    Path path = task.getPath();
     if (!prefetchPathExclude.matcher(path.toString()).find()) {
       long delay;
       if (prefetchDelayMillis > 0) {
@@ -98,58 +210,190 @@ public final class PrefetchExecutor {
       } else {
         delay = 0;
       }
+      Long resumeOffset = resumeOffsets.remove(path.getName());
+      if (resumeOffset != null) {
+        task.offset = resumeOffset;
+      }
+      task.sequence = requestSequence.incrementAndGet();
       try {
-        LOG.debug("Prefetch requested for {}, delay={} ms", path, delay);
+        LOG.debug("Prefetch requested for {}, delay={} ms, offset={}", path, delay, task.offset);
         final Runnable tracedRunnable =
-          TraceUtil.tracedRunnable(runnable, "PrefetchExecutor.request");
+          TraceUtil.tracedRunnable(() -> ready(task), "PrefetchExecutor.request");
+        prefetchTasks.put(path, task);
         final Future<?> future =
           prefetchExecutorPool.schedule(tracedRunnable, delay, TimeUnit.MILLISECONDS);
         prefetchFutures.put(path, future);
-        prefetchRunnable.put(path, runnable);
+        if (prefetchTasks.get(path) != task) {
+          // without a delay the prefetch may be over already
+          prefetchFutures.remove(path, future);
+        }
       } catch (RejectedExecutionException e) {
         prefetchFutures.remove(path);
-        prefetchRunnable.remove(path);
+        prefetchTasks.remove(path);
+        task.close();
         LOG.warn("Prefetch request rejected for {}", path);
       }
     }
   }
 
+  /**
+   * Called once the delay of the task expired. Every ready task gets a run of the pool, which
+   * prefetches a slice of the best ranked ready task, not necessarily this one.
+   */
+  private static void ready(PrefetchTask task) {
+    synchronized (readyTasks) {
+      readyTasks.add(task);
+    }
+    runNext();
+  }
+
+  private static void runNext() {
+    PrefetchTask task;
+    synchronized (readyTasks) {
+      if (readyTasks.isEmpty()) {
+        return;
+      }
+      task = Collections.min(readyTasks, RANKING);
+      readyTasks.remove(task);
+    }
+    boolean done = true;
+    try {
+      done = runSlice(task);
+    } finally {
+      if (!done) {
+        synchronized (readyTasks) {
+          readyTasks.add(task);
+        }
+        try {
+          prefetchExecutorPool.execute(PrefetchExecutor::runNext);
+        } catch (RejectedExecutionException e) {
+          synchronized (readyTasks) {
+            readyTasks.remove(task);
+          }
+          done = true;
+        }
+      }
+      if (done) {
+        task.close();
+        // the file may have been opened again since, with a prefetch of its own
+        if (prefetchTasks.remove(task.getPath(), task)) {
+          prefetchFutures.remove(task.getPath());
+          LOG.debug("Prefetch completed for {}", task.getPath());
+        }
+      }
+    }
+  }
+
+  /**
+   * Prefetches the next slice of the file of the task.
+   * @return true if the prefetch of the file is over, whether it reached the end or not
+   */
+  private static boolean runSlice(PrefetchTask task) {
+    Path path = task.getPath();
+    if (task.cancelled) {
+      stopped(task);
+      return true;
+    }
+    if (task.getPriority() <= PREFETCH_PRIORITY_DEFAULT_VALUE && task.getHeat() == 0) {
+      if (isCacheFull(task.getBlockCache())) {
+        LOG.debug("Prefetch stopped for {} at offset {}, the block cache is full", path,
+          task.offset);
+        stopped(task);
+        return true;
+      }
+    }
+    ThroughputController controller = throughputController;
+    String opName = "prefetch-" + path.getName() + "-" + task.sequence;
+    long sliceEnd = task.offset + prefetchSliceSize;
+    controller.start(opName);
+    try {
+      long end = task.getEnd();
+      while (task.offset < end) {
+        if (task.cancelled || Thread.interrupted()) {
+          stopped(task);
+          return true;
+        }
+        if (task.offset >= sliceEnd) {
+          return false;
+        }
+        long size = task.prefetchBlock();
+        task.offset += size;
+        controller.control(opName, size);
+      }
+      return true;
+    } catch (InterruptedException e) {
+      stopped(task);
+      Thread.currentThread().interrupt();
+      return true;
+    } catch (IOException e) {
+      // IOExceptions are probably due to region closes (relocation, etc.)
+      LOG.trace("Prefetch path={}, offset={}", path, task.offset, e);
+      return true;
+    } catch (Exception e) {
+      // Other exceptions are interesting
+      LOG.warn("Prefetch path={}, offset={}", path, task.offset, e);
+      return true;
+    } finally {
+      controller.finish(opName);
+    }
+  }
+
+  /**
+   * Remembers where the prefetch of a file stopped, to resume from there when it is opened again.
+   */
+  private static void stopped(PrefetchTask task) {
+    if (task.offset > 0 && (!task.cancelled || task.keepProgress)) {
+      resumeOffsets.put(task.getPath().getName(), task.offset);
+    }
+  }
+
+  private static boolean isCacheFull(BlockCache cache) {
+    float factor = cacheFullFactor;
+    return factor > 0 && cache != null && cache.getMaxSize() > 0
+      && cache.getCurrentSize() >= factor * cache.getMaxSize();
+  }
+
   public static void complete(Path path) {
     prefetchFutures.remove(path);
-    prefetchRunnable.remove(path);
-    if (LOG.isDebugEnabled()) {
-      LOG.debug("Prefetch completed for {}", path.getName());
-    }
+    prefetchTasks.remove(path);
     LOG.debug("Prefetch completed for {}", path);
   }
 
   public static void cancel(Path path) {
-    Future<?> future = prefetchFutures.get(path);
+    cancel(path, true);
+  }
+
+  /**
+   * Cancels the prefetch of a file.
+   * @param keepProgress whether to resume from where it was when the file is opened again, which is
+   *                     only worth it if the blocks it cached stay in the cache
+   */
+  public static void cancel(Path path, boolean keepProgress) {
+    PrefetchTask task = prefetchTasks.remove(path);
+    if (task != null) {
+      task.keepProgress = keepProgress;
+      task.cancelled = true;
+      if (!keepProgress) {
+        resumeOffsets.remove(path.getName());
+      }
+    }
+    Future<?> future = prefetchFutures.remove(path);
     if (future != null) {
       // ok to race with other cancellation attempts
-      future.cancel(true);
-      prefetchFutures.remove(path);
-      prefetchRunnable.remove(path);
+      if (future.cancel(true) && task != null) {
+        // the delay had not expired yet, so the task will never run
+        task.close();
+      }
       LOG.debug("Prefetch cancelled for {}", path);
     }
   }
 
   public static void interrupt(Path path) {
-    Future<?> future = prefetchFutures.get(path);
-    if (future != null) {
-      prefetchFutures.remove(path);
-      // ok to race with other cancellation attempts
-      future.cancel(true);
-      LOG.debug("Prefetch cancelled for {}", path);
-    }
+    cancel(path, true);
   }
 
   public static boolean isCompleted(Path path) {
-    Future<?> future = prefetchFutures.get(path);
-    if (future != null) {
-      return future.isDone();
-    }
-    return true;
+    return !prefetchTasks.containsKey(path);
   }
 
   private PrefetchExecutor() {
@@ -170,8 +414,14 @@ public final class PrefetchExecutor {
 
   @RestrictedApi(explanation = "Should only be called in tests", link = "",
       allowedOnPath = ".*/src/test/.*")
-  static Map<Path, Runnable> getPrefetchRunnable() {
-    return prefetchRunnable;
+  static Map<Path, PrefetchTask> getPrefetchTasks() {
+    return prefetchTasks;
+  }
+
+  @RestrictedApi(explanation = "Should only be called in tests", link = "",
+      allowedOnPath = ".*/src/test/.*")
+  static Long getResumeOffset(Path path) {
+    return resumeOffsets.get(path.getName());
   }
 
   static boolean isPrefetchStarted() {
@@ -194,17 +444,36 @@ public final class PrefetchExecutor {
     return prefetchDelayMillis;
   }
 
+  private static void loadSchedulingConfiguration(Configuration conf) {
+    prefetchSliceSize = conf.getLong(PREFETCH_SLICE_SIZE, PREFETCH_SLICE_SIZE_DEFAULT_VALUE);
+    cacheFullFactor =
+      conf.getFloat(PREFETCH_CACHE_FULL_FACTOR, PREFETCH_CACHE_FULL_FACTOR_DEFAULT_VALUE);
+    Class<? extends ThroughputController> clazz = conf.getClass(PREFETCH_THROUGHPUT_CONTROLLER,
+      PrefetchThroughputController.class, ThroughputController.class);
+    ThroughputController controller = ReflectionUtils.newInstance(clazz, conf);
+    ThroughputController previous = throughputController;
+    throughputController = controller;
+    if (previous != null) {
+      previous.stop("Prefetch configuration changed");
+    }
+  }
+
   public static void loadConfiguration(Configuration conf) {
     prefetchDelayMillis = conf.getInt(PREFETCH_DELAY, 1000);
     prefetchDelayVariation =
       conf.getFloat(PREFETCH_DELAY_VARIATION, PREFETCH_DELAY_VARIATION_DEFAULT_VALUE);
+    loadSchedulingConfiguration(conf);
     prefetchFutures.forEach((k, v) -> {
       ScheduledFuture sf = (ScheduledFuture) prefetchFutures.get(k);
-      if (!(sf.getDelay(TimeUnit.MILLISECONDS) > 0)) {
+      PrefetchTask task = prefetchTasks.get(k);
+      if (
+        sf != null && task != null && sf.getDelay(TimeUnit.MILLISECONDS) > 0 && sf.cancel(false)
+      ) {
         // the thread is still pending delay expiration and has not started to run yet, so can be
         // re-scheduled at no cost.
-        interrupt(k);
-        request(k, prefetchRunnable.get(k));
+        prefetchFutures.remove(k);
+        prefetchTasks.remove(k);
+        request(task);
       }
       LOG.debug("Reset called on Prefetch of file {} with delay {}, delay variation {}", k,
         prefetchDelayMillis, prefetchDelayVariation);
@@ -19,10 +19,11 @@ package org.apache.hadoop.hbase.io.hfile.bucket;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -72,6 +73,7 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.IdReadWriteLock;
 import org.apache.hadoop.hbase.util.IdReadWriteLock.ReferenceType;
+import org.apache.hadoop.hbase.util.ReflectionUtils;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
@@ -135,7 +137,9 @@ public class BucketCache implements BlockCache, HeapSize {
   // Store the block in this map before writing it to cache
   transient final RAMCache ramCache;
   // In this map, store the block's meta data like offset, length
-  transient ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMap;
+  transient final Map<BlockCacheKey, BucketEntry> backingMap;
+  // The backing map if it is kept off heap, null otherwise
+  private transient final OffHeapBucketIndex offHeapIndex;
 
   /**
    * Flag if the cache is enabled or not... We shut it off if there are IO errors for some time, so
@@ -232,6 +236,47 @@ public class BucketCache implements BlockCache, HeapSize {
     "hbase.bucketcache.persistent.file.integrity.check.algorithm";
   private static final String DEFAULT_FILE_VERIFY_ALGORITHM = "MD5";
 
+  /**
+   * Class name of a {@link BucketCacheAdmissionPolicy} deciding which blocks read on a cache miss
+   * are written to the cache. Unset by default, admitting every block.
+   */
+  public static final String ADMISSION_POLICY_CLASS_KEY =
+    "hbase.bucketcache.admission.policy.class";
+
+  /** Null if every block is admitted */
+  private transient final BucketCacheAdmissionPolicy admissionPolicy;
+
+  /**
+   * Interval between checkpoints of the backing map of a persistent cache, which then survives a
+   * crash rather than being persisted only on shutdown. Evicted blocks keep their space until the
+   * next checkpoint, so about a second is a good value. Zero, the default, disables checkpoints.
+   */
+  public static final String PERSIST_INTERVAL_KEY = "hbase.bucketcache.persist.intervalinmillis";
+  public static final long DEFAULT_PERSIST_INTERVAL = 0;
+
+  /**
+   * Whether the backing map is kept off heap, in an {@link OffHeapBucketIndex}, rather than in a
+   * {@link ConcurrentHashMap}, to save the heap a large file cache spends on its entries. Ignored
+   * with an IO engine sharing its memory with the blocks read from it. Evicting the blocks of a
+   * file then costs a pass over the whole index.
+   */
+  public static final String OFFHEAP_INDEX_KEY = "hbase.bucketcache.offheap.index.enabled";
+  public static final boolean DEFAULT_OFFHEAP_INDEX = false;
+
+  /**
+   * How long the blocks of a file restored from the persisted backing map are kept without a reader
+   * opening the file, before they are evicted.
+   */
+  public static final String RESTORED_FILE_RETENTION_KEY =
+    "hbase.bucketcache.persist.restored.file.retention.ms";
+  public static final long DEFAULT_RESTORED_FILE_RETENTION = 10 * 60 * 1000;
+
+  /** Null if the backing map is only persisted on shutdown */
+  transient final BucketCachePersister persister;
+
+  /** Files restored from the persisted backing map which no reader opened yet */
+  private final Set<String> unopenedRestoredFiles = ConcurrentHashMap.newKeySet();
+
   private static final String QUEUE_ADDITION_WAIT_TIME =
     "hbase.bucketcache.queue.addition.waittime";
   private static final long DEFAULT_QUEUE_ADDITION_WAIT_TIME = 0;
@@ -274,12 +319,17 @@ public class BucketCache implements BlockCache, HeapSize {
     this.memoryFactor = conf.getFloat(MEMORY_FACTOR_CONFIG_NAME, DEFAULT_MEMORY_FACTOR);
     this.queueAdditionWaitTime =
       conf.getLong(QUEUE_ADDITION_WAIT_TIME, DEFAULT_QUEUE_ADDITION_WAIT_TIME);
+    String admissionPolicyClass = conf.get(ADMISSION_POLICY_CLASS_KEY);
+    this.admissionPolicy = admissionPolicyClass == null || admissionPolicyClass.isEmpty()
+      ? null
+      : ReflectionUtils.newInstance(admissionPolicyClass, conf, blockNumCapacity);
 
     sanityCheckConfigs();
 
     LOG.info("Instantiating BucketCache with acceptableFactor: " + acceptableFactor
       + ", minFactor: " + minFactor + ", extraFreeFactor: " + extraFreeFactor + ", singleFactor: "
-      + singleFactor + ", multiFactor: " + multiFactor + ", memoryFactor: " + memoryFactor);
+      + singleFactor + ", multiFactor: " + multiFactor + ", memoryFactor: " + memoryFactor
+      + ", admissionPolicy: " + admissionPolicyClass);
 
     this.cacheCapacity = capacity;
     this.persistencePath = persistencePath;
@@ -296,13 +346,32 @@ public class BucketCache implements BlockCache, HeapSize {
     assert writerQueues.size() == writerThreads.length;
     this.ramCache = new RAMCache();
 
-    this.backingMap = new ConcurrentHashMap<>((int) blockNumCapacity);
+    boolean offHeapIndexEnabled = conf.getBoolean(OFFHEAP_INDEX_KEY, DEFAULT_OFFHEAP_INDEX);
+    if (offHeapIndexEnabled && ioEngine.usesSharedMemory()) {
+      LOG.warn("Ignoring {}, the blocks read from {} share its memory", OFFHEAP_INDEX_KEY,
+        ioEngine);
+      offHeapIndexEnabled = false;
+    }
+    if (offHeapIndexEnabled) {
+      this.offHeapIndex = new OffHeapBucketIndex(this::createRecycler);
+      this.backingMap = offHeapIndex;
+    } else {
+      this.offHeapIndex = null;
+      this.backingMap = new ConcurrentHashMap<>((int) blockNumCapacity);
+    }
 
+    long persistInterval = conf.getLong(PERSIST_INTERVAL_KEY, DEFAULT_PERSIST_INTERVAL);
+    this.persister = ioEngine.isPersistent() && persistencePath != null && persistInterval > 0
+      ? new BucketCachePersister(this, persistencePath)
+      : null;
     if (ioEngine.isPersistent() && persistencePath != null) {
       try {
         retrieveFromFile(bucketSizes);
       } catch (IOException ioex) {
         LOG.error("Can't restore from file[" + persistencePath + "] because of ", ioex);
+      } finally {
+        // Whatever was restored is written out afresh by the first checkpoint or on shutdown
+        BucketCachePersister.deleteLogs(persistencePath, Long.MAX_VALUE);
       }
     }
     final String threadName = Thread.currentThread().getName();
@@ -319,6 +388,15 @@ public class BucketCache implements BlockCache, HeapSize {
     // every five minutes.
     this.scheduleThreadPool.scheduleAtFixedRate(new StatisticsThread(this), statThreadPeriod,
       statThreadPeriod, TimeUnit.SECONDS);
+    if (persister != null) {
+      this.scheduleThreadPool.scheduleWithFixedDelay(persister::checkpoint, persistInterval,
+        persistInterval, TimeUnit.MILLISECONDS);
+    }
+    if (!unopenedRestoredFiles.isEmpty()) {
+      this.scheduleThreadPool.schedule(this::evictUnopenedRestoredFiles,
+        conf.getLong(RESTORED_FILE_RETENTION_KEY, DEFAULT_RESTORED_FILE_RETENTION),
+        TimeUnit.MILLISECONDS);
+    }
     LOG.info("Started bucket cache; ioengine=" + ioEngineName + ", capacity="
       + StringUtils.byteDesc(capacity) + ", blockSize=" + StringUtils.byteDesc(blockSize)
       + ", writerThreadNum=" + writerThreadNum + ", writerQLen=" + writerQLen + ", persistencePath="
@@ -457,6 +535,19 @@ public class BucketCache implements BlockCache, HeapSize {
     }
   }
 
+  @Override
+  public boolean admitOnRead(BlockCacheKey cacheKey, Cacheable block) {
+    if (admissionPolicy == null) {
+      return true;
+    }
+    if (admissionPolicy.admit(cacheKey, block)) {
+      cacheStats.admitted();
+      return true;
+    }
+    cacheStats.rejected();
+    return false;
+  }
+
   protected boolean shouldReplaceExistingCacheBlock(BlockCacheKey cacheKey, Cacheable newBlock) {
     return BlockCacheUtil.shouldReplaceExistingCacheBlock(this, cacheKey, newBlock);
   }
@@ -515,6 +606,9 @@ public class BucketCache implements BlockCache, HeapSize {
     if (!cacheEnabled) {
       return null;
     }
+    if (admissionPolicy != null && !repeat) {
+      admissionPolicy.recordAccess(key);
+    }
     RAMQueueEntry re = ramCache.get(key);
     if (re != null) {
       if (updateCacheMetrics) {
@@ -571,6 +665,9 @@ public class BucketCache implements BlockCache, HeapSize {
    */
   void blockEvicted(BlockCacheKey cacheKey, BucketEntry bucketEntry, boolean decrementBlockNumber,
     boolean evictedByEvictionProcess) {
+    if (persister != null) {
+      persister.evicted(cacheKey, bucketEntry);
+    }
     bucketEntry.markAsEvicted();
     blocksByHFile.remove(cacheKey);
     if (decrementBlockNumber) {
@@ -586,10 +683,27 @@ public class BucketCache implements BlockCache, HeapSize {
    * {@link BucketEntry#refCnt} becoming 0.
    */
   void freeBucketEntry(BucketEntry bucketEntry) {
+    // With checkpoints, the space is reused only once no checkpoint refers to the block anymore
+    if (persister == null || !persister.deferFree(bucketEntry)) {
+      releaseBucketEntry(bucketEntry);
+    }
+  }
+
+  void releaseBucketEntry(BucketEntry bucketEntry) {
     bucketAllocator.freeBlock(bucketEntry.offset(), bucketEntry.getLength());
     realCacheSize.add(-1 * bucketEntry.getLength());
   }
 
+  /**
+   * Releases the space of the blocks evicted since the last checkpoint, which is held back until
+   * their eviction is logged.
+   */
+  private void releaseEvictedSpace() {
+    if (persister != null) {
+      persister.sync();
+    }
+  }
+
   /**
    * Try to evict the block from {@link BlockCache} by force. We'll call this in few cases:<br>
    * 1. Close an HFile, and clear all cached blocks. <br>
@@ -901,6 +1015,7 @@ public class BucketCache implements BlockCache, HeapSize {
         }
         remainingBuckets--;
       }
+      releaseEvictedSpace();
 
       // Check and free if there are buckets that still need freeing of space
       if (bucketSizesAboveThresholdCount(minFactor) > 0) {
@@ -916,6 +1031,7 @@ public class BucketCache implements BlockCache, HeapSize {
           bytesFreed += bucketGroup.free(bucketBytesToFree);
           remainingBuckets--;
         }
+        releaseEvictedSpace();
       }
 
       // Even after the above free we might still need freeing because of the
@@ -924,6 +1040,7 @@ public class BucketCache implements BlockCache, HeapSize {
       // yielding the free for the other bucket sizes, the fix for this to evict some
       // of the buckets, we do this by evicting the buckets that are least fulled
       freeEntireBuckets(DEFAULT_FREE_ENTIRE_BLOCK_FACTOR * bucketSizesAboveThresholdCount(1.0f));
+      releaseEvictedSpace();
 
       if (LOG.isDebugEnabled()) {
         long single = bucketSingle.totalSize();
@@ -1001,8 +1118,13 @@ public class BucketCache implements BlockCache, HeapSize {
    * @param bucketEntry Bucket entry to put into backingMap.
    */
   protected void putIntoBackingMap(BlockCacheKey key, BucketEntry bucketEntry) {
+    if (persister != null) {
+      persister.cached(key, bucketEntry);
+    }
     BucketEntry previousEntry = backingMap.put(key, bucketEntry);
-    blocksByHFile.add(key);
+    if (offHeapIndex == null) {
+      blocksByHFile.add(key);
+    }
     if (previousEntry != null && previousEntry != bucketEntry) {
       previousEntry.withWriteLock(offsetLock, () -> {
         blockEvicted(key, previousEntry, false, false);
@@ -1193,17 +1315,13 @@ public class BucketCache implements BlockCache, HeapSize {
   /**
    * @see #retrieveFromFile(int[])
    */
-  @edu.umd.cs.findbugs.annotations.SuppressWarnings(value = "OBL_UNSATISFIED_OBLIGATION",
-      justification = "false positive, try-with-resources ensures close is called.")
   private void persistToFile() throws IOException {
     assert !cacheEnabled;
     if (!ioEngine.isPersistent()) {
       throw new IOException("Attempt to persist non-persistent cache mappings!");
     }
-    try (FileOutputStream fos = new FileOutputStream(persistencePath, false)) {
-      fos.write(ProtobufMagic.PB_MAGIC);
-      BucketProtoUtils.toPB(this).writeDelimitedTo(fos);
-    }
+    BucketCachePersister.writeSnapshot(persistencePath, BucketProtoUtils.toPB(this));
+    BucketCachePersister.deleteLogs(persistencePath, Long.MAX_VALUE);
   }
 
   /**
@@ -1226,9 +1344,26 @@ public class BucketCache implements BlockCache, HeapSize {
         throw new IOException(
           "Persistence file does not start with protobuf magic number. " + persistencePath);
       }
-      parsePB(BucketCacheProtos.BucketCacheEntry.parseDelimitedFrom(in));
+      BucketCacheProtos.BucketCacheEntry proto =
+        BucketCacheProtos.BucketCacheEntry.parseDelimitedFrom(in);
+      parsePB(proto);
+      if (proto.hasLogSequence()) {
+        long replayed = BucketCachePersister.replayLogs(persistencePath, proto.getLogSequence(),
+          proto.getDeserializersMap(), backingMap, this::createRecycler);
+        LOG.info("Replayed {} edits of the bucket cache checkpoint logs", replayed);
+      }
       bucketAllocator = new BucketAllocator(cacheCapacity, bucketSizes, backingMap, realCacheSize);
       blockNumber.add(backingMap.size());
+      if (offHeapIndex != null) {
+        unopenedRestoredFiles.addAll(offHeapIndex.getFileNames());
+      } else {
+        blocksByHFile.addAll(backingMap.keySet());
+        for (BlockCacheKey key : backingMap.keySet()) {
+          unopenedRestoredFiles.add(key.getHfileName());
+        }
+      }
+      LOG.info("Restored {} blocks of {} files from {}", backingMap.size(),
+        unopenedRestoredFiles.size(), persistencePath);
     }
   }
 
@@ -1286,7 +1421,12 @@ public class BucketCache implements BlockCache, HeapSize {
       throw new IOException("Class name for IO engine mismatch: " + ioclass + ", expected:"
         + ioEngine.getClass().getName());
     }
-    if (!backingMap.getClass().getName().equals(mapclass)) {
+    // Both maps persist their entries alike, so either restores what the other persisted
+    if (
+      !backingMap.getClass().getName().equals(mapclass)
+        && !ConcurrentHashMap.class.getName().equals(mapclass)
+        && !OffHeapBucketIndex.class.getName().equals(mapclass)
+    ) {
       throw new IOException("Class name for cache map mismatch: " + mapclass + ", expected:"
         + backingMap.getClass().getName());
     }
@@ -1296,13 +1436,20 @@ public class BucketCache implements BlockCache, HeapSize {
     if (proto.hasChecksum()) {
       ((PersistentIOEngine) ioEngine).verifyFileIntegrity(proto.getChecksum().toByteArray(),
         algorithm);
+    } else if (proto.hasLogSequence()) {
+      LOG.info("Restoring from a checkpoint of a cache which was not shut down cleanly");
     } else {
       // if has not checksum, it means the persistence file is old format
       LOG.info("Persistent file is old format, it does not support verifying file integrity!");
     }
     verifyCapacityAndClasses(proto.getCacheCapacity(), proto.getIoClass(), proto.getMapClass());
-    backingMap = BucketProtoUtils.fromPB(proto.getDeserializersMap(), proto.getBackingMap(),
-      this::createRecycler);
+    try {
+      BucketProtoUtils.fromPB(proto.getDeserializersMap(), proto.getBackingMap(), backingMap,
+        this::createRecycler);
+    } catch (IOException | RuntimeException e) {
+      backingMap.clear();
+      throw e;
+    }
   }
 
   /**
@@ -1355,6 +1502,9 @@ public class BucketCache implements BlockCache, HeapSize {
     if (ioEngine.isPersistent() && persistencePath != null) {
       try {
         join();
+        if (persister != null) {
+          persister.close();
+        }
         persistToFile();
       } catch (IOException ex) {
         LOG.error("Unable to persist data on exit: " + ex.toString(), ex);
@@ -1412,6 +1562,38 @@ public class BucketCache implements BlockCache, HeapSize {
     return algorithm;
   }
 
+  @Override
+  public void notifyFileOpened(String hfileName) {
+    unopenedRestoredFiles.remove(hfileName);
+  }
+
+  /**
+   * Evicts the blocks of the files restored from the persisted backing map which no reader opened
+   * since. The stores of such files were most likely moved to other servers, or the files were
+   * compacted away, so their blocks would never be read again.
+   */
+  void evictUnopenedRestoredFiles() {
+    int files = 0;
+    int blocks = 0;
+    for (Iterator<String> it = unopenedRestoredFiles.iterator(); it.hasNext();) {
+      String hfileName = it.next();
+      it.remove();
+      blocks += evictBlocksByHfileName(hfileName);
+      files++;
+    }
+    if (files > 0) {
+      LOG.info("Evicted {} restored blocks of {} files which were not opened", blocks, files);
+    }
+  }
+
+  private Collection<BlockCacheKey> getKeysOfFile(String hfileName) {
+    if (offHeapIndex != null) {
+      return offHeapIndex.getKeysOfFile(hfileName);
+    }
+    return blocksByHFile.subSet(new BlockCacheKey(hfileName, Long.MIN_VALUE), true,
+      new BlockCacheKey(hfileName, Long.MAX_VALUE), true);
+  }
+
   /**
    * Evicts all blocks for a specific HFile.
    * <p>
@@ -1420,8 +1602,7 @@ public class BucketCache implements BlockCache, HeapSize {
    */
   @Override
   public int evictBlocksByHfileName(String hfileName) {
-    Set<BlockCacheKey> keySet = blocksByHFile.subSet(new BlockCacheKey(hfileName, Long.MIN_VALUE),
-      true, new BlockCacheKey(hfileName, Long.MAX_VALUE), true);
+    Collection<BlockCacheKey> keySet = getKeysOfFile(hfileName);
 
     int numEvicted = 0;
     for (BlockCacheKey key : keySet) {
@@ -1433,6 +1614,33 @@ public class BucketCache implements BlockCache, HeapSize {
     return numEvicted;
   }
 
+  /**
+   * Returns the in-memory blocks of the given file in the cache and the ones read from the cache
+   * since they were cached, the in-memory blocks first, then the most recently accessed first. The
+   * blocks never read from the cache are left out, their priority does not tell them apart. Looked
+   * up in the blocks of the file only.
+   */
+  @Override
+  public List<CachedBlock> getBlocksOfFile(String hfileName) {
+    Collection<BlockCacheKey> keySet = getKeysOfFile(hfileName);
+    List<Map.Entry<BlockCacheKey, BucketEntry>> entries = new ArrayList<>();
+    for (BlockCacheKey key : keySet) {
+      BucketEntry entry = backingMap.get(key);
+      if (entry != null && (entry.isAccessed() || entry.getPriority() == BlockPriority.MEMORY)) {
+        entries.add(new AbstractMap.SimpleImmutableEntry<>(key, entry));
+      }
+    }
+    entries.sort(
+      Comparator.comparing((Map.Entry<BlockCacheKey, BucketEntry> e) -> e.getValue().getPriority())
+        .reversed().thenComparing(e -> e.getValue().getAccessCounter(), Comparator.reverseOrder()));
+    long now = System.nanoTime();
+    List<CachedBlock> blocks = new ArrayList<>(entries.size());
+    for (Map.Entry<BlockCacheKey, BucketEntry> e : entries) {
+      blocks.add(newCachedBlock(e.getKey(), e.getValue(), now));
+    }
+    return blocks;
+  }
+
   /**
    * Used to group bucket entries into priority buckets. There will be a BucketEntryGroup for each
    * priority (single, multi, memory). Once bucketed, the eviction algorithm takes the appropriate
@@ -1582,77 +1790,80 @@ public class BucketCache implements BlockCache, HeapSize {
       @Override
       public CachedBlock next() {
         final Map.Entry<BlockCacheKey, BucketEntry> e = i.next();
-        return new CachedBlock() {
-          @Override
-          public String toString() {
-            return BlockCacheUtil.toString(this, now);
-          }
+        return newCachedBlock(e.getKey(), e.getValue(), now);
+      }
 
-          @Override
-          public BlockPriority getBlockPriority() {
-            return e.getValue().getPriority();
-          }
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
 
-          @Override
-          public BlockType getBlockType() {
-            // Not held by BucketEntry. Could add it if wanted on BucketEntry creation.
-            return null;
-          }
+  private static CachedBlock newCachedBlock(BlockCacheKey key, BucketEntry entry, long now) {
+    return new CachedBlock() {
+      @Override
+      public String toString() {
+        return BlockCacheUtil.toString(this, now);
+      }
 
-          @Override
-          public long getOffset() {
-            return e.getKey().getOffset();
-          }
+      @Override
+      public BlockPriority getBlockPriority() {
+        return entry.getPriority();
+      }
 
-          @Override
-          public long getSize() {
-            return e.getValue().getLength();
-          }
+      @Override
+      public BlockType getBlockType() {
+        // Not held by BucketEntry. Could add it if wanted on BucketEntry creation.
+        return null;
+      }
 
-          @Override
-          public long getCachedTime() {
-            return e.getValue().getCachedTime();
-          }
+      @Override
+      public long getOffset() {
+        return key.getOffset();
+      }
 
-          @Override
-          public String getFilename() {
-            return e.getKey().getHfileName();
-          }
+      @Override
+      public long getSize() {
+        return entry.getLength();
+      }
 
-          @Override
-          public int compareTo(CachedBlock other) {
-            int diff = this.getFilename().compareTo(other.getFilename());
-            if (diff != 0) return diff;
+      @Override
+      public long getCachedTime() {
+        return entry.getCachedTime();
+      }
 
-            diff = Long.compare(this.getOffset(), other.getOffset());
-            if (diff != 0) return diff;
-            if (other.getCachedTime() < 0 || this.getCachedTime() < 0) {
-              throw new IllegalStateException(
-                "" + this.getCachedTime() + ", " + other.getCachedTime());
-            }
-            return Long.compare(other.getCachedTime(), this.getCachedTime());
-          }
+      @Override
+      public String getFilename() {
+        return key.getHfileName();
+      }
 
-          @Override
-          public int hashCode() {
-            return e.getKey().hashCode();
-          }
+      @Override
+      public int compareTo(CachedBlock other) {
+        int diff = this.getFilename().compareTo(other.getFilename());
+        if (diff != 0) return diff;
+
+        diff = Long.compare(this.getOffset(), other.getOffset());
+        if (diff != 0) return diff;
+        if (other.getCachedTime() < 0 || this.getCachedTime() < 0) {
+          throw new IllegalStateException("" + this.getCachedTime() + ", " + other.getCachedTime());
+        }
+        return Long.compare(other.getCachedTime(), this.getCachedTime());
+      }
 
-          @Override
-          public boolean equals(Object obj) {
-            if (obj instanceof CachedBlock) {
-              CachedBlock cb = (CachedBlock) obj;
-              return compareTo(cb) == 0;
-            } else {
-              return false;
-            }
-          }
-        };
+      @Override
+      public int hashCode() {
+        return key.hashCode();
       }
 
       @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
+      public boolean equals(Object obj) {
+        if (obj instanceof CachedBlock) {
+          CachedBlock cb = (CachedBlock) obj;
+          return compareTo(cb) == 0;
+        } else {
+          return false;
+        }
       }
     };
   }
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Decides which blocks read on a cache miss are written to the {@link BucketCache}. Without a
+ * policy every block missing in the cache is written to it, so a scan over more data than the cache
+ * holds replaces the whole working set.
+ * <p>
+ * Implementations are set with {@link BucketCache#ADMISSION_POLICY_CLASS_KEY} and must have a
+ * constructor taking the {@link org.apache.hadoop.conf.Configuration} and the number of blocks the
+ * cache holds when full, as a long. They are called concurrently from all reading threads.
+ */
+@InterfaceAudience.Private
+public interface BucketCacheAdmissionPolicy {
+
+  /**
+   * Records a lookup of the block, whether it was found in the cache or not.
+   */
+  void recordAccess(BlockCacheKey cacheKey);
+
+  /**
+   * Returns whether the block, just read from the file system after a cache miss, should be written
+   * to the cache.
+   */
+  boolean admit(BlockCacheKey cacheKey, Cacheable block);
+}
@@ -0,0 +1,417 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator.Recycler;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.protobuf.ProtobufMagic;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hbase.thirdparty.com.google.protobuf.InvalidProtocolBufferException;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.BucketCacheProtos;
+
+/**
+ * Checkpoints the backing map of a running {@link BucketCache}, so that a region server which
+ * crashes, or is killed before it could persist the whole map on shutdown, restarts with the blocks
+ * cached at its last checkpoint.
+ * <p>
+ * Every change of the backing map is appended to a checkpoint log, which is synced periodically.
+ * Once the logs hold more edits than the map has entries, the whole map is written as a new
+ * snapshot and the logs it covers are deleted. A restart reads the last snapshot and replays the
+ * logs following it.
+ * <p>
+ * An entry restored from a checkpoint must still point at its block in the IO engine. Blocks are
+ * synced to the IO engine before they are added to the map, so before they are logged. The space of
+ * an evicted block is only handed back to the allocator once its eviction has been synced to the
+ * log, so a block is never overwritten while a checkpoint on disk still refers to it.
+ */
+@InterfaceAudience.Private
+final class BucketCachePersister {
+  private static final Logger LOG = LoggerFactory.getLogger(BucketCachePersister.class);
+
+  /**
+   * A snapshot is not rewritten before the logs hold this many edits, however small the cache.
+   */
+  private static final long MIN_EDITS_PER_SNAPSHOT = 10000;
+
+  private final BucketCache cache;
+  private final String persistencePath;
+
+  /** Changes of the backing map not yet appended to the log */
+  private final Queue<Edit> edits = new ConcurrentLinkedQueue<>();
+  /** Evicted entries whose space is released once their eviction is logged */
+  private final Queue<BucketEntry> deferredFrees = new ConcurrentLinkedQueue<>();
+
+  /** Held while a snapshot is written, so that shutdown does not race with it */
+  private final Object snapshotLock = new Object();
+
+  private volatile boolean closed;
+  /** Sequence id of the open log, zero until the first snapshot is written */
+  private long logSequence;
+  private FileOutputStream logFile;
+  private BufferedOutputStream log;
+  private long editsSinceSnapshot;
+
+  BucketCachePersister(BucketCache cache, String persistencePath) {
+    this.cache = cache;
+    this.persistencePath = persistencePath;
+  }
+
+  /**
+   * Records an entry about to be put into the backing map. Called before the put, so that the
+   * eviction of the entry is always logged after it.
+   */
+  void cached(BlockCacheKey key, BucketEntry entry) {
+    if (!closed) {
+      edits.add(new Edit(key, entry, true));
+    }
+  }
+
+  /**
+   * Records an entry removed from the backing map. Called before the entry can be freed.
+   */
+  void evicted(BlockCacheKey key, BucketEntry entry) {
+    if (!closed) {
+      edits.add(new Edit(key, entry, false));
+    }
+  }
+
+  /**
+   * Holds back the space of an evicted entry until its eviction is logged.
+   * @return false if checkpoints stopped, in which case the caller frees the entry right away
+   */
+  boolean deferFree(BucketEntry entry) {
+    if (closed) {
+      return false;
+    }
+    deferredFrees.add(entry);
+    return true;
+  }
+
+  /**
+   * Syncs the edits logged since the last checkpoint, or writes a new snapshot once replaying the
+   * logs would cost more than reading one. Runs periodically on the scheduler of the cache.
+   */
+  void checkpoint() {
+    synchronized (snapshotLock) {
+      if (closed || !cache.isCacheEnabled()) {
+        return;
+      }
+      sync();
+      if (
+        logSequence == 0
+          || editsSinceSnapshot > Math.max(MIN_EDITS_PER_SNAPSHOT, cache.backingMap.size())
+      ) {
+        snapshot();
+      }
+    }
+  }
+
+  /**
+   * Appends the pending edits to the log and syncs it, then releases the space of the entries whose
+   * eviction is now logged.
+   */
+  synchronized void sync() {
+    if (closed) {
+      return;
+    }
+    // Take the entries to free first: their evictions were queued before them, so are synced below
+    List<BucketEntry> frees = drain(deferredFrees);
+    try {
+      appendEdits();
+    } catch (IOException e) {
+      abandon(e);
+    }
+    release(frees);
+  }
+
+  /**
+   * Writes the whole backing map as a new snapshot, which the edits logged from now on complete.
+   */
+  void snapshot() {
+    synchronized (snapshotLock) {
+      if (closed) {
+        return;
+      }
+      long start = EnvironmentEdgeManager.currentTime();
+      long sequence;
+      try {
+        sequence = rollLog();
+      } catch (IOException e) {
+        abandon(e);
+        return;
+      }
+      // The map may change while it is written out. Edits made from now on go to the new log, and
+      // replaying them on top of any state the snapshot caught for a key yields the latest state.
+      File tmp;
+      try {
+        tmp = writeSnapshotFile(persistencePath, BucketProtoUtils.toPB(cache, sequence));
+      } catch (IOException e) {
+        abandon(e);
+        return;
+      }
+      synchronized (this) {
+        // Checkpoints may have been abandoned meanwhile, after failing to append to the new log
+        if (closed) {
+          if (!tmp.delete()) {
+            LOG.warn("Failed deleting bucket cache snapshot {}", tmp);
+          }
+          return;
+        }
+        try {
+          moveSnapshotFile(tmp, persistencePath);
+        } catch (IOException e) {
+          abandon(e);
+          return;
+        }
+      }
+      deleteLogs(persistencePath, sequence);
+      LOG.debug("Wrote bucket cache snapshot of {} blocks to {} in {} ms", cache.backingMap.size(),
+        persistencePath, EnvironmentEdgeManager.currentTime() - start);
+    }
+  }
+
+  /**
+   * Stops checkpointing, waiting for a snapshot in progress. The cache then persists its whole map
+   * on shutdown.
+   */
+  void close() {
+    synchronized (snapshotLock) {
+      synchronized (this) {
+        closed = true;
+        closeLog();
+        release(drain(deferredFrees));
+        edits.clear();
+      }
+    }
+  }
+
+  private synchronized long rollLog() throws IOException {
+    List<BucketEntry> frees = drain(deferredFrees);
+    try {
+      appendEdits();
+    } finally {
+      release(frees);
+    }
+    closeLog();
+    long sequence = logSequence + 1;
+    File file = getLogFile(persistencePath, sequence);
+    logFile = new FileOutputStream(file, false);
+    log = new BufferedOutputStream(logFile);
+    log.write(ProtobufMagic.PB_MAGIC);
+    log.flush();
+    logFile.getFD().sync();
+    logSequence = sequence;
+    editsSinceSnapshot = 0;
+    return sequence;
+  }
+
+  private void appendEdits() throws IOException {
+    int count = 0;
+    for (Edit edit; (edit = edits.poll()) != null;) {
+      // Before the first snapshot there is no log, and nothing on disk the edit could complete
+      if (log != null) {
+        edit.toPB().writeDelimitedTo(log);
+        count++;
+      }
+    }
+    if (count > 0) {
+      log.flush();
+      logFile.getFD().sync();
+      editsSinceSnapshot += count;
+    }
+  }
+
+  /**
+   * Stops checkpointing after the log or a snapshot could not be written, deleting the checkpoint
+   * files as they may no longer match the cache.
+   */
+  private synchronized void abandon(IOException e) {
+    LOG.warn("Failed checkpointing bucket cache to {}, no more checkpoints until shutdown",
+      persistencePath, e);
+    closed = true;
+    closeLog();
+    if (!new File(persistencePath).delete()) {
+      LOG.warn("Failed deleting bucket cache snapshot {}", persistencePath);
+    }
+    deleteLogs(persistencePath, Long.MAX_VALUE);
+    release(drain(deferredFrees));
+    edits.clear();
+  }
+
+  private void closeLog() {
+    if (log != null) {
+      IOUtils.closeQuietly(log);
+      log = null;
+      logFile = null;
+    }
+  }
+
+  private void release(List<BucketEntry> entries) {
+    for (BucketEntry entry : entries) {
+      cache.releaseBucketEntry(entry);
+    }
+  }
+
+  private static <T> List<T> drain(Queue<T> queue) {
+    List<T> drained = new ArrayList<>();
+    for (T t; (t = queue.poll()) != null;) {
+      drained.add(t);
+    }
+    return drained;
+  }
+
+  static File getLogFile(String persistencePath, long sequence) {
+    return new File(persistencePath + ".log." + sequence);
+  }
+
+  /**
+   * Writes a snapshot next to the persistence file, then renames it over the file, so that a crash
+   * halfway leaves the previous snapshot in place.
+   */
+  static void writeSnapshot(String persistencePath, BucketCacheProtos.BucketCacheEntry snapshot)
+    throws IOException {
+    moveSnapshotFile(writeSnapshotFile(persistencePath, snapshot), persistencePath);
+  }
+
+  private static File writeSnapshotFile(String persistencePath,
+    BucketCacheProtos.BucketCacheEntry snapshot) throws IOException {
+    File tmp = new File(persistencePath + ".tmp");
+    try (FileOutputStream fos = new FileOutputStream(tmp, false)) {
+      fos.write(ProtobufMagic.PB_MAGIC);
+      snapshot.writeDelimitedTo(fos);
+      fos.getFD().sync();
+    }
+    return tmp;
+  }
+
+  private static void moveSnapshotFile(File tmp, String persistencePath) throws IOException {
+    Files.move(tmp.toPath(), new File(persistencePath).toPath(), StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Deletes the checkpoint logs with a sequence id lower than the given one.
+   */
+  static void deleteLogs(String persistencePath, long belowSequence) {
+    File persistenceFile = new File(persistencePath).getAbsoluteFile();
+    String prefix = persistenceFile.getName() + ".log.";
+    File[] logs = persistenceFile.getParentFile()
+      .listFiles((dir, name) -> name.startsWith(prefix) && isSequence(name, prefix.length()));
+    if (logs == null) {
+      return;
+    }
+    for (File log : logs) {
+      long sequence = Long.parseLong(log.getName().substring(prefix.length()));
+      if (sequence < belowSequence && !log.delete()) {
+        LOG.warn("Failed deleting bucket cache checkpoint log {}", log);
+      }
+    }
+  }
+
+  private static boolean isSequence(String name, int start) {
+    if (start == name.length() || name.length() - start > 18) {
+      return false;
+    }
+    for (int i = start; i < name.length(); i++) {
+      if (!Character.isDigit(name.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Replays the checkpoint logs following a snapshot on top of the backing map read from it.
+   * @return the number of edits replayed
+   */
+  static long replayLogs(String persistencePath, long fromSequence,
+    Map<Integer, String> deserializers, Map<BlockCacheKey, BucketEntry> backingMap,
+    Function<BucketEntry, Recycler> createRecycler) throws IOException {
+    long replayed = 0;
+    for (long sequence = fromSequence;; sequence++) {
+      File logFile = getLogFile(persistencePath, sequence);
+      if (!logFile.exists()) {
+        return replayed;
+      }
+      try (InputStream in = new BufferedInputStream(new FileInputStream(logFile))) {
+        byte[] magic = new byte[ProtobufMagic.lengthOfPBMagic()];
+        if (IOUtils.read(in, magic) < magic.length) {
+          // Crashed while creating the log, nothing was logged to it
+          continue;
+        }
+        if (!ProtobufMagic.isPBMagicPrefix(magic)) {
+          throw new IOException(
+            "Checkpoint log does not start with protobuf magic number. " + logFile);
+        }
+        while (true) {
+          BucketCacheProtos.BackingMapEdit edit;
+          try {
+            edit = BucketCacheProtos.BackingMapEdit.parseDelimitedFrom(in);
+          } catch (InvalidProtocolBufferException e) {
+            // The tail of the last log, cut short by a crash while appending to it
+            LOG.info("Ignoring truncated edit at the end of {}", logFile);
+            break;
+          }
+          if (edit == null) {
+            break;
+          }
+          BucketProtoUtils.applyEdit(deserializers, edit, backingMap, createRecycler);
+          replayed++;
+        }
+      }
+    }
+  }
+
+  private static final class Edit {
+    private final BlockCacheKey key;
+    private final BucketEntry entry;
+    private final boolean cached;
+
+    Edit(BlockCacheKey key, BucketEntry entry, boolean cached) {
+      this.key = key;
+      this.entry = entry;
+      this.cached = cached;
+    }
+
+    BucketCacheProtos.BackingMapEdit toPB() {
+      return cached
+        ? BucketProtoUtils.toCachedPB(key, entry)
+        : BucketProtoUtils.toEvictedPB(key, entry);
+    }
+  }
+}
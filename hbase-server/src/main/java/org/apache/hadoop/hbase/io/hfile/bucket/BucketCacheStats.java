@@ -36,6 +36,10 @@ public class BucketCacheStats extends CacheStats {
   /* Tracing failed Bucket Cache allocations. */
   private LongAdder allocationFailCount = new LongAdder();
 
+  /* Blocks read on a miss that the admission policy let into, or kept out of, the cache. */
+  private final LongAdder admittedCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+
   BucketCacheStats() {
     super("BucketCache");
 
@@ -45,7 +49,8 @@ public class BucketCacheStats extends CacheStats {
   @Override
   public String toString() {
     return super.toString() + ", ioHitsPerSecond=" + getIOHitsPerSecond() + ", ioTimePerHit="
-      + getIOTimePerHit() + ", allocationFailCount=" + getAllocationFailCount();
+      + getIOTimePerHit() + ", allocationFailCount=" + getAllocationFailCount() + ", admittedCount="
+      + getAdmittedCount() + ", rejectedCount=" + getRejectedCount();
   }
 
   public void ioHit(long time) {
@@ -70,6 +75,8 @@ public class BucketCacheStats extends CacheStats {
     ioHitCount.reset();
     ioHitTime.reset();
     allocationFailCount.reset();
+    admittedCount.reset();
+    rejectedCount.reset();
   }
 
   public long getAllocationFailCount() {
@@ -79,4 +86,20 @@ public class BucketCacheStats extends CacheStats {
   public void allocationFailed() {
     allocationFailCount.increment();
   }
+
+  public long getAdmittedCount() {
+    return admittedCount.sum();
+  }
+
+  public void admitted() {
+    admittedCount.increment();
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  public void rejected() {
+    rejectedCount.increment();
+  }
 }
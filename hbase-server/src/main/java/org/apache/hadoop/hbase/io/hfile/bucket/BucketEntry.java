@@ -60,6 +60,9 @@ class BucketEntry implements HBaseReferenceCounted {
 
   private volatile long accessCounter;
   private BlockPriority priority;
+  // Whether the block was read from the cache since it was cached. The entries all start as multi
+  // access ones, so the priority does not tell the blocks read more than once apart.
+  private volatile boolean accessed;
 
   /**
    * <pre>
@@ -91,7 +94,7 @@ class BucketEntry implements HBaseReferenceCounted {
   /**
    * Time this block was cached. Presumes we are created just before we are added to the cache.
    */
-  private final long cachedTime = System.nanoTime();
+  private final long cachedTime;
 
   /**
    * @param createRecycler used to free this {@link BucketEntry} when {@link BucketEntry#refCnt}
@@ -99,6 +102,14 @@ class BucketEntry implements HBaseReferenceCounted {
    *                       for test.
    */
   BucketEntry(long offset, int length, long accessCounter, boolean inMemory,
+    Function<BucketEntry, Recycler> createRecycler, ByteBuffAllocator allocator) {
+    this(offset, length, accessCounter, inMemory, System.nanoTime(), createRecycler, allocator);
+  }
+
+  /**
+   * @param cachedTime time the block was cached, in {@link System#nanoTime()} units
+   */
+  BucketEntry(long offset, int length, long accessCounter, boolean inMemory, long cachedTime,
     Function<BucketEntry, Recycler> createRecycler, ByteBuffAllocator allocator) {
     if (createRecycler == null) {
       throw new IllegalArgumentException("createRecycler could not be null!");
@@ -107,6 +118,7 @@ class BucketEntry implements HBaseReferenceCounted {
     this.length = length;
     this.accessCounter = accessCounter;
     this.priority = inMemory ? BlockPriority.MEMORY : BlockPriority.MULTI;
+    this.cachedTime = cachedTime;
     this.refCnt = RefCnt.create(createRecycler.apply(this));
 
     this.markedAsEvicted = new AtomicBoolean(false);
@@ -150,11 +162,16 @@ class BucketEntry implements HBaseReferenceCounted {
    */
   void access(long accessCounter) {
     this.accessCounter = accessCounter;
+    this.accessed = true;
     if (this.priority == BlockPriority.SINGLE) {
       this.priority = BlockPriority.MULTI;
     }
   }
 
+  boolean isAccessed() {
+    return accessed;
+  }
+
   public BlockPriority getPriority() {
     return this.priority;
   }
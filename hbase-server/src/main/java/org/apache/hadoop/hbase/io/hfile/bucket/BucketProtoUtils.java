@@ -19,7 +19,6 @@ package org.apache.hadoop.hbase.io.hfile.bucket;
 
 import java.io.IOException;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import org.apache.hadoop.hbase.io.ByteBuffAllocator;
 import org.apache.hadoop.hbase.io.ByteBuffAllocator.Recycler;
@@ -41,16 +40,38 @@ final class BucketProtoUtils {
   }
 
   static BucketCacheProtos.BucketCacheEntry toPB(BucketCache cache) {
+    return newBuilder(cache)
+      .setChecksum(ByteString
+        .copyFrom(((PersistentIOEngine) cache.ioEngine).calculateChecksum(cache.getAlgorithm())))
+      .build();
+  }
+
+  /**
+   * Returns a checkpoint of a running cache, to be completed by the checkpoint logs starting at the
+   * given sequence id.
+   */
+  static BucketCacheProtos.BucketCacheEntry toPB(BucketCache cache, long logSequence) {
+    return newBuilder(cache).setLogSequence(logSequence).build();
+  }
+
+  private static BucketCacheProtos.BucketCacheEntry.Builder newBuilder(BucketCache cache) {
     return BucketCacheProtos.BucketCacheEntry.newBuilder().setCacheCapacity(cache.getMaxSize())
       .setIoClass(cache.ioEngine.getClass().getName())
       .setMapClass(cache.backingMap.getClass().getName())
       .putAllDeserializers(CacheableDeserializerIdManager.save())
-      .setBackingMap(BucketProtoUtils.toPB(cache.backingMap))
-      .setChecksum(ByteString
-        .copyFrom(((PersistentIOEngine) cache.ioEngine).calculateChecksum(cache.getAlgorithm())))
+      .setBackingMap(BucketProtoUtils.toPB(cache.backingMap));
+  }
+
+  static BucketCacheProtos.BackingMapEdit toCachedPB(BlockCacheKey key, BucketEntry entry) {
+    return BucketCacheProtos.BackingMapEdit.newBuilder().setKey(toPB(key)).setValue(toPB(entry))
       .build();
   }
 
+  static BucketCacheProtos.BackingMapEdit toEvictedPB(BlockCacheKey key, BucketEntry entry) {
+    return BucketCacheProtos.BackingMapEdit.newBuilder().setKey(toPB(key))
+      .setEvictedOffset(entry.offset()).build();
+  }
+
   private static BucketCacheProtos.BackingMap toPB(Map<BlockCacheKey, BucketEntry> backingMap) {
     BucketCacheProtos.BackingMap.Builder builder = BucketCacheProtos.BackingMap.newBuilder();
     for (Map.Entry<BlockCacheKey, BucketEntry> entry : backingMap.entrySet()) {
@@ -116,39 +137,64 @@ final class BucketProtoUtils {
     }
   }
 
-  static ConcurrentHashMap<BlockCacheKey, BucketEntry> fromPB(Map<Integer, String> deserializers,
-    BucketCacheProtos.BackingMap backingMap, Function<BucketEntry, Recycler> createRecycler)
+  /**
+   * Restores the persisted backing map into the given one.
+   */
+  static void fromPB(Map<Integer, String> deserializers, BucketCacheProtos.BackingMap backingMap,
+    Map<BlockCacheKey, BucketEntry> result, Function<BucketEntry, Recycler> createRecycler)
     throws IOException {
-    ConcurrentHashMap<BlockCacheKey, BucketEntry> result = new ConcurrentHashMap<>();
     for (BucketCacheProtos.BackingMapEntry entry : backingMap.getEntryList()) {
-      BucketCacheProtos.BlockCacheKey protoKey = entry.getKey();
-      BlockCacheKey key = new BlockCacheKey(protoKey.getHfilename(), protoKey.getOffset(),
-        protoKey.getPrimaryReplicaBlock(), fromPb(protoKey.getBlockType()));
-      BucketCacheProtos.BucketEntry protoValue = entry.getValue();
-      // TODO:We use ByteBuffAllocator.HEAP here, because we could not get the ByteBuffAllocator
-      // which created by RpcServer elegantly.
-      BucketEntry value = new BucketEntry(protoValue.getOffset(), protoValue.getLength(),
-        protoValue.getAccessCounter(),
+      result.put(fromPB(entry.getKey()), fromPB(deserializers, entry.getValue(), createRecycler));
+    }
+  }
+
+  /**
+   * Applies an edit read from a checkpoint log to the restored backing map.
+   */
+  static void applyEdit(Map<Integer, String> deserializers, BucketCacheProtos.BackingMapEdit edit,
+    Map<BlockCacheKey, BucketEntry> backingMap, Function<BucketEntry, Recycler> createRecycler)
+    throws IOException {
+    BlockCacheKey key = fromPB(edit.getKey());
+    if (edit.hasValue()) {
+      backingMap.put(key, fromPB(deserializers, edit.getValue(), createRecycler));
+    } else {
+      BucketEntry entry = backingMap.get(key);
+      if (entry != null && entry.offset() == edit.getEvictedOffset()) {
+        backingMap.remove(key);
+      }
+    }
+  }
+
+  private static BlockCacheKey fromPB(BucketCacheProtos.BlockCacheKey protoKey) {
+    return new BlockCacheKey(protoKey.getHfilename(), protoKey.getOffset(),
+      protoKey.getPrimaryReplicaBlock(), fromPb(protoKey.getBlockType()));
+  }
+
+  private static BucketEntry fromPB(Map<Integer, String> deserializers,
+    BucketCacheProtos.BucketEntry protoValue, Function<BucketEntry, Recycler> createRecycler)
+    throws IOException {
+    // TODO:We use ByteBuffAllocator.HEAP here, because we could not get the ByteBuffAllocator
+    // which created by RpcServer elegantly.
+    BucketEntry value =
+      new BucketEntry(protoValue.getOffset(), protoValue.getLength(), protoValue.getAccessCounter(),
         protoValue.getPriority() == BucketCacheProtos.BlockPriority.memory, createRecycler,
         ByteBuffAllocator.HEAP);
-      // This is the deserializer that we stored
-      int oldIndex = protoValue.getDeserialiserIndex();
-      String deserializerClass = deserializers.get(oldIndex);
-      if (deserializerClass == null) {
-        throw new IOException("Found deserializer index without matching entry.");
-      }
-      // Convert it to the identifier for the deserializer that we have in this runtime
-      if (deserializerClass.equals(HFileBlock.BlockDeserializer.class.getName())) {
-        int actualIndex = HFileBlock.BLOCK_DESERIALIZER.getDeserializerIdentifier();
-        value.deserializerIndex = (byte) actualIndex;
-      } else {
-        // We could make this more plugable, but right now HFileBlock is the only implementation
-        // of Cacheable outside of tests, so this might not ever matter.
-        throw new IOException("Unknown deserializer class found: " + deserializerClass);
-      }
-      result.put(key, value);
+    // This is the deserializer that we stored
+    int oldIndex = protoValue.getDeserialiserIndex();
+    String deserializerClass = deserializers.get(oldIndex);
+    if (deserializerClass == null) {
+      throw new IOException("Found deserializer index without matching entry.");
+    }
+    // Convert it to the identifier for the deserializer that we have in this runtime
+    if (deserializerClass.equals(HFileBlock.BlockDeserializer.class.getName())) {
+      int actualIndex = HFileBlock.BLOCK_DESERIALIZER.getDeserializerIdentifier();
+      value.deserializerIndex = (byte) actualIndex;
+    } else {
+      // We could make this more plugable, but right now HFileBlock is the only implementation
+      // of Cacheable outside of tests, so this might not ever matter.
+      throw new IOException("Unknown deserializer class found: " + deserializerClass);
     }
-    return result;
+    return value;
   }
 
   private static BlockType fromPb(BucketCacheProtos.BlockType blockType) {
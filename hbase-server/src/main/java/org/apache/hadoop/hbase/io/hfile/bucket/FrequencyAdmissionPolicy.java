@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockFrequencySketch;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Admits a block once it was looked up a minimum number of times recently, two by default, i.e. on
+ * its second access. Lookups are counted in a {@link BlockFrequencySketch}, in the spirit of
+ * TinyLFU, so the history of blocks which were never cached costs no more than a few bits each.
+ * Blocks read once, like those of a full table scan, are then never written to the cache.
+ */
+@InterfaceAudience.Private
+public class FrequencyAdmissionPolicy implements BucketCacheAdmissionPolicy {
+
+  /** Lookups of a block, including the one which missed, before it is admitted */
+  public static final String MIN_ACCESSES_KEY = "hbase.bucketcache.admission.min.accesses";
+  public static final int DEFAULT_MIN_ACCESSES = 2;
+
+  /**
+   * Blocks the sketch is sized for. The sketch takes about eight bytes per block, so it is capped
+   * rather than sized to the whole cache, which may hold tens of millions of blocks.
+   */
+  public static final String SKETCH_BLOCKS_KEY = "hbase.bucketcache.admission.sketch.blocks";
+  public static final long DEFAULT_SKETCH_BLOCKS = 4L * 1024 * 1024;
+
+  private final BlockFrequencySketch sketch;
+  private final int minAccesses;
+
+  public FrequencyAdmissionPolicy(Configuration conf, long blockCapacity) {
+    this.minAccesses = conf.getInt(MIN_ACCESSES_KEY, DEFAULT_MIN_ACCESSES);
+    this.sketch = new BlockFrequencySketch(
+      Math.min(blockCapacity, conf.getLong(SKETCH_BLOCKS_KEY, DEFAULT_SKETCH_BLOCKS)));
+  }
+
+  @Override
+  public void recordAccess(BlockCacheKey cacheKey) {
+    sketch.increment(cacheKey);
+  }
+
+  @Override
+  public boolean admit(BlockCacheKey cacheKey, Cacheable block) {
+    return sketch.frequency(cacheKey) >= minAccesses;
+  }
+}
@@ -0,0 +1,698 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator.Recycler;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.UnsafeAccess;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A backing map of the {@link BucketCache} keeping its entries off heap. The map of a large file
+ * cache holds tens of millions of entries, each costing a map node, a {@link BlockCacheKey} and a
+ * {@link BucketEntry} with its reference count on heap. Here an entry is a slot of five longs in
+ * direct memory instead:
+ *
+ * <pre>
+ *   file id (32 bits) | block length (32 bits)
+ *   offset of the block in the file
+ *   bucket offset / 256 (40 bits) | deserializer (8) | block type (8) | primary, in memory, accessed
+ *   access counter
+ *   time the block was cached, in nanoseconds
+ * </pre>
+ *
+ * The slots are split in segments, each an open addressing hash table with linear probing, grown by
+ * doubling and guarded by a lock of its own. Files get an id when their first block is cached,
+ * dropped with their last block, so the name of a file is kept once on heap, not once per block.
+ * <p>
+ * {@link #get(Object)} and iteration return {@link BucketEntry} views of the slots, created on each
+ * call, so the entries of this map are neither reference counted nor identical from one call to the
+ * next: a view equals the entry it was created from if they locate the same bucket space, and
+ * {@link #remove(Object, Object)} removes an entry only if it still locates the bucket space of the
+ * given one. The map is therefore only used with IO engines which do not share their memory with
+ * the blocks read from them, so that an entry is only ever referenced by the map. A view records
+ * the accesses to its block in the slot it was created from.
+ * <p>
+ * The blocks of a file are looked up by scanning the segments, so evicting the blocks of a file
+ * costs a pass over the whole index rather than a lookup in a sorted set of all the keys.
+ */
+@InterfaceAudience.Private
+class OffHeapBucketIndex extends AbstractMap<BlockCacheKey, BucketEntry> {
+
+  static final int SEGMENTS = 128;
+  static final int MIN_SEGMENT_CAPACITY = 256;
+  // keeps a segment below 2GB of direct memory
+  static final int MAX_SEGMENT_CAPACITY = 1 << 25;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  static final int SLOT_LONGS = 5;
+  static final int SLOT_SIZE = SLOT_LONGS * Bytes.SIZEOF_LONG;
+
+  // longs of a slot
+  private static final int FILE_AND_LENGTH = 0;
+  private static final int BLOCK_OFFSET = 1;
+  private static final int BUCKET_OFFSET_AND_FLAGS = 2;
+  private static final int ACCESS_COUNTER = 3;
+  private static final int CACHED_TIME = 4;
+
+  // flags of a slot
+  private static final long ACCESSED = 1;
+  private static final long IN_MEMORY = 1 << 1;
+  private static final long PRIMARY = 1 << 2;
+  private static final int BLOCK_TYPE_SHIFT = 8;
+  private static final int DESERIALIZER_SHIFT = 16;
+  private static final int BUCKET_OFFSET_SHIFT = 24;
+  private static final int NO_BLOCK_TYPE = 0xFF;
+  private static final BlockType[] BLOCK_TYPES = BlockType.values();
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  private final ConcurrentHashMap<String, CachedFile> filesByName = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Integer, CachedFile> filesById = new ConcurrentHashMap<>();
+  private final AtomicInteger lastFileId = new AtomicInteger();
+
+  private final Function<BucketEntry, Recycler> createRecycler;
+  // All the blocks of a server are allocated by the allocator of its RPC server, so the views use
+  // the allocator of the last entry put
+  private volatile ByteBuffAllocator allocator = ByteBuffAllocator.HEAP;
+
+  OffHeapBucketIndex(Function<BucketEntry, Recycler> createRecycler) {
+    this.createRecycler = createRecycler;
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  /**
+   * A file with blocks in the index.
+   */
+  private static final class CachedFile {
+    final int id;
+    final String name;
+    // blocks of the file in the index, -1 once the file is dropped from the index
+    final AtomicInteger blocks = new AtomicInteger();
+
+    CachedFile(int id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  /**
+   * Returns the file of the given name, with one more block counted, which the caller must
+   * {@link #release(CachedFile)} if it does not add a block of the file.
+   */
+  private CachedFile retain(String name) {
+    for (;;) {
+      CachedFile file = filesByName.computeIfAbsent(name, n -> {
+        CachedFile f = new CachedFile(lastFileId.incrementAndGet(), n);
+        filesById.put(f.id, f);
+        return f;
+      });
+      int blocks = file.blocks.get();
+      if (blocks < 0) {
+        // dropped, but not removed yet
+        filesByName.remove(name, file);
+      } else if (file.blocks.compareAndSet(blocks, blocks + 1)) {
+        return file;
+      }
+    }
+  }
+
+  private void release(CachedFile file) {
+    if (file.blocks.decrementAndGet() == 0 && file.blocks.compareAndSet(0, -1)) {
+      filesByName.remove(file.name, file);
+      filesById.remove(file.id, file);
+    }
+  }
+
+  private static long hash(int fileId, long blockOffset) {
+    long h = blockOffset * 0x9E3779B97F4A7C15L + fileId;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private Segment segmentFor(long hash) {
+    return segments[(int) (hash >>> 57)];
+  }
+
+  private static long packFlags(BlockCacheKey key, BucketEntry entry) {
+    long bucketOffset = entry.offset();
+    if (bucketOffset >>> 48 != 0) {
+      throw new IllegalArgumentException("Bucket offset " + bucketOffset + " out of range");
+    }
+    BlockType blockType = key.getBlockType();
+    long flags = (bucketOffset >>> 8) << BUCKET_OFFSET_SHIFT;
+    flags |= (entry.deserializerIndex & 0xFFL) << DESERIALIZER_SHIFT;
+    flags |= (long) (blockType != null ? blockType.ordinal() : NO_BLOCK_TYPE) << BLOCK_TYPE_SHIFT;
+    if (key.isPrimary()) {
+      flags |= PRIMARY;
+    }
+    if (entry.getPriority() == BlockPriority.MEMORY) {
+      flags |= IN_MEMORY;
+    }
+    if (entry.isAccessed()) {
+      flags |= ACCESSED;
+    }
+    return flags;
+  }
+
+  private static long bucketOffset(long flags) {
+    return (flags >>> BUCKET_OFFSET_SHIFT) << 8;
+  }
+
+  private BlockCacheKey toKey(CachedFile file, long[] slot) {
+    long flags = slot[BUCKET_OFFSET_AND_FLAGS];
+    int blockType = (int) (flags >>> BLOCK_TYPE_SHIFT) & 0xFF;
+    return new BlockCacheKey(file.name, slot[BLOCK_OFFSET], (flags & PRIMARY) != 0,
+      blockType == NO_BLOCK_TYPE ? null : BLOCK_TYPES[blockType]);
+  }
+
+  private BucketEntry toEntry(long[] slot) {
+    return new IndexedBucketEntry(this, slot, createRecycler, allocator);
+  }
+
+  @Override
+  public BucketEntry get(Object key) {
+    long[] slot = getSlot(key);
+    return slot != null ? toEntry(slot) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return getSlot(key) != null;
+  }
+
+  private long[] getSlot(Object key) {
+    if (!(key instanceof BlockCacheKey)) {
+      return null;
+    }
+    BlockCacheKey cacheKey = (BlockCacheKey) key;
+    CachedFile file = filesByName.get(cacheKey.getHfileName());
+    if (file == null) {
+      return null;
+    }
+    long hash = hash(file.id, cacheKey.getOffset());
+    return segmentFor(hash).get(hash, file.id, cacheKey.getOffset());
+  }
+
+  @Override
+  public BucketEntry put(BlockCacheKey key, BucketEntry entry) {
+    CachedFile file = retain(key.getHfileName());
+    long hash = hash(file.id, key.getOffset());
+    long[] slot = new long[SLOT_LONGS];
+    slot[FILE_AND_LENGTH] = ((long) file.id << 32) | (entry.getLength() & 0xFFFFFFFFL);
+    slot[BLOCK_OFFSET] = key.getOffset();
+    slot[BUCKET_OFFSET_AND_FLAGS] = packFlags(key, entry);
+    slot[ACCESS_COUNTER] = entry.getAccessCounter();
+    slot[CACHED_TIME] = entry.getCachedTime();
+    long[] previous;
+    try {
+      previous = segmentFor(hash).put(hash, slot);
+    } catch (RuntimeException e) {
+      release(file);
+      throw e;
+    }
+    allocator = entry.allocator;
+    if (previous == null) {
+      return null;
+    }
+    // the replaced entry counted the block already
+    release(file);
+    return toEntry(previous);
+  }
+
+  @Override
+  public BucketEntry remove(Object key) {
+    long[] slot = removeSlot(key, -1);
+    return slot != null ? toEntry(slot) : null;
+  }
+
+  /**
+   * Removes the entry of the key if it locates the same bucket space as the given entry.
+   */
+  @Override
+  public boolean remove(Object key, Object value) {
+    return value instanceof BucketEntry && removeSlot(key, ((BucketEntry) value).offset()) != null;
+  }
+
+  private long[] removeSlot(Object key, long bucketOffset) {
+    if (!(key instanceof BlockCacheKey)) {
+      return null;
+    }
+    BlockCacheKey cacheKey = (BlockCacheKey) key;
+    CachedFile file = filesByName.get(cacheKey.getHfileName());
+    if (file == null) {
+      return null;
+    }
+    long hash = hash(file.id, cacheKey.getOffset());
+    long[] slot = segmentFor(hash).remove(hash, file.id, cacheKey.getOffset(), bucketOffset);
+    if (slot != null) {
+      release(file);
+    }
+    return slot;
+  }
+
+  /**
+   * Records an access to the block of the given view, if its slot still locates the same bucket
+   * space.
+   */
+  void access(IndexedBucketEntry entry, long accessCounter) {
+    long hash = hash(entry.fileId, entry.blockOffset);
+    segmentFor(hash).access(hash, entry.fileId, entry.blockOffset, entry.offset(), accessCounter);
+  }
+
+  @Override
+  public int size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size;
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+    filesByName.clear();
+    filesById.clear();
+  }
+
+  /** Returns the names of the files with blocks in the index */
+  Set<String> getFileNames() {
+    return Collections.unmodifiableSet(filesByName.keySet());
+  }
+
+  /** Returns the keys of the blocks of the given file, found by a pass over the index */
+  List<BlockCacheKey> getKeysOfFile(String hfileName) {
+    CachedFile file = filesByName.get(hfileName);
+    if (file == null) {
+      return Collections.emptyList();
+    }
+    List<BlockCacheKey> keys = new ArrayList<>();
+    for (Segment segment : segments) {
+      for (long[] slot : segment.slotsOfFile(file.id)) {
+        keys.add(toKey(file, slot));
+      }
+      if (keys.size() >= file.blocks.get()) {
+        break;
+      }
+    }
+    return keys;
+  }
+
+  /** Returns the direct memory held by the index */
+  long getOffHeapSize() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.capacity() * (long) SLOT_SIZE;
+    }
+    return size;
+  }
+
+  @Override
+  public Set<Entry<BlockCacheKey, BucketEntry>> entrySet() {
+    return new AbstractSet<Entry<BlockCacheKey, BucketEntry>>() {
+      @Override
+      public Iterator<Entry<BlockCacheKey, BucketEntry>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return OffHeapBucketIndex.this.size();
+      }
+    };
+  }
+
+  /**
+   * Iterates over a copy of the slots of one segment at a time, so it neither blocks the segments
+   * nor fails on concurrent changes, but may miss the changes to the segments it already copied.
+   */
+  private final class EntryIterator implements Iterator<Entry<BlockCacheKey, BucketEntry>> {
+    private int nextSegment = 0;
+    private long[] slots = new long[0];
+    private int nextSlot = 0;
+    private Entry<BlockCacheKey, BucketEntry> next;
+    private Entry<BlockCacheKey, BucketEntry> last;
+
+    @Override
+    public boolean hasNext() {
+      while (next == null) {
+        if (nextSlot * SLOT_LONGS >= slots.length) {
+          if (nextSegment == segments.length) {
+            return false;
+          }
+          slots = segments[nextSegment++].copySlots();
+          nextSlot = 0;
+          continue;
+        }
+        long[] slot = new long[SLOT_LONGS];
+        System.arraycopy(slots, nextSlot++ * SLOT_LONGS, slot, 0, SLOT_LONGS);
+        CachedFile file = filesById.get((int) (slot[FILE_AND_LENGTH] >>> 32));
+        // the file is gone if all its blocks were removed since the copy
+        if (file != null) {
+          next = new SimpleImmutableEntry<>(toKey(file, slot), toEntry(slot));
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public Entry<BlockCacheKey, BucketEntry> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      next = null;
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      OffHeapBucketIndex.this.remove(last.getKey(), last.getValue());
+      last = null;
+    }
+  }
+
+  /**
+   * An open addressing hash table of slots in direct memory, with linear probing.
+   */
+  private static final class Segment {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private ByteBuffer slots;
+    private int mask;
+    private volatile int size;
+
+    Segment() {
+      allocate(MIN_SEGMENT_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+      slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+      mask = capacity - 1;
+    }
+
+    int capacity() {
+      lock.readLock().lock();
+      try {
+        return mask + 1;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private long getLong(int index, int field) {
+      return slots.getLong(index * SLOT_SIZE + field * Bytes.SIZEOF_LONG);
+    }
+
+    private void putLong(int index, int field, long value) {
+      slots.putLong(index * SLOT_SIZE + field * Bytes.SIZEOF_LONG, value);
+    }
+
+    private long[] read(int index) {
+      long[] slot = new long[SLOT_LONGS];
+      for (int i = 0; i < SLOT_LONGS; i++) {
+        slot[i] = getLong(index, i);
+      }
+      return slot;
+    }
+
+    private void write(int index, long[] slot) {
+      for (int i = 0; i < SLOT_LONGS; i++) {
+        putLong(index, i, slot[i]);
+      }
+    }
+
+    private boolean isEmpty(int index) {
+      return getLong(index, FILE_AND_LENGTH) == 0;
+    }
+
+    private int home(int index) {
+      return (int) hash((int) (getLong(index, FILE_AND_LENGTH) >>> 32),
+        getLong(index, BLOCK_OFFSET)) & mask;
+    }
+
+    /** Returns the index of the slot of the given block, or -1 */
+    private int find(long hash, int fileId, long blockOffset) {
+      for (int i = (int) hash & mask;; i = (i + 1) & mask) {
+        long fileAndLength = getLong(i, FILE_AND_LENGTH);
+        if (fileAndLength == 0) {
+          return -1;
+        }
+        if ((int) (fileAndLength >>> 32) == fileId && getLong(i, BLOCK_OFFSET) == blockOffset) {
+          return i;
+        }
+      }
+    }
+
+    long[] get(long hash, int fileId, long blockOffset) {
+      lock.readLock().lock();
+      try {
+        int index = find(hash, fileId, blockOffset);
+        return index >= 0 ? read(index) : null;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    /** Returns the slot replaced, if any */
+    long[] put(long hash, long[] slot) {
+      int fileId = (int) (slot[FILE_AND_LENGTH] >>> 32);
+      lock.writeLock().lock();
+      try {
+        int index = find(hash, fileId, slot[BLOCK_OFFSET]);
+        if (index >= 0) {
+          long[] previous = read(index);
+          write(index, slot);
+          return previous;
+        }
+        if (size + 1 > (mask + 1) * LOAD_FACTOR) {
+          grow();
+        }
+        index = (int) hash & mask;
+        while (!isEmpty(index)) {
+          index = (index + 1) & mask;
+        }
+        write(index, slot);
+        size++;
+        return null;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    /**
+     * Removes the slot of the given block, if its bucket offset is the given one, or whatever it is
+     * if the given one is negative.
+     */
+    long[] remove(long hash, int fileId, long blockOffset, long bucketOffset) {
+      lock.writeLock().lock();
+      try {
+        int index = find(hash, fileId, blockOffset);
+        if (index < 0) {
+          return null;
+        }
+        long[] slot = read(index);
+        if (bucketOffset >= 0 && bucketOffset(slot[BUCKET_OFFSET_AND_FLAGS]) != bucketOffset) {
+          return null;
+        }
+        delete(index);
+        size--;
+        return slot;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    /**
+     * Empties a slot, moving back the following slots of the probe sequence which could not be
+     * placed closer to their home slot, so that lookups never stop short of them.
+     */
+    private void delete(int index) {
+      int hole = index;
+      for (int i = (hole + 1) & mask; !isEmpty(i); i = (i + 1) & mask) {
+        int home = home(i);
+        // the slot stays if its home is cyclically in (hole, i]
+        boolean stays = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);
+        if (!stays) {
+          write(hole, read(i));
+          hole = i;
+        }
+      }
+      for (int i = 0; i < SLOT_LONGS; i++) {
+        putLong(hole, i, 0);
+      }
+    }
+
+    private void grow() {
+      int capacity = mask + 1;
+      if (capacity >= MAX_SEGMENT_CAPACITY) {
+        throw new IllegalStateException("Off-heap bucket index segment full at " + size);
+      }
+      ByteBuffer old = slots;
+      int oldCapacity = capacity;
+      allocate(capacity * 2);
+      for (int i = 0; i < oldCapacity; i++) {
+        long fileAndLength = old.getLong(i * SLOT_SIZE);
+        if (fileAndLength == 0) {
+          continue;
+        }
+        long blockOffset = old.getLong(i * SLOT_SIZE + BLOCK_OFFSET * Bytes.SIZEOF_LONG);
+        int index = (int) hash((int) (fileAndLength >>> 32), blockOffset) & mask;
+        while (!isEmpty(index)) {
+          index = (index + 1) & mask;
+        }
+        for (int j = 0; j < SLOT_LONGS; j++) {
+          putLong(index, j, old.getLong(i * SLOT_SIZE + j * Bytes.SIZEOF_LONG));
+        }
+      }
+      UnsafeAccess.freeDirectBuffer(old);
+    }
+
+    void access(long hash, int fileId, long blockOffset, long bucketOffset, long accessCounter) {
+      // The access counter and the accessed flag are only ever raised, and no slot moves while the
+      // read lock is held, so concurrent accesses need no more than the read lock
+      lock.readLock().lock();
+      try {
+        int index = find(hash, fileId, blockOffset);
+        if (index < 0) {
+          return;
+        }
+        long flags = getLong(index, BUCKET_OFFSET_AND_FLAGS);
+        if (bucketOffset(flags) == bucketOffset) {
+          putLong(index, BUCKET_OFFSET_AND_FLAGS, flags | ACCESSED);
+          putLong(index, ACCESS_COUNTER, accessCounter);
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    List<long[]> slotsOfFile(int fileId) {
+      List<long[]> found = new ArrayList<>();
+      lock.readLock().lock();
+      try {
+        for (int i = 0; i <= mask; i++) {
+          if ((int) (getLong(i, FILE_AND_LENGTH) >>> 32) == fileId && !isEmpty(i)) {
+            found.add(read(i));
+          }
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+      return found;
+    }
+
+    long[] copySlots() {
+      lock.readLock().lock();
+      try {
+        long[] copy = new long[size * SLOT_LONGS];
+        int copied = 0;
+        for (int i = 0; i <= mask && copied < copy.length; i++) {
+          if (!isEmpty(i)) {
+            for (int j = 0; j < SLOT_LONGS; j++) {
+              copy[copied++] = getLong(i, j);
+            }
+          }
+        }
+        return copy;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    void clear() {
+      lock.writeLock().lock();
+      try {
+        UnsafeAccess.freeDirectBuffer(slots);
+        allocate(MIN_SEGMENT_CAPACITY);
+        size = 0;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * A view of a slot of the index.
+   */
+  static final class IndexedBucketEntry extends BucketEntry {
+    private final OffHeapBucketIndex index;
+    private final int fileId;
+    private final long blockOffset;
+
+    private IndexedBucketEntry(OffHeapBucketIndex index, long[] slot,
+      Function<BucketEntry, Recycler> createRecycler, ByteBuffAllocator allocator) {
+      super(bucketOffset(slot[BUCKET_OFFSET_AND_FLAGS]), (int) slot[FILE_AND_LENGTH],
+        slot[ACCESS_COUNTER], (slot[BUCKET_OFFSET_AND_FLAGS] & IN_MEMORY) != 0, slot[CACHED_TIME],
+        createRecycler, allocator);
+      this.index = index;
+      this.fileId = (int) (slot[FILE_AND_LENGTH] >>> 32);
+      this.blockOffset = slot[BLOCK_OFFSET];
+      this.deserializerIndex = (byte) (slot[BUCKET_OFFSET_AND_FLAGS] >>> DESERIALIZER_SHIFT);
+      if ((slot[BUCKET_OFFSET_AND_FLAGS] & ACCESSED) != 0) {
+        super.access(slot[ACCESS_COUNTER]);
+      }
+    }
+
+    @Override
+    void access(long accessCounter) {
+      super.access(accessCounter);
+      index.access(this, accessCounter);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof BucketEntry)) {
+        return false;
+      }
+      BucketEntry other = (BucketEntry) obj;
+      return offset() == other.offset() && getLength() == other.getLength();
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(offset());
+    }
+  }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.ipc;
 
+import java.util.Map;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.yetus.audience.InterfaceStability;
@@ -140,6 +141,16 @@ public class DelegatingRpcScheduler extends RpcScheduler {
     return 0;
   }
 
+  @Override
+  public Map<String, Integer> getTenantQueueLengths() {
+    return delegate.getTenantQueueLengths();
+  }
+
+  @Override
+  public long getNumCoalescedGets() {
+    return delegate.getNumCoalescedGets();
+  }
+
   @Override
   public CallQueueInfo getCallQueueInfo() {
     return delegate.getCallQueueInfo();
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hbase.thirdparty.com.google.protobuf.Message;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.GetRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionSpecifier;
+
+/**
+ * Groups the Get calls queued for the same region, so that a handler runs them back to back in a
+ * {@link Batch} instead of each of them waking up a handler of its own. Only the Gets received
+ * within a short window of the first one are taken, so the Gets after them in the queue do not wait
+ * behind a long batch, and only FIFO call queues are searched, which support removing a call from
+ * the middle of the queue. Only the calls at the head of the queue are looked at, a few times the
+ * maximum batch size of them, so that taking a call does not cost a pass over a long queue.
+ * <p>
+ * The service running the calls shares what it can between the calls of a batch through
+ * {@link Batch#current()}, the region server reads all the Gets of a batch at the same read point.
+ */
+@InterfaceAudience.Private
+public class GetCallCoalescer {
+  private static final Logger LOG = LoggerFactory.getLogger(GetCallCoalescer.class);
+
+  /** Whether the handlers run the queued Gets of a region back to back */
+  public static final String COALESCE_GETS_ENABLED_KEY = "hbase.ipc.server.callqueue.coalesce.gets";
+  public static final boolean DEFAULT_COALESCE_GETS_ENABLED = false;
+
+  /** Maximum time between the receiving of the first and the last Get of a batch, in millis */
+  public static final String COALESCE_GETS_WINDOW_KEY =
+    "hbase.ipc.server.callqueue.coalesce.gets.window";
+  public static final long DEFAULT_COALESCE_GETS_WINDOW = 10;
+
+  /** Maximum number of Gets in a batch */
+  public static final String COALESCE_GETS_MAX_KEY = "hbase.ipc.server.callqueue.coalesce.gets.max";
+  public static final int DEFAULT_COALESCE_GETS_MAX = 32;
+
+  // How many calls at the head of the queue are looked at, as a multiple of the maximum batch size
+  private static final int SCAN_LIMIT_FACTOR = 4;
+
+  private final long window;
+  private final int maxBatchSize;
+  private final int scanLimit;
+  private final LongAdder coalescedCalls = new LongAdder();
+
+  GetCallCoalescer(long window, int maxBatchSize) {
+    this.window = window;
+    this.maxBatchSize = maxBatchSize;
+    this.scanLimit = maxBatchSize * SCAN_LIMIT_FACTOR;
+  }
+
+  /**
+   * Returns the coalescer for the call queues of the given class, or null if coalescing is disabled
+   * or not supported by the queues.
+   */
+  static GetCallCoalescer create(String executorName, Configuration conf, Class<?> queueClass) {
+    if (!conf.getBoolean(COALESCE_GETS_ENABLED_KEY, DEFAULT_COALESCE_GETS_ENABLED)) {
+      return null;
+    }
+    if (queueClass != LinkedBlockingQueue.class) {
+      LOG.info("Not coalescing Gets in {}, its call queues are not FIFO", executorName);
+      return null;
+    }
+    int maxBatchSize = conf.getInt(COALESCE_GETS_MAX_KEY, DEFAULT_COALESCE_GETS_MAX);
+    if (maxBatchSize <= 1) {
+      return null;
+    }
+    return new GetCallCoalescer(
+      conf.getLong(COALESCE_GETS_WINDOW_KEY, DEFAULT_COALESCE_GETS_WINDOW), maxBatchSize);
+  }
+
+  /** Returns the region of a Get call, or null if the call is not a Get */
+  private static RegionSpecifier getRegion(CallRunner cr) {
+    RpcCall call = cr.getRpcCall();
+    if (call == null) {
+      return null;
+    }
+    Message param = call.getParam();
+    return param instanceof GetRequest ? ((GetRequest) param).getRegion() : null;
+  }
+
+  /**
+   * Takes the Gets for the same region as the given call out of the queue.
+   * @return the calls to run back to back, starting with the given one
+   */
+  List<CallRunner> coalesce(CallRunner first, BlockingQueue<CallRunner> q) {
+    RegionSpecifier region = getRegion(first);
+    if (region == null || q.isEmpty()) {
+      return Collections.singletonList(first);
+    }
+    long until = first.getRpcCall().getReceiveTime() + window;
+    List<CallRunner> batch = null;
+    int scanned = 0;
+    // removing a call searches the queue from its head too, so both are bounded by the scan limit
+    for (Iterator<CallRunner> it = q.iterator(); it.hasNext() && scanned++ < scanLimit;) {
+      CallRunner cr = it.next();
+      RpcCall call = cr.getRpcCall();
+      if (call == null) {
+        // taken by another handler meanwhile
+        continue;
+      }
+      if (call.getReceiveTime() > until) {
+        break;
+      }
+      // another handler may take it before us, only run it if we removed it
+      if (region.equals(getRegion(cr)) && q.remove(cr)) {
+        if (batch == null) {
+          batch = new ArrayList<>();
+          batch.add(first);
+        }
+        batch.add(cr);
+        if (batch.size() >= maxBatchSize) {
+          break;
+        }
+      }
+    }
+    if (batch == null) {
+      return Collections.singletonList(first);
+    }
+    coalescedCalls.add(batch.size() - 1);
+    return batch;
+  }
+
+  /** Returns the number of calls run in the batch of another call */
+  long getCoalescedCalls() {
+    return coalescedCalls.sum();
+  }
+
+  /**
+   * The calls a handler runs back to back. Lets the service attach what the calls share, which is
+   * released once they all ran.
+   */
+  @InterfaceAudience.Private
+  public static final class Batch implements Closeable {
+    private static final ThreadLocal<Batch> CURRENT = new ThreadLocal<>();
+
+    private final int size;
+    private Object attachment;
+    private Closeable release;
+
+    private Batch(int size) {
+      this.size = size;
+    }
+
+    static Batch begin(int size) {
+      Batch batch = new Batch(size);
+      CURRENT.set(batch);
+      return batch;
+    }
+
+    /** Returns the batch of the call the current thread runs, or null if it runs alone */
+    public static Batch current() {
+      return CURRENT.get();
+    }
+
+    /** Returns the number of calls in the batch */
+    public int size() {
+      return size;
+    }
+
+    /** Returns what a previous call of the batch attached to it, or null */
+    public Object getAttachment() {
+      return attachment;
+    }
+
+    /**
+     * Attaches state for the next calls of the batch to use.
+     * @param release closed once all the calls of the batch ran, may be null
+     */
+    public void attach(Object attachment, Closeable release) throws IOException {
+      releaseAttachment();
+      this.attachment = attachment;
+      this.release = release;
+    }
+
+    private void releaseAttachment() throws IOException {
+      Closeable toRelease = release;
+      attachment = null;
+      release = null;
+      if (toRelease != null) {
+        toRelease.close();
+      }
+    }
+
+    @Override
+    public void close() {
+      CURRENT.remove();
+      try {
+        releaseAttachment();
+      } catch (IOException e) {
+        LOG.warn("Failed to release the state shared by a batch of calls", e);
+      }
+    }
+  }
+}
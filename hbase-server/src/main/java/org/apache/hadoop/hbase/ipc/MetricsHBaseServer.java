@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.ipc;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.CallDroppedException;
 import org.apache.hadoop.hbase.CallQueueTooBigException;
 import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
@@ -32,6 +33,7 @@ import org.apache.hadoop.hbase.exceptions.ScannerResetException;
 import org.apache.hadoop.hbase.exceptions.TimeoutIOException;
 import org.apache.hadoop.hbase.quotas.QuotaExceededException;
 import org.apache.hadoop.hbase.quotas.RpcThrottlingException;
+import org.apache.hadoop.hbase.util.LossyCounting;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,11 +44,23 @@ public class MetricsHBaseServer {
 
   private MetricsHBaseServerSource source;
   private MetricsHBaseServerWrapper serverWrapper;
+  // The tenants of the weighted fair call queues with metrics, the rare ones lose their metrics.
+  // Null when the calls are not queued per tenant.
+  private final LossyCounting<String> tenantLossyCounting;
 
   public MetricsHBaseServer(String serverName, MetricsHBaseServerWrapper wrapper) {
+    this(serverName, wrapper, new Configuration(false));
+  }
+
+  public MetricsHBaseServer(String serverName, MetricsHBaseServerWrapper wrapper,
+    Configuration conf) {
     serverWrapper = wrapper;
     source = CompatibilitySingletonFactory.getInstance(MetricsHBaseServerSourceFactory.class)
       .create(serverName, wrapper);
+    tenantLossyCounting = RpcExecutor.CALL_QUEUE_TYPE_FAIR_CONF_VALUE.equals(
+      conf.get(RpcExecutor.CALL_QUEUE_TYPE_CONF_KEY, RpcExecutor.CALL_QUEUE_TYPE_CONF_DEFAULT))
+        ? new LossyCounting<>("tenantMetrics", conf, source::removeTenant)
+        : null;
   }
 
   void authorizationSuccess() {
@@ -89,6 +103,13 @@ public class MetricsHBaseServer {
     source.dequeuedCall(qTime);
   }
 
+  void dequeuedTenantCall(String tenant, int qTime) {
+    source.dequeuedTenantCall(tenant, qTime);
+    if (tenantLossyCounting != null) {
+      tenantLossyCounting.add(tenant);
+    }
+  }
+
   void processedCall(int processingTime) {
     source.processedCall(processingTime);
   }
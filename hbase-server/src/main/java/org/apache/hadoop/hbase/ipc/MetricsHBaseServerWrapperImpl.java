@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.hbase.ipc;
 
+import java.util.Collections;
+import java.util.Map;
 import org.apache.hadoop.hbase.util.DirectMemoryUtils;
 import org.apache.yetus.audience.InterfaceAudience;
 
@@ -193,4 +195,20 @@ public class MetricsHBaseServerWrapperImpl implements MetricsHBaseServerWrapper
 
     return DirectMemoryUtils.getNettyDirectMemoryUsage();
   }
+
+  @Override
+  public Map<String, Integer> getTenantQueueLengths() {
+    if (!isServerStarted() || this.server.getScheduler() == null) {
+      return Collections.emptyMap();
+    }
+    return server.getScheduler().getTenantQueueLengths();
+  }
+
+  @Override
+  public long getNumCoalescedGets() {
+    if (!isServerStarted() || this.server.getScheduler() == null) {
+      return 0;
+    }
+    return server.getScheduler().getNumCoalescedGets();
+  }
 }
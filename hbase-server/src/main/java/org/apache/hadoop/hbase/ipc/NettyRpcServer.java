@@ -85,6 +85,7 @@ public class NettyRpcServer extends RpcServer {
   private final Channel serverChannel;
   final ChannelGroup allChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE, true);
   private final ByteBufAllocator channelAllocator;
+  final ZeroCopyCellBlockBuilder zeroCopyCellBlockBuilder;
 
   public NettyRpcServer(Server server, String name, List<BlockingServiceAndInterface> services,
     InetSocketAddress bindAddress, Configuration conf, RpcScheduler scheduler,
@@ -92,6 +93,7 @@ public class NettyRpcServer extends RpcServer {
     super(server, name, services, bindAddress, conf, scheduler, reservoirEnabled);
     this.bindAddress = bindAddress;
     this.channelAllocator = getChannelAllocator(conf);
+    this.zeroCopyCellBlockBuilder = ZeroCopyCellBlockBuilder.create(conf);
     // Get the event loop group configuration from the server class if available.
     NettyEventLoopGroupConfig config = null;
     if (server instanceof HRegionServer) {
@@ -197,6 +199,9 @@ public class NettyRpcServer extends RpcServer {
     }
     allChannels.close().awaitUninterruptibly();
     serverChannel.close();
+    if (zeroCopyCellBlockBuilder != null) {
+      zeroCopyCellBlockBuilder.stop();
+    }
     scheduler.stop();
     closed.countDown();
     running = false;
@@ -19,6 +19,7 @@ package org.apache.hadoop.hbase.ipc;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.hadoop.hbase.CellScanner;
 import org.apache.hadoop.hbase.io.ByteBuffAllocator;
 import org.apache.hadoop.hbase.ipc.RpcServer.CallCleanup;
@@ -38,6 +39,10 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.RPCProtos.RequestHeader
 @InterfaceAudience.Private
 class NettyServerCall extends ServerCall<NettyServerRpcConnection> {
 
+  // done() runs once, either when NettyRpcServerResponseEncoder is done writing the response out,
+  // or when sending the response fails before the response reaches it
+  private final AtomicBoolean done = new AtomicBoolean(false);
+
   NettyServerCall(int id, BlockingService service, MethodDescriptor md, RequestHeader header,
     Message param, CellScanner cellScanner, NettyServerRpcConnection connection, long size,
     InetAddress remoteAddress, long receiveTime, int timeout, ByteBuffAllocator bbAllocator,
@@ -54,6 +59,28 @@ class NettyServerCall extends ServerCall<NettyServerRpcConnection> {
   public synchronized void sendResponseIfReady() throws IOException {
     // set param null to reduce memory pressure
     this.param = null;
-    connection.channel.writeAndFlush(this);
+    try {
+      connection.channel.writeAndFlush(this).addListener(f -> {
+        if (!f.isSuccess()) {
+          done();
+        }
+      });
+    } catch (RuntimeException e) {
+      done();
+      throw e;
+    }
+  }
+
+  @Override
+  public void done() {
+    if (done.compareAndSet(false, true)) {
+      super.done();
+    }
+  }
+
+  @Override
+  protected ZeroCopyCellBlockBuilder getZeroCopyCellBlockBuilder() {
+    // done() runs once the response is written out, or fails to be
+    return connection != null ? connection.zeroCopyCellBlockBuilder : null;
   }
 }
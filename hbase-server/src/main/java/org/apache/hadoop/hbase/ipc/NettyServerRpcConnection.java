@@ -45,10 +45,12 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.RPCProtos.RequestHeader
 class NettyServerRpcConnection extends ServerRpcConnection {
 
   final Channel channel;
+  final ZeroCopyCellBlockBuilder zeroCopyCellBlockBuilder;
 
   NettyServerRpcConnection(NettyRpcServer rpcServer, Channel channel) {
     super(rpcServer);
     this.channel = channel;
+    this.zeroCopyCellBlockBuilder = rpcServer.zeroCopyCellBlockBuilder;
     // register close hook to release resources
     channel.closeFuture().addListener(f -> {
       disposeSasl();
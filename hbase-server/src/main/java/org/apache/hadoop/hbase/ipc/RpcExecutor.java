@@ -20,12 +20,16 @@ package org.apache.hadoop.hbase.ipc;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
@@ -35,6 +39,7 @@ import org.apache.hadoop.hbase.Abortable;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.conf.ConfigurationObserver;
+import org.apache.hadoop.hbase.monitoring.MonitoredRPCHandler;
 import org.apache.hadoop.hbase.util.BoundedPriorityBlockingQueue;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.util.ReflectionUtils;
@@ -67,11 +72,13 @@ public abstract class RpcExecutor {
   /**
    * The default, 'fifo', has the least friction but is dumb. If set to 'deadline', uses a priority
    * queue and de-prioritizes long-running scans. Sorting by priority comes at a cost, reduced
-   * throughput.
+   * throughput. If set to 'fair', serves the calls of each user or table in turn, see
+   * {@link WeightedFairCallQueue}.
    */
   public static final String CALL_QUEUE_TYPE_CODEL_CONF_VALUE = "codel";
   public static final String CALL_QUEUE_TYPE_DEADLINE_CONF_VALUE = "deadline";
   public static final String CALL_QUEUE_TYPE_FIFO_CONF_VALUE = "fifo";
+  public static final String CALL_QUEUE_TYPE_FAIR_CONF_VALUE = "fair";
   public static final String CALL_QUEUE_TYPE_PLUGGABLE_CONF_VALUE = "pluggable";
   public static final String CALL_QUEUE_TYPE_CONF_KEY = "hbase.ipc.server.callqueue.type";
   public static final String CALL_QUEUE_TYPE_CONF_DEFAULT = CALL_QUEUE_TYPE_FIFO_CONF_VALUE;
@@ -116,6 +123,8 @@ public abstract class RpcExecutor {
 
   private final Configuration conf;
   private final Abortable abortable;
+  private final GetCallCoalescer coalescer;
+  private final boolean virtualThreads;
 
   public RpcExecutor(final String name, final int handlerCount, final int maxQueueLength,
     final PriorityFunction priority, final Configuration conf, final Abortable abortable) {
@@ -168,6 +177,10 @@ public abstract class RpcExecutor {
       this.queueInitArgs = new Object[] { maxQueueLength, codelTargetDelay, codelInterval,
         codelLifoThreshold, numGeneralCallsDropped, numLifoModeSwitches };
       this.queueClass = AdaptiveLifoCoDelCallQueue.class;
+    } else if (isFairQueueType(callQueueType)) {
+      this.name += ".Fair";
+      this.queueInitArgs = new Object[] { maxQueueLength, conf };
+      this.queueClass = WeightedFairCallQueue.class;
     } else if (isPluggableQueueType(callQueueType)) {
       Optional<Class<? extends BlockingQueue<CallRunner>>> pluggableQueueClass =
         getPluggableQueueClass();
@@ -185,10 +198,14 @@ public abstract class RpcExecutor {
       this.queueClass = LinkedBlockingQueue.class;
     }
 
+    this.coalescer = GetCallCoalescer.create(this.name, conf, this.queueClass);
+    this.virtualThreads = VirtualThreadRpcHandler.isEnabled(this.name, conf);
+
     LOG.info(
-      "Instantiated {} with queueClass={}; "
-        + "numCallQueues={}, maxQueueLength={}, handlerCount={}",
-      this.name, this.queueClass, this.numCallQueues, maxQueueLength, this.handlerCount);
+      "Instantiated {} with queueClass={}; numCallQueues={}, maxQueueLength={}, handlerCount={}, "
+        + "coalesceGets={}, virtualThreads={}",
+      this.name, this.queueClass, this.numCallQueues, maxQueueLength, this.handlerCount,
+      this.coalescer != null, this.virtualThreads);
   }
 
   protected int computeNumCallQueues(final int handlerCount, final float callQueuesHandlersFactor) {
@@ -278,12 +295,18 @@ public abstract class RpcExecutor {
       ? 1.0
       : conf.getDouble(HConstants.REGION_SERVER_HANDLER_ABORT_ON_ERROR_PERCENT,
         HConstants.DEFAULT_REGION_SERVER_HANDLER_ABORT_ON_ERROR_PERCENT);
+    if (virtualThreads) {
+      startVirtualThreadHandlers(threadPrefix, numHandlers, callQueues, qindex, qsize, port,
+        activeHandlerCount, handlerFailureThreshhold);
+      return;
+    }
     for (int i = 0; i < numHandlers; i++) {
       final int index = qindex + (i % qsize);
       String name = "RpcServer." + threadPrefix + ".handler=" + handlers.size() + ",queue=" + index
         + ",port=" + port;
       RpcHandler handler = getHandler(name, handlerFailureThreshhold, handlerCount,
         callQueues.get(index), activeHandlerCount, failedHandlerCount, abortable);
+      handler.setCoalescer(coalescer);
       handler.start();
       handlers.add(handler);
     }
@@ -291,6 +314,35 @@ public abstract class RpcExecutor {
       handlers.size(), threadPrefix, qsize, port);
   }
 
+  /**
+   * Starts a handler for each queue, running the calls on virtual threads. Up to the given number
+   * of handlers times {@link VirtualThreadRpcHandler#VIRTUAL_THREADS_CONCURRENCY_FACTOR_KEY} calls
+   * of the queues run at once. {@link #getHandler} is not used, the handlers never take the fast
+   * path.
+   */
+  private void startVirtualThreadHandlers(final String threadPrefix, final int numHandlers,
+    final List<BlockingQueue<CallRunner>> callQueues, final int qindex, final int qsize,
+    final int port, final AtomicInteger activeHandlerCount, double handlerFailureThreshhold) {
+    int maxConcurrentCalls = Math.max(1,
+      numHandlers * conf.getInt(VirtualThreadRpcHandler.VIRTUAL_THREADS_CONCURRENCY_FACTOR_KEY,
+        VirtualThreadRpcHandler.DEFAULT_VIRTUAL_THREADS_CONCURRENCY_FACTOR));
+    Semaphore permits = new Semaphore(maxConcurrentCalls);
+    Deque<MonitoredRPCHandler> statuses = new ConcurrentLinkedDeque<>();
+    for (int i = 0; i < qsize; i++) {
+      final int index = qindex + i;
+      String name = "RpcServer." + threadPrefix + ".handler=" + handlers.size() + ",queue=" + index
+        + ",port=" + port;
+      RpcHandler handler = new VirtualThreadRpcHandler(name, handlerFailureThreshhold, handlerCount,
+        callQueues.get(index), activeHandlerCount, failedHandlerCount, abortable,
+        VirtualThreadRpcHandler.newVirtualThreadFactory(name + ",call="), permits, statuses);
+      handler.setCoalescer(coalescer);
+      handler.start();
+      handlers.add(handler);
+    }
+    LOG.debug("Started {} virtual thread handlers with threadPrefix={}, maxConcurrentCalls={}, "
+      + "port={}", qsize, threadPrefix, maxConcurrentCalls, port);
+  }
+
   /**
    * All requests go to the first queue, at index 0
    */
@@ -345,6 +397,10 @@ public abstract class RpcExecutor {
     return callQueueType.equals(CALL_QUEUE_TYPE_CODEL_CONF_VALUE);
   }
 
+  public static boolean isFairQueueType(final String callQueueType) {
+    return callQueueType.equals(CALL_QUEUE_TYPE_FAIR_CONF_VALUE);
+  }
+
   public static boolean isFifoQueueType(final String callQueueType) {
     return callQueueType.equals(CALL_QUEUE_TYPE_FIFO_CONF_VALUE);
   }
@@ -391,6 +447,32 @@ public abstract class RpcExecutor {
     return numLifoModeSwitches.longValue();
   }
 
+  /** Reports the per tenant metrics of the weighted fair call queues to the given metrics */
+  public void setMetrics(MetricsHBaseServer metrics) {
+    for (BlockingQueue<CallRunner> queue : queues) {
+      if (queue instanceof WeightedFairCallQueue) {
+        ((WeightedFairCallQueue) queue).setMetrics(metrics);
+      }
+    }
+  }
+
+  /** Returns the number of queued calls of each tenant of the weighted fair call queues */
+  public Map<String, Integer> getTenantQueueLengths() {
+    Map<String, Integer> lengths = new HashMap<>();
+    for (BlockingQueue<CallRunner> queue : queues) {
+      if (queue instanceof WeightedFairCallQueue) {
+        ((WeightedFairCallQueue) queue).getTenantQueueLengths()
+          .forEach((tenant, length) -> lengths.merge(tenant, length, Integer::sum));
+      }
+    }
+    return lengths;
+  }
+
+  /** Returns the number of Gets run in the batch of another Get of the same region */
+  public long getNumCoalescedGets() {
+    return coalescer != null ? coalescer.getCoalescedCalls() : 0;
+  }
+
   public int getActiveHandlerCount() {
     return activeHandlerCount.get();
   }
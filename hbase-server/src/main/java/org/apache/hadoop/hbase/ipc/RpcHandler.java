@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.ipc;
 
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.hadoop.hbase.Abortable;
@@ -50,6 +51,9 @@ public class RpcHandler extends Thread {
 
   private boolean running;
 
+  // Groups the queued Gets of a region, null if they run one by one.
+  private GetCallCoalescer coalescer;
+
   RpcHandler(final String name, final double handlerFailureThreshhold, final int handlerCount,
     final BlockingQueue<CallRunner> q, final AtomicInteger activeHandlerCount,
     final AtomicInteger failedHandlerCount, final Abortable abortable) {
@@ -68,6 +72,10 @@ public class RpcHandler extends Thread {
     return this.q.take();
   }
 
+  void setCoalescer(GetCallCoalescer coalescer) {
+    this.coalescer = coalescer;
+  }
+
   public void stopRunning() {
     running = false;
   }
@@ -79,7 +87,7 @@ public class RpcHandler extends Thread {
     try {
       while (running) {
         try {
-          run(getCallRunner());
+          handle(getCallRunner());
         } catch (InterruptedException e) {
           interrupted = true;
         }
@@ -94,8 +102,39 @@ public class RpcHandler extends Thread {
     }
   }
 
-  private void run(CallRunner cr) {
-    MonitoredRPCHandler status = RpcServer.getStatus();
+  /** Runs a call taken from the queue */
+  protected void handle(CallRunner cr) {
+    run(cr, RpcServer.getStatus());
+  }
+
+  /** Runs a call, along with the queued Gets of its region if coalescing */
+  final void run(CallRunner cr, MonitoredRPCHandler status) {
+    if (coalescer != null) {
+      runBatch(coalescer.coalesce(cr, q), status);
+    } else {
+      runCall(cr, status);
+    }
+  }
+
+  private void runBatch(List<CallRunner> batch, MonitoredRPCHandler status) {
+    if (batch.size() == 1) {
+      runCall(batch.get(0), status);
+      return;
+    }
+    int ran = 0;
+    try (GetCallCoalescer.Batch ignored = GetCallCoalescer.Batch.begin(batch.size())) {
+      for (; ran < batch.size(); ran++) {
+        runCall(batch.get(ran), status);
+      }
+    } finally {
+      // an Error cut the batch short, answer the calls left instead of losing them
+      for (ran++; ran < batch.size(); ran++) {
+        batch.get(ran).drop();
+      }
+    }
+  }
+
+  private void runCall(CallRunner cr, MonitoredRPCHandler status) {
     cr.setStatus(status);
     try {
       this.activeHandlerCount.incrementAndGet();
@@ -18,6 +18,8 @@
 package org.apache.hadoop.hbase.ipc;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Map;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.yetus.audience.InterfaceStability;
@@ -39,6 +41,11 @@ public abstract class RpcScheduler {
   /** Exposes runtime information of a {@code RpcServer} that a {@code RpcScheduler} may need. */
   public static abstract class Context {
     public abstract InetSocketAddress getListenerAddress();
+
+    /** Returns the metrics of the {@code RpcServer}, or null if it has none */
+    public MetricsHBaseServer getMetrics() {
+      return null;
+    }
   }
 
   /**
@@ -123,4 +130,20 @@ public abstract class RpcScheduler {
 
   /** Retrieves the number of active write rpc handler when use RWQueueRpcExecutor. */
   public abstract int getActiveScanRpcHandlerCount();
+
+  /**
+   * Retrieves the number of queued calls of each tenant when scheduling fairly between tenants;
+   * returns an empty map otherwise.
+   */
+  public Map<String, Integer> getTenantQueueLengths() {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Retrieves the number of Gets run in the batch of another queued Get of the same region when
+   * coalescing them; returns 0 otherwise.
+   */
+  public long getNumCoalescedGets() {
+    return 0;
+  }
 }
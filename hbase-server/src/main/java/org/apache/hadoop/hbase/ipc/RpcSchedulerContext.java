@@ -34,4 +34,9 @@ class RpcSchedulerContext extends RpcScheduler.Context {
   public InetSocketAddress getListenerAddress() {
     return this.rpcServer.getListenerAddress();
   }
+
+  @Override
+  public MetricsHBaseServer getMetrics() {
+    return this.rpcServer.getMetrics();
+  }
 }
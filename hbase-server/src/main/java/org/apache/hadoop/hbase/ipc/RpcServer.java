@@ -281,7 +281,7 @@ public abstract class RpcServer implements RpcServerInterface, ConfigurationObse
       conf.getInt(MIN_CLIENT_REQUEST_TIMEOUT, DEFAULT_MIN_CLIENT_REQUEST_TIMEOUT);
     this.maxRequestSize = conf.getInt(MAX_REQUEST_SIZE, DEFAULT_MAX_REQUEST_SIZE);
 
-    this.metrics = new MetricsHBaseServer(name, new MetricsHBaseServerWrapperImpl(this));
+    this.metrics = new MetricsHBaseServer(name, new MetricsHBaseServerWrapperImpl(this), conf);
     this.tcpNoDelay = conf.getBoolean("hbase.ipc.server.tcpnodelay", true);
     this.tcpKeepAlive = conf.getBoolean("hbase.ipc.server.tcpkeepalive", true);
 
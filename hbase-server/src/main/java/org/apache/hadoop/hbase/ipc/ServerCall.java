@@ -93,6 +93,9 @@ public abstract class ServerCall<T extends ServerRpcConnection> implements RpcCa
   protected final User user;
   protected final InetAddress remoteAddress;
   protected RpcCallback rpcCallback;
+  // whether the response refers to the cells of the call instead of copies, in which case the
+  // callback, which releases them, runs once the response is written out
+  private boolean callBackWhenDone = false;
 
   private long responseCellSize = 0;
   private long responseBlockSize = 0;
@@ -150,6 +153,10 @@ public abstract class ServerCall<T extends ServerRpcConnection> implements RpcCa
       justification = "Presume the lock on processing request held by caller is protection enough")
   @Override
   public void done() {
+    if (this.callBackWhenDone) {
+      this.callBackWhenDone = false;
+      getZeroCopyCellBlockBuilder().runCallBack(this::runCallBack);
+    }
     if (this.cellBlockStream != null) {
       // This will return back the BBs which we got from pool.
       this.cellBlockStream.releaseResources();
@@ -252,7 +259,22 @@ public abstract class ServerCall<T extends ServerRpcConnection> implements RpcCa
       // high when we can avoid a big buffer allocation on each rpc.
       List<ByteBuffer> cellBlock = null;
       int cellBlockSize = 0;
-      if (bbAllocator.isReservoirEnabled()) {
+      boolean referencesCells = false;
+      ZeroCopyCellBlockBuilder zeroCopyBuilder = getZeroCopyCellBlockBuilder();
+      if (
+        zeroCopyBuilder != null && !this.connection.useWrap
+          && ZeroCopyCellBlockBuilder.supports(this.connection.codec,
+            this.connection.compressionCodec)
+      ) {
+        ZeroCopyCellBlockBuilder.CellBlock zeroCopyCellBlock =
+          zeroCopyBuilder.build(this.connection.codec, cells, bbAllocator);
+        if (zeroCopyCellBlock != null) {
+          this.cellBlockStream = zeroCopyCellBlock.getStream();
+          cellBlock = zeroCopyCellBlock.getBuffers();
+          cellBlockSize = zeroCopyCellBlock.getSize();
+          referencesCells = zeroCopyCellBlock.getSlices() > 0;
+        }
+      } else if (bbAllocator.isReservoirEnabled()) {
         this.cellBlockStream = this.cellBlockBuilder.buildCellBlockStream(this.connection.codec,
           this.connection.compressionCodec, cells, bbAllocator);
         if (this.cellBlockStream != null) {
@@ -292,12 +314,19 @@ public abstract class ServerCall<T extends ServerRpcConnection> implements RpcCa
         }
       }
       bc = new BufferChain(responseBufs);
+      this.callBackWhenDone = referencesCells;
     } catch (IOException e) {
       RpcServer.LOG.warn("Exception while creating response " + e);
     }
     this.response = bc;
     // Once a response message is created and set to this.response, this Call can be treated as
     // done. The Responder thread will do the n/w write of this message back to client.
+    if (!this.callBackWhenDone) {
+      runCallBack();
+    }
+  }
+
+  private void runCallBack() {
     if (this.rpcCallback != null) {
       try (Scope ignored = span.makeCurrent()) {
         this.rpcCallback.run();
@@ -309,6 +338,15 @@ public abstract class ServerCall<T extends ServerRpcConnection> implements RpcCa
     }
   }
 
+  /**
+   * Returns the builder of cell blocks referring to the cells of the response instead of copying
+   * them, or null if the cells must be copied. Only servers which call {@link #done()} once the
+   * response is written out, or fails to be, may return one.
+   */
+  protected ZeroCopyCellBlockBuilder getZeroCopyCellBlockBuilder() {
+    return null;
+  }
+
   static void setExceptionResponse(Throwable t, String errorMsg,
     ResponseHeader.Builder headerBuilder) {
     ExceptionResponse.Builder exceptionBuilder = ExceptionResponse.newBuilder();
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.ipc;
 
+import java.util.Map;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Abortable;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
@@ -87,6 +88,7 @@ public class SimpleRpcScheduler extends RpcScheduler implements ConfigurationObs
     } else {
       if (
         RpcExecutor.isFifoQueueType(callQueueType) || RpcExecutor.isCodelQueueType(callQueueType)
+          || RpcExecutor.isFairQueueType(callQueueType)
           || RpcExecutor.isPluggableQueueWithFastPath(callQueueType, conf)
       ) {
         callExecutor = new FastPathBalancedQueueRpcExecutor("default.FPBQ", handlerCount,
@@ -152,6 +154,7 @@ public class SimpleRpcScheduler extends RpcScheduler implements ConfigurationObs
       conf.get(RpcExecutor.CALL_QUEUE_TYPE_CONF_KEY, RpcExecutor.CALL_QUEUE_TYPE_CONF_DEFAULT);
     if (
       RpcExecutor.isCodelQueueType(callQueueType) || RpcExecutor.isPluggableQueueType(callQueueType)
+        || RpcExecutor.isFairQueueType(callQueueType)
     ) {
       callExecutor.onConfigurationChange(conf);
     }
@@ -160,6 +163,10 @@ public class SimpleRpcScheduler extends RpcScheduler implements ConfigurationObs
   @Override
   public void init(Context context) {
     this.port = context.getListenerAddress().getPort();
+    MetricsHBaseServer metrics = context.getMetrics();
+    if (metrics != null) {
+      callExecutor.setMetrics(metrics);
+    }
   }
 
   @Override
@@ -300,6 +307,17 @@ public class SimpleRpcScheduler extends RpcScheduler implements ConfigurationObs
     return callExecutor.getActiveScanHandlerCount();
   }
 
+  @Override
+  public Map<String, Integer> getTenantQueueLengths() {
+    return callExecutor.getTenantQueueLengths();
+  }
+
+  @Override
+  public long getNumCoalescedGets() {
+    return callExecutor.getNumCoalescedGets()
+      + (priorityExecutor == null ? 0 : priorityExecutor.getNumCoalescedGets());
+  }
+
   @Override
   public CallQueueInfo getCallQueueInfo() {
     String queueName;
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Abortable;
+import org.apache.hadoop.hbase.monitoring.MonitoredRPCHandler;
+import org.apache.hadoop.hbase.monitoring.TaskMonitor;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Takes the calls of a queue and runs each of them on a thread of its own, a virtual thread on the
+ * JDKs which have them, so that a call blocked on an HDFS read, a WAL sync or a row lock does not
+ * hold up a handler thread meanwhile. The handlers of a queue type share a {@link Semaphore}
+ * bounding how many of their calls run at once, a call stays in its queue until a permit is free.
+ * <p>
+ * Before JDK 24 a virtual thread blocking inside a {@code synchronized} block or method pins the
+ * carrier thread running it, and the HDFS client reads and the WAL syncs block in many of them, so
+ * no more calls run at once than there are carrier threads, which is the number of cores by
+ * default. JDK 24 or later is recommended, on older JDKs the carrier threads should be raised to
+ * about the handler count with the {@value #SCHEDULER_PARALLELISM_PROPERTY} system property.
+ */
+@InterfaceAudience.Private
+public class VirtualThreadRpcHandler extends RpcHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadRpcHandler.class);
+
+  /** Whether to run the calls on virtual threads instead of a fixed pool of handler threads */
+  public static final String VIRTUAL_THREADS_ENABLED_KEY =
+    "hbase.ipc.server.handler.virtual.threads";
+  public static final boolean DEFAULT_VIRTUAL_THREADS_ENABLED = false;
+
+  /**
+   * How many calls of a queue type may run at once on virtual threads, as a multiple of the handler
+   * count of the queue type
+   */
+  public static final String VIRTUAL_THREADS_CONCURRENCY_FACTOR_KEY =
+    "hbase.ipc.server.handler.virtual.threads.concurrency.factor";
+  public static final int DEFAULT_VIRTUAL_THREADS_CONCURRENCY_FACTOR = 10;
+
+  private static final boolean VIRTUAL_THREADS_SUPPORTED = newVirtualThreadFactory("") != null;
+
+  /** The system property setting the number of carrier threads of the virtual threads */
+  static final String SCHEDULER_PARALLELISM_PROPERTY = "jdk.virtualThreadScheduler.parallelism";
+
+  // The first JDK where a virtual thread blocking in a synchronized block does not pin its carrier.
+  private static final int NO_PINNING_JDK = 24;
+
+  private final ThreadFactory threadFactory;
+  // Permits of the calls of the queue type which may still start.
+  private final Semaphore permits;
+  // Statuses of the calls of the queue type not running, one for each permit in use at most.
+  private final Deque<MonitoredRPCHandler> statuses;
+
+  VirtualThreadRpcHandler(String name, double handlerFailureThreshhold, int handlerCount,
+    BlockingQueue<CallRunner> q, AtomicInteger activeHandlerCount, AtomicInteger failedHandlerCount,
+    Abortable abortable, ThreadFactory threadFactory, Semaphore permits,
+    Deque<MonitoredRPCHandler> statuses) {
+    super(name, handlerFailureThreshhold, handlerCount, q, activeHandlerCount, failedHandlerCount,
+      abortable);
+    this.threadFactory = threadFactory;
+    this.permits = permits;
+    this.statuses = statuses;
+  }
+
+  /**
+   * Returns whether the calls should run on virtual threads, which is only possible on JDK 21 and
+   * later.
+   */
+  static boolean isEnabled(String executorName, Configuration conf) {
+    if (!conf.getBoolean(VIRTUAL_THREADS_ENABLED_KEY, DEFAULT_VIRTUAL_THREADS_ENABLED)) {
+      return false;
+    }
+    if (!VIRTUAL_THREADS_SUPPORTED) {
+      LOG.warn(
+        "Virtual threads are not supported by this JDK, {} runs its calls on handler threads",
+        executorName);
+      return false;
+    }
+    if (
+      getJavaSpecificationVersion() < NO_PINNING_JDK
+        && System.getProperty(SCHEDULER_PARALLELISM_PROPERTY) == null
+    ) {
+      LOG.warn(
+        "The calls of {} blocking in synchronized code pin a carrier thread on this JDK, at most {}"
+          + " of them run at once. Use JDK {} or later, or set {} to about the handler count",
+        executorName, Runtime.getRuntime().availableProcessors(), NO_PINNING_JDK,
+        SCHEDULER_PARALLELISM_PROPERTY);
+    }
+    return true;
+  }
+
+  private static int getJavaSpecificationVersion() {
+    String version = System.getProperty("java.specification.version", "");
+    try {
+      // 1.8 before JDK 9
+      return version.startsWith("1.") ? 8 : Integer.parseInt(version);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Returns a factory of virtual threads named with the given prefix and a counter, or null if the
+   * JDK has no virtual threads. Looked up by reflection since we compile for older JDKs.
+   */
+  static ThreadFactory newVirtualThreadFactory(String prefix) {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder =
+        builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // no virtual threads, or only as a preview feature which is not enabled
+      return null;
+    }
+  }
+
+  @Override
+  protected CallRunner getCallRunner() throws InterruptedException {
+    permits.acquire();
+    boolean taken = false;
+    try {
+      CallRunner cr = super.getCallRunner();
+      taken = true;
+      return cr;
+    } finally {
+      if (!taken) {
+        permits.release();
+      }
+    }
+  }
+
+  @Override
+  protected void handle(CallRunner cr) {
+    Thread thread;
+    try {
+      thread = threadFactory.newThread(() -> {
+        MonitoredRPCHandler status = statuses.poll();
+        if (status == null) {
+          status = TaskMonitor.get().createRPCStatus(getName());
+          status.pause("Waiting for a call");
+        }
+        try {
+          run(cr, status);
+        } finally {
+          statuses.push(status);
+          permits.release();
+        }
+      });
+      thread.start();
+    } catch (Throwable t) {
+      permits.release();
+      LOG.warn("Failed to start a thread for a call, dropping it", t);
+      cr.drop();
+    }
+  }
+}
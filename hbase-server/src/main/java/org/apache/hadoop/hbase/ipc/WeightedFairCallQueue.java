@@ -0,0 +1,414 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.conf.ConfigurationObserver;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hbase.thirdparty.com.google.protobuf.Message;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.GetRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.MultiRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.MutateRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ScanRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionSpecifier;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionSpecifier.RegionSpecifierType;
+
+/**
+ * Call queue which serves the calls of each tenant, a user or a table, in turn, with deficit round
+ * robin. Each tenant has a FIFO queue of its own, and takes up to its weight calls in each round,
+ * so a tenant flooding the server with calls only delays its own calls while the other tenants keep
+ * getting their share of the handlers. Every call costs the same, a tenant with twice the weight of
+ * another gets twice the calls run when both have calls queued.
+ * <p>
+ * A tenant may also be kept from filling the whole queue, so that the calls of the others are not
+ * rejected when it is full. The number of queued calls and the time the calls waited in the queue
+ * are reported per tenant, the metrics of a table named as the table metrics are.
+ */
+@InterfaceAudience.Private
+public class WeightedFairCallQueue extends AbstractQueue<CallRunner>
+  implements BlockingQueue<CallRunner>, ConfigurationObserver {
+  private static final Logger LOG = LoggerFactory.getLogger(WeightedFairCallQueue.class);
+
+  /** What calls are grouped by, 'user' or 'table' */
+  public static final String TENANT_CONF_KEY = "hbase.ipc.server.callqueue.fair.tenant";
+  public static final String TENANT_USER = "user";
+  public static final String TENANT_TABLE = "table";
+
+  /** The weight of a tenant is set with this prefix followed by its name */
+  public static final String WEIGHT_CONF_PREFIX = "hbase.ipc.server.callqueue.fair.weight.";
+  public static final String DEFAULT_WEIGHT_CONF_KEY =
+    "hbase.ipc.server.callqueue.fair.default.weight";
+  public static final int DEFAULT_WEIGHT = 1;
+
+  /** The maximum share of the queue the calls of a single tenant may take */
+  public static final String MAX_TENANT_SHARE_CONF_KEY =
+    "hbase.ipc.server.callqueue.fair.max.tenant.share";
+  public static final float DEFAULT_MAX_TENANT_SHARE = 1.0f;
+
+  /** The tenant of the calls which do not tell their user or table */
+  static final String UNKNOWN_TENANT = "unknown";
+
+  private static final class Tenant {
+    private final String name;
+    // the name of the tenant in the metrics
+    private final String metricName;
+    private final int weight;
+    private final ArrayDeque<CallRunner> calls = new ArrayDeque<>();
+    // number of calls the tenant may still take in the current round
+    private int deficit;
+
+    private Tenant(String name, String metricName, int weight) {
+      this.name = name;
+      this.metricName = metricName;
+      this.weight = weight;
+    }
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final int capacity;
+  private final boolean byTable;
+
+  // the tenants with queued calls, and the order they are served in
+  private final Map<String, Tenant> tenants = new HashMap<>();
+  private final ArrayDeque<Tenant> round = new ArrayDeque<>();
+  private volatile int count;
+
+  private volatile Map<String, Integer> weights;
+  private volatile int defaultWeight;
+  private volatile int maxTenantCalls;
+  private volatile MetricsHBaseServer metrics;
+
+  public WeightedFairCallQueue(int capacity, Configuration conf) {
+    this.capacity = capacity;
+    String tenant = conf.get(TENANT_CONF_KEY, TENANT_USER).toLowerCase(Locale.ROOT);
+    if (!tenant.equals(TENANT_USER) && !tenant.equals(TENANT_TABLE)) {
+      LOG.warn("Unknown {}={}, grouping calls by {}", TENANT_CONF_KEY, tenant, TENANT_USER);
+    }
+    this.byTable = tenant.equals(TENANT_TABLE);
+    onConfigurationChange(conf);
+  }
+
+  @Override
+  public void onConfigurationChange(Configuration conf) {
+    Map<String, Integer> newWeights = new HashMap<>();
+    for (Map.Entry<String, String> e : conf.getPropsWithPrefix(WEIGHT_CONF_PREFIX).entrySet()) {
+      try {
+        newWeights.put(e.getKey(), Math.max(1, Integer.parseInt(e.getValue().trim())));
+      } catch (NumberFormatException nfe) {
+        LOG.warn("Ignoring weight {} of tenant {}, not a number", e.getValue(), e.getKey());
+      }
+    }
+    this.weights = newWeights;
+    this.defaultWeight = Math.max(1, conf.getInt(DEFAULT_WEIGHT_CONF_KEY, DEFAULT_WEIGHT));
+    float maxShare = conf.getFloat(MAX_TENANT_SHARE_CONF_KEY, DEFAULT_MAX_TENANT_SHARE);
+    this.maxTenantCalls =
+      Math.max(1, (int) Math.ceil(capacity * Math.min(1.0f, Math.max(0.0f, maxShare))));
+  }
+
+  void setMetrics(MetricsHBaseServer metrics) {
+    this.metrics = metrics;
+  }
+
+  private static RegionSpecifier getRegion(Message param) {
+    if (param instanceof GetRequest) {
+      return ((GetRequest) param).getRegion();
+    } else if (param instanceof MutateRequest) {
+      return ((MutateRequest) param).getRegion();
+    } else if (param instanceof ScanRequest && ((ScanRequest) param).hasRegion()) {
+      return ((ScanRequest) param).getRegion();
+    } else if (param instanceof MultiRequest && ((MultiRequest) param).getRegionActionCount() > 0) {
+      return ((MultiRequest) param).getRegionAction(0).getRegion();
+    }
+    return null;
+  }
+
+  /**
+   * Returns the tenant of a call. By table, the calls which do not name a region, like the next
+   * calls of a scanner, all go to the same tenant.
+   */
+  String getTenant(CallRunner cr) {
+    RpcCall call = cr.getRpcCall();
+    if (!byTable) {
+      return call.getRequestUserName().orElse(UNKNOWN_TENANT);
+    }
+    RegionSpecifier region = getRegion(call.getParam());
+    if (region == null || region.getType() != RegionSpecifierType.REGION_NAME) {
+      return UNKNOWN_TENANT;
+    }
+    try {
+      TableName table = RegionInfo.getTable(region.getValue().toByteArray());
+      return table.getNameAsString();
+    } catch (IllegalArgumentException e) {
+      return UNKNOWN_TENANT;
+    }
+  }
+
+  /**
+   * Returns the name of a tenant in the metrics. A table is named
+   * Namespace_&lt;ns&gt;_table_&lt;t&gt;, like in the table metrics, since a colon is not allowed
+   * in a metric name.
+   */
+  String getMetricName(String tenant) {
+    if (!byTable || tenant.equals(UNKNOWN_TENANT)) {
+      return tenant;
+    }
+    TableName table = TableName.valueOf(tenant);
+    return "Namespace_" + table.getNamespaceAsString() + "_table_" + table.getQualifierAsString();
+  }
+
+  @Override
+  public boolean offer(CallRunner cr) {
+    String name = getTenant(cr);
+    lock.lock();
+    try {
+      if (count >= capacity) {
+        return false;
+      }
+      Tenant tenant = tenants.get(name);
+      if (tenant == null) {
+        tenant = new Tenant(name, getMetricName(name), weights.getOrDefault(name, defaultWeight));
+        tenants.put(name, tenant);
+        round.addLast(tenant);
+      } else if (tenant.calls.size() >= maxTenantCalls) {
+        return false;
+      }
+      tenant.calls.addLast(cr);
+      count++;
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Must hold the lock, and there must be calls queued. Takes the next call of the given tenant,
+  // which must be the first of the round.
+  private CallRunner dequeue(Tenant tenant) {
+    if (tenant.deficit <= 0) {
+      // a new round for the tenant
+      tenant.deficit += tenant.weight;
+    }
+    CallRunner cr = tenant.calls.pollFirst();
+    tenant.deficit--;
+    count--;
+    if (tenant.calls.isEmpty()) {
+      // an idle tenant does not keep its deficit for later
+      round.pollFirst();
+      tenants.remove(tenant.name);
+    } else if (tenant.deficit <= 0) {
+      round.addLast(round.pollFirst());
+    }
+    return cr;
+  }
+
+  // Reports the time a call waited in the queue, outside of the lock as the handlers of the queue
+  // would otherwise wait for the metrics of each other's calls.
+  private void dequeued(Tenant tenant, CallRunner cr) {
+    MetricsHBaseServer metrics = this.metrics;
+    if (metrics != null && cr != null && cr.getRpcCall() != null) {
+      metrics.dequeuedTenantCall(tenant.metricName,
+        (int) (EnvironmentEdgeManager.currentTime() - cr.getRpcCall().getReceiveTime()));
+    }
+  }
+
+  @Override
+  public CallRunner poll() {
+    Tenant tenant;
+    CallRunner cr;
+    lock.lock();
+    try {
+      if (count == 0) {
+        return null;
+      }
+      tenant = round.peekFirst();
+      cr = dequeue(tenant);
+    } finally {
+      lock.unlock();
+    }
+    dequeued(tenant, cr);
+    return cr;
+  }
+
+  @Override
+  public CallRunner poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    Tenant tenant;
+    CallRunner cr;
+    lock.lockInterruptibly();
+    try {
+      while (count == 0) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      tenant = round.peekFirst();
+      cr = dequeue(tenant);
+    } finally {
+      lock.unlock();
+    }
+    dequeued(tenant, cr);
+    return cr;
+  }
+
+  @Override
+  public CallRunner take() throws InterruptedException {
+    Tenant tenant;
+    CallRunner cr;
+    lock.lockInterruptibly();
+    try {
+      while (count == 0) {
+        notEmpty.await();
+      }
+      tenant = round.peekFirst();
+      cr = dequeue(tenant);
+    } finally {
+      lock.unlock();
+    }
+    dequeued(tenant, cr);
+    return cr;
+  }
+
+  @Override
+  public CallRunner peek() {
+    lock.lock();
+    try {
+      return count > 0 ? round.peekFirst().calls.peekFirst() : null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    lock.lock();
+    try {
+      for (Tenant tenant : round) {
+        if (tenant.calls.remove(o)) {
+          count--;
+          if (tenant.calls.isEmpty()) {
+            round.remove(tenant);
+            tenants.remove(tenant.name);
+          }
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    return count;
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return capacity - count;
+  }
+
+  @Override
+  public int drainTo(Collection<? super CallRunner> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super CallRunner> c, int maxElements) {
+    List<Tenant> from = new ArrayList<>();
+    List<CallRunner> drained = new ArrayList<>();
+    lock.lock();
+    try {
+      while (count > 0 && drained.size() < maxElements) {
+        Tenant tenant = round.peekFirst();
+        from.add(tenant);
+        drained.add(dequeue(tenant));
+      }
+    } finally {
+      lock.unlock();
+    }
+    for (int i = 0; i < drained.size(); i++) {
+      dequeued(from.get(i), drained.get(i));
+    }
+    c.addAll(drained);
+    return drained.size();
+  }
+
+  /** Returns a snapshot of the queued calls, grouped by tenant */
+  @Override
+  public Iterator<CallRunner> iterator() {
+    lock.lock();
+    try {
+      List<CallRunner> calls = new ArrayList<>(count);
+      for (Tenant tenant : round) {
+        calls.addAll(tenant.calls);
+      }
+      return calls.iterator();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the number of queued calls of each tenant with calls queued, by metric name */
+  Map<String, Integer> getTenantQueueLengths() {
+    lock.lock();
+    try {
+      Map<String, Integer> lengths = new HashMap<>();
+      for (Tenant tenant : round) {
+        lengths.put(tenant.metricName, tenant.calls.size());
+      }
+      return lengths;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // The executors never block to queue a call, they reject it if the queue is full.
+
+  @Override
+  public void put(CallRunner cr) throws InterruptedException {
+    throw new UnsupportedOperationException("This class only supports non-blocking offer()");
+  }
+
+  @Override
+  public boolean offer(CallRunner cr, long timeout, TimeUnit unit) throws InterruptedException {
+    throw new UnsupportedOperationException("This class only supports non-blocking offer()");
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellScanner;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.codec.Codec;
+import org.apache.hadoop.hbase.codec.KeyValueCodec;
+import org.apache.hadoop.hbase.codec.KeyValueCodecWithTags;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator;
+import org.apache.hadoop.hbase.io.ByteBufferListOutputStream;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Threads;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hbase.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Builds the cell block of a response without copying the larger cells. A cell of
+ * {@link ByteBufferKeyValue} type, as read from an unencoded block or from the memstore, is laid
+ * out in its buffer the same way {@link KeyValueCodec} and {@link KeyValueCodecWithTags} encode it,
+ * so the cell block refers to a slice of that buffer instead. Only the smaller cells and the length
+ * of each cell are copied, into buffers of the {@link ByteBuffAllocator}.
+ * <p>
+ * The slices are only valid as long as the blocks and memstore chunks the cells were read from, so
+ * the call must hold on to them, by delaying its {@link RpcCallback}, until the response is written
+ * out. The Netty RPC server writes the buffers of the response as a single composite buffer.
+ */
+@InterfaceAudience.Private
+class ZeroCopyCellBlockBuilder {
+
+  /** Whether the Netty RPC server refers to the cells in responses instead of copying them */
+  public static final String ZERO_COPY_ENABLED_KEY = "hbase.ipc.server.netty.cellblock.zerocopy";
+  public static final boolean DEFAULT_ZERO_COPY_ENABLED = false;
+
+  /**
+   * Minimum serialized size of a cell to refer to it instead of copying it. Each reference is a
+   * buffer of its own in the response, which costs more than copying a small cell.
+   */
+  public static final String MIN_SLICE_SIZE_KEY =
+    "hbase.ipc.server.netty.cellblock.zerocopy.min.size";
+  public static final int DEFAULT_MIN_SLICE_SIZE = 4096;
+
+  /**
+   * Number of threads running the callbacks of the calls whose responses refer to their cells, once
+   * the responses are written out.
+   */
+  public static final String CALLBACK_THREADS_KEY =
+    "hbase.ipc.server.netty.cellblock.zerocopy.callback.threads";
+  public static final int DEFAULT_CALLBACK_THREADS = 4;
+
+  /**
+   * The cell block of a response: the buffers to write, in order, and the stream holding the copied
+   * parts, to release once they are written.
+   */
+  static final class CellBlock {
+    private final ByteBufferListOutputStream stream;
+    private final List<ByteBuffer> buffers;
+    private final int size;
+    private final int slices;
+
+    private CellBlock(ByteBufferListOutputStream stream, List<ByteBuffer> buffers, int size,
+      int slices) {
+      this.stream = stream;
+      this.buffers = buffers;
+      this.size = size;
+      this.slices = slices;
+    }
+
+    ByteBufferListOutputStream getStream() {
+      return stream;
+    }
+
+    List<ByteBuffer> getBuffers() {
+      return buffers;
+    }
+
+    int getSize() {
+      return size;
+    }
+
+    /** Returns the number of cells referred to instead of copied */
+    int getSlices() {
+      return slices;
+    }
+  }
+
+  private final int minSliceSize;
+
+  private final ThreadPoolExecutor callBackPool;
+
+  ZeroCopyCellBlockBuilder(Configuration conf) {
+    this.minSliceSize = conf.getInt(MIN_SLICE_SIZE_KEY, DEFAULT_MIN_SLICE_SIZE);
+    int callBackThreads = conf.getInt(CALLBACK_THREADS_KEY, DEFAULT_CALLBACK_THREADS);
+    this.callBackPool = new ThreadPoolExecutor(callBackThreads, callBackThreads, 60,
+      TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      new ThreadFactoryBuilder().setNameFormat("RpcServer.zerocopy.callback-%d").setDaemon(true)
+        .setUncaughtExceptionHandler(Threads.LOGGING_EXCEPTION_HANDLER).build());
+    this.callBackPool.allowCoreThreadTimeOut(true);
+  }
+
+  /** Returns the builder to use, or null if the cells of the responses must be copied */
+  static ZeroCopyCellBlockBuilder create(Configuration conf) {
+    return conf.getBoolean(ZERO_COPY_ENABLED_KEY, DEFAULT_ZERO_COPY_ENABLED)
+      ? new ZeroCopyCellBlockBuilder(conf)
+      : null;
+  }
+
+  /**
+   * Runs the callback of a call whose response referred to its cells, once the response is written
+   * out or failed to be. The callback releases the scanners the cells were read from, which may do
+   * IO, so it does not run on the event loop of the channel, unless the server is stopping.
+   */
+  void runCallBack(Runnable callBack) {
+    try {
+      callBackPool.execute(callBack);
+    } catch (RejectedExecutionException e) {
+      callBack.run();
+    }
+  }
+
+  /** Stops the pool running the callbacks, once the callbacks already handed to it are run */
+  void stop() {
+    callBackPool.shutdown();
+  }
+
+  /**
+   * Returns whether the cells can be referred to for a connection using the given codec and
+   * compressor. The cells are then written the same way the codec writes them.
+   */
+  static boolean supports(Codec codec, CompressionCodec compressor) {
+    return compressor == null && codec != null && (codec.getClass() == KeyValueCodec.class
+      || codec.getClass() == KeyValueCodecWithTags.class);
+  }
+
+  /**
+   * Builds the cell block of the cells, which must be of a codec it {@link #supports}.
+   * @return the cell block, or null if there are no cells
+   */
+  CellBlock build(Codec codec, CellScanner cellScanner, ByteBuffAllocator allocator)
+    throws IOException {
+    if (cellScanner == null) {
+      return null;
+    }
+    boolean withTags = codec.getClass() == KeyValueCodecWithTags.class;
+    ByteBufferListOutputStream stream = new ByteBufferListOutputStream(allocator);
+    List<ByteBuffer> slices = new ArrayList<>();
+    // where each slice goes in the copied stream
+    List<Integer> positions = new ArrayList<>();
+    int size = 0;
+    try {
+      while (cellScanner.advance()) {
+        Cell cell = cellScanner.current();
+        int cellSize = KeyValueUtil.getSerializedSize(cell, withTags);
+        ByteBufferUtils.putInt(stream, cellSize);
+        if (cellSize >= minSliceSize && cell instanceof ByteBufferKeyValue) {
+          ByteBufferKeyValue bbCell = (ByteBufferKeyValue) cell;
+          ByteBuffer slice = bbCell.getBuffer().duplicate();
+          slice.limit(bbCell.getOffset() + cellSize).position(bbCell.getOffset());
+          positions.add(stream.size());
+          slices.add(slice.slice());
+        } else {
+          KeyValueUtil.oswrite(cell, stream, withTags);
+        }
+        size += Bytes.SIZEOF_INT + cellSize;
+      }
+    } catch (IOException | RuntimeException e) {
+      stream.releaseResources();
+      throw e;
+    }
+    if (size == 0) {
+      stream.releaseResources();
+      return null;
+    }
+    return new CellBlock(stream, interleave(stream.getByteBuffers(), slices, positions), size,
+      slices.size());
+  }
+
+  /**
+   * Cuts the copied buffers where the slices go. All the buffers returned are sliced, so that the
+   * response header is never written past the limit of one of them, into a block.
+   */
+  static List<ByteBuffer> interleave(List<ByteBuffer> copied, List<ByteBuffer> slices,
+    List<Integer> positions) {
+    List<ByteBuffer> buffers = new ArrayList<>(copied.size() + 2 * slices.size());
+    int next = 0;
+    long streamPos = 0;
+    for (ByteBuffer buf : copied) {
+      ByteBuffer rest = buf.duplicate();
+      while (next < slices.size() && positions.get(next) <= streamPos + rest.remaining()) {
+        int cut = (int) (positions.get(next) - streamPos);
+        if (cut > 0) {
+          ByteBuffer head = rest.duplicate();
+          head.limit(head.position() + cut);
+          buffers.add(head.slice());
+          rest.position(rest.position() + cut);
+          streamPos += cut;
+        }
+        buffers.add(slices.get(next++));
+      }
+      if (rest.hasRemaining()) {
+        streamPos += rest.remaining();
+        buffers.add(rest.slice());
+      }
+    }
+    return buffers;
+  }
+}
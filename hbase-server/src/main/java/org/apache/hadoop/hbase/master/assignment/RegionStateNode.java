@@ -18,6 +18,8 @@
 package org.apache.hadoop.hbase.master.assignment;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -36,6 +38,8 @@ import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.StoreFileBlocks;
+
 /**
  * Current Region State. Most fields are synchronized with meta region, i.e, we will update meta
  * immediately after we modify this RegionStateNode, and usually under the lock. The only exception
@@ -102,6 +106,12 @@ public class RegionStateNode implements Comparable<RegionStateNode> {
 
   private volatile long openSeqNum = HConstants.NO_SEQNUM;
 
+  /**
+   * The blocks hot in the block cache of the server which last closed the region, passed on to the
+   * server opening it. Not persisted.
+   */
+  private volatile List<StoreFileBlocks> hotBlocks = Collections.emptyList();
+
   RegionStateNode(RegionInfo regionInfo, ConcurrentMap<RegionInfo, RegionStateNode> ritMap) {
     this.regionInfo = regionInfo;
     this.event = new AssignmentProcedureEvent(regionInfo);
@@ -252,6 +262,14 @@ public class RegionStateNode implements Comparable<RegionStateNode> {
     return openSeqNum;
   }
 
+  public void setHotBlocks(List<StoreFileBlocks> hotBlocks) {
+    this.hotBlocks = hotBlocks;
+  }
+
+  public List<StoreFileBlocks> getHotBlocks() {
+    return hotBlocks;
+  }
+
   public int getFormatVersion() {
     // we don't have any format for now
     // it should probably be in regionInfo.getFormatVersion()
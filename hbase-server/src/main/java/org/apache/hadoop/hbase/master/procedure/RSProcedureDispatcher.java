@@ -32,6 +32,7 @@ import org.apache.hadoop.hbase.ipc.ServerNotRunningYetException;
 import org.apache.hadoop.hbase.master.MasterServices;
 import org.apache.hadoop.hbase.master.ServerListener;
 import org.apache.hadoop.hbase.master.ServerManager;
+import org.apache.hadoop.hbase.master.assignment.RegionStateNode;
 import org.apache.hadoop.hbase.procedure2.ProcedureExecutor;
 import org.apache.hadoop.hbase.procedure2.RemoteProcedureDispatcher;
 import org.apache.hadoop.hbase.regionserver.RegionServerAbortedException;
@@ -506,8 +507,14 @@ public class RSProcedureDispatcher extends RemoteProcedureDispatcher<MasterProce
 
     public OpenRegionRequest.RegionOpenInfo
       buildRegionOpenInfoRequest(final MasterProcedureEnv env) {
-      return RequestConverter.buildRegionOpenInfo(regionInfo,
+      OpenRegionRequest.RegionOpenInfo openInfo = RequestConverter.buildRegionOpenInfo(regionInfo,
         env.getAssignmentManager().getFavoredNodes(regionInfo), procId);
+      RegionStateNode regionNode =
+        env.getAssignmentManager().getRegionStates().getRegionStateNode(regionInfo);
+      if (regionNode != null && !regionNode.getHotBlocks().isEmpty()) {
+        openInfo = openInfo.toBuilder().addAllHotBlocks(regionNode.getHotBlocks()).build();
+      }
+      return openInfo;
     }
   }
 
@@ -29,6 +29,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -36,6 +37,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntSupplier;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.conf.ConfigurationManager;
 import org.apache.hadoop.hbase.conf.PropagatingConfigurationObserver;
 import org.apache.hadoop.hbase.quotas.RegionServerSpaceQuotaManager;
@@ -85,6 +87,31 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
   public static final String HBASE_REGION_SERVER_ENABLE_COMPACTION =
     "hbase.regionserver.compaction.enabled";
 
+  /**
+   * Whether to order queued compactions by the read amplification they remove per byte they
+   * rewrite, with a fair share across tables, rather than by store priority alone. User requests
+   * and stores at their blocking file count still come first. The long compaction pool then also
+   * takes whichever of the two queues' first jobs comes first instead of only stealing small
+   * compactions when it has nothing else to do. Read when the compaction pools are created.
+   */
+  public static final String COMPACTION_BENEFIT_ORDERING =
+    "hbase.regionserver.compaction.benefit.ordering";
+  public static final boolean COMPACTION_BENEFIT_ORDERING_DEFAULT = false;
+
+  /**
+   * With the benefit ordering, how long in milliseconds a compaction with no benefit may be passed
+   * by the compactions queued after it. A compaction may be passed by those queued less than this
+   * time divided by one plus its benefit after it, so every compaction runs in the end.
+   */
+  public static final String COMPACTION_BENEFIT_MAX_WAIT =
+    "hbase.regionserver.compaction.benefit.max.wait";
+  public static final long COMPACTION_BENEFIT_MAX_WAIT_DEFAULT = 10 * 60 * 1000;
+
+  // A compaction merging a single file still drops deleted and expired cells, count it as saving a
+  // part of a seek, and a major compaction as much as merging two files
+  private static final double MIN_SEEKS_SAVED = 0.5;
+  private static final double MIN_SEEKS_SAVED_MAJOR = 1;
+
   private final HRegionServer server;
   private final Configuration conf;
   private volatile ThreadPoolExecutor longCompactions;
@@ -94,6 +121,12 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
   private volatile ThroughputController compactionThroughputController;
   private volatile Set<String> underCompactionStores = ConcurrentHashMap.newKeySet();
 
+  private volatile boolean benefitOrdering;
+  private volatile long benefitMaxWait;
+  // Compactions queued or running per table, for the fair share of the benefit ordering
+  private final ConcurrentMap<TableName, AtomicInteger> tableCompactions =
+    new ConcurrentHashMap<>();
+
   private volatile boolean compactionsEnabled;
   /**
    * Splitting should not take place if the total number of regions exceed this. This is not a hard
@@ -143,7 +176,13 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
 
     final String n = Thread.currentThread().getName();
 
-    StealJobQueue<Runnable> stealJobQueue = new StealJobQueue<Runnable>(COMPARATOR);
+    this.benefitOrdering =
+      conf.getBoolean(COMPACTION_BENEFIT_ORDERING, COMPACTION_BENEFIT_ORDERING_DEFAULT);
+    this.benefitMaxWait =
+      conf.getLong(COMPACTION_BENEFIT_MAX_WAIT, COMPACTION_BENEFIT_MAX_WAIT_DEFAULT);
+    StealJobQueue<Runnable> stealJobQueue = benefitOrdering
+      ? new StealJobQueue<Runnable>(BENEFIT_COMPARATOR, true)
+      : new StealJobQueue<Runnable>(COMPARATOR);
     // Since the StealJobQueue inner uses the PriorityBlockingQueue,
     // which is an unbounded blocking queue, we remove the RejectedExecutionHandler for
     // the long and short compaction thread pool executors since HBASE-27332.
@@ -249,6 +288,8 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
   }
 
   private void reInitializeCompactionsExecutors() {
+    // The runners dropped by the interrupted pools never released their table shares
+    tableCompactions.clear();
     createCompactionExecutors();
   }
 
@@ -575,6 +616,81 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
     }
   };
 
+  /**
+   * Orders user requests and stores that are about to block updates by priority, ahead of all other
+   * compactions, which go by their benefit deadline, see {@link #getBenefitDeadline}.
+   */
+  private static final Comparator<Runnable> BENEFIT_COMPARATOR = new Comparator<Runnable>() {
+
+    private boolean isUrgent(CompactionRunner runner) {
+      return runner.queuedPriority <= PRIORITY_USER;
+    }
+
+    @Override
+    public int compare(Runnable r1, Runnable r2) {
+      if (!(r1 instanceof CompactionRunner) || !(r2 instanceof CompactionRunner)) {
+        return COMPARATOR.compare(r1, r2);
+      }
+      CompactionRunner o1 = (CompactionRunner) r1;
+      CompactionRunner o2 = (CompactionRunner) r2;
+      boolean urgent1 = isUrgent(o1);
+      if (urgent1 != isUrgent(o2)) {
+        return urgent1 ? -1 : 1;
+      }
+      if (!urgent1) {
+        // earlier first
+        int cmp = Long.compare(o1.benefitDeadline, o2.benefitDeadline);
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return COMPARATOR.compare(r1, r2);
+    }
+  };
+
+  /**
+   * Estimates what a compaction is worth per MB it rewrites. Merging n files saves every read of
+   * the store n - 1 file seeks, so the saving is weighted by the read rate of the region and by how
+   * close the store is to blocking updates. It is shared by the compactions the table already has
+   * queued or running, so that a burst from one table does not crowd out the others. A compaction
+   * of a single file or a major compaction still drops deleted and expired cells, so it is worth a
+   * minimum saving.
+   * @param filesToCompact   number of files the compaction merges
+   * @param bytesToRewrite   size of those files
+   * @param major            whether the compaction is a major one
+   * @param readsPerSecond   read requests per second on the region
+   * @param storeFiles       number of files in the store
+   * @param blockingFiles    number of files at which the store blocks updates
+   * @param tableCompactions compactions of the same table ahead of this one
+   */
+  static double estimateBenefit(int filesToCompact, long bytesToRewrite, boolean major,
+    double readsPerSecond, int storeFiles, long blockingFiles, int tableCompactions) {
+    double seeksSaved =
+      Math.max(filesToCompact - 1, major ? MIN_SEEKS_SAVED_MAJOR : MIN_SEEKS_SAVED)
+        * (1 + readsPerSecond);
+    double pressure = 1 + (double) storeFiles / Math.max(blockingFiles, 1);
+    double mbToRewrite = Math.max(bytesToRewrite / (1024.0 * 1024.0), 1);
+    return seeksSaved * pressure / mbToRewrite / (1 + tableCompactions);
+  }
+
+  /**
+   * Returns the time by which a compaction queued at the given time should run, the queued
+   * compactions going by earliest deadline. The more a compaction is worth, the closer its deadline
+   * is to the time it was queued, and a compaction queued more than {@code maxWait} after another
+   * never goes ahead of it, however much it is worth.
+   */
+  static long getBenefitDeadline(long queuedTime, double benefit, long maxWait) {
+    return queuedTime + (long) (maxWait / (1 + Math.max(benefit, 0)));
+  }
+
+  private static double getReadRequestsPerSecond(HRegion region) {
+    MetricsRegion metrics = region.getMetrics();
+    if (metrics != null && metrics.getRegionWrapper() instanceof MetricsRegionWrapperImpl) {
+      return ((MetricsRegionWrapperImpl) metrics.getRegionWrapper()).getReadRequestsPerSecond();
+    }
+    return 0;
+  }
+
   private final class CompactionRunner implements Runnable {
     private final HStore store;
     private final HRegion region;
@@ -585,6 +701,9 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
     private ThreadPoolExecutor parent;
     private User user;
     private long time;
+    // Set when the benefit ordering is on; the table share is held until the runner finishes
+    private final TableName table;
+    private long benefitDeadline;
 
     public CompactionRunner(HStore store, HRegion region, CompactionContext compaction,
       CompactionLifeCycleTracker tracker, CompactionCompleteTracker completeTracker,
@@ -599,6 +718,31 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
       this.parent = parent;
       this.user = user;
       this.time = EnvironmentEdgeManager.currentTime();
+      if (benefitOrdering && region.getRegionInfo() != null) {
+        this.table = region.getRegionInfo().getTable();
+        int ahead =
+          tableCompactions.computeIfAbsent(table, t -> new AtomicInteger()).getAndIncrement();
+        // A system compaction selects its files later, so estimate from the whole store
+        double benefit = compaction != null
+          ? estimateBenefit(compaction.getRequest().getFiles().size(),
+            compaction.getRequest().getSize(), compaction.getRequest().isMajor(),
+            getReadRequestsPerSecond(region), store.getStorefilesCount(),
+            store.getBlockingFileCount(), ahead)
+          : estimateBenefit(store.getStorefilesCount(), store.getStorefilesSize(), false,
+            getReadRequestsPerSecond(region), store.getStorefilesCount(),
+            store.getBlockingFileCount(), ahead);
+        this.benefitDeadline = getBenefitDeadline(time, benefit, benefitMaxWait);
+      } else {
+        this.table = null;
+      }
+    }
+
+    private void releaseTableShare() {
+      if (table == null) {
+        return;
+      }
+      tableCompactions.computeIfPresent(table,
+        (t, count) -> count.decrementAndGet() <= 0 ? null : count);
     }
 
     @Override
@@ -611,7 +755,8 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
       }
     }
 
-    private void doCompaction(User user) {
+    /** Returns true if the runner was queued again rather than done */
+    private boolean doCompaction(User user) {
       CompactionContext c;
       // Common case - system compaction without a file selection. Select now.
       if (compaction == null) {
@@ -621,7 +766,7 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
           // Store priority decreased while we were in queue (due to some other compaction?),
           // requeue with new priority to avoid blocking potential higher priorities.
           this.parent.execute(this);
-          return;
+          return true;
         }
         Optional<CompactionContext> selected;
         try {
@@ -631,11 +776,11 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
           LOG.error("Compaction selection failed " + this, ex);
           server.checkFileSystem();
           region.decrementCompactionsQueuedCount();
-          return;
+          return false;
         }
         if (!selected.isPresent()) {
           region.decrementCompactionsQueuedCount();
-          return; // nothing to do
+          return false; // nothing to do
         }
         c = selected.get();
         assert c.hasSelection();
@@ -651,7 +796,7 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
           this.store.cancelRequestedCompaction(c);
           this.parent = pool;
           this.parent.execute(this);
-          return;
+          return true;
         }
       } else {
         c = compaction;
@@ -700,10 +845,12 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
         region.decrementCompactionsQueuedCount();
         LOG.debug("Status {}", CompactSplit.this);
       }
+      return false;
     }
 
     @Override
     public void run() {
+      boolean requeued = false;
       try {
         Preconditions.checkNotNull(server);
         if (
@@ -713,7 +860,7 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
           region.decrementCompactionsQueuedCount();
           return;
         }
-        doCompaction(user);
+        requeued = doCompaction(user);
       } finally {
         if (LOG.isDebugEnabled()) {
           LOG.debug("Remove under compaction mark for store: {}",
@@ -721,6 +868,9 @@ public class CompactSplit implements CompactionRequester, PropagatingConfigurati
               + store.getColumnFamilyName());
         }
         underCompactionStores.remove(getStoreNameForUnderCompaction(store));
+        if (!requeued) {
+          releaseTableShare();
+        }
       }
     }
 
@@ -88,7 +88,7 @@ public class CompactingMemStore extends AbstractMemStore {
     CHUNK_MAP // CellChunkMap
   }
 
-  private IndexType indexType = IndexType.ARRAY_MAP; // default implementation
+  private volatile IndexType indexType = IndexType.ARRAY_MAP; // default implementation
 
   public static final long DEEP_OVERHEAD =
     ClassSize.align(AbstractMemStore.DEEP_OVERHEAD + 6 * ClassSize.REFERENCE // Store,
@@ -359,12 +359,11 @@ public class CompactingMemStore extends AbstractMemStore {
     pipeline.flattenOneSegment(requesterVersion, indexType, action);
   }
 
-  // setter is used only for testability
+  // used by the compactor when its strategy picks the index, and by tests
   void setIndexType(IndexType type) {
     indexType = type;
-    // Because this functionality is for testing only and tests are setting in-memory flush size
-    // according to their need, there is no setting of in-memory flush size, here.
-    // If it is needed, please change in-memory flush size explicitly
+    // The in-memory flush size is not updated here. Tests set it according to their need, and
+    // strategies only switch the index of the immutable segments, not how often they are made.
   }
 
   public IndexType getIndexType() {
@@ -26,6 +26,7 @@ import static org.apache.hadoop.hbase.util.ConcurrentMapUtils.computeIfAbsent;
 import com.google.errorprone.annotations.RestrictedApi;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import io.opentelemetry.api.trace.Span;
+import java.io.Closeable;
 import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -69,6 +70,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -312,6 +314,18 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   private final ConcurrentHashMap<HashedBytes, RowLockContext> lockedRows =
     new ConcurrentHashMap<>();
 
+  /**
+   * Number of released row lock contexts kept per region for reuse, so that locking a row which is
+   * not currently locked does not have to allocate a new context and read/write lock. Zero, the
+   * default, disables the pool.
+   */
+  public static final String ROW_LOCK_CONTEXT_POOL_SIZE_KEY =
+    "hbase.hregion.rowlock.context.pool.size";
+  public static final int DEFAULT_ROW_LOCK_CONTEXT_POOL_SIZE = 0;
+
+  // Released row lock contexts, striped by thread id. Null if the pool is disabled.
+  private final AtomicReferenceArray<RowLockContext> rowLockContextPool;
+
   protected final Map<byte[], HStore> stores =
     new ConcurrentSkipListMap<>(Bytes.BYTES_RAWCOMPARATOR);
 
@@ -320,6 +334,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
   // Track data size in all memstores
   private final MemStoreSizing memStoreSizing = new ThreadSafeMemStoreSizing();
+  // Total data ever added to the memstores, for the write rate seen by the flusher
+  private final LongAdder memStoreBytesWritten = new LongAdder();
   RegionServicesForStores regionServicesForStores;
 
   // Debug possible data loss due to WAL off
@@ -350,6 +366,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
   private BlockCache blockCache;
   private MobFileCache mobFileCache;
+  private final RowCache rowCache;
+  // Part of the keys of the cached rows of this region, replaced to invalidate all of them
+  private volatile long rowCacheEpoch = RowCache.nextEpoch();
   private final WAL wal;
   private final HRegionFileSystem fs;
   protected final Configuration conf;
@@ -396,7 +415,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   static final long DEFAULT_ROW_PROCESSOR_TIMEOUT = 60 * 1000L;
   final ExecutorService rowProcessorExecutor = Executors.newCachedThreadPool();
 
-  final ConcurrentHashMap<RegionScanner, Long> scannerReadPoints;
+  // the read points in use, by the scanners and SharedReadPoints using them
+  final ConcurrentHashMap<Object, Long> scannerReadPoints;
   final ReadPointCalculationLock smallestReadPointCalcLock;
 
   /**
@@ -761,11 +781,11 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
     this.wal = wal;
     this.fs = fs;
-    this.mvcc = new MultiVersionConcurrencyControl(getRegionInfo().getShortNameToLog());
 
     // 'conf' renamed to 'confParam' b/c we use this.conf in the constructor
     this.baseConf = confParam;
     this.conf = new CompoundConfiguration().add(confParam).addBytesMap(htd.getValues());
+    this.mvcc = new MultiVersionConcurrencyControl(getRegionInfo().getShortNameToLog(), conf);
     this.cellComparator = htd.isMetaTable()
       || conf.getBoolean(USE_META_CELL_COMPARATOR, DEFAULT_USE_META_CELL_COMPARATOR)
         ? MetaCellComparator.META_COMPARATOR
@@ -788,6 +808,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       tmpRowLockDuration = 1;
     }
     this.rowLockWaitDuration = tmpRowLockDuration;
+    int rowLockContextPoolSize =
+      conf.getInt(ROW_LOCK_CONTEXT_POOL_SIZE_KEY, DEFAULT_ROW_LOCK_CONTEXT_POOL_SIZE);
+    this.rowLockContextPool =
+      rowLockContextPoolSize > 0 ? new AtomicReferenceArray<>(rowLockContextPoolSize) : null;
 
     this.isLoadingCfsOnDemandDefault = conf.getBoolean(LOAD_CFS_ON_DEMAND_CONFIG_KEY, true);
     this.htableDescriptor = htd;
@@ -808,6 +832,11 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       this.blockCache = rsServices.getBlockCache().orElse(null);
       this.mobFileCache = rsServices.getMobFileCache().orElse(null);
     }
+    // Only the primary replica sees the writes that invalidate the cached rows
+    this.rowCache = rsServices != null && RegionReplicaUtil.isDefaultReplica(getRegionInfo())
+      && this.conf.getBoolean(RowCache.ROW_CACHE_ENABLED_KEY, RowCache.DEFAULT_ROW_CACHE_ENABLED)
+        ? rsServices.getRowCache().orElse(null)
+        : null;
     this.regionServicesForStores = new RegionServicesForStores(this, rsServices);
 
     setHTableSpecificConf();
@@ -1308,6 +1337,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     if (this.rsAccounting != null) {
       rsAccounting.incGlobalMemStoreSize(dataSizeDelta, heapSizeDelta, offHeapSizeDelta);
     }
+    if (dataSizeDelta > 0) {
+      memStoreBytesWritten.add(dataSizeDelta);
+    }
     long dataSize = this.memStoreSizing.incMemStoreSize(dataSizeDelta, heapSizeDelta,
       offHeapSizeDelta, cellsCountDelta);
     checkNegativeMemStoreDataSize(dataSize, dataSizeDelta);
@@ -1478,6 +1510,45 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return mvcc.getReadPoint();
   }
 
+  /**
+   * A read point of the region registered as in use, like the read point of an open scanner, so
+   * that flushes and compactions keep what is visible at it until it is closed.
+   */
+  final class SharedReadPoint implements Closeable {
+    private final long readPoint;
+
+    private SharedReadPoint() {
+      smallestReadPointCalcLock.lock(ReadPointCalculationLock.LockType.RECORDING_LOCK);
+      try {
+        this.readPoint = mvcc.getReadPoint();
+        scannerReadPoints.put(this, readPoint);
+      } finally {
+        smallestReadPointCalcLock.unlock(ReadPointCalculationLock.LockType.RECORDING_LOCK);
+      }
+    }
+
+    HRegion getRegion() {
+      return HRegion.this;
+    }
+
+    long getReadPoint() {
+      return readPoint;
+    }
+
+    @Override
+    public void close() {
+      scannerReadPoints.remove(this);
+    }
+  }
+
+  /**
+   * Takes the current read point for several reads to share, instead of each of them taking its
+   * own. The returned read point must be closed once the reads are done.
+   */
+  SharedReadPoint openSharedReadPoint() {
+    return new SharedReadPoint();
+  }
+
   public boolean isLoadingCfsOnDemandDefault() {
     return this.isLoadingCfsOnDemandDefault;
   }
@@ -2050,6 +2121,11 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return regionWalDir;
   }
 
+  /** Returns the total size of the data ever written into the memstores of this region */
+  long getMemStoreBytesWritten() {
+    return memStoreBytesWritten.sum();
+  }
+
   @Override
   public long getEarliestFlushTimeForAllStores() {
     return Collections.min(lastStoreFlushTimeMap.values());
@@ -2267,6 +2343,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           // method because Store#compact will clean up unconditionally
           requestNeedsCancellation = false;
           store.compact(compaction, throughputController, user);
+          invalidateRowCache();
         } catch (InterruptedIOException iioe) {
           String msg = "region " + this + " compaction interrupted";
           LOG.info(msg, iioe);
@@ -2931,6 +3008,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
     this.maxFlushedSeqId = flushedSeqId;
     this.lastFlushOpSeqId = flushOpSeqId;
+    invalidateRowCache();
 
     // C. Finally notify anyone waiting on memstore to clear:
     // e.g. checkResources().
@@ -3388,6 +3466,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       int readyToWriteCount = 0;
       int lastIndexExclusive = 0;
       RowLock prevRowLock = null;
+      // An atomic batch needs exclusive locks on all of its rows anyway, so take them up front in
+      // row order. Two atomic batches over overlapping rows then can not deadlock on each other
+      // until the row lock wait duration runs out.
+      Map<byte[], RowLock> sortedRowLocks = isAtomic() ? lockRowsInOrder(acquiredRowLocks) : null;
       for (; lastIndexExclusive < size(); lastIndexExclusive++) {
         // It reaches the miniBatchSize, stop here and process the miniBatch
         // This only applies to non-atomic batch operations.
@@ -3425,7 +3507,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         boolean throwException = false;
         try {
           // if atomic then get exclusive lock, else shared lock
-          rowLock = region.getRowLock(mutation.getRow(), !isAtomic(), prevRowLock);
+          rowLock = sortedRowLocks != null
+            ? sortedRowLocks.get(mutation.getRow())
+            : region.getRowLock(mutation.getRow(), !isAtomic(), prevRowLock);
         } catch (TimeoutIOException | InterruptedIOException e) {
           // NOTE: We will retry when other exceptions, but we should stop if we receive
           // TimeoutIOException or InterruptedIOException as operation has timed out or
@@ -3455,7 +3539,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           }
           break; // Stop acquiring more rows for this batch
         } else {
-          if (rowLock != prevRowLock) {
+          if (rowLock != prevRowLock && sortedRowLocks == null) {
             // It is a different row now, add this to the acquiredRowLocks and
             // set prevRowLock to the new returned rowLock
             acquiredRowLocks.add(rowLock);
@@ -3468,6 +3552,27 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       return createMiniBatch(lastIndexExclusive, readyToWriteCount);
     }
 
+    /**
+     * Takes exclusive locks on the distinct rows of all pending operations in row order. The locks
+     * are added to {@code acquiredRowLocks} as they are taken so the caller releases them whether
+     * or not we succeed.
+     */
+    private Map<byte[], RowLock> lockRowsInOrder(List<RowLock> acquiredRowLocks)
+      throws IOException {
+      Map<byte[], RowLock> rowLocks = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (int i = nextIndexToProcess; i < size(); i++) {
+        if (isOperationPending(i)) {
+          rowLocks.put(getMutation(i).getRow(), null);
+        }
+      }
+      for (Map.Entry<byte[], RowLock> entry : rowLocks.entrySet()) {
+        RowLock rowLock = region.getRowLock(entry.getKey(), false, null);
+        acquiredRowLocks.add(rowLock);
+        entry.setValue(rowLock);
+      }
+      return rowLocks;
+    }
+
     protected MiniBatchOperationInProgress<Mutation> createMiniBatch(final int lastIndexExclusive,
       final int readyToWriteCount) {
       return new MiniBatchOperationInProgress<>(getMutationsForCoprocs(), retCodeDetails,
@@ -4555,6 +4660,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       final boolean finalSuccess = success;
       batchOp.visitBatchOperations(true, finalLastIndexExclusive, (int i) -> {
         Mutation mutation = batchOp.getMutation(i);
+        if (rowCache != null) {
+          // the mvcc is complete, the write is visible to the readers that take a stamp from now
+          rowCache.invalidateRow(getRegionInfo(), mutation.getRow());
+        }
         if (mutation instanceof Increment || mutation instanceof Append) {
           if (finalSuccess) {
             batchOp.retCodeDetails[i] =
@@ -6452,7 +6561,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       // Keep trying until we have a lock or error out.
       // TODO: do we need to add a time component here?
       while (result == null) {
-        rowLockContext = computeIfAbsent(lockedRows, rowKey, () -> new RowLockContext(rowKey));
+        rowLockContext = getRowLockContext(rowKey);
         // Now try an get the lock.
         // This can fail as
         if (readLock) {
@@ -6466,9 +6575,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
             success = true;
             return prevRowLock;
           }
-          result = rowLockContext.newReadLock();
+          result = rowLockContext.newReadLock(rowKey);
         } else {
-          result = rowLockContext.newWriteLock();
+          result = rowLockContext.newWriteLock(rowKey);
         }
       }
 
@@ -6486,7 +6595,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         }
       }
 
-      if (timeout <= 0 || !result.getLock().tryLock(timeout, TimeUnit.MILLISECONDS)) {
+      if (timeout <= 0 || !tryRowLock(result.getLock(), timeout)) {
         String message = "Timed out waiting for lock for row: " + rowKey + " in region "
           + getRegionInfo().getEncodedName();
         if (reachDeadlineFirst) {
@@ -6521,6 +6630,53 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
   }
 
+  /**
+   * Returns the context for the row, taking a released one from the pool if the row is not locked
+   * yet. With the pool enabled the context must be created atomically with its insertion into
+   * {@link #lockedRows}, so a context which lost the race is never half published.
+   */
+  private RowLockContext getRowLockContext(HashedBytes rowKey) {
+    if (rowLockContextPool == null) {
+      return computeIfAbsent(lockedRows, rowKey, () -> new RowLockContext(rowKey));
+    }
+    RowLockContext rowLockContext = lockedRows.get(rowKey);
+    if (rowLockContext != null) {
+      return rowLockContext;
+    }
+    return lockedRows.computeIfAbsent(rowKey, k -> {
+      int slot = (int) (Thread.currentThread().getId() % rowLockContextPool.length());
+      RowLockContext pooled = rowLockContextPool.getAndSet(slot, null);
+      if (pooled == null) {
+        return new RowLockContext(k);
+      }
+      pooled.reuse(k);
+      return pooled;
+    });
+  }
+
+  private void recycleRowLockContext(RowLockContext rowLockContext) {
+    if (rowLockContextPool != null) {
+      int slot = (int) (Thread.currentThread().getId() % rowLockContextPool.length());
+      rowLockContextPool.compareAndSet(slot, null, rowLockContext);
+    }
+  }
+
+  /**
+   * Take the lock, recording how long we waited if it was not free. The first attempt does not wait
+   * but, unlike {@link Lock#tryLock()}, still honors the fairness of the row lock.
+   */
+  private boolean tryRowLock(Lock lock, int timeout) throws InterruptedException {
+    if (lock.tryLock(0, TimeUnit.MILLISECONDS)) {
+      return true;
+    }
+    long start = EnvironmentEdgeManager.currentTime();
+    boolean locked = lock.tryLock(timeout, TimeUnit.MILLISECONDS);
+    if (rsServices != null && rsServices.getMetrics() != null) {
+      rsServices.getMetrics().updateRowLockWait(EnvironmentEdgeManager.currentTime() - start);
+    }
+    return locked;
+  }
+
   private RowLock getRowLock(byte[] row, boolean readLock, final RowLock prevRowLock)
     throws IOException {
     return TraceUtil.trace(() -> getRowLockInternal(row, readLock, prevRowLock),
@@ -6545,7 +6701,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   }
 
   class RowLockContext {
-    private final HashedBytes row;
+    // Only changes when a pooled context is reused, guarded by lock.
+    private HashedBytes row;
     final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
     final AtomicBoolean usable = new AtomicBoolean(true);
     final AtomicInteger count = new AtomicInteger(0);
@@ -6556,20 +6713,24 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       this.row = row;
     }
 
-    RowLockImpl newWriteLock() {
+    RowLockImpl newWriteLock(HashedBytes expectedRow) {
       Lock l = readWriteLock.writeLock();
-      return getRowLock(l);
+      return getRowLock(expectedRow, l);
     }
 
-    RowLockImpl newReadLock() {
+    RowLockImpl newReadLock(HashedBytes expectedRow) {
       Lock l = readWriteLock.readLock();
-      return getRowLock(l);
+      return getRowLock(expectedRow, l);
     }
 
-    private RowLockImpl getRowLock(Lock l) {
-      count.incrementAndGet();
+    /**
+     * Returns null if this context was removed from {@link #lockedRows}, or was recycled for
+     * another row, since the caller looked it up. The caller then looks it up again.
+     */
+    private RowLockImpl getRowLock(HashedBytes expectedRow, Lock l) {
       synchronized (lock) {
-        if (usable.get()) {
+        if (usable.get() && row.equals(expectedRow)) {
+          count.incrementAndGet();
           return new RowLockImpl(this, l);
         } else {
           return null;
@@ -6585,11 +6746,25 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
             usable.set(false);
             RowLockContext removed = lockedRows.remove(row);
             assert removed == this : "we should never remove a different context";
+            recycleRowLockContext(this);
           }
         }
       }
     }
 
+    /**
+     * Prepare a pooled context for a new row. Nobody holds or waits for its lock, as the count
+     * dropped to zero before it was released to the pool.
+     */
+    void reuse(HashedBytes newRow) {
+      synchronized (lock) {
+        this.row = newRow;
+        this.threadName = null;
+        count.set(0);
+        usable.set(true);
+      }
+    }
+
     public void setThreadName(String threadName) {
       this.threadName = threadName;
     }
@@ -6917,6 +7092,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           }
         }
       }
+      if (!storeFiles.isEmpty()) {
+        invalidateRowCache();
+      }
 
       closeBulkRegionOperation();
     }
@@ -7378,18 +7556,27 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         return results;
       }
     }
-    Scan scan = new Scan(get);
-    if (scan.getLoadColumnFamiliesOnDemandValue() == null) {
-      scan.setLoadColumnFamiliesOnDemand(isLoadingCfsOnDemandDefault());
-    }
-    try (RegionScanner scanner = getScanner(scan, null, nonceGroup, nonce)) {
-      List<Cell> tmp = new ArrayList<>();
-      scanner.next(tmp);
-      // Copy EC to heap, then close the scanner.
-      // This can be an EXPENSIVE call. It may make an extra copy from offheap to onheap buffers.
-      // See more details in HBASE-26036.
-      for (Cell cell : tmp) {
-        results.add(CellUtil.cloneIfNecessary(cell));
+    RowCache.Token rowCacheToken = getRowCacheToken(get);
+    List<Cell> cached = rowCacheToken != null ? rowCache.get(rowCacheToken) : null;
+    if (cached != null) {
+      results.addAll(cached);
+    } else {
+      Scan scan = new Scan(get);
+      if (scan.getLoadColumnFamiliesOnDemandValue() == null) {
+        scan.setLoadColumnFamiliesOnDemand(isLoadingCfsOnDemandDefault());
+      }
+      try (RegionScanner scanner = getScanner(scan, null, nonceGroup, nonce)) {
+        List<Cell> tmp = new ArrayList<>();
+        scanner.next(tmp);
+        // Copy EC to heap, then close the scanner.
+        // This can be an EXPENSIVE call. It may make an extra copy from offheap to onheap buffers.
+        // See more details in HBASE-26036.
+        for (Cell cell : tmp) {
+          results.add(CellUtil.cloneIfNecessary(cell));
+        }
+      }
+      if (rowCacheToken != null) {
+        rowCache.put(rowCacheToken, results);
       }
     }
 
@@ -7403,6 +7590,32 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return results;
   }
 
+  /**
+   * Takes the stamp of the row of the Get in the row cache. Must be called before the Get reads the
+   * region, after the pre-get coprocessor hook which may change the Get.
+   * @return the token to look up and cache the result of the Get with, or null if the row cache
+   *         does not apply to it
+   */
+  RowCache.Token getRowCacheToken(Get get) {
+    if (rowCache == null || !RowCache.isCacheable(get, htableDescriptor)) {
+      return null;
+    }
+    return rowCache.newToken(getRegionInfo(), rowCacheEpoch, get);
+  }
+
+  RowCache getRowCache() {
+    return rowCache;
+  }
+
+  /**
+   * Makes all the cached rows of this region unreachable.
+   */
+  private void invalidateRowCache() {
+    if (rowCache != null) {
+      rowCacheEpoch = RowCache.nextEpoch();
+    }
+  }
+
   void metricsUpdateForGet(List<Cell> results, long before) {
     if (this.metricsRegion != null) {
       this.metricsRegion.updateGet(EnvironmentEdgeManager.currentTime() - before);
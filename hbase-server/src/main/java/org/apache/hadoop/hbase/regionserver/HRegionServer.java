@@ -58,6 +58,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -150,6 +151,7 @@ import org.apache.hadoop.hbase.regionserver.compactions.CompactionConfiguration;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionLifeCycleTracker;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionProgress;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequester;
+import org.apache.hadoop.hbase.regionserver.compactions.DefaultCompactor;
 import org.apache.hadoop.hbase.regionserver.handler.CloseMetaHandler;
 import org.apache.hadoop.hbase.regionserver.handler.CloseRegionHandler;
 import org.apache.hadoop.hbase.regionserver.handler.RSProcedureHandler;
@@ -466,6 +468,17 @@ public class HRegionServer extends Thread
   // The cache for mob files
   private MobFileCache mobFileCache;
 
+  private RowCache rowCache;
+
+  // The pool the stores seek their files on in parallel, if enabled
+  private ParallelSeekPool parallelSeekPool;
+
+  // The pool reading the hot blocks of the regions moved here, if the hand over is enabled
+  private ThreadPoolExecutor hotBlocksWarmUpPool;
+
+  // The pool the row ranges of large compactions are compacted on, if enabled
+  private ThreadPoolExecutor compactionRangePool;
+
   /** The health check chore. */
   private HealthCheckChore healthCheckChore;
 
@@ -668,6 +681,11 @@ public class HRegionServer extends Thread
       if (!isMasterNotCarryTable) {
         blockCache = BlockCacheFactory.createBlockCache(conf);
         mobFileCache = new MobFileCache(conf);
+        long rowCacheSize =
+          conf.getLong(RowCache.ROW_CACHE_SIZE_KEY, RowCache.DEFAULT_ROW_CACHE_SIZE);
+        if (rowCacheSize > 0) {
+          rowCache = new RowCache(rowCacheSize);
+        }
       }
 
       uncaughtExceptionHandler =
@@ -2119,12 +2137,12 @@ public class HRegionServer extends Thread
     executorService.startExecutorService(executorService.new ExecutorConfig()
       .setExecutorType(ExecutorType.RS_CLOSE_META).setCorePoolSize(closeMetaThreads));
     if (conf.getBoolean(StoreScanner.STORESCANNER_PARALLEL_SEEK_ENABLE, false)) {
-      final int storeScannerParallelSeekThreads =
-        conf.getInt("hbase.storescanner.parallel.seek.threads", 10);
-      executorService.startExecutorService(
-        executorService.new ExecutorConfig().setExecutorType(ExecutorType.RS_PARALLEL_SEEK)
-          .setCorePoolSize(storeScannerParallelSeekThreads).setAllowCoreThreadTimeout(true));
+      parallelSeekPool =
+        new ParallelSeekPool(getName(), conf.getInt(StoreScanner.STORESCANNER_PARALLEL_SEEK_THREADS,
+          StoreScanner.DEFAULT_STORESCANNER_PARALLEL_SEEK_THREADS));
     }
+    hotBlocksWarmUpPool = RegionHotBlocks.createWarmUpPool(getName(), conf);
+    compactionRangePool = DefaultCompactor.createRangePool(getName(), conf);
     final int logReplayOpsThreads =
       conf.getInt(HBASE_SPLIT_WAL_MAX_SPLITTER, DEFAULT_HBASE_SPLIT_WAL_MAX_SPLITTER);
     executorService.startExecutorService(
@@ -2552,6 +2570,7 @@ public class HRegionServer extends Thread
     for (long procId : procIds) {
       transition.addProcId(procId);
     }
+    transition.addAllHotBlocks(context.getHotBlocks());
 
     return builder.build();
   }
@@ -2799,6 +2818,21 @@ public class HRegionServer extends Thread
     if (this.executorService != null) {
       this.executorService.shutdown();
     }
+    if (this.parallelSeekPool != null) {
+      try {
+        this.parallelSeekPool.shutdown(5000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (this.hotBlocksWarmUpPool != null) {
+      // the warm ups are best effort, drop the ones left
+      this.hotBlocksWarmUpPool.shutdownNow();
+    }
+    if (this.compactionRangePool != null) {
+      // the compactions were interrupted already, their ranges are aborted with them
+      this.compactionRangePool.shutdownNow();
+    }
     if (
       this.replicationSourceHandler != null
         && this.replicationSourceHandler == this.replicationSinkHandler
@@ -3741,6 +3775,26 @@ public class HRegionServer extends Thread
     return Optional.ofNullable(this.mobFileCache);
   }
 
+  @Override
+  public Optional<RowCache> getRowCache() {
+    return Optional.ofNullable(this.rowCache);
+  }
+
+  @Override
+  public Optional<ParallelSeekPool> getParallelSeekPool() {
+    return Optional.ofNullable(this.parallelSeekPool);
+  }
+
+  @Override
+  public Optional<ThreadPoolExecutor> getCompactionRangePool() {
+    return Optional.ofNullable(this.compactionRangePool);
+  }
+
+  /** Returns the pool reading the hot blocks of the regions moved here, if enabled */
+  public Optional<ThreadPoolExecutor> getHotBlocksWarmUpPool() {
+    return Optional.ofNullable(this.hotBlocksWarmUpPool);
+  }
+
   @Override
   public AccessChecker getAccessChecker() {
     return rpcServices.getAccessChecker();
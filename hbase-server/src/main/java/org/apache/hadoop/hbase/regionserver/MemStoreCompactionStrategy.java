@@ -86,6 +86,14 @@ public abstract class MemStoreCompactionStrategy {
   public void resetStats() {
   }
 
+  /**
+   * Returns the index the segments of the pipeline should be flattened into, or null to keep the
+   * index type of the store. Consulted after {@link #getAction(VersionedSegmentsList)}.
+   */
+  public CompactingMemStore.IndexType getIndexType() {
+    return null;
+  }
+
   protected Action simpleMergeOrFlatten(VersionedSegmentsList versionedList, String strategy) {
     int numOfSegments = versionedList.getNumOfSegments();
     if (numOfSegments > pipelineThreshold) {
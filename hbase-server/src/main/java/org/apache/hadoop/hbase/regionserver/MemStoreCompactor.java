@@ -18,6 +18,7 @@
 package org.apache.hadoop.hbase.regionserver;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.hadoop.conf.Configuration;
@@ -26,6 +27,7 @@ import org.apache.hadoop.hbase.MemoryCompactionPolicy;
 import org.apache.hadoop.hbase.exceptions.IllegalArgumentIOException;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -141,6 +143,14 @@ public class MemStoreCompactor {
     ImmutableSegment result = null;
     boolean resultSwapped = false;
     MemStoreCompactionStrategy.Action nextStep = strategy.getAction(versionedList);
+    CompactingMemStore.IndexType indexType = strategy.getIndexType();
+    if (indexType != null) {
+      compactingMemStore.setIndexType(indexType);
+    }
+    MetricsRegionServer metrics = getMetrics();
+    if (metrics != null) {
+      metrics.updateInMemoryCompactionSegments(versionedList.getNumOfSegments());
+    }
     boolean merge = (nextStep == MemStoreCompactionStrategy.Action.MERGE
       || nextStep == MemStoreCompactionStrategy.Action.MERGE_COUNT_UNIQUE_KEYS);
     try {
@@ -156,7 +166,20 @@ public class MemStoreCompactor {
           || nextStep == MemStoreCompactionStrategy.Action.FLATTEN_COUNT_UNIQUE_KEYS
       ) {
         // some Segment in the pipeline is with SkipList index, make it flat
+        long start = EnvironmentEdgeManager.currentTime();
         compactingMemStore.flattenOneSegment(versionedList.getVersion(), nextStep);
+        if (metrics != null) {
+          metrics.updateInMemoryFlattenTime(EnvironmentEdgeManager.currentTime() - start);
+          // flattening replaces one segment and bumps the version of the pipeline, anything else
+          // means the pipeline changed in between and there is nothing to compare
+          VersionedSegmentsList flattened = compactingMemStore.getImmutableSegments();
+          if (
+            flattened.getVersion() == versionedList.getVersion() + 1
+              && flattened.getNumOfSegments() == versionedList.getNumOfSegments()
+          ) {
+            updateHeapSaved(metrics, flattened.getStoreSegments());
+          }
+        }
         return;
       }
 
@@ -172,6 +195,9 @@ public class MemStoreCompactor {
         if (resultSwapped) {
           // update compaction strategy
           strategy.updateStats(result);
+          if (metrics != null) {
+            updateHeapSaved(metrics, Collections.singletonList(result));
+          }
           // update the wal so it can be truncated and not get too long
           compactingMemStore.updateLowestUnflushedSequenceIdInWAL(true); // only if greater
         }
@@ -194,6 +220,26 @@ public class MemStoreCompactor {
 
   }
 
+  private MetricsRegionServer getMetrics() {
+    HRegion region = compactingMemStore.getStore().getHRegion();
+    RegionServerServices rsServices = region == null ? null : region.getRegionServerServices();
+    return rsServices == null ? null : rsServices.getMetrics();
+  }
+
+  private void updateHeapSaved(MetricsRegionServer metrics,
+    List<? extends Segment> replacementSegments) {
+    long saved = 0;
+    for (Segment s : versionedList.getStoreSegments()) {
+      saved += s.getHeapSize();
+    }
+    for (Segment s : replacementSegments) {
+      saved -= s.getHeapSize();
+    }
+    if (saved > 0) {
+      metrics.incrInMemoryCompactionHeapSaved(saved);
+    }
+  }
+
   /**
    * ---------------------------------------------------------------------- Creation of the
    * ImmutableSegment either by merge or copy-compact of the segments of the pipeline, based on the
@@ -252,6 +298,10 @@ public class MemStoreCompactor {
       case ADAPTIVE:
         strategy = new AdaptiveMemStoreCompactionStrategy(configuration, cfName);
         break;
+      case SELF_TUNING:
+        strategy = new SelfTuningMemStoreCompactionStrategy(configuration, cfName,
+          compactingMemStore.getStore().getColumnFamilyDescriptor().getMaxVersions());
+        break;
       default:
         // sanity check
         throw new IllegalArgumentIOException("Unknown memory compaction type " + compType);
@@ -22,6 +22,7 @@ import io.opentelemetry.context.Scope;
 import java.io.IOException;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -65,6 +66,29 @@ import org.apache.hbase.thirdparty.com.google.common.util.concurrent.ThreadFacto
 public class MemStoreFlusher implements FlushRequester {
   private static final Logger LOG = LoggerFactory.getLogger(MemStoreFlusher.class);
 
+  /**
+   * Whether to flush regions ahead of the global memstore low water mark when the recent write rate
+   * of the regions predicts it will be crossed within the horizon below.
+   */
+  public static final String PREDICTIVE_FLUSH_ENABLED_KEY =
+    "hbase.regionserver.flush.predictive.enabled";
+  public static final boolean DEFAULT_PREDICTIVE_FLUSH_ENABLED = false;
+  /** How far ahead the predictive flush looks, in milliseconds */
+  public static final String PREDICTIVE_FLUSH_HORIZON_KEY =
+    "hbase.regionserver.flush.predictive.horizon.ms";
+  public static final long DEFAULT_PREDICTIVE_FLUSH_HORIZON = 10000;
+  /** Weight of the latest sample in the moving average of the write rate of a region */
+  public static final String PREDICTIVE_FLUSH_ALPHA_KEY =
+    "hbase.regionserver.flush.predictive.alpha";
+  public static final double DEFAULT_PREDICTIVE_FLUSH_ALPHA = 0.3;
+  /**
+   * Share of its flush size a region's memstore must have reached to be flushed ahead of the limit,
+   * so that flushing early does not make lots of small files
+   */
+  public static final String PREDICTIVE_FLUSH_MIN_FRACTION_KEY =
+    "hbase.regionserver.flush.predictive.min.fraction";
+  public static final double DEFAULT_PREDICTIVE_FLUSH_MIN_FRACTION = 0.25;
+
   private Configuration conf;
   // These two data members go together. Any entry in the one must have
   // a corresponding entry in the other.
@@ -81,6 +105,11 @@ public class MemStoreFlusher implements FlushRequester {
   private final LongAdder updatesBlockedMsHighWater = new LongAdder();
 
   private final FlushHandler[] flushHandlers;
+  // Null when predictive flushes are disabled
+  private final MemStoreGrowthPredictor growthPredictor;
+  private final long predictiveFlushHorizon;
+  private final double predictiveFlushMinFraction;
+  private final long periodicFlushInterval;
   private List<FlushRequestListener> flushRequestListeners = new ArrayList<>(1);
 
   /**
@@ -133,6 +162,17 @@ public class MemStoreFlusher implements FlushRequester {
         + ", Offheap=" + (this.server.getRegionServerAccounting().isOffheap()));
     }
     this.flushHandlers = new FlushHandler[handlerCount];
+    this.growthPredictor =
+      conf.getBoolean(PREDICTIVE_FLUSH_ENABLED_KEY, DEFAULT_PREDICTIVE_FLUSH_ENABLED)
+        ? new MemStoreGrowthPredictor(
+          conf.getDouble(PREDICTIVE_FLUSH_ALPHA_KEY, DEFAULT_PREDICTIVE_FLUSH_ALPHA))
+        : null;
+    this.predictiveFlushHorizon =
+      conf.getLong(PREDICTIVE_FLUSH_HORIZON_KEY, DEFAULT_PREDICTIVE_FLUSH_HORIZON);
+    this.predictiveFlushMinFraction =
+      conf.getDouble(PREDICTIVE_FLUSH_MIN_FRACTION_KEY, DEFAULT_PREDICTIVE_FLUSH_MIN_FRACTION);
+    this.periodicFlushInterval = Math.max(1,
+      conf.getInt(HRegion.MEMSTORE_PERIODIC_FLUSH_INTERVAL, HRegion.DEFAULT_CACHE_FLUSH_INTERVAL));
   }
 
   public LongAdder getUpdatesBlockedMsHighWater() {
@@ -287,6 +327,65 @@ public class MemStoreFlusher implements FlushRequester {
     return true;
   }
 
+  /**
+   * Flushes one region if the write rate of the regions predicts the global memstore low water mark
+   * will be crossed within the predictive flush horizon, so that the flush is done before updates
+   * would be blocked. Regions with small memstores are left alone.
+   * @return true if a region was flushed and freed memory
+   */
+  private boolean flushAheadOfGlobalPressure() {
+    long now = EnvironmentEdgeManager.currentTime();
+    Collection<HRegion> regions = server.getOnlineRegionsLocalContext();
+    growthPredictor.update(regions, now);
+    RegionServerAccounting accounting = server.getRegionServerAccounting();
+    double predictedPressure =
+      accounting.getFlushPressure() + (double) growthPredictor.predictGrowth(predictiveFlushHorizon)
+        / accounting.getGlobalMemStoreLimitLowMark();
+    if (predictedPressure < 1) {
+      return false;
+    }
+    HRegion regionToFlush = null;
+    double bestScore = 0;
+    synchronized (regionsInQueue) {
+      for (HRegion region : regions) {
+        if (
+          region.writestate.flushing || !region.writestate.writesEnabled
+            || !RegionReplicaUtil.isDefaultReplica(region.getRegionInfo())
+            || isTooManyStoreFiles(region)
+        ) {
+          continue;
+        }
+        long size = region.getMemStoreDataSize();
+        if (size < region.getMemStoreFlushSize() * predictiveFlushMinFraction) {
+          continue;
+        }
+        double score = MemStoreGrowthPredictor.flushScore(size,
+          now - region.getEarliestFlushTimeForAllStores(), periodicFlushInterval);
+        if (score > bestScore) {
+          bestScore = score;
+          regionToFlush = region;
+        }
+      }
+    }
+    if (regionToFlush == null) {
+      return false;
+    }
+    long sizeBefore = regionToFlush.getMemStoreDataSize();
+    LOG.info(
+      "Flush of region {} ahead of global memstore pressure. Predicted pressure={} in {} ms,"
+        + " region memstore size={}, write rate={}/s",
+      regionToFlush, String.format("%.2f", predictedPressure), predictiveFlushHorizon,
+      TraditionalBinaryPrefix.long2String(sizeBefore, "", 1), TraditionalBinaryPrefix
+        .long2String((long) growthPredictor.getBytesPerSecond(regionToFlush), "", 1));
+    if (server.getMetrics() != null) {
+      server.getMetrics().incrPredictiveFlush();
+    }
+    // Only report success if memory was actually freed, so that a failing flush is not retried
+    // in a tight loop
+    return flushRegion(regionToFlush, true, null, FlushLifeCycleTracker.DUMMY)
+      && regionToFlush.getMemStoreDataSize() < sizeBefore;
+  }
+
   /** Returns Return memstore offheap size or null if <code>r</code> is null */
   private static long getMemStoreOffHeapSize(HRegion r) {
     return r == null ? 0 : r.getMemStoreOffHeapSize();
@@ -337,6 +436,9 @@ public class MemStoreFlusher implements FlushRequester {
               }
               // Enqueue another one of these tokens so we'll wake up again
               wakeupFlushThread();
+            } else if (growthPredictor != null && flushAheadOfGlobalPressure()) {
+              // Check again right away whether the flush was enough
+              wakeupFlushThread();
             }
             continue;
           }
@@ -747,6 +849,9 @@ public class MemStoreFlusher implements FlushRequester {
             if (totalTime > 0) {
               this.updatesBlockedMsHighWater.add(totalTime);
             }
+            if (server.getMetrics() != null) {
+              server.getMetrics().updateUpdatesBlockedTime(totalTime);
+            }
             LOG.info("Unblocking updates for server " + server.toString());
           }
         }
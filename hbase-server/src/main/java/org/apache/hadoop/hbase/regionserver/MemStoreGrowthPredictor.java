@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Tracks an exponentially weighted moving average of the rate at which each region writes into its
+ * memstore, so that {@link MemStoreFlusher} can see the global memstore limit coming and flush
+ * ahead of it instead of blocking updates once it is reached.
+ */
+@InterfaceAudience.Private
+class MemStoreGrowthPredictor {
+
+  // Samples taken closer together than this are too noisy to be worth averaging in
+  static final long MIN_SAMPLE_INTERVAL_MS = 1000;
+
+  private static final class Rate {
+    private long lastBytes;
+    private long lastTime;
+    private double bytesPerSecond;
+    private boolean sampled;
+
+    Rate(long bytes, long time) {
+      this.lastBytes = bytes;
+      this.lastTime = time;
+    }
+  }
+
+  private final double alpha;
+  private Map<HRegion, Rate> rates = new HashMap<>();
+
+  /**
+   * @param alpha weight of the latest sample in the moving average, between 0 and 1
+   */
+  MemStoreGrowthPredictor(double alpha) {
+    this.alpha = alpha;
+  }
+
+  /**
+   * Samples the bytes written by the given regions, forgetting about the regions no longer passed.
+   */
+  synchronized void update(Collection<HRegion> regions, long now) {
+    Map<HRegion, Rate> updated = new HashMap<>(regions.size() * 2);
+    for (HRegion region : regions) {
+      long bytes = region.getMemStoreBytesWritten();
+      Rate rate = rates.get(region);
+      if (rate == null) {
+        rate = new Rate(bytes, now);
+      } else if (now - rate.lastTime >= MIN_SAMPLE_INTERVAL_MS) {
+        double sample = (bytes - rate.lastBytes) * 1000.0 / (now - rate.lastTime);
+        rate.bytesPerSecond =
+          rate.sampled ? alpha * sample + (1 - alpha) * rate.bytesPerSecond : sample;
+        rate.sampled = true;
+        rate.lastBytes = bytes;
+        rate.lastTime = now;
+      }
+      updated.put(region, rate);
+    }
+    rates = updated;
+  }
+
+  /** Returns the average write rate of the region in bytes per second, 0 if not known yet */
+  synchronized double getBytesPerSecond(HRegion region) {
+    Rate rate = rates.get(region);
+    return rate == null ? 0 : rate.bytesPerSecond;
+  }
+
+  /** Returns the number of bytes all the regions are expected to write in the given time */
+  synchronized long predictGrowth(long horizonMs) {
+    double bytesPerSecond = 0;
+    for (Rate rate : rates.values()) {
+      bytesPerSecond += rate.bytesPerSecond;
+    }
+    return (long) (bytesPerSecond * horizonMs / 1000);
+  }
+
+  /**
+   * Scores a region as a candidate for a flush ahead of the global limit. Big memstores make fewer
+   * small files. Among memstores of about the same size, the ones holding the oldest edits go
+   * first, since a WAL roll or the periodic flusher would force them out later anyway.
+   * @param memStoreSize size of the memstore of the region
+   * @param ageMs        time since the region was last flushed
+   * @param maxAgeMs     time after which the periodic flusher flushes a region
+   */
+  static double flushScore(long memStoreSize, long ageMs, long maxAgeMs) {
+    return memStoreSize * (1 + (double) Math.min(Math.max(ageMs, 0), maxAgeMs) / maxAgeMs);
+  }
+}
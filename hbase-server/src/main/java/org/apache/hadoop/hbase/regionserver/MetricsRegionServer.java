@@ -236,6 +236,10 @@ public class MetricsRegionServer {
     serverSource.updateSplitTime(t);
   }
 
+  public void updateRowLockWait(long t) {
+    serverSource.updateRowLockWait(t);
+  }
+
   public void incrSplitRequest() {
     serverSource.incrSplitRequest();
   }
@@ -244,6 +248,26 @@ public class MetricsRegionServer {
     serverSource.incrSplitSuccess();
   }
 
+  public void updateUpdatesBlockedTime(long t) {
+    serverSource.updateUpdatesBlockedTime(t);
+  }
+
+  public void incrPredictiveFlush() {
+    serverSource.incrPredictiveFlush();
+  }
+
+  public void updateInMemoryCompactionSegments(int segments) {
+    serverSource.updateInMemoryCompactionSegments(segments);
+  }
+
+  public void updateInMemoryFlattenTime(long t) {
+    serverSource.updateInMemoryFlattenTime(t);
+  }
+
+  public void incrInMemoryCompactionHeapSaved(long bytes) {
+    serverSource.incrInMemoryCompactionHeapSaved(bytes);
+  }
+
   public void updateFlush(String table, long t, long memstoreSize, long fileSize) {
     serverSource.updateFlushTime(t);
     serverSource.updateFlushMemStoreSize(memstoreSize);
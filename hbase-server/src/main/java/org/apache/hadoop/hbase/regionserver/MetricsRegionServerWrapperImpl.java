@@ -40,6 +40,7 @@ import org.apache.hadoop.hbase.io.asyncfs.monitor.ExcludeDatanodeManager;
 import org.apache.hadoop.hbase.io.hfile.BlockCache;
 import org.apache.hadoop.hbase.io.hfile.CacheStats;
 import org.apache.hadoop.hbase.io.hfile.CombinedBlockCache;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCacheStats;
 import org.apache.hadoop.hbase.mob.MobFileCache;
 import org.apache.hadoop.hbase.regionserver.wal.MetricsWALSource;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
@@ -68,6 +69,7 @@ class MetricsRegionServerWrapperImpl implements MetricsRegionServerWrapper {
   private BlockCache l1Cache = null;
   private BlockCache l2Cache = null;
   private MobFileCache mobFileCache;
+  private RowCache rowCache;
   private CacheStats cacheStats;
   private CacheStats l1Stats = null;
   private CacheStats l2Stats = null;
@@ -99,6 +101,7 @@ class MetricsRegionServerWrapperImpl implements MetricsRegionServerWrapper {
     this.regionServer = regionServer;
     initBlockCache();
     initMobFileCache();
+    this.rowCache = regionServer.getRowCache().orElse(null);
     this.excludeDatanodeManager = this.regionServer.getWalFactory().getExcludeDatanodeManager();
 
     this.period = regionServer.getConfiguration().getLong(HConstants.REGIONSERVER_METRICS_PERIOD,
@@ -293,6 +296,21 @@ class MetricsRegionServerWrapperImpl implements MetricsRegionServerWrapper {
     return this.cacheStats != null ? this.cacheStats.getMissCount() : 0L;
   }
 
+  @Override
+  public long getRowCacheHitCount() {
+    return this.rowCache != null ? this.rowCache.getHitCount() : 0L;
+  }
+
+  @Override
+  public long getRowCacheMissCount() {
+    return this.rowCache != null ? this.rowCache.getMissCount() : 0L;
+  }
+
+  @Override
+  public long getRowCacheSize() {
+    return this.rowCache != null ? this.rowCache.getSize() : 0L;
+  }
+
   @Override
   public long getBlockCachePrimaryMissCount() {
     return this.cacheStats != null ? this.cacheStats.getPrimaryMissCount() : 0L;
@@ -408,6 +426,20 @@ class MetricsRegionServerWrapperImpl implements MetricsRegionServerWrapper {
     return this.l2Stats != null ? this.l2Stats.getMissRatio() : 0.0;
   }
 
+  @Override
+  public long getL2CacheAdmittedCount() {
+    return this.l2Stats instanceof BucketCacheStats
+      ? ((BucketCacheStats) this.l2Stats).getAdmittedCount()
+      : 0L;
+  }
+
+  @Override
+  public long getL2CacheRejectedCount() {
+    return this.l2Stats instanceof BucketCacheStats
+      ? ((BucketCacheStats) this.l2Stats).getRejectedCount()
+      : 0L;
+  }
+
   @Override
   public void forceRecompute() {
     this.runnable.run();
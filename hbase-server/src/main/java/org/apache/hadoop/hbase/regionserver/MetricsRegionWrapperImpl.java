@@ -59,6 +59,9 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
   private long maxCompactionQueueSize;
   private Map<String, Long> readsOnlyFromMemstore;
   private Map<String, Long> mixedReadsOnStore;
+  private long lastReadRequestCount;
+  private long lastReadRequestTime = EnvironmentEdgeManager.currentTime();
+  private volatile double readRequestsPerSecond;
 
   private ScheduledFuture<?> regionMetricsUpdateTask;
 
@@ -136,6 +139,14 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return this.region.getReadRequestsCount();
   }
 
+  /**
+   * Returns the rate of read requests over the last metrics period, used to tell hot regions from
+   * cold ones when ordering compactions.
+   */
+  public double getReadRequestsPerSecond() {
+    return readRequestsPerSecond;
+  }
+
   @Override
   public long getFilteredReadRequestCount() {
     return this.region.getFilteredReadRequestsCount();
@@ -238,6 +249,16 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return mixedReadsOnStore;
   }
 
+  @Override
+  public long getMvccWriteQueueContendedCount() {
+    return this.region.getMVCC().getContendedCount();
+  }
+
+  @Override
+  public long getMvccWriteQueueFullCount() {
+    return this.region.getMVCC().getRingFullCount();
+  }
+
   public class HRegionMetricsWrapperRunnable implements Runnable {
 
     @Override
@@ -326,6 +347,14 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
       }
 
       numReferenceFiles = tempNumReferenceFiles;
+      long readRequestCount = region.getReadRequestsCount();
+      long now = EnvironmentEdgeManager.currentTime();
+      if (now > lastReadRequestTime) {
+        readRequestsPerSecond =
+          (readRequestCount - lastReadRequestCount) * 1000.0 / (now - lastReadRequestTime);
+      }
+      lastReadRequestCount = readRequestCount;
+      lastReadRequestTime = now;
       tempMaxCompactionQueueSize = getNumCompactionsQueued();
       tempMaxFlushQueueSize = getNumFlushesQueued();
       if (tempMaxCompactionQueueSize > maxCompactionQueueSize) {
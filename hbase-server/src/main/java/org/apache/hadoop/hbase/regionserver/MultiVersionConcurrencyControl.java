@@ -19,6 +19,10 @@ package org.apache.hadoop.hbase.regionserver;
 
 import java.util.LinkedList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.ClassSize;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -32,35 +36,91 @@ import org.apache.hbase.thirdparty.com.google.common.base.MoreObjects.ToStringHe
  * Manages the read/write consistency. This provides an interface for readers to determine what
  * entries to ignore, and a mechanism for writers to obtain new write numbers, then "commit" the new
  * writes for readers to read (thus forming atomic transactions).
+ * <p>
+ * Pending writes are tracked in one of two ways, chosen by {@link #WRITE_QUEUE_TYPE_KEY}, which
+ * like other region settings can be overridden per table:
+ * <ul>
+ * <li>{@code linked} (default): a linked list guarded by a lock which both {@link #begin()} and
+ * {@link #complete(WriteEntry)} take.</li>
+ * <li>{@code ring}: a fixed size ring indexed by write number. {@link #begin()} still takes the
+ * lock, so the action passed to {@link #begin(Runnable)} keeps running in mvcc order, but
+ * {@link #complete(WriteEntry)} is lock free: the completing thread marks its entry and then
+ * advances the read point with CAS over the contiguous run of completed entries. When there are
+ * more outstanding writes than the ring can hold, {@link #begin()} waits for the read point to
+ * catch up.</li>
+ * </ul>
  */
 @InterfaceAudience.Private
 public class MultiVersionConcurrencyControl {
   private static final Logger LOG = LoggerFactory.getLogger(MultiVersionConcurrencyControl.class);
   private static final long READPOINT_ADVANCE_WAIT_TIME = 10L;
 
+  public static final String WRITE_QUEUE_TYPE_KEY = "hbase.hregion.mvcc.write.queue.type";
+  public static final String WRITE_QUEUE_TYPE_LINKED = "linked";
+  public static final String WRITE_QUEUE_TYPE_RING = "ring";
+  public static final String DEFAULT_WRITE_QUEUE_TYPE = WRITE_QUEUE_TYPE_LINKED;
+  public static final String WRITE_QUEUE_RING_SIZE_KEY = "hbase.hregion.mvcc.write.queue.ring.size";
+  public static final int DEFAULT_WRITE_QUEUE_RING_SIZE = 64 * 1024;
+
   final String regionName;
   final AtomicLong readPoint = new AtomicLong(0);
   final AtomicLong writePoint = new AtomicLong(0);
   private final Object readWaiters = new Object();
+  private volatile int readWaiterCount = 0;
   /**
    * Represents no value, or not set.
    */
   public static final long NONE = -1;
 
-  // This is the pending queue of writes.
-  //
-  // TODO(eclark): Should this be an array of fixed size to
-  // reduce the number of allocations on the write path?
-  // This could be equal to the number of handlers + a small number.
-  // TODO: St.Ack 20150903 Sounds good to me.
+  // Guards the write queue, and in ring mode serializes begin and tryAdvanceTo.
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  // This is the pending queue of writes when not running in ring mode.
   private final LinkedList<WriteEntry> writeQueue = new LinkedList<>();
 
+  // The pending writes in ring mode, slot is writeNumber & ringMask. Null otherwise.
+  private final AtomicReferenceArray<WriteEntry> ring;
+  private final int ringMask;
+
+  // Number of begin/complete calls which found the write lock held or lost a race to advance the
+  // read point.
+  private final LongAdder contendedCount = new LongAdder();
+  // Number of begin calls which had to wait because the ring was full.
+  private final LongAdder ringFullCount = new LongAdder();
+
   public MultiVersionConcurrencyControl() {
-    this(null);
+    this((String) null);
   }
 
   public MultiVersionConcurrencyControl(String regionName) {
+    this(regionName, 0);
+  }
+
+  /**
+   * Construct with the write queue type and ring size read from the passed configuration.
+   */
+  public MultiVersionConcurrencyControl(String regionName, Configuration conf) {
+    this(regionName,
+      WRITE_QUEUE_TYPE_RING
+        .equalsIgnoreCase(conf.get(WRITE_QUEUE_TYPE_KEY, DEFAULT_WRITE_QUEUE_TYPE))
+          ? conf.getInt(WRITE_QUEUE_RING_SIZE_KEY, DEFAULT_WRITE_QUEUE_RING_SIZE)
+          : 0);
+  }
+
+  /**
+   * @param ringSize size of the pending write ring, rounded up to a power of two. Zero or less
+   *                 means use the linked write queue.
+   */
+  MultiVersionConcurrencyControl(String regionName, int ringSize) {
     this.regionName = regionName;
+    if (ringSize > 0) {
+      int size = Integer.highestOneBit(Math.max(ringSize - 1, 1)) << 1;
+      this.ring = new AtomicReferenceArray<>(size);
+      this.ringMask = size - 1;
+    } else {
+      this.ring = null;
+      this.ringMask = 0;
+    }
   }
 
   /**
@@ -95,7 +155,8 @@ public class MultiVersionConcurrencyControl {
    *         <code>readPoint</code>
    */
   boolean tryAdvanceTo(long newStartPoint, long expected) {
-    synchronized (writeQueue) {
+    lockWriteQueue();
+    try {
       long currentRead = this.readPoint.get();
       long currentWrite = this.writePoint.get();
       if (currentRead != currentWrite) {
@@ -112,10 +173,19 @@ public class MultiVersionConcurrencyControl {
 
       readPoint.set(newStartPoint);
       writePoint.set(newStartPoint);
+    } finally {
+      writeLock.unlock();
     }
     return true;
   }
 
+  private void lockWriteQueue() {
+    if (!writeLock.tryLock()) {
+      contendedCount.increment();
+      writeLock.lock();
+    }
+  }
+
   /**
    * Call {@link #begin(Runnable)} with an empty {@link Runnable}.
    */
@@ -137,12 +207,54 @@ public class MultiVersionConcurrencyControl {
    * @see #completeAndWait(WriteEntry)
    */
   public WriteEntry begin(Runnable action) {
-    synchronized (writeQueue) {
-      long nextWriteNumber = writePoint.incrementAndGet();
-      WriteEntry e = new WriteEntry(nextWriteNumber);
-      writeQueue.add(e);
+    lockWriteQueue();
+    try {
+      WriteEntry e;
+      if (ring != null) {
+        long nextWriteNumber = writePoint.get() + 1;
+        waitForRingSlot(nextWriteNumber);
+        e = new WriteEntry(nextWriteNumber);
+        ring.set((int) (nextWriteNumber & ringMask), e);
+        writePoint.set(nextWriteNumber);
+      } else {
+        e = new WriteEntry(writePoint.incrementAndGet());
+        writeQueue.add(e);
+      }
       action.run();
       return e;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * The slot for a write number can only be reused once the read point has moved past the entry
+   * which used it last. Completes do not take the write lock so waiting here can not block them.
+   */
+  private void waitForRingSlot(long writeNumber) {
+    if (writeNumber - readPoint.get() <= ring.length()) {
+      return;
+    }
+    ringFullCount.increment();
+    boolean interrupted = false;
+    synchronized (readWaiters) {
+      readWaiterCount++;
+      try {
+        while (writeNumber - readPoint.get() > ring.length()) {
+          try {
+            readWaiters.wait(READPOINT_ADVANCE_WAIT_TIME);
+          } catch (InterruptedException ie) {
+            // We can not give up here as the caller needs a write number, so just reset the
+            // interrupt flag on our way out.
+            interrupted = true;
+          }
+        }
+      } finally {
+        readWaiterCount--;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -176,7 +288,11 @@ public class MultiVersionConcurrencyControl {
    * @return true if e is visible to MVCC readers (that is, readpoint >= e.writeNumber)
    */
   public boolean complete(WriteEntry writeEntry) {
-    synchronized (writeQueue) {
+    if (ring != null) {
+      return completeInRing(writeEntry);
+    }
+    lockWriteQueue();
+    try {
       writeEntry.markCompleted();
       long nextReadValue = NONE;
       boolean ranOnce = false;
@@ -210,9 +326,41 @@ public class MultiVersionConcurrencyControl {
         }
       }
       return readPoint.get() >= writeEntry.getWriteNumber();
+    } finally {
+      writeLock.unlock();
     }
   }
 
+  /**
+   * Lock free version of {@link #complete(WriteEntry)}. Every completing thread marks its entry
+   * before trying to advance, and both the mark and the read point are volatile, so of two threads
+   * completing neighbouring entries at the same time at least one sees the other's mark and carries
+   * the read point past both.
+   */
+  private boolean completeInRing(WriteEntry writeEntry) {
+    writeEntry.markCompleted();
+    boolean advanced = false;
+    while (true) {
+      long currentRead = readPoint.get();
+      long next = currentRead + 1;
+      WriteEntry e = ring.get((int) (next & ringMask));
+      if (e == null || e.getWriteNumber() != next || !e.isCompleted()) {
+        break;
+      }
+      if (readPoint.compareAndSet(currentRead, next)) {
+        advanced = true;
+      } else {
+        contendedCount.increment();
+      }
+    }
+    if (advanced && readWaiterCount > 0) {
+      synchronized (readWaiters) {
+        readWaiters.notifyAll();
+      }
+    }
+    return readPoint.get() >= writeEntry.getWriteNumber();
+  }
+
   /**
    * Wait for the global readPoint to advance up to the passed in write entry number.
    */
@@ -220,19 +368,24 @@ public class MultiVersionConcurrencyControl {
     boolean interrupted = false;
     int count = 0;
     synchronized (readWaiters) {
-      while (readPoint.get() < e.getWriteNumber()) {
-        if (count % 100 == 0 && count > 0) {
-          long totalWaitTillNow = READPOINT_ADVANCE_WAIT_TIME * count;
-          LOG.warn("STUCK for : " + totalWaitTillNow + " millis. " + this);
-        }
-        count++;
-        try {
-          readWaiters.wait(READPOINT_ADVANCE_WAIT_TIME);
-        } catch (InterruptedException ie) {
-          // We were interrupted... finish the loop -- i.e. cleanup --and then
-          // on our way out, reset the interrupt flag.
-          interrupted = true;
+      readWaiterCount++;
+      try {
+        while (readPoint.get() < e.getWriteNumber()) {
+          if (count % 100 == 0 && count > 0) {
+            long totalWaitTillNow = READPOINT_ADVANCE_WAIT_TIME * count;
+            LOG.warn("STUCK for : " + totalWaitTillNow + " millis. " + this);
+          }
+          count++;
+          try {
+            readWaiters.wait(READPOINT_ADVANCE_WAIT_TIME);
+          } catch (InterruptedException ie) {
+            // We were interrupted... finish the loop -- i.e. cleanup --and then
+            // on our way out, reset the interrupt flag.
+            interrupted = true;
+          }
         }
+      } finally {
+        readWaiterCount--;
       }
     }
     if (interrupted) {
@@ -258,6 +411,24 @@ public class MultiVersionConcurrencyControl {
     return writePoint.get();
   }
 
+  /** Returns true if pending writes are tracked in a ring and completes are lock free */
+  public boolean isRingWriteQueue() {
+    return ring != null;
+  }
+
+  /**
+   * Returns the number of times a writer found the write queue lock held, or lost a race to advance
+   * the read point.
+   */
+  public long getContendedCount() {
+    return contendedCount.sum();
+  }
+
+  /** Returns the number of times a writer had to wait for a free slot in the write ring */
+  public long getRingFullCount() {
+    return ringFullCount.sum();
+  }
+
   /**
    * Write number and whether write has completed given out at start of a write transaction. Every
    * created WriteEntry must be completed by calling mvcc#complete or #completeAndWait.
@@ -265,7 +436,7 @@ public class MultiVersionConcurrencyControl {
   @InterfaceAudience.Private
   public static class WriteEntry {
     private final long writeNumber;
-    private boolean completed = false;
+    private volatile boolean completed = false;
 
     WriteEntry(long writeNumber) {
       this.writeNumber = writeNumber;
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * The pool {@link StoreScanner}s seek their store files on in parallel. It is owned by the region
+ * server, created when it starts if parallel seeking is enabled and shut down when it stops, and
+ * shared by all of its stores.
+ */
+@InterfaceAudience.Private
+public class ParallelSeekPool {
+
+  private final ForkJoinPool pool;
+  // Number of the seeks run on the pool.
+  private final LongAdder seeks = new LongAdder();
+
+  public ParallelSeekPool(String name, int threads) {
+    AtomicInteger threadId = new AtomicInteger();
+    this.pool = new ForkJoinPool(threads, p -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+      thread.setName(name + "-StoreScanner-ParallelSeek-" + threadId.incrementAndGet());
+      return thread;
+    }, null, true);
+  }
+
+  /**
+   * Seeks the given scanner on the pool.
+   * @return the seek, or null if the pool is shut down and the caller has to seek the scanner
+   */
+  ForkJoinTask<Void> seek(KeyValueScanner scanner, Cell key) {
+    ForkJoinTask<Void> seek;
+    try {
+      seek = pool.submit(() -> {
+        scanner.seek(key);
+        return null;
+      });
+    } catch (RejectedExecutionException e) {
+      return null;
+    }
+    seeks.increment();
+    return seek;
+  }
+
+  /** Returns the number of seeks run on the pool */
+  public long getSeekCount() {
+    return seeks.sum();
+  }
+
+  /**
+   * Stops the pool, the seeks submitted already are run.
+   * @param timeoutMs how long to wait for the seeks to be done
+   */
+  public void shutdown(long timeoutMs) throws InterruptedException {
+    pool.shutdown();
+    pool.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Seeking in parallel pays off when enough of the seeks have to read from the file system, since
+   * seeks served by the block cache are shorter than handing them over to the pool.
+   * @param storeFiles number of store files to seek
+   * @param missRatio  recent block cache miss ratio, between 0 and 1
+   * @param minMisses  expected number of seeks missing the cache above which to seek in parallel
+   */
+  static boolean shouldSeekInParallel(int storeFiles, double missRatio, double minMisses) {
+    return storeFiles > 1 && storeFiles * missRatio >= minMisses;
+  }
+}
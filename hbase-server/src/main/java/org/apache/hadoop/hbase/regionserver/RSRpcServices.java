@@ -77,8 +77,10 @@ import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.IsolationLevel;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.OperationWithAttributes;
+import org.apache.hadoop.hbase.client.PackagePrivateFieldAccessor;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.RegionReplicaUtil;
@@ -95,6 +97,7 @@ import org.apache.hadoop.hbase.exceptions.TimeoutIOException;
 import org.apache.hadoop.hbase.exceptions.UnknownProtocolException;
 import org.apache.hadoop.hbase.io.ByteBuffAllocator;
 import org.apache.hadoop.hbase.io.hfile.BlockCache;
+import org.apache.hadoop.hbase.ipc.GetCallCoalescer;
 import org.apache.hadoop.hbase.ipc.HBaseRPCErrorHandler;
 import org.apache.hadoop.hbase.ipc.HBaseRpcController;
 import org.apache.hadoop.hbase.ipc.PriorityFunction;
@@ -426,6 +429,9 @@ public class RSRpcServices
     private final String scannerName;
     private final Shipper shipper;
     private final Lease lease;
+    // whether the callback is set on a call which has not run it yet. A call whose response refers
+    // to the cells of the scanner runs it once the response is written out
+    private boolean pending = false;
 
     public RegionScannerShippedCallBack(String scannerName, Shipper shipper, Lease lease) {
       this.scannerName = scannerName;
@@ -433,14 +439,40 @@ public class RSRpcServices
       this.lease = lease;
     }
 
+    synchronized void setPending() {
+      this.pending = true;
+    }
+
+    /**
+     * Waits, up to the given time, for the call the callback is set on to run it, as the lease of
+     * the scanner is only added back then.
+     */
+    synchronized void awaitShipped(long timeoutMs) throws InterruptedException {
+      long deadline = EnvironmentEdgeManager.currentTime() + timeoutMs;
+      while (pending) {
+        long remaining = deadline - EnvironmentEdgeManager.currentTime();
+        if (remaining <= 0) {
+          return;
+        }
+        wait(remaining);
+      }
+    }
+
     @Override
     public void run() throws IOException {
-      this.shipper.shipped();
-      // We're done. On way out re-add the above removed lease. The lease was temp removed for this
-      // Rpc call and we are at end of the call now. Time to add it back.
-      if (scanners.containsKey(scannerName)) {
-        if (lease != null) {
-          regionServer.getLeaseManager().addLease(lease);
+      try {
+        this.shipper.shipped();
+        // We're done. On way out re-add the above removed lease. The lease was temp removed for
+        // this Rpc call and we are at end of the call now. Time to add it back.
+        if (scanners.containsKey(scannerName)) {
+          if (lease != null) {
+            regionServer.getLeaseManager().addLease(lease);
+          }
+        }
+      } finally {
+        synchronized (this) {
+          pending = false;
+          notifyAll();
         }
       }
     }
@@ -477,7 +509,7 @@ public class RSRpcServices
     private final RegionScanner s;
     private final HRegion r;
     private final RpcCallback closeCallBack;
-    private final RpcCallback shippedCallback;
+    private final RegionScannerShippedCallBack shippedCallback;
     private byte[] rowOfLastPartialResult;
     private boolean needCursor;
     private boolean fullRegionScan;
@@ -485,7 +517,7 @@ public class RSRpcServices
     private final String userName;
 
     RegionScannerHolder(RegionScanner s, HRegion r, RpcCallback closeCallBack,
-      RpcCallback shippedCallback, boolean needCursor, boolean fullRegionScan,
+      RegionScannerShippedCallBack shippedCallback, boolean needCursor, boolean fullRegionScan,
       String clientIPAndPort, String userName) {
       this.s = s;
       this.r = r;
@@ -825,7 +857,7 @@ public class RSRpcServices
           try {
             Get get = ProtobufUtil.toGet(pbGet);
             if (context != null) {
-              r = get(get, (region), closeCallBack, context);
+              r = get(get, (region), closeCallBack, context, 0);
             } else {
               r = region.get(get);
             }
@@ -1452,7 +1484,8 @@ public class RSRpcServices
     HRegion r, boolean needCursor, boolean fullRegionScan) throws LeaseStillHeldException {
     Lease lease = regionServer.getLeaseManager().createLease(scannerName,
       this.scannerLeaseTimeoutPeriod, new ScannerListener(scannerName));
-    RpcCallback shippedCallback = new RegionScannerShippedCallBack(scannerName, shipper, lease);
+    RegionScannerShippedCallBack shippedCallback =
+      new RegionScannerShippedCallBack(scannerName, shipper, lease);
     RpcCallback closeCallback =
       s instanceof RpcCallback ? (RpcCallback) s : new RegionScannerCloseCallBack(s);
     RegionScannerHolder rsh = new RegionScannerHolder(s, r, closeCallback, shippedCallback,
@@ -2577,7 +2610,7 @@ public class RSRpcServices
       }
       if (existence == null) {
         if (context != null) {
-          r = get(clientGet, (region), null, context);
+          r = get(clientGet, (region), null, context, getSharedReadPoint(region, clientGet));
         } else {
           // for test purpose
           r = region.get(clientGet);
@@ -2631,8 +2664,33 @@ public class RSRpcServices
     }
   }
 
+  /**
+   * Returns the read point the Gets of the region share when the RPC layer coalesced them in a
+   * batch, or 0 if the Get takes its own. It is taken by the first Get of the batch, after all the
+   * Gets of the batch were received, so they all see the writes done before they were sent.
+   */
+  private static long getSharedReadPoint(HRegion region, Get get) throws IOException {
+    GetCallCoalescer.Batch batch = GetCallCoalescer.Batch.current();
+    if (batch == null || get.getIsolationLevel() == IsolationLevel.READ_UNCOMMITTED) {
+      return 0;
+    }
+    Object attachment = batch.getAttachment();
+    if (
+      attachment instanceof HRegion.SharedReadPoint
+        && ((HRegion.SharedReadPoint) attachment).getRegion() == region
+    ) {
+      return ((HRegion.SharedReadPoint) attachment).getReadPoint();
+    }
+    HRegion.SharedReadPoint readPoint = region.openSharedReadPoint();
+    batch.attach(readPoint, readPoint);
+    return readPoint.getReadPoint();
+  }
+
+  /**
+   * @param readPoint the read point to read at, 0 to take the current one
+   */
   private Result get(Get get, HRegion region, RegionScannersCloseCallBack closeCallBack,
-    RpcCallContext context) throws IOException {
+    RpcCallContext context, long readPoint) throws IOException {
     region.prepareGet(get);
     boolean stale = region.getRegionInfo().getReplicaId() != 0;
 
@@ -2647,28 +2705,41 @@ public class RSRpcServices
           stale);
       }
     }
-    Scan scan = new Scan(get);
-    if (scan.getLoadColumnFamiliesOnDemandValue() == null) {
-      scan.setLoadColumnFamiliesOnDemand(region.isLoadingCfsOnDemandDefault());
-    }
-    RegionScannerImpl scanner = null;
-    try {
-      scanner = region.getScanner(scan);
-      scanner.next(results);
-    } finally {
-      if (scanner != null) {
-        if (closeCallBack == null) {
-          // If there is a context then the scanner can be added to the current
-          // RpcCallContext. The rpc callback will take care of closing the
-          // scanner, for eg in case
-          // of get()
-          context.setCallBack(scanner);
-        } else {
-          // The call is from multi() where the results from the get() are
-          // aggregated and then send out to the
-          // rpc. The rpccall back will close all such scanners created as part
-          // of multi().
-          closeCallBack.addScanner(scanner);
+    RowCache.Token rowCacheToken = region.getRowCacheToken(get);
+    List<Cell> cached = rowCacheToken != null ? region.getRowCache().get(rowCacheToken) : null;
+    if (cached != null) {
+      results.addAll(cached);
+    } else {
+      Scan scan = new Scan(get);
+      if (scan.getLoadColumnFamiliesOnDemandValue() == null) {
+        scan.setLoadColumnFamiliesOnDemand(region.isLoadingCfsOnDemandDefault());
+      }
+      if (readPoint > 0) {
+        PackagePrivateFieldAccessor.setMvccReadPoint(scan, readPoint);
+      }
+      RegionScannerImpl scanner = null;
+      try {
+        scanner = region.getScanner(scan);
+        scanner.next(results);
+        // a shared read point may be older than the stamp of the row in the cache
+        if (rowCacheToken != null && readPoint <= 0) {
+          region.getRowCache().put(rowCacheToken, results);
+        }
+      } finally {
+        if (scanner != null) {
+          if (closeCallBack == null) {
+            // If there is a context then the scanner can be added to the current
+            // RpcCallContext. The rpc callback will take care of closing the
+            // scanner, for eg in case
+            // of get()
+            context.setCallBack(scanner);
+          } else {
+            // The call is from multi() where the results from the get() are
+            // aggregated and then send out to the
+            // rpc. The rpccall back will close all such scanners created as part
+            // of multi().
+            closeCallBack.addScanner(scanner);
+          }
         }
       }
     }
@@ -3595,9 +3666,15 @@ public class RSRpcServices
     HRegion region = rsh.r;
     LeaseManager.Lease lease;
     try {
+      // The previous call added the lease back once its response was written out, if the response
+      // referred to the cells of the scanner, which the client may have read before that.
+      rsh.shippedCallback.awaitShipped(scannerLeaseTimeoutPeriod);
       // Remove lease while its being processed in server; protects against case
       // where processing of request takes > lease expiration time. or null if none found.
       lease = regionServer.getLeaseManager().removeLease(scannerName);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceException(e);
     } catch (LeaseException e) {
       throw new ServiceException(e);
     }
@@ -3768,6 +3845,7 @@ public class RSRpcServices
         // Adding resets expiration time on lease.
         // the closeCallBack will be set in closeScanner so here we only care about shippedCallback
         if (rpcCall != null) {
+          rsh.shippedCallback.setPending();
           rpcCall.setCallBack(rsh.shippedCallback);
         } else {
           // If context is null,here we call rsh.shippedCallback directly to reuse the logic in
@@ -3899,8 +3977,9 @@ public class RSRpcServices
       }
       long procId = regionOpenInfo.getOpenProcId();
       if (regionServer.submitRegionProcedure(procId)) {
-        regionServer.executorService.submit(AssignRegionHandler.create(regionServer, regionInfo,
-          procId, tableDesc, masterSystemTime));
+        regionServer.executorService
+          .submit(AssignRegionHandler.create(regionServer, regionInfo, procId, tableDesc,
+            masterSystemTime, RegionHotBlocks.copy(regionOpenInfo.getHotBlocksList())));
       }
     }
   }
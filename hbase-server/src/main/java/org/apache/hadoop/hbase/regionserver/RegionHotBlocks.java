@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.hfile.BlockCache;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.CachedBlock;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileBlock;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hbase.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.StoreFileBlocks;
+
+/**
+ * Hands the blocks of a region which are hot in the block cache over to the server the region moves
+ * to, so that it does not start serving the region with a cold cache. The closing server reports
+ * the blocks accessed more than once along with the close of the region, the master passes them on
+ * in the request opening the region, and the opening server reads them into its block cache once
+ * the region is online. The store files are the same on both servers, so a block is known by the
+ * name of its file and its offset.
+ * <p>
+ * The hand over is best effort: the master does not persist the blocks, and the blocks of files
+ * compacted away in between are skipped.
+ */
+@InterfaceAudience.Private
+public final class RegionHotBlocks {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RegionHotBlocks.class);
+
+  /**
+   * Maximum number of hot blocks of a region handed over to the server it moves to, 0 to disable
+   */
+  public static final String MAX_HOT_BLOCKS_KEY = "hbase.regionserver.region.move.hot.blocks.max";
+  public static final int DEFAULT_MAX_HOT_BLOCKS = 0;
+
+  /** Number of threads reading the hot blocks of the regions moved to the server */
+  public static final String WARMUP_THREADS_KEY =
+    "hbase.regionserver.region.move.hot.blocks.threads";
+  public static final int DEFAULT_WARMUP_THREADS = 2;
+
+  /**
+   * Maximum time in milliseconds spent looking for the hot blocks of a closing region in a block
+   * cache which cannot look up the blocks of a file
+   */
+  public static final String SCAN_TIME_KEY = "hbase.regionserver.region.move.hot.blocks.scan.time";
+  public static final long DEFAULT_SCAN_TIME = 100;
+
+  // How many blocks are scanned between two looks at the time.
+  private static final int SCAN_TIME_CHECK_INTERVAL = 1024;
+
+  private RegionHotBlocks() {
+  }
+
+  /**
+   * Returns the pool reading the hot blocks of the regions moved to the given server, or null if
+   * the hand over is disabled. Owned by the region server, which shuts it down when it stops.
+   */
+  static ThreadPoolExecutor createWarmUpPool(String serverName, Configuration conf) {
+    if (conf.getInt(MAX_HOT_BLOCKS_KEY, DEFAULT_MAX_HOT_BLOCKS) <= 0) {
+      return null;
+    }
+    int threads = conf.getInt(WARMUP_THREADS_KEY, DEFAULT_WARMUP_THREADS);
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
+        .setNameFormat(serverName + "-RegionHotBlocks-Warmup-%d").setDaemon(true).build());
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Returns the blocks of the store files of the region which were accessed more than once since
+   * they were cached, at most {@code maxBlocks} of them. Must be called before the region is
+   * closed, while its store files are known.
+   * <p>
+   * The blocks are looked up file by file when the cache can, the hottest first, each file getting
+   * an even share of the blocks left. Otherwise the whole cache is scanned, for at most
+   * {@link #SCAN_TIME_KEY} milliseconds so as not to hold up the close of the region for long.
+   */
+  public static List<StoreFileBlocks> collect(HRegion region, BlockCache cache, int maxBlocks) {
+    if (maxBlocks <= 0) {
+      return Collections.emptyList();
+    }
+    Set<String> fileNames = new HashSet<>();
+    for (HStore store : region.getStores()) {
+      for (HStoreFile sf : store.getStorefiles()) {
+        fileNames.add(sf.getPath().getName());
+      }
+    }
+    if (fileNames.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Map<String, List<Long>> offsets = collectByFile(fileNames, cache, maxBlocks);
+    if (offsets == null) {
+      offsets = scan(fileNames, cache, maxBlocks,
+        region.getBaseConf().getLong(SCAN_TIME_KEY, DEFAULT_SCAN_TIME));
+    }
+    List<StoreFileBlocks> hotBlocks = new ArrayList<>(offsets.size());
+    for (Map.Entry<String, List<Long>> entry : offsets.entrySet()) {
+      List<Long> fileOffsets = entry.getValue();
+      // read them in file order on the other side
+      Collections.sort(fileOffsets);
+      hotBlocks.add(
+        StoreFileBlocks.newBuilder().setFileName(entry.getKey()).addAllOffset(fileOffsets).build());
+    }
+    return hotBlocks;
+  }
+
+  /**
+   * Returns the hot blocks of the files as looked up file by file, or null if the cache can only
+   * find them by iterating over all of its blocks.
+   */
+  private static Map<String, List<Long>> collectByFile(Set<String> fileNames, BlockCache cache,
+    int maxBlocks) {
+    Map<String, List<Long>> offsets = new HashMap<>();
+    int left = maxBlocks;
+    int filesLeft = fileNames.size();
+    for (String fileName : fileNames) {
+      List<CachedBlock> blocks = cache.getBlocksOfFile(fileName);
+      if (blocks == null) {
+        return null;
+      }
+      // the blocks a file leaves of its share go to the files after it
+      int share = (left + filesLeft - 1) / filesLeft;
+      filesLeft--;
+      for (CachedBlock block : blocks) {
+        if (share == 0 || block.getBlockPriority() == BlockPriority.SINGLE) {
+          // the hottest first, none of the blocks left is hot
+          break;
+        }
+        offsets.computeIfAbsent(fileName, k -> new ArrayList<>()).add(block.getOffset());
+        share--;
+        left--;
+      }
+    }
+    return offsets;
+  }
+
+  private static Map<String, List<Long>> scan(Set<String> fileNames, BlockCache cache,
+    int maxBlocks, long scanTimeMs) {
+    Map<String, List<Long>> offsets = new HashMap<>();
+    long deadline = EnvironmentEdgeManager.currentTime() + scanTimeMs;
+    int count = 0;
+    int scanned = 0;
+    for (CachedBlock block : cache) {
+      if (
+        block.getBlockPriority() != BlockPriority.SINGLE && fileNames.contains(block.getFilename())
+      ) {
+        offsets.computeIfAbsent(block.getFilename(), k -> new ArrayList<>()).add(block.getOffset());
+        if (++count >= maxBlocks) {
+          break;
+        }
+      }
+      if (
+        ++scanned % SCAN_TIME_CHECK_INTERVAL == 0 && EnvironmentEdgeManager.currentTime() > deadline
+      ) {
+        LOG.debug("Stopped looking for hot blocks after scanning {} blocks for {} ms", scanned,
+          scanTimeMs);
+        break;
+      }
+    }
+    return offsets;
+  }
+
+  /**
+   * Returns a copy of hot blocks received in a request, which can be kept after the call. The
+   * requests are parsed without copying the bytes out of their buffer, which is released once the
+   * call returns.
+   */
+  public static List<StoreFileBlocks> copy(List<StoreFileBlocks> hotBlocks) {
+    if (hotBlocks.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<StoreFileBlocks> copy = new ArrayList<>(hotBlocks.size());
+    for (StoreFileBlocks fileBlocks : hotBlocks) {
+      copy.add(StoreFileBlocks.newBuilder().setFileName(fileBlocks.getFileName())
+        .addAllOffset(fileBlocks.getOffsetList()).build());
+    }
+    return copy;
+  }
+
+  /**
+   * Reads the hot blocks handed over by the former server of the region into the block cache, in
+   * the background on the given pool of the region server.
+   */
+  public static void warmUp(HRegion region, List<StoreFileBlocks> hotBlocks, Executor pool) {
+    if (hotBlocks.isEmpty()) {
+      return;
+    }
+    Map<String, HStoreFile> storeFiles = new HashMap<>();
+    for (HStore store : region.getStores()) {
+      for (HStoreFile sf : store.getStorefiles()) {
+        storeFiles.put(sf.getPath().getName(), sf);
+      }
+    }
+    String regionName = region.getRegionInfo().getEncodedName();
+    Runnable warmUp = () -> {
+      int blocks = 0;
+      for (StoreFileBlocks fileBlocks : hotBlocks) {
+        HStoreFile sf = storeFiles.get(fileBlocks.getFileName());
+        StoreFileReader reader = sf != null ? sf.getReader() : null;
+        if (reader == null) {
+          // compacted away in between, or already closed
+          continue;
+        }
+        blocks += warmUp(reader.getHFileReader(), fileBlocks.getOffsetList());
+        if (region.isClosing() || region.isClosed()) {
+          return;
+        }
+      }
+      LOG.debug("Read {} hot blocks of {} into the block cache", blocks, regionName);
+    };
+    try {
+      pool.execute(warmUp);
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Not reading the hot blocks of {}, the region server is stopping", regionName);
+    }
+  }
+
+  /**
+   * Reads the blocks at the given offsets into the block cache. The blocks were hot on the former
+   * server, so like prefetched blocks they are cached without asking the admission policy.
+   * @return the number of blocks read
+   */
+  static int warmUp(HFile.Reader reader, List<Long> offsets) {
+    int blocks = 0;
+    for (long offset : offsets) {
+      try {
+        HFileBlock block = reader.readBlock(offset, -1, /* cacheBlock= */true, /* pread= */true,
+          false, false, null, null, /* cacheOnly= */true);
+        block.release();
+        blocks++;
+      } catch (IOException e) {
+        // the file was closed, or the offset is not the one of a block of the file
+        LOG.trace("Failed to read hot block at offset {} of {}", offset, reader.getName(), e);
+        return blocks;
+      }
+    }
+    return blocks;
+  }
+}
@@ -83,7 +83,7 @@ class RegionScannerImpl implements RegionScanner, Shipper, RpcCallback {
   protected final HRegion region;
   protected final CellComparator comparator;
 
-  private final ConcurrentHashMap<RegionScanner, Long> scannerReadPoints;
+  private final ConcurrentHashMap<Object, Long> scannerReadPoints;
 
   private final long readPt;
   private final long maxResultSize;
@@ -20,10 +20,12 @@ package org.apache.hadoop.hbase.regionserver;
 import com.google.protobuf.Service;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
 import org.apache.hadoop.hbase.Abortable;
 import org.apache.hadoop.hbase.Server;
 import org.apache.hadoop.hbase.TableDescriptors;
@@ -44,6 +46,7 @@ import org.apache.hadoop.hbase.security.access.ZKPermissionWatcher;
 import org.apache.hadoop.hbase.wal.WAL;
 import org.apache.yetus.audience.InterfaceAudience;
 
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.StoreFileBlocks;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.RegionStateTransition.TransitionCode;
 
 /**
@@ -123,6 +126,7 @@ public interface RegionServerServices extends Server, MutableOnlineRegions, Favo
     private final long masterSystemTime;
     private final long[] procIds;
     private final RegionInfo[] hris;
+    private final List<StoreFileBlocks> hotBlocks;
 
     public RegionStateTransitionContext(TransitionCode code, long openSeqNum, long masterSystemTime,
       RegionInfo... hris) {
@@ -131,15 +135,26 @@ public interface RegionServerServices extends Server, MutableOnlineRegions, Favo
       this.masterSystemTime = masterSystemTime;
       this.hris = hris;
       this.procIds = new long[hris.length];
+      this.hotBlocks = Collections.emptyList();
     }
 
     public RegionStateTransitionContext(TransitionCode code, long openSeqNum, long procId,
       long masterSystemTime, RegionInfo hri) {
+      this(code, openSeqNum, procId, masterSystemTime, hri, Collections.emptyList());
+    }
+
+    /**
+     * @param hotBlocks for a region closed to move, its blocks hot in the block cache, see
+     *                  {@link RegionHotBlocks}
+     */
+    public RegionStateTransitionContext(TransitionCode code, long openSeqNum, long procId,
+      long masterSystemTime, RegionInfo hri, List<StoreFileBlocks> hotBlocks) {
       this.code = code;
       this.openSeqNum = openSeqNum;
       this.masterSystemTime = masterSystemTime;
       this.hris = new RegionInfo[] { hri };
       this.procIds = new long[] { procId };
+      this.hotBlocks = hotBlocks;
     }
 
     public TransitionCode getCode() {
@@ -161,6 +176,10 @@ public interface RegionServerServices extends Server, MutableOnlineRegions, Favo
     public long[] getProcIds() {
       return procIds;
     }
+
+    public List<StoreFileBlocks> getHotBlocks() {
+      return hotBlocks;
+    }
   }
 
   /**
@@ -252,6 +271,15 @@ public interface RegionServerServices extends Server, MutableOnlineRegions, Favo
   /** Returns The cache for mob files. */
   Optional<MobFileCache> getMobFileCache();
 
+  /** Returns The cache of the results of Gets, if enabled. */
+  Optional<RowCache> getRowCache();
+
+  /** Returns The pool the stores seek their files on in parallel, if enabled. */
+  Optional<ParallelSeekPool> getParallelSeekPool();
+
+  /** Returns The pool the row ranges of large compactions are compacted on, if enabled. */
+  Optional<ThreadPoolExecutor> getCompactionRangePool();
+
   /** Returns the {@link AccessChecker} */
   AccessChecker getAccessChecker();
 
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import java.util.Optional;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -106,6 +107,11 @@ public class RegionServicesForStores {
     }
   }
 
+  /** Returns the pool of the region server the row ranges of large compactions are compacted on */
+  public Optional<ThreadPoolExecutor> getCompactionRangePool() {
+    return rsServices != null ? rsServices.getCompactionRangePool() : Optional.empty();
+  }
+
   public long getMemStoreFlushSize() {
     return region.getMemStoreFlushSize();
   }
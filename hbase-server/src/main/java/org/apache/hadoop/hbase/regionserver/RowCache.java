@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.IsolationLevel;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A region server wide cache of the results of Gets, for the tables that enable it with
+ * {@link #ROW_CACHE_ENABLED_KEY}. Only Gets of the latest version of whole families, without
+ * filters or time ranges, are cached, keyed by region, row and the set of families.
+ * <p>
+ * Entries are never updated, they are made unreachable instead:
+ * <ul>
+ * <li>Writes to a row bump a stamp shared by the rows hashing to the same stripe. A Get takes the
+ * stamp of its row before it reads, and an entry is only served while the stamp is unchanged, so a
+ * result read concurrently with a write is never served after the write completes.</li>
+ * <li>Flushes, compactions and bulk loads give the region a new epoch, which is part of the key.
+ * </li>
+ * </ul>
+ * Unreachable entries age out of the cache. Families with a TTL are never cached, since their cells
+ * expire without any write. Cell level TTLs are not accounted for, so tables using them should not
+ * enable the cache.
+ */
+@InterfaceAudience.Private
+public class RowCache {
+
+  /** Heap size of the row cache in bytes, 0 to disable it */
+  public static final String ROW_CACHE_SIZE_KEY = "hbase.regionserver.row.cache.size";
+  public static final long DEFAULT_ROW_CACHE_SIZE = 0;
+  /** Whether to cache the rows of a table, usually set in the table descriptor */
+  public static final String ROW_CACHE_ENABLED_KEY = "hbase.regionserver.row.cache.enabled";
+  public static final boolean DEFAULT_ROW_CACHE_ENABLED = false;
+
+  private static final int STRIPES = 1 << 16;
+
+  private static final long ENTRY_OVERHEAD =
+    ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE + 2 * Bytes.SIZEOF_LONG)
+      + ClassSize.align(ClassSize.BYTE_BUFFER) + ClassSize.ARRAYLIST;
+
+  private static final AtomicLong EPOCHS = new AtomicLong();
+
+  /**
+   * The result of a Get as cached, and the stamp of its row when it was read.
+   */
+  private static final class Entry {
+    private final long stamp;
+    private final List<Cell> cells;
+    private final long heapSize;
+
+    Entry(long stamp, List<Cell> cells, long heapSize) {
+      this.stamp = stamp;
+      this.cells = cells;
+      this.heapSize = heapSize;
+    }
+  }
+
+  /**
+   * Where the result of a Get is cached, and the stamp of its row before the Get read it.
+   */
+  static final class Token {
+    private final ByteBuffer key;
+    private final int stripe;
+    private final long stamp;
+
+    private Token(ByteBuffer key, int stripe, long stamp) {
+      this.key = key;
+      this.stripe = stripe;
+      this.stamp = stamp;
+    }
+  }
+
+  private final Cache<ByteBuffer, Entry> cache;
+  private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  public RowCache(long maxSize) {
+    this.cache = Caffeine.newBuilder().maximumWeight(maxSize)
+      .weigher((ByteBuffer key, Entry entry) -> (int) Math.min(Integer.MAX_VALUE,
+        ENTRY_OVERHEAD + key.capacity() + entry.heapSize))
+      .build();
+  }
+
+  /** Returns a new epoch, different from all the ones handed out before */
+  static long nextEpoch() {
+    return EPOCHS.incrementAndGet();
+  }
+
+  /**
+   * Returns whether the result of the Get can be served from the cache. The families of the Get
+   * must have been filled in, as done by {@link HRegion#prepareGet(Get)}.
+   */
+  static boolean isCacheable(Get get, TableDescriptor htd) {
+    if (
+      get.getFilter() != null || !get.getTimeRange().isAllTime()
+        || !get.getColumnFamilyTimeRange().isEmpty() || get.getMaxVersions() != 1
+        || get.getMaxResultsPerColumnFamily() >= 0 || get.getRowOffsetPerColumnFamily() > 0
+        || get.getIsolationLevel() == IsolationLevel.READ_UNCOMMITTED
+    ) {
+      return false;
+    }
+    for (byte[] family : get.familySet()) {
+      if (get.getFamilyMap().get(family) != null && !get.getFamilyMap().get(family).isEmpty()) {
+        // only whole families are cached
+        return false;
+      }
+      ColumnFamilyDescriptor cfd = htd.getColumnFamily(family);
+      if (cfd == null || cfd.getTimeToLive() != HConstants.FOREVER) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Takes the stamp of the row of the Get. Must be called before the Get reads the region.
+   * @param epoch the current epoch of the region
+   */
+  Token newToken(RegionInfo region, long epoch, Get get) {
+    byte[] regionName = region.getEncodedNameAsBytes();
+    byte[] row = get.getRow();
+    int size = regionName.length + Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT + row.length;
+    for (byte[] family : get.familySet()) {
+      size += Bytes.SIZEOF_INT + family.length;
+    }
+    ByteBuffer key = ByteBuffer.allocate(size);
+    key.put(regionName).putLong(epoch).putInt(row.length).put(row);
+    // the family set is sorted, so the same families always make the same key
+    for (byte[] family : get.familySet()) {
+      key.putInt(family.length).put(family);
+    }
+    key.flip();
+    int stripe = stripe(region, row);
+    return new Token(key, stripe, stamps.get(stripe));
+  }
+
+  /** Returns the cached result for the token, or null if there is none or it is out of date */
+  List<Cell> get(Token token) {
+    Entry entry = cache.getIfPresent(token.key);
+    if (entry == null || entry.stamp != stamps.get(token.stripe)) {
+      missCount.increment();
+      return null;
+    }
+    hitCount.increment();
+    return new ArrayList<>(entry.cells);
+  }
+
+  /**
+   * Caches the result read by the Get the token was taken for. The cells are copied to the heap.
+   */
+  void put(Token token, List<Cell> cells) {
+    if (token.stamp != stamps.get(token.stripe)) {
+      // the row was written to while it was read
+      return;
+    }
+    List<Cell> copy = new ArrayList<>(cells.size());
+    long heapSize = 0;
+    for (Cell cell : cells) {
+      KeyValue kv = KeyValueUtil.copyToNewKeyValue(cell);
+      heapSize += ClassSize.REFERENCE + kv.heapSize();
+      copy.add(kv);
+    }
+    cache.put(token.key, new Entry(token.stamp, Collections.unmodifiableList(copy), heapSize));
+  }
+
+  /**
+   * Makes the cached results of the row unreachable. Must be called after the write to the row is
+   * visible to readers.
+   */
+  void invalidateRow(RegionInfo region, byte[] row) {
+    stamps.incrementAndGet(stripe(region, row));
+  }
+
+  private static int stripe(RegionInfo region, byte[] row) {
+    int hash = 31 * Bytes.hashCode(region.getEncodedNameAsBytes()) + Bytes.hashCode(row);
+    // spread the bits of the hash like HashMap does, since the stripes are picked by the low bits
+    return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /** Returns the number of cached results, including the ones out of date */
+  public long getCount() {
+    return cache.estimatedSize();
+  }
+
+  /** Returns the heap size of the cached results, including the ones out of date */
+  public long getSize() {
+    return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Self-tuning is a policy that measures the workload of each store instead of guessing it. Every
+ * index compaction (flattening or merge) counts the unique keys of the segments it produces, which
+ * less the versions the family keeps of each key gives the fraction of the cells of the pipeline a
+ * data compaction would at least remove, and every data compaction checks how many cells it
+ * actually removed. Both measurements go into a decaying average of the fraction of duplicates, and
+ * data compaction is applied while it stays above a threshold, so update-heavy stores get compacted
+ * while append-only stores, and stores keeping the versions they are written, are only flattened,
+ * and merged when the pipeline grows too long.
+ * <p>
+ * The average cell size of the pipeline picks the flat index. With MSLAB enabled, CellChunkMap
+ * saves the most heap, but the cells that are too big for the MSLAB live outside of its chunks and
+ * would each have to be copied into a chunk of their own, so stores of such cells use CellArrayMap.
+ */
+@InterfaceAudience.Private
+public class SelfTuningMemStoreCompactionStrategy extends MemStoreCompactionStrategy {
+  private static final String NAME = "SELF_TUNING";
+  public static final String SELF_TUNING_DUPLICATE_THRESHOLD_KEY =
+    "hbase.hregion.compacting.memstore.selftuning.duplicate.threshold";
+  private static final double SELF_TUNING_DUPLICATE_THRESHOLD_DEFAULT = 0.3;
+  // weight of a new measurement in the fraction of duplicates, the older ones fade out
+  private static final double MEASUREMENT_WEIGHT = 0.5;
+
+  private final double duplicateThreshold;
+  private final boolean chunkMapAllowed;
+  private final int maxAlloc;
+  private final int maxVersions;
+
+  // measured fraction of cells of the pipeline that a data compaction removes
+  private double duplicateFraction = 0;
+  private boolean measured = false;
+  // measured average data size of the cells of the pipeline
+  private double averageCellSize = 0;
+  private int numCellsInVersionedList = 0;
+  private boolean compacted = false;
+
+  public SelfTuningMemStoreCompactionStrategy(Configuration conf, String cfName, int maxVersions) {
+    super(conf, cfName);
+    this.maxVersions = Math.max(1, maxVersions);
+    duplicateThreshold =
+      conf.getDouble(SELF_TUNING_DUPLICATE_THRESHOLD_KEY, SELF_TUNING_DUPLICATE_THRESHOLD_DEFAULT);
+    // the same condition CompactingMemStore uses to pick its default index
+    chunkMapAllowed = MemStoreLAB.isEnabled(conf);
+    maxAlloc = conf.getInt(MemStoreLAB.MAX_ALLOC_KEY, MemStoreLAB.MAX_ALLOC_DEFAULT);
+  }
+
+  @Override
+  public Action getAction(VersionedSegmentsList versionedList) {
+    measure(versionedList);
+    String strategyInfo =
+      getName() + " (duplicates=" + duplicateFraction + ", cell size=" + averageCellSize + ")";
+    if (duplicateFraction >= duplicateThreshold) {
+      numCellsInVersionedList = versionedList.getNumOfCells();
+      compacted = true;
+      return compact(versionedList, strategyInfo);
+    }
+    compacted = false;
+    return simpleMergeOrFlatten(versionedList, strategyInfo);
+  }
+
+  private void measure(VersionedSegmentsList versionedList) {
+    long cells = 0;
+    long dataSize = 0;
+    long countedCells = 0;
+    long uniques = 0;
+    for (ImmutableSegment s : versionedList.getStoreSegments()) {
+      cells += s.getCellsCount();
+      dataSize += s.getDataSize();
+      int segmentUniques = s.getNumUniqueKeys();
+      if (segmentUniques != CellSet.UNKNOWN_NUM_UNIQUES) {
+        countedCells += s.getCellsCount();
+        uniques += segmentUniques;
+      }
+    }
+    if (cells > 0) {
+      averageCellSize = (double) dataSize / cells;
+    }
+    // segments whose keys were not counted yet keep the previous measurement
+    if (countedCells > 0) {
+      // the keys counted include all the versions of a cell, while compaction only removes the
+      // versions the family does not keep
+      addMeasurement(Math.max(0.0, 1.0 - (double) uniques * maxVersions / countedCells));
+    }
+  }
+
+  @Override
+  public void updateStats(Segment replacement) {
+    if (compacted && numCellsInVersionedList > 0) {
+      addMeasurement(1.0 - (double) replacement.getCellsCount() / numCellsInVersionedList);
+    }
+  }
+
+  private void addMeasurement(double fraction) {
+    duplicateFraction =
+      measured ? duplicateFraction + MEASUREMENT_WEIGHT * (fraction - duplicateFraction) : fraction;
+    measured = true;
+  }
+
+  @Override
+  public CompactingMemStore.IndexType getIndexType() {
+    if (!chunkMapAllowed) {
+      return CompactingMemStore.IndexType.ARRAY_MAP;
+    }
+    return averageCellSize > maxAlloc
+      ? CompactingMemStore.IndexType.ARRAY_MAP
+      : CompactingMemStore.IndexType.CHUNK_MAP;
+  }
+
+  @Override
+  protected Action getMergingAction() {
+    return Action.MERGE_COUNT_UNIQUE_KEYS;
+  }
+
+  @Override
+  protected Action getFlattenAction() {
+    return Action.FLATTEN_COUNT_UNIQUE_KEYS;
+  }
+
+  @Override
+  protected String getName() {
+    return NAME;
+  }
+
+  double getDuplicateFraction() {
+    return duplicateFraction;
+  }
+
+  double getAverageCellSize() {
+    return averageCellSize;
+  }
+}
@@ -243,6 +243,7 @@ public class StoreFileReader {
     byte[] row = scan.getStartRow();
     switch (this.bloomFilterType) {
       case ROW:
+      case ROW_BLOCKED:
         if (!scan.isGetScan()) {
           return true;
         }
@@ -22,8 +22,10 @@ import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NavigableSet;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.locks.ReentrantLock;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.CellUtil;
@@ -34,11 +36,9 @@ import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.PrivateCellUtil;
 import org.apache.hadoop.hbase.client.IsolationLevel;
 import org.apache.hadoop.hbase.client.Scan;
-import org.apache.hadoop.hbase.executor.ExecutorService;
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.regionserver.ScannerContext.LimitScope;
 import org.apache.hadoop.hbase.regionserver.ScannerContext.NextState;
-import org.apache.hadoop.hbase.regionserver.handler.ParallelSeekHandler;
 import org.apache.hadoop.hbase.regionserver.querymatcher.CompactionScanQueryMatcher;
 import org.apache.hadoop.hbase.regionserver.querymatcher.ScanQueryMatcher;
 import org.apache.hadoop.hbase.regionserver.querymatcher.UserScanQueryMatcher;
@@ -82,7 +82,7 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
    * A flag that enables StoreFileScanner parallel-seeking
    */
   private boolean parallelSeekEnabled = false;
-  private ExecutorService executor;
+  private ParallelSeekPool seekPool;
   private final Scan scan;
   private final long oldestUnexpiredTS;
   private final long now;
@@ -113,6 +113,17 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
   static final boolean LAZY_SEEK_ENABLED_BY_DEFAULT = true;
   public static final String STORESCANNER_PARALLEL_SEEK_ENABLE =
     "hbase.storescanner.parallel.seek.enable";
+  public static final String STORESCANNER_PARALLEL_SEEK_THREADS =
+    "hbase.storescanner.parallel.seek.threads";
+  public static final int DEFAULT_STORESCANNER_PARALLEL_SEEK_THREADS = 10;
+  /**
+   * The expected number of store file seeks missing the block cache above which a scanner seeks its
+   * store files in parallel. It is compared with the number of store files times the recent miss
+   * ratio of the block cache, so a store whose blocks are all cached is sought serially.
+   */
+  public static final String STORESCANNER_PARALLEL_SEEK_MIN_MISSES =
+    "hbase.storescanner.parallel.seek.min.misses";
+  public static final double DEFAULT_STORESCANNER_PARALLEL_SEEK_MIN_MISSES = 2.0;
 
   /** Used during unit testing to ensure that lazy seek does save seek ops */
   private static boolean lazySeekEnabledGlobally = LAZY_SEEK_ENABLED_BY_DEFAULT;
@@ -206,12 +217,26 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
       this.scanUsePread = this.readType != Scan.ReadType.STREAM;
     }
     this.cellsPerHeartbeatCheck = scanInfo.getCellsPerTimeoutCheck();
-    // Parallel seeking is on if the config allows and more there is more than one store file.
-    if (store != null && store.getStorefilesCount() > 1) {
-      RegionServerServices rsService = store.getHRegion().getRegionServerServices();
-      if (rsService != null && scanInfo.isParallelSeekEnabled()) {
+    // Parallel seeking is on for user scans if the config allows and enough of the store files
+    // are expected to be read from the file system rather than from the block cache.
+    if (
+      store != null && scanType == ScanType.USER_SCAN && scanInfo.isParallelSeekEnabled()
+        && store.getStorefilesCount() > 1 && store.getHRegion().getRegionServerServices() != null
+    ) {
+      Configuration conf = store.getReadOnlyConfiguration();
+      ParallelSeekPool pool =
+        store.getHRegion().getRegionServerServices().getParallelSeekPool().orElse(null);
+      double missRatio = store.getCacheConfig() == null
+        ? 1.0
+        : store.getCacheConfig().getBlockCache()
+          .map(cache -> 1.0 - cache.getStats().getHitRatioPastNPeriods()).orElse(1.0);
+      if (
+        pool != null && ParallelSeekPool.shouldSeekInParallel(store.getStorefilesCount(), missRatio,
+          conf.getDouble(STORESCANNER_PARALLEL_SEEK_MIN_MISSES,
+            DEFAULT_STORESCANNER_PARALLEL_SEEK_MIN_MISSES))
+      ) {
         this.parallelSeekEnabled = true;
-        this.executor = rsService.getExecutorService();
+        this.seekPool = pool;
       }
     }
   }
@@ -290,7 +315,25 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
    */
   public StoreScanner(HStore store, ScanInfo scanInfo, List<? extends KeyValueScanner> scanners,
     ScanType scanType, long smallestReadPoint, long earliestPutTs) throws IOException {
-    this(store, scanInfo, scanners, scanType, smallestReadPoint, earliestPutTs, null, null);
+    this(store, scanInfo, scanners, scanType, smallestReadPoint, earliestPutTs, null, null,
+      HConstants.EMPTY_START_ROW);
+  }
+
+  /**
+   * Used for compacting the rows from the given start row on, e.g. a row range of a parallel
+   * compaction.
+   * <p>
+   * Opens a scanner across specified StoreFiles, seeked to the start row.
+   * @param store             who we scan
+   * @param scanners          ancillary scanners
+   * @param smallestReadPoint the readPoint that we should use for tracking versions
+   * @param startRow          the first row to compact; can be EMPTY_START_ROW.
+   */
+  public StoreScanner(HStore store, ScanInfo scanInfo, List<? extends KeyValueScanner> scanners,
+    ScanType scanType, long smallestReadPoint, long earliestPutTs, byte[] startRow)
+    throws IOException {
+    this(store, scanInfo, scanners, scanType, smallestReadPoint, earliestPutTs, null, null,
+      startRow);
   }
 
   /**
@@ -307,12 +350,12 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
     long smallestReadPoint, long earliestPutTs, byte[] dropDeletesFromRow, byte[] dropDeletesToRow)
     throws IOException {
     this(store, scanInfo, scanners, ScanType.COMPACT_RETAIN_DELETES, smallestReadPoint,
-      earliestPutTs, dropDeletesFromRow, dropDeletesToRow);
+      earliestPutTs, dropDeletesFromRow, dropDeletesToRow, HConstants.EMPTY_START_ROW);
   }
 
   private StoreScanner(HStore store, ScanInfo scanInfo, List<? extends KeyValueScanner> scanners,
     ScanType scanType, long smallestReadPoint, long earliestPutTs, byte[] dropDeletesFromRow,
-    byte[] dropDeletesToRow) throws IOException {
+    byte[] dropDeletesToRow, byte[] startRow) throws IOException {
     this(store, SCAN_FOR_COMPACTION, scanInfo, 0,
       store.getHRegion().getReadPoint(IsolationLevel.READ_COMMITTED), false, scanType);
     assert scanType != ScanType.USER_SCAN;
@@ -324,7 +367,10 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
     scanners = selectScannersFrom(store, scanners);
 
     // Seek all scanners to the initial key
-    seekScanners(scanners, matcher.getStartKey(), false, parallelSeekEnabled);
+    Cell startKey = startRow.length > 0
+      ? PrivateCellUtil.createFirstDeleteFamilyCellOnRow(startRow, scanInfo.getFamily())
+      : matcher.getStartKey();
+    seekScanners(scanners, startKey, false, parallelSeekEnabled);
     addCurrentScanners(scanners);
     // Combine all seeked scanners with a heap
     resetKVHeap(scanners, comparator);
@@ -1163,38 +1209,60 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
   }
 
   /**
-   * Seek storefiles in parallel to optimize IO latency as much as possible
+   * Seek storefiles in parallel to optimize IO latency as much as possible. The store files are
+   * sought on the pool of the region server, but for one of them, which is sought by this thread
+   * together with the memstore scanners.
    * @param scanners the list {@link KeyValueScanner}s to be read from
    * @param kv       the KeyValue on which the operation is being requested
    */
   private void parallelSeek(final List<? extends KeyValueScanner> scanners, final Cell kv)
     throws IOException {
     if (scanners.isEmpty()) return;
-    int storeFileScannerCount = scanners.size();
-    CountDownLatch latch = new CountDownLatch(storeFileScannerCount);
-    List<ParallelSeekHandler> handlers = new ArrayList<>(storeFileScannerCount);
+    List<ForkJoinTask<Void>> seeks = new ArrayList<>(scanners.size());
+    List<KeyValueScanner> callerScanners = new ArrayList<>();
+    boolean callerSeeksFile = false;
     for (KeyValueScanner scanner : scanners) {
       if (scanner instanceof StoreFileScanner) {
-        ParallelSeekHandler seekHandler = new ParallelSeekHandler(scanner, kv, this.readPt, latch);
-        executor.submit(seekHandler);
-        handlers.add(seekHandler);
-      } else {
-        scanner.seek(kv);
-        latch.countDown();
+        ForkJoinTask<Void> seek = callerSeeksFile ? seekPool.seek(scanner, kv) : null;
+        if (seek != null) {
+          seeks.add(seek);
+          continue;
+        }
+        callerSeeksFile = true;
       }
+      callerScanners.add(scanner);
     }
 
+    IOException error = null;
     try {
-      latch.await();
-    } catch (InterruptedException ie) {
-      throw (InterruptedIOException) new InterruptedIOException().initCause(ie);
+      for (KeyValueScanner scanner : callerScanners) {
+        scanner.seek(kv);
+      }
+    } catch (IOException e) {
+      error = e;
     }
-
-    for (ParallelSeekHandler handler : handlers) {
-      if (handler.getErr() != null) {
-        throw new IOException(handler.getErr());
+    // Wait for all the seeks even after a failure, the scanners must not be in use once we return
+    boolean interrupted = false;
+    for (ForkJoinTask<Void> seek : seeks) {
+      try {
+        seek.get();
+      } catch (InterruptedException e) {
+        interrupted = true;
+        seek.quietlyJoin();
+      } catch (ExecutionException e) {
+        if (error == null) {
+          error = e.getCause() instanceof IOException
+            ? (IOException) e.getCause()
+            : new IOException(e.getCause());
+        }
       }
     }
+    if (error != null) {
+      throw error;
+    }
+    if (interrupted) {
+      throw new InterruptedIOException("Interrupted while seeking store files in parallel");
+    }
   }
 
   /**
@@ -31,10 +31,16 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.PrivateCellUtil;
 import org.apache.hadoop.hbase.io.compress.Compression;
@@ -65,7 +71,10 @@ import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.hbase.thirdparty.com.google.common.base.Throwables;
 import org.apache.hbase.thirdparty.com.google.common.io.Closeables;
+import org.apache.hbase.thirdparty.com.google.common.util.concurrent.Futures;
+import org.apache.hbase.thirdparty.com.google.common.util.concurrent.Uninterruptibles;
 
 /**
  * A compactor is a compaction algorithm associated a given policy. Base class also contains
@@ -144,6 +153,19 @@ public abstract class Compactor<T extends CellSink> {
     public long minSeqIdToKeep = 0;
     /** Total size of the compacted files **/
     private long totalCompactedFilesSize = 0;
+
+    FileDetails copy() {
+      FileDetails copy = new FileDetails();
+      copy.maxKeyCount = maxKeyCount;
+      copy.earliestPutTs = earliestPutTs;
+      copy.latestPutTs = latestPutTs;
+      copy.maxSeqId = maxSeqId;
+      copy.maxMVCCReadpoint = maxMVCCReadpoint;
+      copy.maxTagsLength = maxTagsLength;
+      copy.minSeqIdToKeep = minSeqIdToKeep;
+      copy.totalCompactedFilesSize = totalCompactedFilesSize;
+      return copy;
+    }
   }
 
   /**
@@ -250,6 +272,16 @@ public abstract class Compactor<T extends CellSink> {
 
     InternalScanner createScanner(ScanInfo scanInfo, List<StoreFileScanner> scanners,
       ScanType scanType, FileDetails fd, long smallestReadPoint) throws IOException;
+
+    /**
+     * Creates a scanner for the rows from the given start row on, for a range of a parallel
+     * compaction.
+     */
+    default InternalScanner createScanner(ScanInfo scanInfo, List<StoreFileScanner> scanners,
+      ScanType scanType, FileDetails fd, long smallestReadPoint, byte[] startRow)
+      throws IOException {
+      throw new UnsupportedOperationException(getClass() + " can not scan from a start row");
+    }
   }
 
   protected final InternalScannerFactory defaultScannerFactory = new InternalScannerFactory() {
@@ -265,6 +297,14 @@ public abstract class Compactor<T extends CellSink> {
       return Compactor.this.createScanner(store, scanInfo, scanners, scanType, smallestReadPoint,
         fd.earliestPutTs);
     }
+
+    @Override
+    public InternalScanner createScanner(ScanInfo scanInfo, List<StoreFileScanner> scanners,
+      ScanType scanType, FileDetails fd, long smallestReadPoint, byte[] startRow)
+      throws IOException {
+      return new StoreScanner(store, scanInfo, scanners, scanType, smallestReadPoint,
+        fd.earliestPutTs, startRow);
+    }
   };
 
   protected final CreateStoreFileWriterParams createParams(FileDetails fd, boolean shouldDropBehind,
@@ -393,6 +433,193 @@ public abstract class Compactor<T extends CellSink> {
     return commitWriter(writer, fd, request);
   }
 
+  /**
+   * Compacts the row ranges between the given split rows concurrently, each with its own file
+   * scanners and into its own writer, running one range on the calling thread and the others on the
+   * given pool, or on the calling thread too once the pool is shut down. The writers are only
+   * committed once every range has finished, and are all aborted if any of them fails, so the
+   * ranges still make up a single compaction. Split rows have to be strictly increasing; rows are
+   * never split across ranges, so deletes and versions are resolved as in a single pass.
+   * @param splitRows rows that start a new range; the first range starts at the first row
+   * @param pool      the pool of the region server the ranges are compacted on
+   * @return the new files, in row order
+   */
+  protected final List<Path> compactInParallel(final CompactionRequestImpl request,
+    List<byte[]> splitRows, ExecutorService pool, InternalScannerFactory scannerFactory,
+    CellSinkFactory<T> sinkFactory, ThroughputController throughputController, User user)
+    throws IOException {
+    FileDetails fd = getFileDetails(request.getFiles(), request.isAllFiles(), request.isMajor());
+    int ranges = splitRows.size() + 1;
+    // Each writer only gets a share of the keys, which is what sizes its bloom filter
+    FileDetails rangeFd = fd.copy();
+    rangeFd.maxKeyCount = fd.maxKeyCount / ranges + 1;
+    long smallestReadPoint = getSmallestReadPoint();
+    boolean dropCache =
+      request.isMajor() || request.isAllFiles() ? this.dropCacheMajor : this.dropCacheMinor;
+    ScanType scanType = scannerFactory.getScanType(request);
+    ScanInfo scanInfo = preCompactScannerOpen(request, scanType, user);
+
+    List<CompactionProgress> progresses = new ArrayList<>(ranges);
+    List<Future<T>> futures = new ArrayList<>(ranges);
+    List<T> writers = new ArrayList<>(ranges);
+    Throwable error = null;
+    try {
+      for (int i = 0; i < ranges; i++) {
+        byte[] startRow = i == 0 ? HConstants.EMPTY_START_ROW : splitRows.get(i - 1);
+        byte[] stopRow = i == ranges - 1 ? HConstants.EMPTY_END_ROW : splitRows.get(i);
+        CompactionProgress progress = new CompactionProgress(rangeFd.maxKeyCount);
+        progresses.add(progress);
+        Callable<T> task =
+          () -> compactRange(request, rangeFd, scanInfo, scanType, smallestReadPoint, dropCache,
+            startRow, stopRow, scannerFactory, sinkFactory, throughputController, user, progress);
+        Future<T> future = null;
+        if (i < ranges - 1) {
+          try {
+            future = pool.submit(task);
+          } catch (RejectedExecutionException e) {
+            // the region server is stopping
+          }
+        }
+        futures.add(future != null ? future : Futures.immediateFuture(task.call()));
+      }
+    } catch (Throwable t) {
+      error = t;
+    }
+    // Wait for all the ranges, even after a failure, so that no writer is left behind unaborted
+    for (Future<T> future : futures) {
+      try {
+        writers.add(Uninterruptibles.getUninterruptibly(future));
+      } catch (ExecutionException e) {
+        if (error == null) {
+          error = e.getCause();
+        }
+      }
+    }
+    if (error != null) {
+      for (T writer : writers) {
+        abortWriter(writer);
+      }
+      if (error instanceof IOException) {
+        throw (IOException) error;
+      }
+      Throwables.throwIfUnchecked(error);
+      throw new IOException(error);
+    }
+    CompactionProgress total = new CompactionProgress(fd.maxKeyCount);
+    for (CompactionProgress progress : progresses) {
+      total.currentCompactedKVs += progress.currentCompactedKVs;
+      total.totalCompactedSize += progress.totalCompactedSize;
+    }
+    store.updateCompactedMetrics(request.isMajor(), total);
+    List<Path> newFiles = new ArrayList<>();
+    for (T writer : writers) {
+      newFiles.addAll(commitWriter(writer, fd, request));
+    }
+    return newFiles;
+  }
+
+  private T compactRange(CompactionRequestImpl request, FileDetails fd, ScanInfo scanInfo,
+    ScanType scanType, long smallestReadPoint, boolean dropCache, byte[] startRow, byte[] stopRow,
+    InternalScannerFactory scannerFactory, CellSinkFactory<T> sinkFactory,
+    ThroughputController throughputController, User user, CompactionProgress progress)
+    throws IOException {
+    InternalScanner scanner = null;
+    boolean finished = false;
+    List<StoreFileScanner> scanners =
+      createFileScanners(request.getFiles(), smallestReadPoint, dropCache);
+    T writer = null;
+    progressSet.add(progress);
+    try {
+      InternalScanner rangeScanner =
+        scannerFactory.createScanner(scanInfo, scanners, scanType, fd, smallestReadPoint, startRow);
+      if (stopRow.length > 0) {
+        rangeScanner = new StopRowScanner(rangeScanner, stopRow, store.getComparator());
+      }
+      scanner = postCompactScannerOpen(request, scanType, rangeScanner, user);
+      boolean cleanSeqId = false;
+      if (fd.minSeqIdToKeep > 0 && !store.getColumnFamilyDescriptor().isNewVersionBehavior()) {
+        // For mvcc-sensitive family, we never set mvcc to 0.
+        smallestReadPoint = Math.min(fd.minSeqIdToKeep, smallestReadPoint);
+        cleanSeqId = true;
+      }
+      writer = sinkFactory.createWriter(scanner, fd, dropCache, request.isMajor(),
+        request.getWriterCreationTracker());
+      finished = performCompaction(fd, scanner, writer, smallestReadPoint, cleanSeqId,
+        throughputController, request, progress);
+      if (!finished) {
+        throw new InterruptedIOException("Aborting compaction of store " + store + " in region "
+          + store.getRegionInfo().getRegionNameAsString() + " because it was interrupted.");
+      }
+    } finally {
+      if (scanner == null) {
+        for (StoreFileScanner sfs : scanners) {
+          sfs.close();
+        }
+      } else {
+        Closeables.close(scanner, true);
+      }
+      if (!finished && writer != null) {
+        abortWriter(writer);
+      }
+      progressSet.remove(progress);
+    }
+    return writer;
+  }
+
+  /**
+   * Ends a compaction scanner at the first cell of the stop row, so that a range of a parallel
+   * compaction does not write the rows of the next one.
+   */
+  private static final class StopRowScanner implements InternalScanner, Shipper {
+
+    private final InternalScanner delegate;
+    private final byte[] stopRow;
+    private final CellComparator comparator;
+    private boolean done = false;
+
+    StopRowScanner(InternalScanner delegate, byte[] stopRow, CellComparator comparator) {
+      this.delegate = delegate;
+      this.stopRow = stopRow;
+      this.comparator = comparator;
+    }
+
+    private boolean beforeStopRow(Cell cell) {
+      return comparator.compareRows(cell, stopRow, 0, stopRow.length) < 0;
+    }
+
+    @Override
+    public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
+      if (done) {
+        return false;
+      }
+      int start = result.size();
+      boolean hasMore = delegate.next(result, scannerContext);
+      if (result.size() > start && !beforeStopRow(result.get(result.size() - 1))) {
+        // Cells come back in order, so drop everything from the first one in the stop row on
+        int end = start;
+        while (end < result.size() && beforeStopRow(result.get(end))) {
+          end++;
+        }
+        result.subList(end, result.size()).clear();
+        done = true;
+        return false;
+      }
+      return hasMore;
+    }
+
+    @Override
+    public void shipped() throws IOException {
+      if (delegate instanceof Shipper) {
+        ((Shipper) delegate).shipped();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+
   protected abstract List<Path> commitWriter(T writer, FileDetails fd,
     CompactionRequestImpl request) throws IOException;
 
@@ -18,19 +18,36 @@
 package org.apache.hadoop.hbase.regionserver.compactions;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.HStoreFile;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
+import org.apache.hadoop.hbase.regionserver.StoreFileReader;
 import org.apache.hadoop.hbase.regionserver.StoreFileWriter;
 import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
 import org.apache.hadoop.hbase.security.User;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.util.StringUtils.TraditionalBinaryPrefix;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.hbase.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Compact passed set of files. Create an instance and then call
  * {@link #compact(CompactionRequestImpl, ThroughputController, User)}
@@ -39,8 +56,33 @@ import org.slf4j.LoggerFactory;
 public class DefaultCompactor extends Compactor<StoreFileWriter> {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultCompactor.class);
 
+  /**
+   * Number of row ranges a large compaction of all the files of a store is split into and compacted
+   * concurrently, and of threads of the region server's pool compacting them. The default of 1
+   * compacts everything in a single pass.
+   */
+  public static final String PARALLEL_COMPACTION_THREADS_KEY =
+    "hbase.hstore.compaction.parallel.threads";
+  public static final int DEFAULT_PARALLEL_COMPACTION_THREADS = 1;
+
+  /** Total size of the files to compact from which a compaction is split into row ranges */
+  public static final String PARALLEL_COMPACTION_MIN_SIZE_KEY =
+    "hbase.hstore.compaction.parallel.min.size";
+  public static final long DEFAULT_PARALLEL_COMPACTION_MIN_SIZE = 10L * 1024 * 1024 * 1024;
+
+  // The range files are left out of minor compactions until the next major one, so they may only
+  // take up this share of the blocking store files, leaving room for the flushes in between.
+  private static final int BLOCKING_FILES_PER_RANGE = 4;
+
+  private final int parallelThreads;
+  private final long parallelMinSize;
+
   public DefaultCompactor(Configuration conf, HStore store) {
     super(conf, store);
+    this.parallelThreads =
+      conf.getInt(PARALLEL_COMPACTION_THREADS_KEY, DEFAULT_PARALLEL_COMPACTION_THREADS);
+    this.parallelMinSize =
+      conf.getLong(PARALLEL_COMPACTION_MIN_SIZE_KEY, DEFAULT_PARALLEL_COMPACTION_MIN_SIZE);
   }
 
   private final CellSinkFactory<StoreFileWriter> writerFactory =
@@ -54,14 +96,117 @@ public class DefaultCompactor extends Compactor<StoreFileWriter> {
       }
     };
 
+  /**
+   * Writers for the ranges of a parallel compaction. Their files are excluded from minor
+   * compactions, which would otherwise merge the ranges back together right away; the next major
+   * compaction picks them up again. So that they do not hold up flushes meanwhile, there are at
+   * most a quarter of the blocking store files of them.
+   */
+  private final CellSinkFactory<StoreFileWriter> rangeWriterFactory =
+    new CellSinkFactory<StoreFileWriter>() {
+      @Override
+      public StoreFileWriter createWriter(InternalScanner scanner, FileDetails fd,
+        boolean shouldDropBehind, boolean major, Consumer<Path> writerCreationTracker)
+        throws IOException {
+        StoreFileWriter writer =
+          DefaultCompactor.this.createWriter(fd, shouldDropBehind, major, writerCreationTracker);
+        writer.appendFileInfo(HStoreFile.EXCLUDE_FROM_MINOR_COMPACTION_KEY, Bytes.toBytes(true));
+        return writer;
+      }
+    };
+
+  /**
+   * Returns the pool the row ranges of the compactions of a region server are compacted on, or null
+   * if compactions are not split. Owned by the region server, which shuts it down when it stops.
+   */
+  public static ThreadPoolExecutor createRangePool(String serverName, Configuration conf) {
+    int threads = conf.getInt(PARALLEL_COMPACTION_THREADS_KEY, DEFAULT_PARALLEL_COMPACTION_THREADS);
+    if (threads <= 1) {
+      return null;
+    }
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
+        .setNameFormat(serverName + "-Compaction-Range-%d").setDaemon(true).build());
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
   /**
    * Do a minor/major compaction on an explicit set of storefiles from a Store.
    */
   public List<Path> compact(final CompactionRequestImpl request,
     ThroughputController throughputController, User user) throws IOException {
+    if (parallelThreads > 1 && request.isAllFiles() && request.getSize() >= parallelMinSize) {
+      int ranges =
+        (int) Math.min(parallelThreads, store.getBlockingFileCount() / BLOCKING_FILES_PER_RANGE);
+      Optional<ThreadPoolExecutor> pool =
+        store.getHRegion().getRegionServicesForStores().getCompactionRangePool();
+      List<byte[]> splitRows = ranges > 1 && pool.isPresent()
+        ? selectSplitRows(request.getFiles(), ranges, store.getComparator())
+        : Collections.emptyList();
+      if (!splitRows.isEmpty()) {
+        LOG.info("Compacting {} files ({}) of {} in {} row ranges", request.getFiles().size(),
+          TraditionalBinaryPrefix.long2String(request.getSize(), "", 1), store,
+          splitRows.size() + 1);
+        return compactInParallel(request, splitRows, pool.get(), defaultScannerFactory,
+          rangeWriterFactory, throughputController, user);
+      }
+    }
     return compact(request, defaultScannerFactory, writerFactory, throughputController, user);
   }
 
+  /**
+   * Picks the rows to split a compaction of the given files into ranges of about the same size at.
+   * The root level of each file's block index divides the file into blocks of roughly equal size,
+   * so every root index key stands for an equal share of its file's length. Walking the keys of all
+   * the files in order, a row is picked each time another 1/ranges of the total has passed.
+   * @return strictly increasing split rows, at most ranges - 1 of them and possibly none
+   */
+  static List<byte[]> selectSplitRows(Collection<HStoreFile> files, int ranges,
+    CellComparator comparator) {
+    List<Pair<Cell, Long>> keys = new ArrayList<>();
+    long totalSize = 0;
+    for (HStoreFile file : files) {
+      StoreFileReader reader = file.getReader();
+      if (reader == null) {
+        continue;
+      }
+      List<Cell> rootKeys = reader.getHFileReader().getRootIndexKeys();
+      if (rootKeys.isEmpty()) {
+        continue;
+      }
+      long weight = Math.max(1, reader.length() / rootKeys.size());
+      for (Cell key : rootKeys) {
+        keys.add(new Pair<>(key, weight));
+        totalSize += weight;
+      }
+    }
+    List<byte[]> splitRows = new ArrayList<>(ranges - 1);
+    if (keys.isEmpty()) {
+      return splitRows;
+    }
+    keys.sort((a, b) -> comparator.compare(a.getFirst(), b.getFirst()));
+    Cell firstKey = keys.get(0).getFirst();
+    long passed = 0;
+    for (Pair<Cell, Long> key : keys) {
+      if (passed >= totalSize * (splitRows.size() + 1) / ranges) {
+        Cell cell = key.getFirst();
+        byte[] lastRow = splitRows.isEmpty() ? null : splitRows.get(splitRows.size() - 1);
+        if (
+          comparator.compareRows(firstKey, cell) < 0
+            && (lastRow == null || comparator.compareRows(cell, lastRow, 0, lastRow.length) > 0)
+        ) {
+          splitRows.add(CellUtil.cloneRow(cell));
+          if (splitRows.size() == ranges - 1) {
+            break;
+          }
+        }
+      }
+      passed += key.getSecond();
+    }
+    return splitRows;
+  }
+
   @Override
   protected List<Path> commitWriter(StoreFileWriter writer, FileDetails fd,
     CompactionRequestImpl request) throws IOException {
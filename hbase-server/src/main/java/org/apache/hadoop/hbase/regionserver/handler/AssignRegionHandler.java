@@ -19,6 +19,8 @@ package org.apache.hadoop.hbase.regionserver.handler;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HConstants;
@@ -31,6 +33,7 @@ import org.apache.hadoop.hbase.executor.EventType;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.HRegionServer;
 import org.apache.hadoop.hbase.regionserver.Region;
+import org.apache.hadoop.hbase.regionserver.RegionHotBlocks;
 import org.apache.hadoop.hbase.regionserver.RegionServerServices.PostOpenDeployContext;
 import org.apache.hadoop.hbase.regionserver.RegionServerServices.RegionStateTransitionContext;
 import org.apache.hadoop.hbase.util.RetryCounter;
@@ -40,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.StoreFileBlocks;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.RegionStateTransition.TransitionCode;
 
 /**
@@ -64,14 +68,25 @@ public class AssignRegionHandler extends EventHandler {
 
   private final RetryCounter retryCounter;
 
+  // the blocks hot in the block cache of the server the region moved from
+  private final List<StoreFileBlocks> hotBlocks;
+
   public AssignRegionHandler(HRegionServer server, RegionInfo regionInfo, long openProcId,
     @Nullable TableDescriptor tableDesc, long masterSystemTime, EventType eventType) {
+    this(server, regionInfo, openProcId, tableDesc, masterSystemTime, eventType,
+      Collections.emptyList());
+  }
+
+  public AssignRegionHandler(HRegionServer server, RegionInfo regionInfo, long openProcId,
+    @Nullable TableDescriptor tableDesc, long masterSystemTime, EventType eventType,
+    List<StoreFileBlocks> hotBlocks) {
     super(server, eventType);
     this.regionInfo = regionInfo;
     this.openProcId = openProcId;
     this.tableDesc = tableDesc;
     this.masterSystemTime = masterSystemTime;
     this.retryCounter = HandlerUtil.getRetryCounter();
+    this.hotBlocks = hotBlocks;
   }
 
   private HRegionServer getServer() {
@@ -156,6 +171,7 @@ public class AssignRegionHandler extends EventHandler {
     rs.postOpenDeployTasks(new PostOpenDeployContext(region, openProcId, masterSystemTime));
     rs.addRegion(region);
     LOG.info("Opened {}", regionName);
+    rs.getHotBlocksWarmUpPool().ifPresent(pool -> RegionHotBlocks.warmUp(region, hotBlocks, pool));
     // Cache the open region procedure id after report region transition succeed.
     rs.finishRegionProcedure(openProcId);
     Boolean current = rs.getRegionsInTransitionInRS().remove(regionInfo.getEncodedNameAsBytes());
@@ -181,6 +197,13 @@ public class AssignRegionHandler extends EventHandler {
 
   public static AssignRegionHandler create(HRegionServer server, RegionInfo regionInfo,
     long openProcId, TableDescriptor tableDesc, long masterSystemTime) {
+    return create(server, regionInfo, openProcId, tableDesc, masterSystemTime,
+      Collections.emptyList());
+  }
+
+  public static AssignRegionHandler create(HRegionServer server, RegionInfo regionInfo,
+    long openProcId, TableDescriptor tableDesc, long masterSystemTime,
+    List<StoreFileBlocks> hotBlocks) {
     EventType eventType;
     if (regionInfo.isMetaRegion()) {
       eventType = EventType.M_RS_OPEN_META;
@@ -193,6 +216,6 @@ public class AssignRegionHandler extends EventHandler {
       eventType = EventType.M_RS_OPEN_REGION;
     }
     return new AssignRegionHandler(server, regionInfo, openProcId, tableDesc, masterSystemTime,
-      eventType);
+      eventType, hotBlocks);
   }
 }
@@ -19,6 +19,8 @@ package org.apache.hadoop.hbase.regionserver.handler;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.ServerName;
@@ -28,6 +30,7 @@ import org.apache.hadoop.hbase.executor.EventType;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.HRegionServer;
 import org.apache.hadoop.hbase.regionserver.Region;
+import org.apache.hadoop.hbase.regionserver.RegionHotBlocks;
 import org.apache.hadoop.hbase.regionserver.RegionServerServices.RegionStateTransitionContext;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.RetryCounter;
@@ -37,6 +40,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.StoreFileBlocks;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.RegionStateTransition.TransitionCode;
 
 /**
@@ -117,6 +121,15 @@ public class UnassignRegionHandler extends EventHandler {
       // abort the RS...
       region.getCoprocessorHost().preClose(abort);
     }
+    // hand the blocks hot in the cache over to the server the region moves to, while the store
+    // files are still known
+    List<StoreFileBlocks> hotBlocks = destination != null
+      ? rs.getBlockCache()
+        .map(cache -> RegionHotBlocks.collect(region, cache,
+          rs.getConfiguration().getInt(RegionHotBlocks.MAX_HOT_BLOCKS_KEY,
+            RegionHotBlocks.DEFAULT_MAX_HOT_BLOCKS)))
+        .orElse(Collections.emptyList())
+      : Collections.emptyList();
     if (region.close(abort) == null) {
       // XXX: Is this still possible? The old comment says about split, but now split is done at
       // master side, so...
@@ -139,7 +152,7 @@ public class UnassignRegionHandler extends EventHandler {
     }
     if (
       !rs.reportRegionStateTransition(new RegionStateTransitionContext(TransitionCode.CLOSED,
-        HConstants.NO_SEQNUM, closeProcId, -1, region.getRegionInfo()))
+        HConstants.NO_SEQNUM, closeProcId, -1, region.getRegionInfo(), hotBlocks))
     ) {
       throw new IOException("Failed to report close to master: " + regionName);
     }
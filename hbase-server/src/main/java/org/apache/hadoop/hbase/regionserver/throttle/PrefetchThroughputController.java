@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.throttle;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseInterfaceAudience;
+import org.apache.hadoop.hbase.regionserver.RegionServerServices;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A throughput controller which limits the total throughput of the HFile prefetches of a region
+ * server to {@value #HBASE_HFILE_PREFETCH_MAX_THROUGHPUT}, shared evenly by the files being
+ * prefetched, so that the files of regions moved to the server are not read at the expense of the
+ * client reads. No limit applies if it is not positive.
+ * @see org.apache.hadoop.hbase.io.hfile.PrefetchExecutor
+ */
+@InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.CONFIG)
+public class PrefetchThroughputController extends PressureAwareThroughputController {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PrefetchThroughputController.class);
+
+  public static final String HBASE_HFILE_PREFETCH_MAX_THROUGHPUT =
+    "hbase.hfile.prefetch.throughput.max";
+
+  private static final long DEFAULT_HBASE_HFILE_PREFETCH_MAX_THROUGHPUT = 0;
+
+  // check prefetch throughput every this size
+  public static final String HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL =
+    "hbase.hfile.prefetch.throughput.control.check.interval";
+
+  private static final long DEFAULT_HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL =
+    1024L * 1024;// 1MB
+
+  @Override
+  public void setup(RegionServerServices server) {
+  }
+
+  @Override
+  public void finish(String opName) {
+    // prefetches run a slice of a file at a time, too often to log each like the base class does
+    activeOperations.remove(opName);
+    setMaxThroughput(getMaxThroughput());
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    super.setConf(conf);
+    if (conf == null) {
+      return;
+    }
+    long maxThroughput = conf.getLong(HBASE_HFILE_PREFETCH_MAX_THROUGHPUT,
+      DEFAULT_HBASE_HFILE_PREFETCH_MAX_THROUGHPUT);
+    this.controlPerSize = conf.getLong(HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL,
+      DEFAULT_HBASE_HFILE_PREFETCH_THROUGHPUT_CONTROL_CHECK_INTERVAL);
+    this.setMaxThroughput(maxThroughput > 0 ? maxThroughput : Double.MAX_VALUE);
+    LOG.info("Prefetch throughput configurations, max: " + throughputDesc(getMaxThroughput()));
+  }
+
+  @Override
+  public String toString() {
+    return "PrefetchController [maxThroughput=" + throughputDesc(getMaxThroughput())
+      + ", activePrefetchNumber=" + activeOperations.size() + "]";
+  }
+}
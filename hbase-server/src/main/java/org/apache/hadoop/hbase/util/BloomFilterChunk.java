@@ -75,6 +75,10 @@ public class BloomFilterChunk implements BloomFilterBase {
    * @return error rate for this particular Bloom filter
    */
   public double actualErrorRate() {
+    if (this.bloomType == BloomType.ROW_BLOCKED) {
+      return BloomFilterUtil.actualBlockedErrorRate(keyCount,
+        byteSize / BloomFilterUtil.BLOCK_BYTE_SIZE);
+    }
     return BloomFilterUtil.actualErrorRate(keyCount, byteSize * 8, hashCount);
   }
 
@@ -156,6 +160,12 @@ public class BloomFilterChunk implements BloomFilterBase {
 
   // Used only by tests
   void add(byte[] buf, int offset, int len) {
+    if (this.bloomType == BloomType.ROW_BLOCKED) {
+      BloomFilterUtil.setBlocked(BloomFilterUtil.blockedHash(buf, offset, len), bloom,
+        (int) byteSize);
+      ++this.keyCount;
+      return;
+    }
     /*
      * For faster hashing, use combinatorial generation
      * http://www.eecs.harvard.edu/~kirsch/pubs/bbbf/esa06.pdf
@@ -167,6 +177,12 @@ public class BloomFilterChunk implements BloomFilterBase {
   }
 
   public void add(Cell cell) {
+    if (this.bloomType == BloomType.ROW_BLOCKED) {
+      // a single hash of the row, setting all the bits of the key in one block
+      BloomFilterUtil.setBlocked(BloomFilterUtil.blockedHash(cell), bloom, (int) byteSize);
+      ++this.keyCount;
+      return;
+    }
     /*
      * For faster hashing, use combinatorial generation
      * http://www.eecs.harvard.edu/~kirsch/pubs/bbbf/esa06.pdf
@@ -249,9 +265,14 @@ public class BloomFilterChunk implements BloomFilterBase {
       int pieces = 1;
       int newByteSize = (int) this.byteSize;
       int newMaxKeys = this.maxKeys;
+      // blocked chunks fold block by block, down to a single block
+      int minByteSize =
+        this.bloomType == BloomType.ROW_BLOCKED ? BloomFilterUtil.BLOCK_BYTE_SIZE : 1;
 
       // while exponentially smaller & folding is lossless
-      while ((newByteSize & 1) == 0 && newMaxKeys > (this.keyCount << 1)) {
+      while (
+        (newByteSize & 1) == 0 && newByteSize > minByteSize && newMaxKeys > (this.keyCount << 1)
+      ) {
         pieces <<= 1;
         newByteSize >>= 1;
         newMaxKeys >>= 1;
@@ -19,9 +19,11 @@ package org.apache.hadoop.hbase.util;
 
 import static org.apache.hadoop.hbase.regionserver.BloomType.ROWPREFIX_FIXED_LENGTH;
 
+import java.nio.ByteBuffer;
 import java.text.NumberFormat;
 import java.util.Random;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ByteBufferExtendedCell;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.nio.ByteBuff;
@@ -53,6 +55,28 @@ public final class BloomFilterUtil {
   public static final byte[] bitvals = { (byte) 0x01, (byte) 0x02, (byte) 0x04, (byte) 0x08,
     (byte) 0x10, (byte) 0x20, (byte) 0x40, (byte) 0x80 };
 
+  /**
+   * Bytes in a block of a {@link BloomType#ROW_BLOCKED} Bloom filter chunk, the size of a cache
+   * line
+   */
+  public static final int BLOCK_BYTE_SIZE = 64;
+
+  /**
+   * Bits set per key in a {@link BloomType#ROW_BLOCKED} Bloom filter chunk, one in each long of the
+   * block of the key
+   */
+  public static final int BLOCKED_HASH_COUNT = BLOCK_BYTE_SIZE / Bytes.SIZEOF_LONG;
+
+  /** Odd multipliers picking the bit set in each long of a block from the same key hash */
+  private static final int[] BLOCK_SALTS = { 0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+    0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31 };
+
+  private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME64_3 = 0x165667B19E3779F9L;
+  private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+  private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
   /**
    * Private constructor to keep this class from being instantiated.
    */
@@ -156,6 +180,9 @@ public final class BloomFilterUtil {
    */
   public static BloomFilterChunk createBySize(int byteSizeHint, double errorRate, int hashType,
     int foldFactor, BloomType bloomType) {
+    if (bloomType == BloomType.ROW_BLOCKED) {
+      return createBlockedBySize(byteSizeHint, errorRate, hashType);
+    }
     BloomFilterChunk bbf = new BloomFilterChunk(hashType, bloomType);
 
     bbf.byteSize = computeFoldableByteSize(byteSizeHint * 8L, foldFactor);
@@ -171,6 +198,181 @@ public final class BloomFilterUtil {
     return bbf;
   }
 
+  /**
+   * Creates a {@link BloomType#ROW_BLOCKED} Bloom filter chunk of the given size, rounded down to a
+   * power of two number of blocks so that it can be folded.
+   * @param byteSizeHint the desired number of bytes for the Bloom filter bit array
+   * @param errorRate    target false positive rate of the Bloom filter
+   * @param hashType     Bloom filter hash function type, recorded but not used by the blocked
+   *                     layout
+   * @return the new Bloom filter of the desired size
+   */
+  public static BloomFilterChunk createBlockedBySize(int byteSizeHint, double errorRate,
+    int hashType) {
+    BloomFilterChunk bbf = new BloomFilterChunk(hashType, BloomType.ROW_BLOCKED);
+    int numBlocks = Integer.highestOneBit(Math.max(1, byteSizeHint / BLOCK_BYTE_SIZE));
+    bbf.byteSize = (long) numBlocks * BLOCK_BYTE_SIZE;
+    bbf.hashCount = BLOCKED_HASH_COUNT;
+    bbf.maxKeys = (int) computeBlockedMaxKeys(numBlocks, errorRate);
+    return bbf;
+  }
+
+  /**
+   * The error rate of a {@link BloomType#ROW_BLOCKED} Bloom filter holding the given number of
+   * keys. The keys are spread over the blocks unevenly, so it is the error rate for each number of
+   * keys a block may hold, weighted by the Poisson probability of the block holding them.
+   * @return the expected error rate
+   */
+  public static double actualBlockedErrorRate(long keyCount, long numBlocks) {
+    double keysPerBlock = keyCount * 1.0 / numBlocks;
+    if (keysPerBlock == 0) {
+      return 0;
+    }
+    double logKeysPerBlock = Math.log(keysPerBlock);
+    double logBitClear = Math.log1p(-1.0 / Long.SIZE);
+    int maxKeysInBlock = (int) (keysPerBlock + 12 * Math.sqrt(keysPerBlock) + 20);
+    double errorRate = 0;
+    double logProbability = -keysPerBlock;
+    for (int keys = 1; keys <= maxKeysInBlock; keys++) {
+      logProbability += logKeysPerBlock - Math.log(keys);
+      double bitSet = -Math.expm1(keys * logBitClear);
+      errorRate += Math.exp(logProbability + BLOCKED_HASH_COUNT * Math.log(bitSet));
+    }
+    return errorRate;
+  }
+
+  /**
+   * The maximum number of keys we can put into a {@link BloomType#ROW_BLOCKED} Bloom filter of the
+   * given number of blocks to maintain the given error rate.
+   */
+  public static long computeBlockedMaxKeys(long numBlocks, double errorRate) {
+    // the error rate grows with the number of keys, at worst one key per bit
+    long low = 0;
+    long high = numBlocks * BLOCK_BYTE_SIZE * 8;
+    while (low < high) {
+      long mid = (low + high + 1) >>> 1;
+      if (actualBlockedErrorRate(mid, numBlocks) <= errorRate) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return Math.max(1, low);
+  }
+
+  /**
+   * Hashes the key of a {@link BloomType#ROW_BLOCKED} Bloom filter, in a single pass over the key
+   * reading eight bytes at a time, after xxHash64.
+   */
+  static long blockedHash(byte[] buf, int offset, int length) {
+    long hash = PRIME64_5 + length;
+    int end = offset + length;
+    int i = offset;
+    for (; i + Bytes.SIZEOF_LONG <= end; i += Bytes.SIZEOF_LONG) {
+      hash = mixLong(hash, Bytes.toLong(buf, i));
+    }
+    for (; i < end; i++) {
+      hash = mixByte(hash, buf[i]);
+    }
+    return avalanche(hash);
+  }
+
+  /** Same as {@link #blockedHash(byte[], int, int)} for a key in a ByteBuffer */
+  static long blockedHash(ByteBuffer buf, int offset, int length) {
+    long hash = PRIME64_5 + length;
+    int end = offset + length;
+    int i = offset;
+    for (; i + Bytes.SIZEOF_LONG <= end; i += Bytes.SIZEOF_LONG) {
+      hash = mixLong(hash, ByteBufferUtils.toLong(buf, i));
+    }
+    for (; i < end; i++) {
+      hash = mixByte(hash, ByteBufferUtils.toByte(buf, i));
+    }
+    return avalanche(hash);
+  }
+
+  /** Hashes the row of the cell as the key of a {@link BloomType#ROW_BLOCKED} Bloom filter */
+  static long blockedHash(Cell cell) {
+    if (cell instanceof ByteBufferExtendedCell) {
+      ByteBufferExtendedCell bbCell = (ByteBufferExtendedCell) cell;
+      return blockedHash(bbCell.getRowByteBuffer(), bbCell.getRowPosition(), bbCell.getRowLength());
+    }
+    return blockedHash(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength());
+  }
+
+  private static long mixLong(long hash, long value) {
+    long k = Long.rotateLeft(value * PRIME64_2, 31) * PRIME64_1;
+    return Long.rotateLeft(hash ^ k, 27) * PRIME64_1 + PRIME64_4;
+  }
+
+  private static long mixByte(long hash, byte value) {
+    return Long.rotateLeft(hash ^ ((value & 0xff) * PRIME64_5), 11) * PRIME64_1;
+  }
+
+  private static long avalanche(long hash) {
+    hash ^= hash >>> 33;
+    hash *= PRIME64_2;
+    hash ^= hash >>> 29;
+    hash *= PRIME64_3;
+    return hash ^ (hash >>> 32);
+  }
+
+  /**
+   * Sets the bits of the key hash in a {@link BloomType#ROW_BLOCKED} Bloom filter. The upper half
+   * of the hash picks the block, the lower half the bit set in each long of the block.
+   */
+  static void setBlocked(long hash, ByteBuffer bloom, int bloomSize) {
+    int pos = blockPosition(hash, bloomSize);
+    int key = (int) hash;
+    for (int i = 0; i < BLOCKED_HASH_COUNT; i++) {
+      int index = pos + i * Bytes.SIZEOF_LONG;
+      bloom.putLong(index, bloom.getLong(index) | blockMask(key, i));
+    }
+  }
+
+  private static boolean containsBlocked(long hash, ByteBuff bloomBuf, int bloomOffset,
+    int bloomSize) {
+    if (randomGeneratorForTest != null) {
+      // Test mode with "fake look-ups" to estimate "ideal false positive rate"
+      hash = randomGeneratorForTest.nextLong();
+    }
+    int pos = bloomOffset + blockPosition(hash, bloomSize);
+    int key = (int) hash;
+    // check all the longs of the block without branching, they are in the same cache line anyway
+    long missing = 0;
+    for (int i = 0; i < BLOCKED_HASH_COUNT; i++) {
+      missing |= blockMask(key, i) & ~bloomBuf.getLong(pos + i * Bytes.SIZEOF_LONG);
+    }
+    return missing == 0;
+  }
+
+  private static int blockPosition(long hash, int bloomSize) {
+    // the number of blocks is a power of two, see createBlockedBySize
+    int numBlocks = bloomSize / BLOCK_BYTE_SIZE;
+    return ((int) (hash >>> 32) & (numBlocks - 1)) * BLOCK_BYTE_SIZE;
+  }
+
+  private static long blockMask(int key, int i) {
+    return 1L << ((key * BLOCK_SALTS[i]) >>> 26);
+  }
+
+  /**
+   * Checks a key against a {@link BloomType#ROW_BLOCKED} Bloom filter, reading a single block.
+   */
+  public static boolean containsBlocked(byte[] buf, int offset, int length, ByteBuff bloomBuf,
+    int bloomOffset, int bloomSize) {
+    return containsBlocked(blockedHash(buf, offset, length), bloomBuf, bloomOffset, bloomSize);
+  }
+
+  /**
+   * Checks the row of a cell against a {@link BloomType#ROW_BLOCKED} Bloom filter, reading a single
+   * block.
+   */
+  public static boolean containsBlocked(Cell cell, ByteBuff bloomBuf, int bloomOffset,
+    int bloomSize) {
+    return containsBlocked(blockedHash(cell), bloomBuf, bloomOffset, bloomSize);
+  }
+
   public static boolean contains(byte[] buf, int offset, int length, ByteBuff bloomBuf,
     int bloomOffset, int bloomSize, Hash hash, int hashCount) {
     HashKey<byte[]> hashKey = new ByteArrayHashKey(buf, offset, length);
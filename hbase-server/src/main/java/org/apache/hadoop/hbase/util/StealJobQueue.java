@@ -42,6 +42,8 @@ public class StealJobQueue<T> extends PriorityBlockingQueue<T> {
 
   private BlockingQueue<T> stealFromQueue;
 
+  private final boolean compareAcrossQueues;
+
   private final Lock lock = new ReentrantLock();
   private final transient Condition notEmpty = lock.newCondition();
 
@@ -49,9 +51,24 @@ public class StealJobQueue<T> extends PriorityBlockingQueue<T> {
     this(11, 11, comparator);
   }
 
+  /**
+   * @param compareAcrossQueues when true, the consumer of this queue takes whichever of the heads
+   *                            of the two queues comes first, rather than only stealing once this
+   *                            queue is empty
+   */
+  public StealJobQueue(Comparator<? super T> comparator, boolean compareAcrossQueues) {
+    this(11, 11, comparator, compareAcrossQueues);
+  }
+
   public StealJobQueue(int initCapacity, int stealFromQueueInitCapacity,
     Comparator<? super T> comparator) {
+    this(initCapacity, stealFromQueueInitCapacity, comparator, false);
+  }
+
+  public StealJobQueue(int initCapacity, int stealFromQueueInitCapacity,
+    Comparator<? super T> comparator, boolean compareAcrossQueues) {
     super(initCapacity, comparator);
+    this.compareAcrossQueues = compareAcrossQueues;
     this.stealFromQueue = new PriorityBlockingQueue<T>(stealFromQueueInitCapacity, comparator) {
 
       private static final long serialVersionUID = -6805567216580184701L;
@@ -88,15 +105,34 @@ public class StealJobQueue<T> extends PriorityBlockingQueue<T> {
     }
   }
 
+  /**
+   * Takes the next job from this queue, or from the queue to steal from. Must be called with the
+   * lock held, which keeps the other consumers of this queue out.
+   */
+  private T pollEither() {
+    if (!compareAcrossQueues) {
+      T retVal = this.poll();
+      return retVal != null ? retVal : stealFromQueue.poll();
+    }
+    while (true) {
+      T own = this.peek();
+      T other = stealFromQueue.peek();
+      if (other == null || (own != null && comparator().compare(own, other) <= 0)) {
+        return this.poll();
+      }
+      // The consumers of the other queue may have taken its head in the meantime
+      if (stealFromQueue.remove(other)) {
+        return other;
+      }
+    }
+  }
+
   @Override
   public T take() throws InterruptedException {
     lock.lockInterruptibly();
     try {
       while (true) {
-        T retVal = this.poll();
-        if (retVal == null) {
-          retVal = stealFromQueue.poll();
-        }
+        T retVal = pollEither();
         if (retVal == null) {
           notEmpty.await();
         } else {
@@ -114,10 +150,7 @@ public class StealJobQueue<T> extends PriorityBlockingQueue<T> {
     lock.lockInterruptibly();
     try {
       while (true) {
-        T retVal = this.poll();
-        if (retVal == null) {
-          retVal = stealFromQueue.poll();
-        }
+        T retVal = pollEither();
         if (retVal == null) {
           if (nanos <= 0) return null;
           nanos = notEmpty.awaitNanos(nanos);
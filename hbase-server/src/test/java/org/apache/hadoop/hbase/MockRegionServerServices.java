@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -48,9 +49,11 @@ import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.HeapMemoryManager;
 import org.apache.hadoop.hbase.regionserver.LeaseManager;
 import org.apache.hadoop.hbase.regionserver.MetricsRegionServer;
+import org.apache.hadoop.hbase.regionserver.ParallelSeekPool;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.RegionServerAccounting;
 import org.apache.hadoop.hbase.regionserver.RegionServerServices;
+import org.apache.hadoop.hbase.regionserver.RowCache;
 import org.apache.hadoop.hbase.regionserver.SecureBulkLoadManager;
 import org.apache.hadoop.hbase.regionserver.ServerNonceManager;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequester;
@@ -354,6 +357,21 @@ public class MockRegionServerServices implements RegionServerServices {
     return Optional.empty();
   }
 
+  @Override
+  public Optional<RowCache> getRowCache() {
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<ParallelSeekPool> getParallelSeekPool() {
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<ThreadPoolExecutor> getCompactionRangePool() {
+    return Optional.empty();
+  }
+
   @Override
   public AccessChecker getAccessChecker() {
     return null;
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.encoding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Checks the seeks of {@link RowIndexSeekerV2} within wide rows with many versions against a linear
+ * search of the cells.
+ */
+@Category({ IOTests.class, SmallTests.class })
+public class TestRowIndexSeekerV2 {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestRowIndexSeekerV2.class);
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+
+  private final Configuration conf = HBaseConfiguration.create();
+
+  private static List<KeyValue> generateCells() {
+    List<KeyValue> kvs = new ArrayList<>();
+    for (int row = 0; row < 20; row++) {
+      for (int column = 0; column < 15; column++) {
+        byte[] rowBytes = Bytes.toBytes(String.format("row%03d", row * 2));
+        byte[] qualifier = Bytes.toBytes(String.format("q%03d", column * 2));
+        if (column % 4 == 0) {
+          kvs.add(new KeyValue(rowBytes, FAMILY, qualifier, 400L, KeyValue.Type.DeleteColumn));
+        }
+        for (long ts = 300; ts > 0; ts -= 100) {
+          kvs.add(new KeyValue(rowBytes, FAMILY, qualifier, ts, Bytes.toBytes(row + column + ts)));
+        }
+      }
+    }
+    kvs.sort(CellComparatorImpl.COMPARATOR);
+    return kvs;
+  }
+
+  private DataBlockEncoder.EncodedSeeker createSeeker(List<KeyValue> kvs) throws IOException {
+    HFileContext meta = new HFileContextBuilder().withHBaseCheckSum(false).withIncludesMvcc(true)
+      .withIncludesTags(false).build();
+    DataBlockEncoder encoder = DataBlockEncoding.ROW_INDEX_V2.getEncoder();
+    ByteBuffer encoded = TestDataBlockEncoders.encodeKeyValues(
+      DataBlockEncoding.ROW_INDEX_V2, kvs, encoder.newDataBlockEncodingContext(conf,
+        DataBlockEncoding.ROW_INDEX_V2, TestDataBlockEncoders.HFILEBLOCK_DUMMY_HEADER, meta),
+      false);
+    DataBlockEncoder.EncodedSeeker seeker =
+      encoder.createSeeker(encoder.newDataBlockDecodingContext(conf, meta));
+    seeker.setCurrentBuffer(new SingleByteBuff(encoded));
+    return seeker;
+  }
+
+  private static void checkSeek(DataBlockEncoder.EncodedSeeker seeker, List<KeyValue> kvs, Cell key,
+    boolean seekBefore) {
+    int expected = -1;
+    boolean exact = false;
+    for (int i = 0; i < kvs.size(); i++) {
+      int comp =
+        PrivateCellUtil.compareKeyIgnoresMvcc(CellComparatorImpl.COMPARATOR, key, kvs.get(i));
+      if (comp < 0 || (comp == 0 && seekBefore)) {
+        break;
+      }
+      expected = i;
+      exact = comp == 0;
+    }
+    int result = seeker.seekToKeyInBlock(key, seekBefore);
+    if (expected < 0) {
+      assertEquals(HConstants.INDEX_KEY_MAGIC, result);
+      return;
+    }
+    assertEquals(exact ? 0 : 1, result);
+    assertTrue(CellUtil.equals(kvs.get(expected), seeker.getCell()));
+    assertEquals(0, seeker.compareKey(CellComparatorImpl.COMPARATOR, kvs.get(expected)));
+  }
+
+  @Test
+  public void testSeekWithinWideRows() throws IOException {
+    List<KeyValue> kvs = generateCells();
+    DataBlockEncoder.EncodedSeeker seeker = createSeeker(kvs);
+    for (boolean seekBefore : new boolean[] { false, true }) {
+      for (KeyValue kv : kvs) {
+        checkSeek(seeker, kvs, kv, seekBefore);
+        checkSeek(seeker, kvs, PrivateCellUtil.createFirstOnRow(kv), seekBefore);
+        checkSeek(seeker, kvs, PrivateCellUtil.createLastOnRow(kv), seekBefore);
+        checkSeek(seeker, kvs, PrivateCellUtil.createFirstOnRowCol(kv), seekBefore);
+        checkSeek(seeker, kvs, PrivateCellUtil.createLastOnRowCol(kv), seekBefore);
+        // Between the existing rows, columns and versions
+        byte[] row = Bytes.add(CellUtil.cloneRow(kv), new byte[1]);
+        byte[] qualifier = Bytes.add(CellUtil.cloneQualifier(kv), new byte[1]);
+        checkSeek(seeker, kvs, new KeyValue(row, FAMILY, qualifier, 50L, KeyValue.Type.Put),
+          seekBefore);
+        checkSeek(seeker, kvs,
+          new KeyValue(CellUtil.cloneRow(kv), FAMILY, qualifier, 250L, KeyValue.Type.Put),
+          seekBefore);
+        checkSeek(seeker, kvs, new KeyValue(CellUtil.cloneRow(kv), FAMILY,
+          CellUtil.cloneQualifier(kv), kv.getTimestamp() - 50, KeyValue.Type.Put), seekBefore);
+      }
+    }
+  }
+
+  @Test
+  public void testIterateAndFirstKey() throws IOException {
+    List<KeyValue> kvs = generateCells();
+    DataBlockEncoder.EncodedSeeker seeker = createSeeker(kvs);
+    DataBlockEncoder encoder = DataBlockEncoding.ROW_INDEX_V2.getEncoder();
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = 0; i < kvs.size(); i++) {
+        assertTrue(CellUtil.equals(kvs.get(i), seeker.getCell()));
+        assertEquals(kvs.get(i).getTimestamp(), seeker.getCell().getTimestamp());
+        assertEquals(kvs.get(i).getTypeByte(), seeker.getCell().getTypeByte());
+        assertEquals(i < kvs.size() - 1, seeker.next());
+      }
+      assertFalse(seeker.next());
+      seeker.rewind();
+    }
+    HFileContext meta = new HFileContextBuilder().withHBaseCheckSum(false).withIncludesMvcc(true)
+      .withIncludesTags(false).build();
+    ByteBuffer encoded = TestDataBlockEncoders.encodeKeyValues(
+      DataBlockEncoding.ROW_INDEX_V2, kvs, encoder.newDataBlockEncodingContext(conf,
+        DataBlockEncoding.ROW_INDEX_V2, TestDataBlockEncoders.HFILEBLOCK_DUMMY_HEADER, meta),
+      false);
+    Cell firstKey = encoder.getFirstKeyCellInBlock(new SingleByteBuff(encoded));
+    assertEquals(0,
+      PrivateCellUtil.compareKeyIgnoresMvcc(CellComparatorImpl.COMPARATOR, firstKey, kvs.get(0)));
+  }
+}
@@ -18,8 +18,10 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.List;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
@@ -28,6 +30,7 @@ import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HBaseClassTestRule;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
 import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator;
 import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache;
 import org.apache.hadoop.hbase.testclassification.IOTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
@@ -143,6 +146,92 @@ public class TestHFileReaderImpl {
     deleteTestDir(fs);
   }
 
+  @Test
+  public void testReadAhead() throws Exception {
+    FileSystem fs = TEST_UTIL.getTestFileSystem();
+    Path p = new Path(TEST_UTIL.getDataTestDir(), "readahead.hfile");
+    int rows = 100;
+    HFileContext context =
+      new HFileContextBuilder().withBlockSize(toKV("a").getLength() * 2).build();
+    try (FSDataOutputStream fout = fs.create(p);
+      HFile.Writer writer = HFile.getWriterFactoryNoCache(TEST_UTIL.getConfiguration())
+        .withOutputStream(fout).withFileContext(context).create()) {
+      for (int i = 0; i < rows; i++) {
+        writer.append(toKV(String.format("row%03d", i)));
+      }
+    }
+
+    long missesWithout = scanAndCountMisses(fs, p, 0, rows);
+    long missesWith = scanAndCountMisses(fs, p, 8, rows);
+    // Every data block misses without read-ahead, while with it the scanner only misses the
+    // first blocks and then one block in every eight.
+    assertTrue(missesWithout >= rows / 2);
+    assertTrue("misses=" + missesWith, missesWith < missesWithout / 3);
+    deleteTestDir(fs);
+  }
+
+  @Test
+  public void testReadAheadSharesPooledBuffer() throws Exception {
+    FileSystem fs = TEST_UTIL.getTestFileSystem();
+    Path p = new Path(TEST_UTIL.getDataTestDir(), "readahead-pooled.hfile");
+    HFileContext context =
+      new HFileContextBuilder().withBlockSize(toKV("a").getLength() * 2).build();
+    try (FSDataOutputStream fout = fs.create(p);
+      HFile.Writer writer = HFile.getWriterFactoryNoCache(TEST_UTIL.getConfiguration())
+        .withOutputStream(fout).withFileContext(context).create()) {
+      for (int i = 0; i < 100; i++) {
+        writer.append(toKV(String.format("row%03d", i)));
+      }
+    }
+
+    Configuration conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.setInt(ByteBuffAllocator.BUFFER_SIZE_KEY, 1024);
+    conf.setInt(ByteBuffAllocator.MIN_ALLOCATE_SIZE_KEY, 0);
+    ByteBuffAllocator allocator = ByteBuffAllocator.create(conf, true);
+    try (HFile.Reader reader =
+      HFile.createReader(fs, p, new CacheConfig(conf, null, null, allocator), true, conf)) {
+      HFileBlock.FSReader blockReader = reader.getUncachedBlockReader();
+      long offset = reader.getTrailer().getFirstDataBlockOffset();
+      HFileBlock first = blockReader.readBlockData(offset, -1, true, false, false);
+      int onDiskSize = first.getOnDiskSizeWithHeader();
+      first.release();
+      int inUseBefore = allocator.getUsedBufferCount() - allocator.getFreeBufferCount();
+
+      List<HFileBlock> blocks = blockReader.readBlocksData(offset, onDiskSize,
+        reader.getTrailer().getLoadOnOpenDataOffset(), 8 * onDiskSize, false, false);
+      assertTrue("blocks=" + blocks.size(), blocks.size() > 1);
+      for (HFileBlock block : blocks) {
+        // no copies, every block is a slice of the pooled read ahead buffer holding a reference
+        assertEquals(blocks.size(), block.refCnt());
+      }
+      assertTrue(allocator.getUsedBufferCount() - allocator.getFreeBufferCount() > inUseBefore);
+      blocks.forEach(HFileBlock::release);
+      // the read ahead buffer went back to the pool with the last block
+      assertEquals(inUseBefore, allocator.getUsedBufferCount() - allocator.getFreeBufferCount());
+    }
+    deleteTestDir(fs);
+  }
+
+  private long scanAndCountMisses(FileSystem fs, Path p, int readAheadBlocks, int rows)
+    throws IOException {
+    Configuration conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.setInt(HFileReaderImpl.READ_AHEAD_BLOCKS_KEY, readAheadBlocks);
+    LruBlockCache cache = new LruBlockCache(16 * 1024 * 1024, 1024);
+    try (
+      HFile.Reader reader = HFile.createReader(fs, p, new CacheConfig(conf, cache), true, conf)) {
+      HFileScanner scanner = reader.getScanner(conf, true, true);
+      assertTrue(scanner.seekTo());
+      for (int i = 0; i < rows; i++) {
+        assertEquals(String.format("row%03d", i), toRowStr(scanner.getCell()));
+        assertEquals(i < rows - 1, scanner.next());
+      }
+      scanner.close();
+      return cache.getStats().getMissCount();
+    } finally {
+      cache.shutdown();
+    }
+  }
+
   protected void deleteTestDir(FileSystem fs) throws IOException {
     Path dataTestDir = TEST_UTIL.getDataTestDir();
     if (fs.exists(dataTestDir)) {
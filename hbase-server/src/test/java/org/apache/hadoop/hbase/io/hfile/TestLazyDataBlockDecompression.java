@@ -227,4 +227,42 @@ public class TestLazyDataBlockDecompression {
       + "disabledEvictedCount=" + disabledEvictedCount + ", enabledEvictedCount="
       + enabledEvictedCount, enabledEvictedCount < disabledEvictedCount);
   }
+
+  @Test
+  public void testHotBlocksAreKeptUnpacked() throws Exception {
+    Path hfilePath = new Path(TEST_UTIL.getDataTestDir(), "testHotBlocksAreKeptUnpacked");
+    HFileContext context =
+      new HFileContextBuilder().withCompression(Compression.Algorithm.GZ).build();
+    Configuration conf = HBaseConfiguration.create(TEST_UTIL.getConfiguration());
+    conf.setBoolean(CacheConfig.CACHE_BLOCKS_ON_WRITE_KEY, cacheOnWrite);
+    conf.setBoolean(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY, true);
+    conf.setFloat(LruBlockCache.LRU_UNPACKED_FACTOR_CONFIG_NAME, 0.2f);
+    LruBlockCache blockCache = new LruBlockCache(HConstants.DEFAULT_BLOCKSIZE * 64,
+      HConstants.DEFAULT_BLOCKSIZE, false, conf);
+    CacheConfig cc = new CacheConfig(conf, blockCache);
+    writeHFile(conf, cc, fs, hfilePath, context, 2000);
+
+    // the blocks are cached packed, on write or on the first read, and the next read unpacks them
+    // and keeps the copies
+    cacheBlocks(conf, cc, fs, hfilePath, context);
+    cacheBlocks(conf, cc, fs, hfilePath, context);
+    assertTrue(blockCache.getUnpackCount() > 0);
+    assertTrue(blockCache.getCurrentUnpackedSize() > 0);
+    long unpackCount = blockCache.getUnpackCount();
+    // the copies count towards the size of the cache
+    assertTrue(blockCache.getCurrentSize()
+        >= blockCache.getCurrentDataSize() + blockCache.getCurrentUnpackedSize());
+
+    // the hot blocks are read without unpacking them again
+    cacheBlocks(conf, cc, fs, hfilePath, context);
+    assertEquals(unpackCount, blockCache.getUnpackCount());
+    assertTrue(blockCache.getUnpackedHitCount() > 0);
+    assertTrue(blockCache.getPackedDataRatio() > 1);
+
+    // the copies go with their packed blocks
+    blockCache.evictBlocksByHfileName(hfilePath.getName());
+    assertEquals(0, blockCache.getDataBlockCount());
+    assertEquals(0, blockCache.getCurrentUnpackedSize());
+    assertEquals(1, blockCache.getPackedDataRatio(), 0);
+  }
 }
@@ -21,6 +21,7 @@ import static org.apache.hadoop.hbase.io.ByteBuffAllocator.HEAP;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
@@ -604,6 +605,74 @@ public class TestLruBlockCache {
 
   }
 
+  @Test
+  public void testSampledEvictionScanResistance() throws Exception {
+    long maxSize = 1000000;
+    long blockSize = calculateBlockSize(maxSize, 20);
+    Configuration conf = new Configuration(CONF);
+    conf.set(LruBlockCache.LRU_EVICTION_MODE_CONFIG_NAME, LruBlockCache.EVICTION_MODE_SAMPLED);
+    LruBlockCache cache = new LruBlockCache(maxSize, blockSize, false, conf);
+
+    CachedItem[] hotBlocks = generateFixedBlocks(5, blockSize, "hot");
+    CachedItem[] scanBlocks = generateFixedBlocks(100, blockSize, "scan");
+
+    // Blocks read over and over
+    for (CachedItem block : hotBlocks) {
+      assertNull(cache.getBlock(block.cacheKey, true, false, true));
+      cache.cacheBlock(block.cacheKey, block);
+      for (int i = 0; i < 3; i++) {
+        assertEquals(block, cache.getBlock(block.cacheKey, true, false, true));
+      }
+    }
+
+    // A scan reading many more blocks than fit in the cache, once each
+    for (CachedItem block : scanBlocks) {
+      assertNull(cache.getBlock(block.cacheKey, true, false, true));
+      cache.cacheBlock(block.cacheKey, block);
+    }
+
+    assertTrue(cache.getStats().getEvictedCount() > 0);
+    assertTrue(cache.heapSize() < maxSize * LruBlockCache.DEFAULT_ACCEPTABLE_FACTOR);
+    // The scan only evicted blocks of its own
+    for (CachedItem block : hotBlocks) {
+      assertEquals(block, cache.getBlock(block.cacheKey, true, false, true));
+    }
+    // And the most recent scan block is still cached
+    assertTrue(cache.containsBlock(scanBlocks[scanBlocks.length - 1].cacheKey));
+  }
+
+  @Test
+  public void testSampledEvictionKeepsInMemoryBlocks() throws Exception {
+    long maxSize = 100000;
+    long blockSize = calculateBlockSize(maxSize, 10);
+    Configuration conf = new Configuration(CONF);
+    conf.set(LruBlockCache.LRU_EVICTION_MODE_CONFIG_NAME, LruBlockCache.EVICTION_MODE_SAMPLED);
+    conf.setInt(LruBlockCache.LRU_EVICTION_SAMPLE_SIZE_CONFIG_NAME, 20);
+    LruBlockCache cache = new LruBlockCache(maxSize, blockSize, false, conf);
+
+    CachedItem[] memoryBlocks = generateFixedBlocks(3, blockSize, "memory");
+    CachedItem[] singleBlocks = generateFixedBlocks(20, blockSize, "single");
+    for (CachedItem block : memoryBlocks) {
+      cache.cacheBlock(block.cacheKey, block, true);
+    }
+    for (CachedItem block : singleBlocks) {
+      cache.cacheBlock(block.cacheKey, block);
+    }
+
+    assertTrue(cache.getStats().getEvictedCount() > 0);
+    for (CachedItem block : memoryBlocks) {
+      assertTrue(cache.containsBlock(block.cacheKey));
+    }
+  }
+
+  @Test
+  public void testUnknownEvictionMode() {
+    Configuration conf = new Configuration(CONF);
+    conf.set(LruBlockCache.LRU_EVICTION_MODE_CONFIG_NAME, "random");
+    assertThrows(IllegalArgumentException.class,
+      () -> new LruBlockCache(100000, 1000, false, conf));
+  }
+
   @Test
   public void testMaxBlockSize() throws Exception {
     long maxSize = 100000;
@@ -30,17 +30,24 @@ import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import io.opentelemetry.sdk.testing.junit4.OpenTelemetryRule;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -299,6 +306,100 @@ public class TestPrefetch {
     prefetchExecutorNotifier.onConfigurationChange(conf);
   }
 
+  @Test
+  public void testPrefetchRanking() {
+    PrefetchExecutor.PrefetchTask cold = new FakePrefetchTask("cold", 0, 0, null);
+    PrefetchExecutor.PrefetchTask hot = new FakePrefetchTask("hot", 0, 10, null);
+    PrefetchExecutor.PrefetchTask important = new FakePrefetchTask("important", 1, 0, null);
+    List<PrefetchExecutor.PrefetchTask> tasks =
+      new ArrayList<>(Arrays.asList(cold, hot, important));
+    tasks.sort(PrefetchExecutor.RANKING);
+    assertEquals(Arrays.asList(important, hot, cold), tasks);
+  }
+
+  @Test
+  public void testPrefetchStopsWhenCacheFullAndResumes() throws Exception {
+    PrefetchExecutorNotifier prefetchExecutorNotifier = new PrefetchExecutorNotifier(conf);
+    conf.setInt(PREFETCH_DELAY, 0);
+    conf.setLong(PrefetchExecutor.PREFETCH_SLICE_SIZE, 1);
+    conf.setFloat(PrefetchExecutor.PREFETCH_CACHE_FULL_FACTOR, 0.5f);
+    prefetchExecutorNotifier.onConfigurationChange(conf);
+    try {
+      AtomicLong cached = new AtomicLong();
+      BlockCache cache = mock(BlockCache.class);
+      when(cache.getMaxSize()).thenReturn(10L);
+      when(cache.getCurrentSize()).thenAnswer(invocation -> cached.get());
+      // the cache is full after 5 blocks, so an unread file without priority stops there
+      FakePrefetchTask cold = new FakePrefetchTask("testResume", 0, 0, cache) {
+        @Override
+        protected long prefetchBlock() {
+          cached.incrementAndGet();
+          return super.prefetchBlock();
+        }
+      };
+      PrefetchExecutor.request(cold);
+      TEST_UTIL.waitFor(10000, () -> PrefetchExecutor.isCompleted(cold.getPath()));
+      assertTrue(cold.closed);
+      assertEquals(5, cold.prefetched.get());
+      assertEquals(5L, (long) PrefetchExecutor.getResumeOffset(cold.getPath()));
+
+      // opened again with a priority, the prefetch goes on from where it stopped
+      FakePrefetchTask important = new FakePrefetchTask("testResume", 1, 0, cache);
+      PrefetchExecutor.request(important);
+      TEST_UTIL.waitFor(10000, () -> PrefetchExecutor.isCompleted(important.getPath()));
+      assertTrue(important.closed);
+      assertEquals(5, important.prefetched.get());
+      assertNull(PrefetchExecutor.getResumeOffset(important.getPath()));
+    } finally {
+      conf.setInt(PREFETCH_DELAY, 1000);
+      conf.unset(PrefetchExecutor.PREFETCH_SLICE_SIZE);
+      conf.unset(PrefetchExecutor.PREFETCH_CACHE_FULL_FACTOR);
+      prefetchExecutorNotifier.onConfigurationChange(conf);
+    }
+  }
+
+  /**
+   * A prefetch of 10 blocks of 1 byte each.
+   */
+  private static class FakePrefetchTask extends PrefetchExecutor.PrefetchTask {
+    private final long heat;
+    private final BlockCache cache;
+    private final AtomicInteger prefetched = new AtomicInteger();
+    private volatile boolean closed;
+
+    FakePrefetchTask(String name, int priority, long heat, BlockCache cache) {
+      super(new Path("/prefetch", name), priority);
+      this.heat = heat;
+      this.cache = cache;
+    }
+
+    @Override
+    protected long getEnd() {
+      return 10;
+    }
+
+    @Override
+    protected long prefetchBlock() {
+      prefetched.incrementAndGet();
+      return 1;
+    }
+
+    @Override
+    protected long getHeat() {
+      return heat;
+    }
+
+    @Override
+    protected BlockCache getBlockCache() {
+      return cache;
+    }
+
+    @Override
+    protected void close() {
+      closed = true;
+    }
+  }
+
   @Test
   public void testPrefetchWithDelay() throws Exception {
     // Configure custom delay
@@ -43,10 +43,12 @@ import org.apache.hadoop.hbase.HBaseTestingUtility;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.io.ByteBuffAllocator;
 import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
 import org.apache.hadoop.hbase.io.hfile.BlockType;
 import org.apache.hadoop.hbase.io.hfile.CacheTestUtils;
 import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
 import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.io.hfile.CachedBlock;
 import org.apache.hadoop.hbase.io.hfile.HFileBlock;
 import org.apache.hadoop.hbase.io.hfile.HFileContext;
 import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
@@ -243,7 +245,12 @@ public class TestBucketCache {
   // threads will flush it to the bucket and put reference entry in backingMap.
   private void cacheAndWaitUntilFlushedToBucket(BucketCache cache, BlockCacheKey cacheKey,
     Cacheable block, boolean waitWhenCache) throws InterruptedException {
-    cache.cacheBlock(cacheKey, block, false, waitWhenCache);
+    cacheAndWaitUntilFlushedToBucket(cache, cacheKey, block, false, waitWhenCache);
+  }
+
+  private void cacheAndWaitUntilFlushedToBucket(BucketCache cache, BlockCacheKey cacheKey,
+    Cacheable block, boolean inMemory, boolean waitWhenCache) throws InterruptedException {
+    cache.cacheBlock(cacheKey, block, inMemory, waitWhenCache);
     waitUntilFlushedToBucket(cache, cacheKey);
   }
 
@@ -341,6 +348,44 @@ public class TestBucketCache {
     TEST_UTIL.cleanupTestDir();
   }
 
+  @Test
+  public void testAdmitOnSecondAccess() throws Exception {
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(constructedBlockSize, 2);
+    BlockCacheKey key = blocks[0].getBlockName();
+    HFileBlock block = blocks[0].getBlock();
+
+    // Everything is admitted without a policy
+    assertNull(cache.getBlock(key, true, false, true));
+    assertTrue(cache.admitOnRead(key, block));
+    assertEquals(0, ((BucketCacheStats) cache.getStats()).getAdmittedCount());
+
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(BucketCache.ADMISSION_POLICY_CLASS_KEY, FrequencyAdmissionPolicy.class.getName());
+    BucketCache admissionCache = new BucketCache(ioEngineName, capacitySize, constructedBlockSize,
+      constructedBlockSizes, writeThreads, writerQLen, persistencePath, 100, conf);
+    try {
+      // Read once, as by a scan
+      assertNull(admissionCache.getBlock(key, true, false, true));
+      assertFalse(admissionCache.admitOnRead(key, block));
+      // A repeated lookup of the same read does not count as another access
+      assertNull(admissionCache.getBlock(key, true, true, true));
+      assertFalse(admissionCache.admitOnRead(key, block));
+      // Read again later
+      assertNull(admissionCache.getBlock(key, true, false, true));
+      assertTrue(admissionCache.admitOnRead(key, block));
+
+      assertEquals(1, ((BucketCacheStats) admissionCache.getStats()).getAdmittedCount());
+      assertEquals(2, ((BucketCacheStats) admissionCache.getStats()).getRejectedCount());
+
+      // Other blocks are not affected
+      BlockCacheKey otherKey = blocks[1].getBlockName();
+      assertNull(admissionCache.getBlock(otherKey, true, false, true));
+      assertFalse(admissionCache.admitOnRead(otherKey, blocks[1].getBlock()));
+    } finally {
+      admissionCache.shutdown();
+    }
+  }
+
   @Test
   public void testBucketAllocatorLargeBuckets() throws BucketAllocatorException {
     long availableSpace = 20 * 1024L * 1024 * 1024;
@@ -481,6 +526,38 @@ public class TestBucketCache {
     assertEquals(testValue, bucketEntry.offset());
   }
 
+  @Test
+  public void testGetBlocksOfFile() throws Exception {
+    for (long offset = 0; offset < 4; offset++) {
+      cacheAndWaitUntilFlushedToBucket(cache, new BlockCacheKey("file", offset),
+        new CacheTestUtils.ByteArrayCacheable(new byte[10]), true);
+    }
+    cacheAndWaitUntilFlushedToBucket(cache, new BlockCacheKey("other", 1),
+      new CacheTestUtils.ByteArrayCacheable(new byte[10]), true);
+    // none read from the cache yet, though all are multi access entries
+    assertTrue(cache.getBlocksOfFile("file").isEmpty());
+    cacheAndWaitUntilFlushedToBucket(cache, new BlockCacheKey("file", 4),
+      new CacheTestUtils.ByteArrayCacheable(new byte[10]), true, true);
+    assertNotNull(cache.getBlock(new BlockCacheKey("file", 3), true, false, true));
+    assertNotNull(cache.getBlock(new BlockCacheKey("file", 2), true, false, true));
+    assertNotNull(cache.getBlock(new BlockCacheKey("file", 1), true, false, true));
+    // the in-memory blocks first, then the most recently accessed first, the blocks never read
+    // from the cache are left out
+    List<CachedBlock> blocks = cache.getBlocksOfFile("file");
+    assertEquals(4, blocks.size());
+    assertEquals(4, blocks.get(0).getOffset());
+    assertEquals(BlockPriority.MEMORY, blocks.get(0).getBlockPriority());
+    assertEquals(1, blocks.get(1).getOffset());
+    assertEquals(2, blocks.get(2).getOffset());
+    assertEquals(3, blocks.get(3).getOffset());
+    blocks = blocks.subList(1, blocks.size());
+    for (CachedBlock block : blocks) {
+      assertEquals(BlockPriority.MULTI, block.getBlockPriority());
+      assertEquals("file", block.getFilename());
+    }
+    assertTrue(cache.getBlocksOfFile("none").isEmpty());
+  }
+
   @Test
   public void testEvictionCount() throws InterruptedException {
     int size = 100;
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests restoring a {@link BucketCache} from the checkpoints taken while it runs.
+ */
+@Category(SmallTests.class)
+public class TestBucketCachePersister {
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestBucketCachePersister.class);
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static final int BLOCK_SIZE = 8192;
+  private static final long CAPACITY = 32 * 1024 * 1024;
+
+  private Configuration conf;
+  private Path testDir;
+
+  @Before
+  public void setUp() throws Exception {
+    conf = HBaseConfiguration.create();
+    // Checkpoints are taken by the tests
+    conf.setLong(BucketCache.PERSIST_INTERVAL_KEY, 60 * 60 * 1000);
+    testDir = TEST_UTIL.getDataTestDir();
+    TEST_UTIL.getTestFileSystem().mkdirs(testDir);
+  }
+
+  @After
+  public void tearDown() {
+    TEST_UTIL.cleanupTestDir();
+  }
+
+  private BucketCache createCache(String dir) throws Exception {
+    return new BucketCache("file:" + dir + "/bucket.cache", CAPACITY, BLOCK_SIZE, null,
+      BucketCache.DEFAULT_WRITER_THREADS, BucketCache.DEFAULT_WRITER_QUEUE_ITEMS,
+      dir + "/bucket.persistence", BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+  }
+
+  /**
+   * Copies the cache files as a crash would leave them.
+   */
+  private String copyCacheFiles() throws Exception {
+    File crashDir = new File(testDir.toString(), "crash");
+    assertTrue(crashDir.mkdirs());
+    for (File file : new File(testDir.toString()).listFiles()) {
+      if (file.getName().startsWith("bucket.")) {
+        Files.copy(file.toPath(), new File(crashDir, file.getName()).toPath());
+      }
+    }
+    return crashDir.toString();
+  }
+
+  @Test
+  public void testRestoreAfterCrash() throws Exception {
+    String persistencePath = testDir + "/bucket.persistence";
+    BucketCache cache = createCache(testDir.toString());
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 10);
+    for (int i = 0; i < 5; i++) {
+      cacheAndWaitUntilFlushedToBucket(cache, blocks[i]);
+    }
+    // The first checkpoint writes a snapshot
+    cache.persister.checkpoint();
+    assertTrue(new File(persistencePath).exists());
+
+    // Later ones log the changes since
+    for (int i = 5; i < 10; i++) {
+      cacheAndWaitUntilFlushedToBucket(cache, blocks[i]);
+    }
+    assertTrue(cache.evictBlock(blocks[0].getBlockName()));
+    cache.persister.checkpoint();
+    assertTrue(BucketCachePersister.getLogFile(persistencePath, 1).exists());
+
+    // A new snapshot replaces the logs it covers
+    cache.persister.snapshot();
+    assertFalse(BucketCachePersister.getLogFile(persistencePath, 1).exists());
+    assertTrue(cache.evictBlock(blocks[1].getBlockName()));
+    cache.persister.checkpoint();
+
+    BucketCache restored = createCache(copyCacheFiles());
+    try {
+      assertEquals(8, restored.backingMap.size());
+      assertEquals(cache.getAllocator().getUsedSize(), restored.getAllocator().getUsedSize());
+      for (int i = 0; i < 10; i++) {
+        BlockCacheKey key = blocks[i].getBlockName();
+        assertEquals(i >= 2, restored.backingMap.containsKey(key));
+        if (i >= 2) {
+          Cacheable block = restored.getBlock(key, false, false, false);
+          assertNotNull(block);
+          assertEquals(blocks[i].getBlock().getSerializedLength(), block.getSerializedLength());
+          block.release();
+        }
+      }
+    } finally {
+      restored.shutdown();
+      cache.shutdown();
+    }
+  }
+
+  @Test
+  public void testEvictedSpaceReleasedOnceLogged() throws Exception {
+    BucketCache cache = createCache(testDir.toString());
+    try {
+      HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 2);
+      for (HFileBlockPair block : blocks) {
+        cacheAndWaitUntilFlushedToBucket(cache, block);
+      }
+      cache.persister.checkpoint();
+      long usedSize = cache.getAllocator().getUsedSize();
+
+      // The snapshot on disk still refers to the block, so its space is not reused yet
+      assertTrue(cache.evictBlock(blocks[0].getBlockName()));
+      assertEquals(usedSize, cache.getAllocator().getUsedSize());
+
+      cache.persister.sync();
+      assertTrue(cache.getAllocator().getUsedSize() < usedSize);
+    } finally {
+      cache.shutdown();
+    }
+  }
+
+  @Test
+  public void testEvictUnopenedRestoredFiles() throws Exception {
+    String persistencePath = testDir + "/bucket.persistence";
+    BucketCache cache = createCache(testDir.toString());
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 3);
+    for (HFileBlockPair block : blocks) {
+      cacheAndWaitUntilFlushedToBucket(cache, block);
+    }
+    cache.persister.checkpoint();
+    cache.shutdown();
+    // A clean shutdown persists the whole map, no logs are needed
+    assertFalse(BucketCachePersister.getLogFile(persistencePath, 1).exists());
+
+    cache = createCache(testDir.toString());
+    try {
+      assertEquals(3, cache.backingMap.size());
+      cache.notifyFileOpened(blocks[0].getBlockName().getHfileName());
+      cache.evictUnopenedRestoredFiles();
+      assertEquals(1, cache.backingMap.size());
+      assertTrue(cache.backingMap.containsKey(blocks[0].getBlockName()));
+    } finally {
+      cache.shutdown();
+    }
+  }
+
+  // BucketCache.cacheBlock is async, it first adds block to ramCache and writeQueue, then writer
+  // threads will flush it to the bucket and put reference entry in backingMap.
+  private static void cacheAndWaitUntilFlushedToBucket(BucketCache cache, HFileBlockPair block)
+    throws InterruptedException {
+    BlockCacheKey cacheKey = block.getBlockName();
+    cache.cacheBlock(cacheKey, block.getBlock());
+    while (!cache.backingMap.containsKey(cacheKey) || cache.ramCache.containsKey(cacheKey)) {
+      Thread.sleep(100);
+    }
+  }
+}
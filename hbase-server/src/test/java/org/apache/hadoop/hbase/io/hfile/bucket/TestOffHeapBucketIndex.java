@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the {@link OffHeapBucketIndex}, alone and as the backing map of a {@link BucketCache}.
+ */
+@Category(SmallTests.class)
+public class TestOffHeapBucketIndex {
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestOffHeapBucketIndex.class);
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static final int BLOCK_SIZE = 8192;
+  private static final long CAPACITY = 32 * 1024 * 1024;
+
+  private OffHeapBucketIndex index;
+  private Configuration conf;
+  private Path testDir;
+
+  @Before
+  public void setUp() throws Exception {
+    index = new OffHeapBucketIndex(entry -> ByteBuffAllocator.NONE);
+    conf = HBaseConfiguration.create();
+    conf.setBoolean(BucketCache.OFFHEAP_INDEX_KEY, true);
+    testDir = TEST_UTIL.getDataTestDir();
+    TEST_UTIL.getTestFileSystem().mkdirs(testDir);
+  }
+
+  @After
+  public void tearDown() {
+    index.clear();
+    TEST_UTIL.cleanupTestDir();
+  }
+
+  private static BucketEntry newEntry(long bucketOffset, int length, boolean inMemory) {
+    BucketEntry entry = new BucketEntry(bucketOffset, length, 7, inMemory,
+      e -> ByteBuffAllocator.NONE, ByteBuffAllocator.HEAP);
+    entry.deserializerIndex = 3;
+    return entry;
+  }
+
+  @Test
+  public void testPutAndGet() {
+    BlockCacheKey key = new BlockCacheKey("file", 1024, true, BlockType.DATA);
+    BucketEntry entry = newEntry(256 * 1024, 4096, true);
+    assertNull(index.put(key, entry));
+    assertEquals(1, index.size());
+    assertTrue(index.containsKey(key));
+    assertFalse(index.containsKey(new BlockCacheKey("file", 2048)));
+    assertFalse(index.containsKey(new BlockCacheKey("other", 1024)));
+
+    BucketEntry found = index.get(key);
+    assertEquals(entry.offset(), found.offset());
+    assertEquals(entry.getLength(), found.getLength());
+    assertEquals(entry.getAccessCounter(), found.getAccessCounter());
+    assertEquals(entry.getCachedTime(), found.getCachedTime());
+    assertEquals(BlockPriority.MEMORY, found.getPriority());
+    assertEquals(3, found.deserializerIndex);
+    assertFalse(found.isAccessed());
+    assertTrue(found.equals(entry));
+    assertEquals(found, index.get(key));
+
+    Map.Entry<BlockCacheKey, BucketEntry> only = index.entrySet().iterator().next();
+    assertEquals(key, only.getKey());
+    assertTrue(only.getKey().isPrimary());
+    assertEquals(BlockType.DATA, only.getKey().getBlockType());
+  }
+
+  @Test
+  public void testReplace() {
+    BlockCacheKey key = new BlockCacheKey("file", 0);
+    index.put(key, newEntry(0, 100, false));
+    BucketEntry previous = index.put(key, newEntry(512, 200, false));
+    assertEquals(0, previous.offset());
+    assertEquals(100, previous.getLength());
+    assertEquals(1, index.size());
+    assertEquals(512, index.get(key).offset());
+    assertEquals(BlockPriority.MULTI, index.get(key).getPriority());
+    assertEquals(1, index.getKeysOfFile("file").size());
+  }
+
+  @Test
+  public void testEvict() {
+    BlockCacheKey key = new BlockCacheKey("file", 0);
+    BucketEntry stale = newEntry(0, 100, false);
+    index.put(key, stale);
+    index.put(key, newEntry(1024, 100, false));
+    // only removed if it still locates the same bucket space
+    assertFalse(index.remove(key, stale));
+    BucketEntry current = index.get(key);
+    assertTrue(index.remove(key, current));
+    assertFalse(index.remove(key, current));
+    assertNull(index.get(key));
+    assertTrue(index.isEmpty());
+    // the file is dropped with its last block
+    assertTrue(index.getFileNames().isEmpty());
+
+    index.put(key, newEntry(0, 100, false));
+    assertEquals(0, index.remove(key).offset());
+    assertNull(index.remove(key));
+    assertTrue(index.isEmpty());
+  }
+
+  @Test
+  public void testGrowAndRemoveKeepLookups() {
+    int count = OffHeapBucketIndex.SEGMENTS * OffHeapBucketIndex.MIN_SEGMENT_CAPACITY * 4;
+    for (int i = 0; i < count; i++) {
+      index.put(new BlockCacheKey("file" + (i % 7), i), newEntry(i * 256L, i, false));
+    }
+    assertEquals(count, index.size());
+    // removing every third entry moves back those behind it in their probe sequence
+    for (int i = 0; i < count; i += 3) {
+      assertNotNull(index.remove(new BlockCacheKey("file" + (i % 7), i)));
+    }
+    for (int i = 0; i < count; i++) {
+      BucketEntry entry = index.get(new BlockCacheKey("file" + (i % 7), i));
+      if (i % 3 == 0) {
+        assertNull(entry);
+      } else {
+        assertEquals(i * 256L, entry.offset());
+        assertEquals(i, entry.getLength());
+      }
+    }
+    int remaining = count - (count + 2) / 3;
+    assertEquals(remaining, index.size());
+    int iterated = 0;
+    for (Map.Entry<BlockCacheKey, BucketEntry> e : index.entrySet()) {
+      assertEquals(e.getKey().getOffset() * 256, e.getValue().offset());
+      iterated++;
+    }
+    assertEquals(remaining, iterated);
+  }
+
+  @Test
+  public void testKeysOfFile() {
+    for (int i = 0; i < 100; i++) {
+      index.put(new BlockCacheKey(i % 2 == 0 ? "even" : "odd", i), newEntry(i * 256L, 1, false));
+    }
+    Set<Long> offsets = new HashSet<>();
+    for (BlockCacheKey key : index.getKeysOfFile("even")) {
+      assertEquals("even", key.getHfileName());
+      offsets.add(key.getOffset());
+    }
+    assertEquals(50, offsets.size());
+    assertTrue(index.getKeysOfFile("none").isEmpty());
+    assertEquals(new HashSet<>(Arrays.asList("even", "odd")), index.getFileNames());
+
+    Iterator<Map.Entry<BlockCacheKey, BucketEntry>> it = index.entrySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().getKey().getHfileName().equals("odd")) {
+        it.remove();
+      }
+    }
+    assertEquals(50, index.size());
+    assertTrue(index.getKeysOfFile("odd").isEmpty());
+    assertFalse(index.getFileNames().contains("odd"));
+  }
+
+  @Test
+  public void testAccessWrittenThrough() {
+    BlockCacheKey key = new BlockCacheKey("file", 0);
+    index.put(key, newEntry(0, 100, false));
+    index.get(key).access(42);
+    BucketEntry entry = index.get(key);
+    assertTrue(entry.isAccessed());
+    assertEquals(42, entry.getAccessCounter());
+
+    // a view of a replaced entry does not touch the new one
+    BucketEntry stale = index.get(key);
+    index.put(key, newEntry(1024, 100, false));
+    stale.access(43);
+    assertFalse(index.get(key).isAccessed());
+  }
+
+  private BucketCache createCache() throws Exception {
+    return new BucketCache("file:" + testDir + "/bucket.cache", CAPACITY, BLOCK_SIZE, null,
+      BucketCache.DEFAULT_WRITER_THREADS, BucketCache.DEFAULT_WRITER_QUEUE_ITEMS,
+      testDir + "/bucket.persistence", BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+  }
+
+  @Test
+  public void testPersistAndRestore() throws Exception {
+    BucketCache cache = createCache();
+    assertTrue(cache.backingMap instanceof OffHeapBucketIndex);
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 5);
+    for (HFileBlockPair block : blocks) {
+      cacheAndWaitUntilFlushedToBucket(cache, block);
+    }
+    assertTrue(cache.evictBlock(blocks[0].getBlockName()));
+    assertEquals(1, cache.evictBlocksByHfileName(blocks[1].getBlockName().getHfileName()));
+    long usedSize = cache.getAllocator().getUsedSize();
+    cache.shutdown();
+
+    cache = createCache();
+    try {
+      assertTrue(cache.backingMap instanceof OffHeapBucketIndex);
+      assertEquals(3, cache.backingMap.size());
+      assertEquals(usedSize, cache.getAllocator().getUsedSize());
+      for (int i = 2; i < blocks.length; i++) {
+        Cacheable block = cache.getBlock(blocks[i].getBlockName(), false, false, false);
+        assertNotNull(block);
+        assertEquals(blocks[i].getBlock().getSerializedLength(), block.getSerializedLength());
+        block.release();
+      }
+      assertNull(cache.getBlock(blocks[0].getBlockName(), false, false, false));
+      assertTrue(cache.evictBlock(blocks[2].getBlockName()));
+      assertTrue(cache.getAllocator().getUsedSize() < usedSize);
+    } finally {
+      cache.shutdown();
+    }
+
+    // what the index persisted restores into the heap map too
+    conf.setBoolean(BucketCache.OFFHEAP_INDEX_KEY, false);
+    cache = createCache();
+    try {
+      assertFalse(cache.backingMap instanceof OffHeapBucketIndex);
+      assertEquals(2, cache.backingMap.size());
+      assertTrue(cache.backingMap.containsKey(blocks[3].getBlockName()));
+      assertTrue(cache.backingMap.containsKey(blocks[4].getBlockName()));
+    } finally {
+      cache.shutdown();
+    }
+  }
+
+  private static void cacheAndWaitUntilFlushedToBucket(BucketCache cache, HFileBlockPair block)
+    throws InterruptedException {
+    BlockCacheKey cacheKey = block.getBlockName();
+    cache.cacheBlock(cacheKey, block.getBlock());
+    while (!cache.backingMap.containsKey(cacheKey) || cache.ramCache.containsKey(cacheKey)) {
+      Thread.sleep(100);
+    }
+  }
+}
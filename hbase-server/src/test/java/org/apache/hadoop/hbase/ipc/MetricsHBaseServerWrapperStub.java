@@ -17,6 +17,9 @@
  */
 package org.apache.hadoop.hbase.ipc;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class MetricsHBaseServerWrapperStub implements MetricsHBaseServerWrapper {
   @Override
   public long getTotalQueueSize() {
@@ -108,6 +111,16 @@ public class MetricsHBaseServerWrapperStub implements MetricsHBaseServerWrapper
     return 100L;
   }
 
+  @Override
+  public Map<String, Integer> getTenantQueueLengths() {
+    return Collections.singletonMap("user1", 3);
+  }
+
+  @Override
+  public long getNumCoalescedGets() {
+    return 7;
+  }
+
   @Override
   public int getMetaPriorityQueueLength() {
     return 1;
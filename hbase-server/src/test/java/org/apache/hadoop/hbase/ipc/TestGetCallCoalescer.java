@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.BoundedPriorityBlockingQueue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hbase.thirdparty.com.google.protobuf.Message;
+
+import org.apache.hadoop.hbase.shaded.protobuf.RequestConverter;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ScanRequest;
+
+@Category({ RPCTests.class, SmallTests.class })
+public class TestGetCallCoalescer {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestGetCallCoalescer.class);
+
+  private static final byte[] REGION_A = Bytes.toBytes("a");
+  private static final byte[] REGION_B = Bytes.toBytes("b");
+
+  private static CallRunner call(Message param, long receiveTime) {
+    CallRunner cr = mock(CallRunner.class);
+    ServerCall call = mock(ServerCall.class);
+    when(cr.getRpcCall()).thenReturn(call);
+    when(call.getParam()).thenReturn(param);
+    when(call.getReceiveTime()).thenReturn(receiveTime);
+    return cr;
+  }
+
+  private static CallRunner get(byte[] region, long receiveTime) throws IOException {
+    return call(RequestConverter.buildGetRequest(region, new Get(Bytes.toBytes("row"))),
+      receiveTime);
+  }
+
+  @Test
+  public void testCreate() {
+    Configuration conf = HBaseConfiguration.create();
+    assertNull(GetCallCoalescer.create("test", conf, LinkedBlockingQueue.class));
+    conf.setBoolean(GetCallCoalescer.COALESCE_GETS_ENABLED_KEY, true);
+    assertNotNull(GetCallCoalescer.create("test", conf, LinkedBlockingQueue.class));
+    assertNull(GetCallCoalescer.create("test", conf, BoundedPriorityBlockingQueue.class));
+    conf.setInt(GetCallCoalescer.COALESCE_GETS_MAX_KEY, 1);
+    assertNull(GetCallCoalescer.create("test", conf, LinkedBlockingQueue.class));
+  }
+
+  @Test
+  public void testCoalesceGetsOfTheSameRegion() throws IOException {
+    GetCallCoalescer coalescer = new GetCallCoalescer(10, 3);
+    CallRunner first = get(REGION_A, 100);
+    CallRunner otherRegion = get(REGION_B, 101);
+    CallRunner scan = call(ScanRequest.getDefaultInstance(), 102);
+    CallRunner second = get(REGION_A, 103);
+    CallRunner third = get(REGION_A, 104);
+    CallRunner overMax = get(REGION_A, 105);
+    CallRunner late = get(REGION_A, 116);
+    BlockingQueue<CallRunner> q =
+      new LinkedBlockingQueue<>(Arrays.asList(otherRegion, scan, second, third, overMax, late));
+
+    assertEquals(Arrays.asList(first, second, third), coalescer.coalesce(first, q));
+    assertEquals(2, coalescer.getCoalescedCalls());
+    // the calls left keep their order
+    assertEquals(Arrays.asList(otherRegion, scan, overMax, late), new ArrayList<>(q));
+
+    // only Gets are coalesced
+    assertSame(otherRegion, q.poll());
+    assertSame(scan, q.poll());
+    assertEquals(Collections.singletonList(scan), coalescer.coalesce(scan, q));
+    assertEquals(2, q.size());
+
+    // the late Get is out of the window of the first one
+    assertSame(overMax, q.poll());
+    assertEquals(Collections.singletonList(overMax), coalescer.coalesce(overMax, q));
+    assertEquals(Collections.singletonList(late), new ArrayList<>(q));
+    assertEquals(2, coalescer.getCoalescedCalls());
+  }
+
+  @Test
+  public void testOnlyHeadOfQueueIsScanned() throws IOException {
+    // batches of 2 calls at most, so the 8 calls at the head of the queue are looked at
+    GetCallCoalescer coalescer = new GetCallCoalescer(10, 2);
+    CallRunner first = get(REGION_A, 100);
+    BlockingQueue<CallRunner> q = new LinkedBlockingQueue<>();
+    for (int i = 0; i < 8; i++) {
+      q.add(get(REGION_B, 100));
+    }
+    CallRunner beyondLimit = get(REGION_A, 100);
+    q.add(beyondLimit);
+    assertEquals(Collections.singletonList(first), coalescer.coalesce(first, q));
+    assertEquals(9, q.size());
+    assertEquals(0, coalescer.getCoalescedCalls());
+
+    // once nearer the head of the queue it is found
+    q.poll();
+    assertEquals(Arrays.asList(first, beyondLimit), coalescer.coalesce(first, q));
+    assertEquals(7, q.size());
+  }
+
+  @Test
+  public void testHandlerRunsBatch() throws Exception {
+    BlockingQueue<CallRunner> q = new LinkedBlockingQueue<>();
+    List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch ran = new CountDownLatch(4);
+    for (long i = 0; i < 4; i++) {
+      CallRunner cr = i < 3 ? get(REGION_A, i) : get(REGION_B, i);
+      doAnswer(invocation -> {
+        GetCallCoalescer.Batch batch = GetCallCoalescer.Batch.current();
+        batchSizes.add(batch != null ? batch.size() : 1);
+        if (batch != null && batch.getAttachment() == null) {
+          batch.attach("shared", null);
+        } else if (batch != null) {
+          assertSame("shared", batch.getAttachment());
+        }
+        ran.countDown();
+        return null;
+      }).when(cr).run();
+      q.add(cr);
+    }
+    RpcHandler handler =
+      new RpcHandler("test", 0.05, 1, q, new AtomicInteger(0), new AtomicInteger(0), null);
+    handler.setCoalescer(new GetCallCoalescer(10, 10));
+    handler.start();
+    try {
+      assertTrue(ran.await(30, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList(3, 3, 3, 1), batchSizes);
+      assertNull(GetCallCoalescer.Batch.current());
+    } finally {
+      handler.stopRunning();
+      handler.interrupt();
+    }
+  }
+}
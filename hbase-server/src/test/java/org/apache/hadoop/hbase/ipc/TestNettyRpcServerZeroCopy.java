@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.LoadTestKVGenerator;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Runs the {@link TestNettyRpcServer} tests with responses referring to the cells instead of
+ * copying them, and scans cells read from blocks which are released once the response is written.
+ */
+@Category({ RPCTests.class, MediumTests.class })
+public class TestNettyRpcServerZeroCopy extends TestNettyRpcServer {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestNettyRpcServerZeroCopy.class);
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int NUM_ROWS = 100;
+
+  @Before
+  public void setup() throws Exception {
+    TEST_UTIL = new HBaseTestingUtility();
+    TEST_UTIL.getConfiguration().setBoolean(ZeroCopyCellBlockBuilder.ZERO_COPY_ENABLED_KEY, true);
+    TEST_UTIL.getConfiguration().setInt(ZeroCopyCellBlockBuilder.MIN_SLICE_SIZE_KEY, 1024);
+    super.setup();
+  }
+
+  @Test
+  public void testScanUncachedBlocks() throws Exception {
+    TableName tableName = name.getTableName();
+    try (Table table = TEST_UTIL.createTable(tableName, FAMILY)) {
+      for (int i = 0; i < NUM_ROWS; i++) {
+        byte[] rowKey = Bytes.toBytes(LoadTestKVGenerator.md5PrefixedKey(i));
+        table.put(new Put(rowKey).addColumn(FAMILY, QUALIFIER,
+          GENERATOR.generateRandomSizeValue(rowKey, QUALIFIER)));
+      }
+      TEST_UTIL.flush(tableName);
+      // the blocks are not cached, so they are released once each response is written
+      int rows = 0;
+      try (
+        ResultScanner scanner = table.getScanner(new Scan().setCacheBlocks(false).setCaching(10))) {
+        for (Result r : scanner) {
+          byte[] v = r.getValue(FAMILY, QUALIFIER);
+          assertTrue("Value was not verified",
+            LoadTestKVGenerator.verify(v, r.getRow(), QUALIFIER));
+          rows++;
+        }
+      }
+      assertEquals(NUM_ROWS, rows);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.apache.hadoop.hbase.ipc.TestProtobufRpcServiceImpl.SERVICE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hbase.thirdparty.com.google.common.collect.Iterators;
+import org.apache.hbase.thirdparty.com.google.common.collect.Lists;
+import org.apache.hbase.thirdparty.com.google.common.io.Closeables;
+import org.apache.hbase.thirdparty.io.netty.channel.Channel;
+import org.apache.hbase.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.hbase.thirdparty.io.netty.channel.socket.nio.NioSocketChannel;
+
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestProtos.EchoRequestProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestProtos.EchoResponseProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestRpcServiceProtos.TestProtobufRpcProto;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.RPCProtos.RequestHeader;
+
+/**
+ * Confirm that the callback of a call whose response refers to its cells runs once, off the event
+ * loop, even when the response fails to be written out or never reaches the response encoder.
+ */
+@Category({ RPCTests.class, MediumTests.class })
+public class TestNettyServerCallZeroCopyCallBack {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestNettyServerCallZeroCopyCallBack.class);
+
+  private static final int VALUE_LENGTH = 2048;
+
+  private static Configuration CONF = HBaseConfiguration.create();
+
+  private NioEventLoopGroup group;
+
+  private NettyRpcServer server;
+
+  private NettyRpcClient client;
+
+  private Channel channel;
+
+  private NettyServerRpcConnection connection;
+
+  private final AtomicInteger callBacks = new AtomicInteger();
+
+  private final AtomicReference<Thread> callBackThread = new AtomicReference<>();
+
+  private final CountDownLatch callBackDone = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws Exception {
+    CONF.setBoolean(ZeroCopyCellBlockBuilder.ZERO_COPY_ENABLED_KEY, true);
+    CONF.setInt(ZeroCopyCellBlockBuilder.MIN_SLICE_SIZE_KEY, 1024);
+    group = new NioEventLoopGroup();
+    server = new NettyRpcServer(null, getClass().getSimpleName(),
+      Lists.newArrayList(new RpcServer.BlockingServiceAndInterface(SERVICE, null)),
+      new InetSocketAddress("localhost", 0), CONF, new FifoRpcScheduler(CONF, 1), true);
+    NettyRpcClientConfigHelper.setEventLoopConfig(CONF, group, NioSocketChannel.class);
+    client = new NettyRpcClient(CONF);
+    server.start();
+    TestProtobufRpcProto.BlockingInterface stub =
+      TestProtobufRpcServiceImpl.newBlockingStub(client, server.getListenerAddress());
+    // set up the connection, and its codec, with a first call
+    assertEquals("test",
+      stub.echo(null, EchoRequestProto.newBuilder().setMessage("test").build()).getMessage());
+    channel = Iterators.getOnlyElement(server.allChannels.iterator());
+    connection = channel.pipeline().get(NettyRpcFrameDecoder.class).connection;
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Closeables.close(client, true);
+    server.stop();
+    group.shutdownGracefully().sync();
+  }
+
+  private NettyServerCall createCallReferringToCells() {
+    NettyServerCall call = connection.createCall(
+      Integer.MAX_VALUE, SERVICE, SERVICE.getDescriptorForType().getMethods().stream()
+        .filter(m -> m.getName().equals("echo")).findFirst().get(),
+      RequestHeader.getDefaultInstance(), null, null, 0, null, 0, null);
+    call.setCallBack(() -> {
+      callBackThread.set(Thread.currentThread());
+      callBacks.incrementAndGet();
+      callBackDone.countDown();
+    });
+    KeyValue kv = new KeyValue(Bytes.toBytes("row"), Bytes.toBytes("f"), Bytes.toBytes("q"),
+      new byte[VALUE_LENGTH]);
+    ByteBuffer block = ByteBuffer.allocateDirect(kv.getLength());
+    block.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+    call.setResponse(EchoResponseProto.newBuilder().setMessage("test").build(),
+      CellUtil.createCellScanner(
+        Collections.singletonList(new ByteBufferKeyValue(block, 0, kv.getLength()))),
+      null, null);
+    // the response refers to the cell, so the callback waits for the response to be written out
+    assertEquals(0, callBacks.get());
+    return call;
+  }
+
+  private void assertCalledBackOnce(NettyServerCall call) throws InterruptedException {
+    assertTrue(callBackDone.await(30, TimeUnit.SECONDS));
+    assertFalse(channel.eventLoop().inEventLoop(callBackThread.get()));
+    call.done();
+    assertEquals(1, callBacks.get());
+  }
+
+  @Test
+  public void testCallBackWhenChannelClosed() throws Exception {
+    NettyServerCall call = createCallReferringToCells();
+    channel.close().sync();
+    call.sendResponseIfReady();
+    assertCalledBackOnce(call);
+  }
+
+  @Test
+  public void testCallBackWhenResponseNotEncoded() throws Exception {
+    NettyServerCall call = createCallReferringToCells();
+    // without the encoder, the response is not a message the channel can write
+    channel.pipeline().remove(NettyRpcServerResponseEncoder.class);
+    call.sendResponseIfReady();
+    assertCalledBackOnce(call);
+  }
+
+  @Test
+  public void testCallBackWhenResponseWritten() throws IOException, InterruptedException {
+    NettyServerCall call = createCallReferringToCells();
+    call.sendResponseIfReady();
+    assertCalledBackOnce(call);
+  }
+}
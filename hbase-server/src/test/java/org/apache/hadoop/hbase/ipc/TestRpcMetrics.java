@@ -18,14 +18,19 @@
 package org.apache.hadoop.hbase.ipc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.CallDroppedException;
 import org.apache.hadoop.hbase.CompatibilityFactory;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.NotServingRegionException;
 import org.apache.hadoop.hbase.RegionTooBusyException;
 import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.Waiter;
 import org.apache.hadoop.hbase.exceptions.OutOfOrderScannerNextException;
 import org.apache.hadoop.hbase.exceptions.RegionMovedException;
 import org.apache.hadoop.hbase.exceptions.RequestTooBigException;
@@ -89,6 +94,8 @@ public class TestRpcMetrics {
     HELPER.assertGauge("numCallsInWriteQueue", 50, serverSource);
     HELPER.assertGauge("numCallsInReadQueue", 50, serverSource);
     HELPER.assertGauge("numCallsInScanQueue", 2, serverSource);
+    HELPER.assertGauge("tenant_user1_metric_numCallsInQueue", 3, serverSource);
+    HELPER.assertCounter("numCoalescedGets", 7, serverSource);
   }
 
   /**
@@ -125,6 +132,10 @@ public class TestRpcMetrics {
     HELPER.assertCounter("processCallTime_NumOps", 1, serverSource);
     HELPER.assertCounter("totalCallTime_NumOps", 1, serverSource);
 
+    mrpc.dequeuedTenantCall("user1", 100);
+    mrpc.dequeuedTenantCall("user1", 101);
+    HELPER.assertCounter("tenant_user1_metric_queueCallTime_NumOps", 2, serverSource);
+
     mrpc.sentBytes(103);
     mrpc.sentBytes(103);
     mrpc.sentBytes(103);
@@ -196,4 +207,24 @@ public class TestRpcMetrics {
       assertEquals("RegionServer", rsSource.getMetricsName());
     }
   }
+
+  @Test
+  public void testRareTenantMetricsRemoved() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setDouble(HConstants.DEFAULT_LOSSY_COUNTING_ERROR_RATE, 0.1);
+    conf.set(RpcExecutor.CALL_QUEUE_TYPE_CONF_KEY, RpcExecutor.CALL_QUEUE_TYPE_FAIR_CONF_VALUE);
+    MetricsHBaseServer mrpc =
+      new MetricsHBaseServer("HRegionServer", new MetricsHBaseServerWrapperStub(), conf);
+    MetricsHBaseServerSource serverSource = mrpc.getMetricsSource();
+    mrpc.dequeuedTenantCall("rareTenant", 100);
+    assertTrue(
+      HELPER.checkCounterExists("tenant_rareTenant_metric_queueCallTime_NumOps", serverSource));
+    Waiter.waitFor(conf, 30000, () -> {
+      mrpc.dequeuedTenantCall("busyTenant", 100);
+      return !HELPER.checkCounterExists("tenant_rareTenant_metric_queueCallTime_NumOps",
+        serverSource);
+    });
+    assertTrue(
+      HELPER.checkCounterExists("tenant_busyTenant_metric_queueCallTime_NumOps", serverSource));
+  }
 }
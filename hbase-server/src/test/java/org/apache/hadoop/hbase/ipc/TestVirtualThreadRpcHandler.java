@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.Waiter;
+import org.apache.hadoop.hbase.monitoring.MonitoredRPCHandler;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RPCTests.class, SmallTests.class })
+public class TestVirtualThreadRpcHandler {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestVirtualThreadRpcHandler.class);
+
+  private static final Configuration CONF = HBaseConfiguration.create();
+
+  @Test
+  public void testBoundedConcurrency() throws Exception {
+    BlockingQueue<CallRunner> q = new LinkedBlockingQueue<>();
+    CountDownLatch block = new CountDownLatch(1);
+    CountDownLatch ran = new CountDownLatch(6);
+    Set<MonitoredRPCHandler> statusesUsed =
+      Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    for (int i = 0; i < 6; i++) {
+      CallRunner cr = mock(CallRunner.class);
+      doAnswer(invocation -> {
+        statusesUsed.add(invocation.getArgument(0));
+        return null;
+      }).when(cr).setStatus(any());
+      doAnswer(invocation -> {
+        block.await();
+        ran.countDown();
+        return null;
+      }).when(cr).run();
+      q.add(cr);
+    }
+    AtomicInteger active = new AtomicInteger(0);
+    Semaphore permits = new Semaphore(4);
+    Deque<MonitoredRPCHandler> statuses = new ConcurrentLinkedDeque<>();
+    RpcHandler handler = new VirtualThreadRpcHandler("test", 0.05, 1, q, active,
+      new AtomicInteger(0), null, Executors.defaultThreadFactory(), permits, statuses);
+    handler.start();
+    try {
+      // a single handler runs as many blocked calls at once as there are permits
+      Waiter.waitFor(CONF, 30000, () -> active.get() == 4);
+      assertEquals(2, q.size());
+      assertEquals(0, permits.availablePermits());
+      block.countDown();
+      assertTrue(ran.await(30, TimeUnit.SECONDS));
+      // the handler holds a permit while it waits for the next call
+      Waiter.waitFor(CONF, 30000, () -> permits.availablePermits() == 3);
+      assertEquals(0, active.get());
+      // the statuses are reused by the calls which run later
+      assertEquals(4, statusesUsed.size());
+      assertEquals(4, statuses.size());
+    } finally {
+      handler.stopRunning();
+      handler.interrupt();
+    }
+  }
+
+  @Test
+  public void testDropWhenThreadCannotStart() throws Exception {
+    BlockingQueue<CallRunner> q = new LinkedBlockingQueue<>();
+    CallRunner cr = mock(CallRunner.class);
+    CountDownLatch dropped = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      dropped.countDown();
+      return null;
+    }).when(cr).drop();
+    q.add(cr);
+    ThreadFactory failing = r -> {
+      throw new OutOfMemoryError("unable to create native thread");
+    };
+    Semaphore permits = new Semaphore(2);
+    RpcHandler handler = new VirtualThreadRpcHandler("test", 0.05, 1, q, new AtomicInteger(0),
+      new AtomicInteger(0), null, failing, permits, new ConcurrentLinkedDeque<>());
+    handler.start();
+    try {
+      assertTrue(dropped.await(30, TimeUnit.SECONDS));
+      // the permit of the dropped call is back, the handler holds one while it waits for a call
+      Waiter.waitFor(CONF, 30000, () -> permits.availablePermits() == 1);
+      verify(cr, never()).run();
+    } finally {
+      handler.stopRunning();
+      handler.interrupt();
+    }
+  }
+
+  @Test
+  public void testEnabled() {
+    Configuration conf = HBaseConfiguration.create();
+    assertFalse(VirtualThreadRpcHandler.isEnabled("test", conf));
+    conf.setBoolean(VirtualThreadRpcHandler.VIRTUAL_THREADS_ENABLED_KEY, true);
+    ThreadFactory factory = VirtualThreadRpcHandler.newVirtualThreadFactory("test-");
+    // only enabled on the JDKs which have virtual threads
+    assertEquals(factory != null, VirtualThreadRpcHandler.isEnabled("test", conf));
+    if (factory != null) {
+      Thread thread = factory.newThread(() -> {
+      });
+      assertEquals("test-0", thread.getName());
+    }
+  }
+}
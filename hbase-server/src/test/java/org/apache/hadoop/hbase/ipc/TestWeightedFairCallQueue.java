@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hbase.thirdparty.com.google.protobuf.Message;
+
+import org.apache.hadoop.hbase.shaded.protobuf.RequestConverter;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ScanRequest;
+
+@Category({ RPCTests.class, SmallTests.class })
+public class TestWeightedFairCallQueue {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestWeightedFairCallQueue.class);
+
+  private static CallRunner call(String user, Message param) {
+    CallRunner cr = mock(CallRunner.class);
+    ServerCall call = mock(ServerCall.class);
+    when(cr.getRpcCall()).thenReturn(call);
+    when(call.getRequestUserName()).thenReturn(Optional.ofNullable(user));
+    when(call.getParam()).thenReturn(param);
+    when(call.getReceiveTime()).thenReturn(System.currentTimeMillis());
+    return cr;
+  }
+
+  private static List<CallRunner> calls(String user, int n) {
+    List<CallRunner> calls = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      calls.add(call(user, null));
+    }
+    return calls;
+  }
+
+  @Test
+  public void testWeightedRoundRobin() throws InterruptedException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(WeightedFairCallQueue.WEIGHT_CONF_PREFIX + "a", 2);
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(100, conf);
+    List<CallRunner> a = calls("a", 4);
+    List<CallRunner> b = calls("b", 2);
+    a.forEach(queue::offer);
+    b.forEach(queue::offer);
+    assertEquals(6, queue.size());
+    assertEquals(4, (int) queue.getTenantQueueLengths().get("a"));
+    assertEquals(2, (int) queue.getTenantQueueLengths().get("b"));
+
+    assertSame(a.get(0), queue.take());
+    assertSame(a.get(1), queue.take());
+    assertSame(b.get(0), queue.take());
+    assertSame(a.get(2), queue.poll());
+    assertSame(a.get(3), queue.poll());
+    assertSame(b.get(1), queue.poll(1, TimeUnit.SECONDS));
+    assertNull(queue.poll());
+    assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+    assertTrue(queue.getTenantQueueLengths().isEmpty());
+  }
+
+  @Test
+  public void testFloodDoesNotDelayOthers() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setFloat(WeightedFairCallQueue.MAX_TENANT_SHARE_CONF_KEY, 0.5f);
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(100, conf);
+    List<CallRunner> flood = calls("noisy", 60);
+    int accepted = 0;
+    for (CallRunner cr : flood) {
+      if (queue.offer(cr)) {
+        accepted++;
+      }
+    }
+    // the noisy tenant may only take half of the queue
+    assertEquals(50, accepted);
+    CallRunner other = call("quiet", null);
+    assertTrue(queue.offer(other));
+    assertSame(flood.get(0), queue.poll());
+    assertSame(other, queue.poll());
+    assertSame(flood.get(1), queue.poll());
+  }
+
+  @Test
+  public void testTenantByTable() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(WeightedFairCallQueue.TENANT_CONF_KEY, WeightedFairCallQueue.TENANT_TABLE);
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(100, conf);
+    RegionInfo region = RegionInfoBuilder.newBuilder(TableName.valueOf("ns", "t")).build();
+    CallRunner get = call("a",
+      RequestConverter.buildGetRequest(region.getRegionName(), new Get(Bytes.toBytes("row"))));
+    assertEquals("ns:t", queue.getTenant(get));
+    // the metrics of a table are named like the table metrics
+    assertEquals("Namespace_ns_table_t", queue.getMetricName("ns:t"));
+    assertEquals("Namespace_default_table_t", queue.getMetricName("t"));
+    MetricsHBaseServer metrics = mock(MetricsHBaseServer.class);
+    queue.setMetrics(metrics);
+    queue.offer(get);
+    assertEquals(1, (int) queue.getTenantQueueLengths().get("Namespace_ns_table_t"));
+    queue.poll();
+    verify(metrics).dequeuedTenantCall(eq("Namespace_ns_table_t"), anyInt());
+    CallRunner scanNext = call("a", ScanRequest.newBuilder().setScannerId(1).build());
+    assertEquals(WeightedFairCallQueue.UNKNOWN_TENANT, queue.getTenant(scanNext));
+    assertEquals("a", new WeightedFairCallQueue(100, HBaseConfiguration.create()).getTenant(get));
+    assertEquals(WeightedFairCallQueue.UNKNOWN_TENANT,
+      new WeightedFairCallQueue(100, HBaseConfiguration.create()).getTenant(call(null, null)));
+  }
+
+  @Test
+  public void testRemoveAndCapacity() {
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(3, HBaseConfiguration.create());
+    List<CallRunner> a = calls("a", 2);
+    CallRunner b = call("b", null);
+    a.forEach(queue::offer);
+    assertTrue(queue.offer(b));
+    assertFalse(queue.offer(call("c", null)));
+    assertEquals(0, queue.remainingCapacity());
+    List<CallRunner> snapshot = new ArrayList<>(queue);
+    assertEquals(3, snapshot.size());
+    assertTrue(queue.remove(b));
+    assertFalse(queue.remove(b));
+    assertEquals(1, queue.getTenantQueueLengths().size());
+    List<CallRunner> drained = new ArrayList<>();
+    assertEquals(2, queue.drainTo(drained));
+    assertEquals(a, drained);
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void testMetrics() {
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(10, HBaseConfiguration.create());
+    MetricsHBaseServer metrics = mock(MetricsHBaseServer.class);
+    // the metrics are reported once the queue is unlocked, another thread may use it meanwhile
+    AtomicInteger reportedUnlocked = new AtomicInteger();
+    doAnswer(invocation -> {
+      Thread other = new Thread(queue::peek);
+      other.start();
+      other.join(10000);
+      if (!other.isAlive()) {
+        reportedUnlocked.incrementAndGet();
+      }
+      return null;
+    }).when(metrics).dequeuedTenantCall(anyString(), anyInt());
+    queue.setMetrics(metrics);
+    calls("a", 2).forEach(queue::offer);
+    queue.offer(call("b", null));
+    queue.drainTo(new ArrayList<>());
+    verify(metrics, times(2)).dequeuedTenantCall(eq("a"), anyInt());
+    verify(metrics, times(1)).dequeuedTenantCall(eq("b"), anyInt());
+    queue.offer(call("a", null));
+    assertNotNull(queue.poll());
+    assertEquals(4, reportedUnlocked.get());
+  }
+
+  @Test
+  public void testFairQueueType() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(RpcExecutor.CALL_QUEUE_TYPE_CONF_KEY, RpcExecutor.CALL_QUEUE_TYPE_FAIR_CONF_VALUE);
+    RpcExecutor executor = new FastPathBalancedQueueRpcExecutor("test", 10, 100,
+      mock(PriorityFunction.class), conf, null);
+    assertTrue(executor.getQueues().get(0) instanceof WeightedFairCallQueue);
+    executor.getQueues().get(0).offer(call("a", null));
+    assertEquals(1, (int) executor.getTenantQueueLengths().get("a"));
+  }
+}
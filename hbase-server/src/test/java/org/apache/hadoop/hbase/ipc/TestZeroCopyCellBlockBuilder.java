@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ArrayBackedTag;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellScanner;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.Tag;
+import org.apache.hadoop.hbase.codec.Codec;
+import org.apache.hadoop.hbase.codec.KeyValueCodec;
+import org.apache.hadoop.hbase.codec.KeyValueCodecWithTags;
+import org.apache.hadoop.hbase.io.ByteBuffAllocator;
+import org.apache.hadoop.hbase.io.ByteBufferInputStream;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests building cell blocks which refer to the larger cells instead of copying them.
+ */
+@Category({ RPCTests.class, SmallTests.class })
+public class TestZeroCopyCellBlockBuilder {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestZeroCopyCellBlockBuilder.class);
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int MIN_SLICE_SIZE = 100;
+
+  private ZeroCopyCellBlockBuilder builder;
+
+  @Before
+  public void setUp() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(ZeroCopyCellBlockBuilder.MIN_SLICE_SIZE_KEY, MIN_SLICE_SIZE);
+    builder = new ZeroCopyCellBlockBuilder(conf);
+  }
+
+  private static Cell cell(int row, int valueLength, boolean offheap, Tag... tags) {
+    KeyValue kv = new KeyValue(Bytes.toBytes("row-" + row), FAMILY, QUALIFIER,
+      HConstants.LATEST_TIMESTAMP, KeyValue.Type.Put, new byte[valueLength], Arrays.asList(tags));
+    if (!offheap) {
+      return kv;
+    }
+    // lay the cell out in a buffer among others, like in a block
+    ByteBuffer block = ByteBuffer.allocateDirect(kv.getLength() + 20);
+    block.position(10);
+    block.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+    return new ByteBufferKeyValue(block, 10, kv.getLength());
+  }
+
+  private static List<Cell> decode(Codec codec, List<ByteBuffer> buffers) throws IOException {
+    ByteBuffer cellBlock =
+      ByteBuffer.allocate(buffers.stream().mapToInt(ByteBuffer::remaining).sum());
+    for (ByteBuffer buf : buffers) {
+      cellBlock.put(buf.duplicate());
+    }
+    cellBlock.flip();
+    CellScanner scanner = codec.getDecoder(new ByteBufferInputStream(cellBlock));
+    List<Cell> cells = new ArrayList<>();
+    while (scanner.advance()) {
+      cells.add(scanner.current());
+    }
+    return cells;
+  }
+
+  private void assertRoundTrip(Codec codec, List<Cell> cells, int expectedSlices)
+    throws IOException {
+    ZeroCopyCellBlockBuilder.CellBlock cellBlock =
+      builder.build(codec, CellUtil.createCellScanner(cells), ByteBuffAllocator.HEAP);
+    try {
+      assertEquals(expectedSlices, cellBlock.getSlices());
+      int size = 0;
+      for (ByteBuffer buf : cellBlock.getBuffers()) {
+        // the header must not be written past any of them
+        assertEquals(buf.limit(), buf.capacity());
+        size += buf.remaining();
+      }
+      assertEquals(cellBlock.getSize(), size);
+      List<Cell> decoded = decode(codec, cellBlock.getBuffers());
+      assertEquals(cells.size(), decoded.size());
+      boolean withTags = codec instanceof KeyValueCodecWithTags;
+      for (int i = 0; i < cells.size(); i++) {
+        assertTrue(CellUtil.equals(cells.get(i), decoded.get(i)));
+        assertTrue(CellUtil.matchingValue(cells.get(i), decoded.get(i)));
+        assertEquals(withTags ? cells.get(i).getTagsLength() : 0, decoded.get(i).getTagsLength());
+      }
+    } finally {
+      cellBlock.getStream().releaseResources();
+    }
+  }
+
+  @Test
+  public void testLargeOffheapCellsAreSliced() throws IOException {
+    List<Cell> cells = new ArrayList<>();
+    cells.add(cell(0, 10, true));
+    cells.add(cell(1, 1000, true));
+    cells.add(cell(2, 1000, true));
+    cells.add(cell(3, 1000, false));
+    cells.add(cell(4, 10, false));
+    cells.add(cell(5, 1000, true, new ArrayBackedTag((byte) 1, "tag")));
+    assertRoundTrip(new KeyValueCodec(), cells, 3);
+    assertRoundTrip(new KeyValueCodecWithTags(), cells, 3);
+  }
+
+  @Test
+  public void testSliceRefersToTheCell() throws IOException {
+    ByteBufferKeyValue cell = (ByteBufferKeyValue) cell(0, 1000, true);
+    ZeroCopyCellBlockBuilder.CellBlock cellBlock = builder.build(new KeyValueCodec(),
+      CellUtil.createCellScanner(Collections.singletonList(cell)), ByteBuffAllocator.HEAP);
+    try {
+      assertEquals(2, cellBlock.getBuffers().size());
+      ByteBuffer slice = cellBlock.getBuffers().get(1);
+      assertTrue(slice.isDirect());
+      assertEquals(cell.getSerializedSize(false), slice.remaining());
+      // a write to the cell shows through the slice, there is no copy
+      cell.getBuffer().put(cell.getOffset() + cell.getSerializedSize(false) - 1, (byte) 7);
+      assertEquals(7, slice.get(slice.limit() - 1));
+    } finally {
+      cellBlock.getStream().releaseResources();
+    }
+  }
+
+  @Test
+  public void testEmptyAndUnsupported() throws IOException {
+    assertNull(builder.build(new KeyValueCodec(), CellUtil.createCellScanner(new ArrayList<Cell>()),
+      ByteBuffAllocator.HEAP));
+    assertTrue(ZeroCopyCellBlockBuilder.supports(new KeyValueCodec(), null));
+    assertFalse(
+      ZeroCopyCellBlockBuilder.supports(new KeyValueCodec(), mock(CompressionCodec.class)));
+    assertFalse(ZeroCopyCellBlockBuilder.supports(null, null));
+  }
+}
@@ -332,6 +332,21 @@ public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrappe
     return 417;
   }
 
+  @Override
+  public long getRowCacheHitCount() {
+    return 0;
+  }
+
+  @Override
+  public long getRowCacheMissCount() {
+    return 0;
+  }
+
+  @Override
+  public long getRowCacheSize() {
+    return 0;
+  }
+
   @Override
   public long getBlockCachePrimaryMissCount() {
     return 421;
@@ -447,6 +462,16 @@ public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrappe
     return 10;
   }
 
+  @Override
+  public long getL2CacheAdmittedCount() {
+    return 150;
+  }
+
+  @Override
+  public long getL2CacheRejectedCount() {
+    return 50;
+  }
+
   @Override
   public long getUpdatesBlockedTime() {
     return 419;
@@ -193,4 +193,14 @@ public class MetricsRegionWrapperStub implements MetricsRegionWrapper {
     map.put("info", 0L);
     return map;
   }
+
+  @Override
+  public long getMvccWriteQueueContendedCount() {
+    return 0;
+  }
+
+  @Override
+  public long getMvccWriteQueueFullCount() {
+    return 0;
+  }
 }
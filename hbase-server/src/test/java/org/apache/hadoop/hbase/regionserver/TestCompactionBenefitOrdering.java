@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.apache.hadoop.hbase.regionserver.CompactSplit.estimateBenefit;
+import static org.apache.hadoop.hbase.regionserver.CompactSplit.getBenefitDeadline;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.PriorityQueue;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestCompactionBenefitOrdering {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestCompactionBenefitOrdering.class);
+
+  private static final long MB = 1024 * 1024;
+
+  @Test
+  public void testEstimateBenefit() {
+    double base = estimateBenefit(4, 100 * MB, false, 0, 4, 16, 0);
+    // Merging more files saves more seeks
+    assertTrue(estimateBenefit(8, 100 * MB, false, 0, 8, 16, 0) > base);
+    // Rewriting more bytes for the same saving is worth less
+    assertTrue(estimateBenefit(4, 1000 * MB, false, 0, 4, 16, 0) < base);
+    // Hot regions go before cold ones
+    assertTrue(estimateBenefit(4, 100 * MB, false, 50, 4, 16, 0) > base);
+    // Stores closer to blocking updates go first
+    assertTrue(estimateBenefit(4, 100 * MB, false, 0, 15, 16, 0) > base);
+    // The compactions queued ahead for the same table share the benefit
+    assertEquals(base / 2, estimateBenefit(4, 100 * MB, false, 0, 4, 16, 1), 1e-9);
+    // A single file compaction still drops deleted cells, a major one more so
+    double single = estimateBenefit(1, 100 * MB, false, 100, 1, 16, 0);
+    assertTrue(single > 0);
+    assertTrue(estimateBenefit(1, 100 * MB, true, 100, 1, 16, 0) > single);
+    assertTrue(estimateBenefit(2, 100 * MB, false, 100, 1, 16, 0) > single);
+  }
+
+  @Test
+  public void testNoBenefitCompactionRuns() {
+    long maxWait = 60000;
+    // the compactions worth the most go first
+    assertTrue(getBenefitDeadline(0, 10, maxWait) < getBenefitDeadline(0, 1, maxWait));
+    assertEquals(maxWait, getBenefitDeadline(0, 0, maxWait));
+
+    // a compaction worth nothing queued first, then a steady stream of compactions worth a lot,
+    // one queued each second and one run each second
+    PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+    long noBenefit = getBenefitDeadline(0, 0, maxWait);
+    queue.add(new long[] { noBenefit, -1 });
+    long ranAt = -1;
+    for (long now = 0; now < 10 * maxWait && ranAt < 0; now += 1000) {
+      queue.add(new long[] { getBenefitDeadline(now, 1000, maxWait), now });
+      if (queue.poll()[1] < 0) {
+        ranAt = now;
+      }
+    }
+    // it is passed by those queued up to maxWait after it, then runs
+    assertTrue("ranAt=" + ranAt, ranAt >= maxWait - 1000 && ranAt <= maxWait + 1000);
+  }
+}
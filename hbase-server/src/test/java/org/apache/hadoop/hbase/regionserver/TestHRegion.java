@@ -26,6 +26,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -56,6 +57,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -112,6 +114,7 @@ import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Increment;
 import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.PackagePrivateFieldAccessor;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.RegionInfoBuilder;
@@ -161,6 +164,7 @@ import org.apache.hadoop.hbase.util.CommonFSUtils;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManagerTestHelper;
 import org.apache.hadoop.hbase.util.HFileArchiveUtil;
+import org.apache.hadoop.hbase.util.HashedBytes;
 import org.apache.hadoop.hbase.util.IncrementingEnvironmentEdge;
 import org.apache.hadoop.hbase.util.ManualEnvironmentEdge;
 import org.apache.hadoop.hbase.util.Threads;
@@ -1753,6 +1757,85 @@ public class TestHRegion {
     metricsAssertHelper.assertCounter("syncTimeNumOps", syncs, source);
   }
 
+  @Test
+  public void testAtomicBatchPutsOverSameRowsInReverseOrder() throws Exception {
+    Configuration conf = new Configuration(CONF);
+    // Fail fast if the two batches deadlock on each other's row locks
+    conf.setInt("hbase.rowlock.wait.duration", 2000);
+    this.region = initHRegion(tableName, method, conf, COLUMN_FAMILY_BYTES);
+    final int rows = 10;
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<OperationStatus[]>> futures = new ArrayList<>();
+      for (int t = 0; t < 2; t++) {
+        final boolean reverse = t == 1;
+        futures.add(executor.submit(() -> {
+          OperationStatus[] lastCodes = null;
+          for (int round = 0; round < 50; round++) {
+            Put[] puts = new Put[rows];
+            for (int i = 0; i < rows; i++) {
+              int row = reverse ? rows - 1 - i : i;
+              puts[i] = new Put(Bytes.toBytes("row_" + row));
+              puts[i].addColumn(COLUMN_FAMILY_BYTES, qual, Bytes.toBytes(round));
+            }
+            lastCodes = region.batchMutate(puts, true);
+          }
+          return lastCodes;
+        }));
+      }
+      for (Future<OperationStatus[]> future : futures) {
+        for (OperationStatus code : future.get()) {
+          assertEquals(OperationStatusCode.SUCCESS, code.getOperationStatusCode());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(region.getLockedRows().isEmpty());
+  }
+
+  @Test
+  public void testRowLockContextPool() throws Exception {
+    Configuration conf = new Configuration(CONF);
+    conf.setInt(HRegion.ROW_LOCK_CONTEXT_POOL_SIZE_KEY, 4);
+    conf.setInt("hbase.rowlock.wait.duration", 100);
+    this.region = initHRegion(tableName, method, conf, COLUMN_FAMILY_BYTES);
+    byte[] row1 = Bytes.toBytes("row1");
+    byte[] row2 = Bytes.toBytes("row2");
+
+    RowLock lock = region.getRowLock(row1, false);
+    HRegion.RowLockContext context = region.getLockedRows().get(new HashedBytes(row1));
+    lock.release();
+    assertTrue(region.getLockedRows().isEmpty());
+
+    // The released context is reused for the next row locked by this thread
+    lock = region.getRowLock(row2, true);
+    assertSame(context, region.getLockedRows().get(new HashedBytes(row2)));
+    assertNull(region.getLockedRows().get(new HashedBytes(row1)));
+    RowLock secondLock = region.getRowLock(row2, true);
+    lock.release();
+    assertEquals(1, region.getLockedRows().size());
+    secondLock.release();
+    assertTrue(region.getLockedRows().isEmpty());
+
+    // Still exclusive after reuse
+    lock = region.getRowLock(row1, false);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<RowLock> other = executor.submit(() -> region.getRowLock(row1, true));
+      try {
+        other.get();
+        fail("Should not be able to take a read lock while the write lock is held");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IOException);
+      }
+    } finally {
+      lock.release();
+      executor.shutdownNow();
+    }
+    assertTrue(region.getLockedRows().isEmpty());
+  }
+
   /** Returns syncs initial syncTimeNumOps */
   private long prepareRegionForBachPut(final Put[] puts, final MetricsWALSource source,
     boolean slop) throws IOException {
@@ -3544,6 +3627,29 @@ public class TestHRegion {
     }
   }
 
+  @Test
+  public void testSharedReadPoint() throws IOException {
+    byte[] row = Bytes.toBytes("row");
+    byte[] fam = Bytes.toBytes("fam");
+    byte[] qual = Bytes.toBytes("qual");
+    this.region = initHRegion(tableName, method, CONF, fam);
+    region.put(new Put(row).addColumn(fam, qual, Bytes.toBytes("v1")));
+    try (HRegion.SharedReadPoint readPoint = region.openSharedReadPoint()) {
+      region.put(new Put(row).addColumn(fam, qual, Bytes.toBytes("v2")));
+      // flushes and compactions keep what the shared read point sees
+      assertEquals(readPoint.getReadPoint(), region.getSmallestReadPoint());
+      Scan scan = new Scan(new Get(row));
+      PackagePrivateFieldAccessor.setMvccReadPoint(scan, readPoint.getReadPoint());
+      try (RegionScanner scanner = region.getScanner(scan)) {
+        List<Cell> cells = new ArrayList<>();
+        scanner.next(cells);
+        assertEquals("v1", Bytes.toString(CellUtil.cloneValue(cells.get(0))));
+      }
+    }
+    assertEquals(region.getReadPoint(null), region.getSmallestReadPoint());
+    assertEquals("v2", Bytes.toString(region.get(new Get(row)).getValue(fam, qual)));
+  }
+
   @Test
   public void testGet_Basic() throws IOException {
     byte[] row1 = Bytes.toBytes("row1");
@@ -624,6 +624,21 @@ public class TestHStoreFile {
     bloomWriteRead(writer, fs);
   }
 
+  @Test
+  public void testBlockedBloomFilter() throws Exception {
+    conf.setFloat(BloomFilterFactory.IO_STOREFILE_BLOOM_ERROR_RATE, (float) 0.01);
+    conf.setBoolean(BloomFilterFactory.IO_STOREFILE_BLOOM_ENABLED, true);
+
+    // write the file
+    Path f = new Path(ROOT_DIR, name.getMethodName());
+    HFileContext meta = new HFileContextBuilder().withBlockSize(BLOCKSIZE_SMALL)
+      .withChecksumType(CKTYPE).withBytesPerCheckSum(CKBYTES).build();
+    // Make a store file and write data to it.
+    StoreFileWriter writer = new StoreFileWriter.Builder(conf, cacheConf, this.fs).withFilePath(f)
+      .withBloomType(BloomType.ROW_BLOCKED).withMaxKeyCount(2000).withFileContext(meta).build();
+    bloomWriteRead(writer, fs);
+  }
+
   @Test
   public void testDeleteFamilyBloomFilter() throws Exception {
     conf.setFloat(BloomFilterFactory.IO_STOREFILE_BLOOM_ERROR_RATE, (float) 0.01);
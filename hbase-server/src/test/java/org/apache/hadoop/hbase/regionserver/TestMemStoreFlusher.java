@@ -22,14 +22,28 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.util.Collections;
+import java.util.TreeMap;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.CompatibilityFactory;
 import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.Waiter;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.test.MetricsAssertHelper;
 import org.apache.hadoop.hbase.testclassification.RegionServerTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Threads;
 import org.junit.Before;
 import org.junit.ClassRule;
@@ -94,4 +108,75 @@ public class TestMemStoreFlusher {
     assertEquals(1, msf.getFlushQueueSize());
     assertTrue(msf.regionsInQueue.get(r).isDelay());
   }
+
+  @Test
+  public void testPredictiveFlush() throws Exception {
+    HBaseTestingUtility util = new HBaseTestingUtility();
+    MetricsAssertHelper helper = CompatibilityFactory.getInstance(MetricsAssertHelper.class);
+    Configuration conf = util.getConfiguration();
+    conf.setInt("hbase.hstore.flusher.count", 1);
+    conf.setLong(HConstants.THREAD_WAKE_FREQUENCY, 100);
+    conf.setBoolean(MemStoreFlusher.PREDICTIVE_FLUSH_ENABLED_KEY, true);
+    conf.setLong(MemStoreFlusher.PREDICTIVE_FLUSH_HORIZON_KEY, 3600 * 1000);
+    byte[] family = Bytes.toBytes("f");
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+      .setMemStoreFlushSize(1024 * 1024).setColumnFamily(ColumnFamilyDescriptorBuilder.of(family))
+      .build();
+    HRegion region = HBaseTestingUtility.createRegionAndWAL(
+      RegionInfoBuilder.newBuilder(htd.getTableName()).build(),
+      util.getDataTestDir(name.getMethodName()), conf, htd);
+    RegionServerAccounting accounting = new RegionServerAccounting(conf);
+    MetricsRegionServer metrics =
+      new MetricsRegionServer(new MetricsRegionServerWrapperStub(), new Configuration(false), null);
+    HRegionServer server = mock(HRegionServer.class);
+    when(server.getServerName()).thenReturn(ServerName.valueOf("localhost", 16020, 1));
+    when(server.getRegionServerAccounting()).thenReturn(accounting);
+    when(server.getMetrics()).thenReturn(metrics);
+    when(server.getOnlineRegionsLocalContext()).thenReturn(Collections.singletonList(region));
+    when(server.getCopyOfOnlineRegionsSortedByOnHeapSize()).thenReturn(new TreeMap<>());
+    MemStoreFlusher flusher = new MemStoreFlusher(conf, server);
+    MetricsRegionServerSource source = metrics.getMetricsSource();
+    long predictiveFlushes = helper.getCounter("predictiveFlushCount", source);
+    long blockedUpdates = helper.getCounter("updatesBlockedTimeHistogram_num_ops", source);
+    // the other regions fill most of the memstore, but nothing is written
+    long otherRegions = (long) (accounting.getGlobalMemStoreLimitLowMark() * 0.9);
+    accounting.incGlobalMemStoreSize(0, otherRegions, 0);
+    flusher.start(Threads.LOGGING_EXCEPTION_HANDLER);
+    try {
+      Threads.sleep(2 * MemStoreGrowthPredictor.MIN_SAMPLE_INTERVAL_MS);
+      assertEquals(predictiveFlushes, helper.getCounter("predictiveFlushCount", source));
+
+      // the writes are expected to take the memstore over the low water mark within the horizon
+      int[] row = new int[1];
+      Waiter.waitFor(conf, 60000, () -> {
+        for (int i = 0; i < 10; i++, row[0]++) {
+          region.put(new Put(Bytes.toBytes(row[0])).addColumn(family, family, new byte[1024]));
+        }
+        Threads.sleep(50);
+        return region.getStore(family).getStorefilesCount() > 0;
+      });
+      assertTrue(helper.getCounter("predictiveFlushCount", source) > predictiveFlushes);
+      assertEquals(FlushType.NORMAL, accounting.isAboveLowWaterMark());
+      assertEquals(blockedUpdates,
+        helper.getCounter("updatesBlockedTimeHistogram_num_ops", source));
+
+      // over the high water mark the updates are blocked until the memstore shrinks
+      long overHighMark = accounting.getGlobalMemStoreLimit() - otherRegions;
+      accounting.incGlobalMemStoreSize(0, overHighMark, 0);
+      Thread writer = new Thread(flusher::reclaimMemStoreMemory);
+      writer.start();
+      Threads.sleep(200);
+      assertTrue(writer.isAlive());
+      accounting.decGlobalMemStoreSize(0, overHighMark, 0);
+      writer.join(30000);
+      assertFalse(writer.isAlive());
+      assertEquals(blockedUpdates + 1,
+        helper.getCounter("updatesBlockedTimeHistogram_num_ops", source));
+    } finally {
+      when(server.isStopped()).thenReturn(true);
+      flusher.interruptIfNecessary();
+      flusher.join();
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
 }
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestMemStoreGrowthPredictor {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestMemStoreGrowthPredictor.class);
+
+  @Test
+  public void testMovingAverage() {
+    MemStoreGrowthPredictor predictor = new MemStoreGrowthPredictor(0.5);
+    HRegion hot = mock(HRegion.class);
+    HRegion cold = mock(HRegion.class);
+    when(hot.getMemStoreBytesWritten()).thenReturn(0L, 10000L, 10000L, 30000L);
+    when(cold.getMemStoreBytesWritten()).thenReturn(0L);
+
+    predictor.update(Arrays.asList(hot, cold), 0);
+    assertEquals(0, predictor.predictGrowth(1000));
+    // The first sample is taken as is
+    predictor.update(Arrays.asList(hot, cold), 1000);
+    assertEquals(10000, predictor.getBytesPerSecond(hot), 0.001);
+    assertEquals(0, predictor.getBytesPerSecond(cold), 0.001);
+    // Too close to the last sample, ignored
+    predictor.update(Arrays.asList(hot, cold),
+      1000 + MemStoreGrowthPredictor.MIN_SAMPLE_INTERVAL_MS / 2);
+    assertEquals(10000, predictor.getBytesPerSecond(hot), 0.001);
+    // Half of the new rate of 20000/s
+    predictor.update(Arrays.asList(hot, cold), 2000);
+    assertEquals(15000, predictor.getBytesPerSecond(hot), 0.001);
+    assertEquals(30000, predictor.predictGrowth(2000));
+
+    // Regions no longer online are forgotten
+    predictor.update(Collections.singletonList(cold), 3000);
+    assertEquals(0, predictor.getBytesPerSecond(hot), 0.001);
+    assertEquals(0, predictor.predictGrowth(2000));
+  }
+
+  @Test
+  public void testFlushScore() {
+    long hour = 3600000;
+    // Bigger memstores first
+    assertTrue(MemStoreGrowthPredictor.flushScore(2000, 0, hour)
+        > MemStoreGrowthPredictor.flushScore(1000, 0, hour));
+    // Then the ones that were not flushed for the longest time
+    assertTrue(MemStoreGrowthPredictor.flushScore(1000, hour / 2, hour)
+        > MemStoreGrowthPredictor.flushScore(1000, 0, hour));
+    assertEquals(MemStoreGrowthPredictor.flushScore(1000, hour, hour),
+      MemStoreGrowthPredictor.flushScore(1000, 10 * hour, hour), 0.001);
+    assertTrue(MemStoreGrowthPredictor.flushScore(2000, 0, hour)
+        >= MemStoreGrowthPredictor.flushScore(1000, 10 * hour, hour));
+  }
+}
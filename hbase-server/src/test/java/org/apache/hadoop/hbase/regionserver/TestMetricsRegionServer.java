@@ -136,6 +136,8 @@ public class TestMetricsRegionServer {
     HELPER.assertGauge("l2CacheMissCount", 200, serverSource);
     HELPER.assertGauge("l2CacheHitRatio", 90, serverSource);
     HELPER.assertGauge("l2CacheMissRatio", 10, serverSource);
+    HELPER.assertCounter("l2CacheAdmittedCount", 150, serverSource);
+    HELPER.assertCounter("l2CacheRejectedCount", 50, serverSource);
     HELPER.assertCounter("updatesBlockedTime", 419, serverSource);
   }
 
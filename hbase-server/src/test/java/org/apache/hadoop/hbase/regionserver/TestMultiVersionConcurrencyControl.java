@@ -81,7 +81,18 @@ public class TestMultiVersionConcurrencyControl {
 
   @Test
   public void testParallelism() throws Exception {
-    final MultiVersionConcurrencyControl mvcc = new MultiVersionConcurrencyControl();
+    runParallelism(new MultiVersionConcurrencyControl());
+  }
+
+  @Test
+  public void testParallelismWithRing() throws Exception {
+    // Fewer slots than writers so begin has to wait for free slots too.
+    MultiVersionConcurrencyControl mvcc = new MultiVersionConcurrencyControl("test", 8);
+    runParallelism(mvcc);
+    Assert.assertEquals(mvcc.getWritePoint(), mvcc.getReadPoint());
+  }
+
+  private void runParallelism(final MultiVersionConcurrencyControl mvcc) throws Exception {
 
     final AtomicBoolean finished = new AtomicBoolean(false);
 
@@ -18,8 +18,12 @@
 package org.apache.hadoop.hbase.regionserver;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.testclassification.RegionServerTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
 import org.junit.ClassRule;
@@ -49,4 +53,37 @@ public class TestMultiVersionConcurrencyControlBasic {
     mvcc.complete(writeEntry);
     assertEquals(readPoint + 2, mvcc.getWritePoint());
   }
+
+  @Test
+  public void testRingOutOfOrderComplete() {
+    MultiVersionConcurrencyControl mvcc = new MultiVersionConcurrencyControl("test", 4);
+    assertTrue(mvcc.isRingWriteQueue());
+    mvcc.advanceTo(100);
+    MultiVersionConcurrencyControl.WriteEntry first = mvcc.begin();
+    MultiVersionConcurrencyControl.WriteEntry second = mvcc.begin();
+    MultiVersionConcurrencyControl.WriteEntry third = mvcc.begin();
+    assertEquals(103, mvcc.getWritePoint());
+    // Completing out of order can not move the read point past the first pending write.
+    assertFalse(mvcc.complete(third));
+    assertFalse(mvcc.complete(second));
+    assertEquals(100, mvcc.getReadPoint());
+    // Completing the first one carries the read point past all of them.
+    assertTrue(mvcc.complete(first));
+    assertEquals(103, mvcc.getReadPoint());
+    // Wrap around the ring a few times.
+    for (int i = 0; i < 10; i++) {
+      mvcc.completeAndWait(mvcc.begin());
+    }
+    assertEquals(113, mvcc.getReadPoint());
+    assertEquals(0, mvcc.getRingFullCount());
+  }
+
+  @Test
+  public void testWriteQueueTypeFromConf() {
+    Configuration conf = HBaseConfiguration.create();
+    assertFalse(new MultiVersionConcurrencyControl("test", conf).isRingWriteQueue());
+    conf.set(MultiVersionConcurrencyControl.WRITE_QUEUE_TYPE_KEY,
+      MultiVersionConcurrencyControl.WRITE_QUEUE_TYPE_RING);
+    assertTrue(new MultiVersionConcurrencyControl("test", conf).isRingWriteQueue());
+  }
 }
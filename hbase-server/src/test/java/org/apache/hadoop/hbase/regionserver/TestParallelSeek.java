@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.MockRegionServerServices;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests seeking the store files of a store on the parallel seek pool.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestParallelSeek {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestParallelSeek.class);
+
+  private static final HBaseTestingUtility UTIL = HBaseTestingUtility.createLocalHTU();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int FILES = 8;
+  private static final int ROWS = 100;
+
+  @Rule
+  public TestName name = new TestName();
+
+  private HRegion region;
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  @Test
+  public void testShouldSeekInParallel() {
+    assertFalse(ParallelSeekPool.shouldSeekInParallel(1, 1.0, 0));
+    assertTrue(ParallelSeekPool.shouldSeekInParallel(2, 1.0, 2));
+    // all the blocks are cached
+    assertFalse(ParallelSeekPool.shouldSeekInParallel(20, 0, 2));
+    // mostly cached, but enough files to expect a couple of reads
+    assertFalse(ParallelSeekPool.shouldSeekInParallel(5, 0.2, 2));
+    assertTrue(ParallelSeekPool.shouldSeekInParallel(15, 0.2, 2));
+  }
+
+  private void createRegion(Configuration conf, ParallelSeekPool pool) throws IOException {
+    MockRegionServerServices rss = new MockRegionServerServices(conf) {
+      @Override
+      public Optional<ParallelSeekPool> getParallelSeekPool() {
+        return Optional.ofNullable(pool);
+      }
+
+      @Override
+      public ServerName getServerName() {
+        return ServerName.valueOf("localhost", 16020, 1);
+      }
+    };
+    TableDescriptor htd =
+      TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .setColumnFamily(
+          ColumnFamilyDescriptorBuilder.newBuilder(FAMILY).setMaxVersions(FILES + 1).build())
+        .build();
+    RegionInfo info = RegionInfoBuilder.newBuilder(htd.getTableName()).build();
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    ChunkCreator.initialize(MemStoreLAB.CHUNK_SIZE_DEFAULT, false, 0, 0, 0, null,
+      MemStoreLAB.INDEX_CHUNK_SIZE_PERCENTAGE_DEFAULT);
+    WAL wal = HBaseTestingUtility.createWal(conf, rootDir, info);
+    region = HRegion.createHRegion(info, rootDir, conf, htd, wal, true, rss);
+    // Each file holds one version of every row, the last one is still in the memstore
+    for (int file = 0; file <= FILES; file++) {
+      for (int i = 0; i < ROWS; i++) {
+        region.put(new Put(Bytes.toBytes(i)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(file)));
+      }
+      if (file < FILES) {
+        region.flush(true);
+      }
+    }
+    assertEquals(FILES, region.getStore(FAMILY).getStorefilesCount());
+  }
+
+  private void verifyReads() throws IOException {
+    for (int i = 0; i < ROWS; i++) {
+      Result result = region.get(new Get(Bytes.toBytes(i)).readVersions(FILES + 1));
+      assertEquals(FILES + 1, result.size());
+      assertEquals(FILES, Bytes.toInt(result.getValue(FAMILY, QUALIFIER)));
+    }
+    int rows = 0;
+    try (RegionScanner scanner = region.getScanner(new Scan())) {
+      Result result;
+      do {
+        List<Cell> cells = new ArrayList<>();
+        scanner.next(cells);
+        result = Result.create(cells);
+        if (!result.isEmpty()) {
+          assertEquals(rows, Bytes.toInt(result.getRow()));
+          rows++;
+        }
+      } while (!result.isEmpty());
+    }
+    assertEquals(ROWS, rows);
+  }
+
+  private static Configuration parallelSeekConf(double minMisses) {
+    Configuration conf = new Configuration(UTIL.getConfiguration());
+    conf.setBoolean(StoreScanner.STORESCANNER_PARALLEL_SEEK_ENABLE, true);
+    conf.setDouble(StoreScanner.STORESCANNER_PARALLEL_SEEK_MIN_MISSES, minMisses);
+    return conf;
+  }
+
+  @Test
+  public void testParallelSeek() throws Exception {
+    ParallelSeekPool pool = new ParallelSeekPool(name.getMethodName(), 4);
+    try {
+      createRegion(parallelSeekConf(0), pool);
+      verifyReads();
+      // every Get and the Scan seek all but one of the files on the pool
+      assertEquals((ROWS + 1) * (FILES - 1), pool.getSeekCount());
+    } finally {
+      pool.shutdown(10000);
+    }
+  }
+
+  @Test
+  public void testSerialSeekWhenNotWorthIt() throws Exception {
+    ParallelSeekPool pool = new ParallelSeekPool(name.getMethodName(), 4);
+    try {
+      // more misses needed than there are files
+      createRegion(parallelSeekConf(FILES + 1), pool);
+      verifyReads();
+      assertEquals(0, pool.getSeekCount());
+    } finally {
+      pool.shutdown(10000);
+    }
+  }
+
+  @Test
+  public void testSeekAfterPoolShutdown() throws Exception {
+    ParallelSeekPool pool = new ParallelSeekPool(name.getMethodName(), 4);
+    createRegion(parallelSeekConf(0), pool);
+    // a region server stopping shuts its pool down, the scanners then seek all the files
+    pool.shutdown(10000);
+    verifyReads();
+    assertEquals(0, pool.getSeekCount());
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.io.hfile.BlockCache;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.io.hfile.CachedBlock;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileBlock;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache;
+import org.apache.hadoop.hbase.io.hfile.bucket.FrequencyAdmissionPolicy;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.StoreFileBlocks;
+
+/**
+ * Tests handing the blocks of a region hot in the block cache over to the server it moves to.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestRegionHotBlocks {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestRegionHotBlocks.class);
+
+  private static final HBaseTestingUtility UTIL = new HBaseTestingUtility();
+
+  private static final TableName TABLE = TableName.valueOf("TestRegionHotBlocks");
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int ROWS = 500;
+  private static final int HOT_ROWS = 100;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    UTIL.getConfiguration().setInt(RegionHotBlocks.MAX_HOT_BLOCKS_KEY, 1000);
+    UTIL.startMiniCluster(2);
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    UTIL.shutdownMiniCluster();
+  }
+
+  private static Set<Long> cachedOffsets(HRegionServer rs, Set<String> fileNames) {
+    Set<Long> offsets = new HashSet<>();
+    BlockCache cache = rs.getBlockCache().get();
+    for (CachedBlock block : cache) {
+      if (fileNames.contains(block.getFilename())) {
+        offsets.add(block.getOffset());
+      }
+    }
+    return offsets;
+  }
+
+  @Test
+  public void testHotBlocksFollowTheRegion() throws Exception {
+    UTIL.getAdmin().createTable(TableDescriptorBuilder.newBuilder(TABLE)
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY).setBlocksize(1024).build())
+      .build());
+    UTIL.waitUntilAllRegionsAssigned(TABLE);
+    try (Table table = UTIL.getConnection().getTable(TABLE)) {
+      for (int i = 0; i < ROWS; i++) {
+        table.put(new Put(Bytes.toBytes(String.format("row-%05d", i))).addColumn(FAMILY, QUALIFIER,
+          Bytes.toBytes(i)));
+      }
+      UTIL.flush(TABLE);
+      // read the first rows twice, so that their blocks are hot
+      for (int pass = 0; pass < 2; pass++) {
+        for (int i = 0; i < HOT_ROWS; i++) {
+          assertFalse(table.get(new Get(Bytes.toBytes(String.format("row-%05d", i)))).isEmpty());
+        }
+      }
+      // and the last one once, so that its block is cached but not hot
+      assertFalse(table.get(new Get(Bytes.toBytes(String.format("row-%05d", ROWS - 1)))).isEmpty());
+    }
+    HRegionServer source = UTIL.getRSForFirstRegionInTable(TABLE);
+    HRegionServer destination = UTIL.getOtherRegionServer(source);
+    HRegion region = source.getRegions(TABLE).get(0);
+    Set<String> fileNames = new HashSet<>();
+    for (HStoreFile sf : region.getStore(FAMILY).getStorefiles()) {
+      fileNames.add(sf.getPath().getName());
+    }
+
+    List<StoreFileBlocks> hotBlocks =
+      RegionHotBlocks.collect(region, source.getBlockCache().get(), 1000);
+    assertEquals(1, hotBlocks.size());
+    Set<Long> hotOffsets = new HashSet<>(hotBlocks.get(0).getOffsetList());
+    assertFalse(hotOffsets.isEmpty());
+    Set<Long> cached = cachedOffsets(source, fileNames);
+    assertTrue(cached.containsAll(hotOffsets));
+    assertTrue(cached.size() > hotOffsets.size());
+    assertEquals(1,
+      RegionHotBlocks.collect(region, source.getBlockCache().get(), 1).get(0).getOffsetCount());
+    assertTrue(cachedOffsets(destination, fileNames).isEmpty());
+
+    UTIL.getAdmin().move(region.getRegionInfo().getEncodedNameAsBytes(),
+      destination.getServerName());
+    UTIL.waitFor(30000, () -> !destination.getRegions(TABLE).isEmpty());
+    UTIL.waitFor(30000, () -> cachedOffsets(destination, fileNames).containsAll(hotOffsets));
+    assertTrue(UTIL.getMiniHBaseCluster().getMaster().getAssignmentManager().getRegionStates()
+      .getRegionStateNode(region.getRegionInfo()).getHotBlocks().isEmpty());
+  }
+
+  private static CachedBlock block(BlockPriority priority, long offset) {
+    CachedBlock block = mock(CachedBlock.class);
+    when(block.getBlockPriority()).thenReturn(priority);
+    when(block.getOffset()).thenReturn(offset);
+    return block;
+  }
+
+  private static HStoreFile storeFile(String name) {
+    HStoreFile sf = mock(HStoreFile.class);
+    when(sf.getPath()).thenReturn(new Path("/hbase/data/default/t/r/f", name));
+    return sf;
+  }
+
+  @Test
+  public void testCollectByFile() {
+    List<HStoreFile> storeFiles = Arrays.asList(storeFile("a"), storeFile("b"));
+    HStore store = mock(HStore.class);
+    when(store.getStorefiles()).thenReturn(storeFiles);
+    HRegion region = mock(HRegion.class);
+    when(region.getStores()).thenReturn(Arrays.asList(store));
+    when(region.getBaseConf()).thenReturn(UTIL.getConfiguration());
+    List<CachedBlock> blocksOfA = Arrays.asList(block(BlockPriority.MULTI, 5),
+      block(BlockPriority.MULTI, 3), block(BlockPriority.SINGLE, 1));
+    List<CachedBlock> blocksOfB = Arrays.asList(block(BlockPriority.MEMORY, 7),
+      block(BlockPriority.MULTI, 9), block(BlockPriority.MULTI, 8));
+    BlockCache cache = mock(BlockCache.class);
+    when(cache.getBlocksOfFile("a")).thenReturn(blocksOfA);
+    when(cache.getBlocksOfFile("b")).thenReturn(blocksOfB);
+
+    // each file gets its share, the hottest blocks first
+    Map<String, List<Long>> hotBlocks = toMap(RegionHotBlocks.collect(region, cache, 4));
+    assertEquals(Arrays.asList(3L, 5L), hotBlocks.get("a"));
+    assertEquals(Arrays.asList(7L, 9L), hotBlocks.get("b"));
+    // the share a file does not use goes to the others, the blocks accessed once are left
+    hotBlocks = toMap(RegionHotBlocks.collect(region, cache, 10));
+    assertEquals(Arrays.asList(3L, 5L), hotBlocks.get("a"));
+    assertEquals(Arrays.asList(7L, 8L, 9L), hotBlocks.get("b"));
+    // the cache is not scanned
+    verify(cache, never()).iterator();
+  }
+
+  @Test
+  public void testWarmUpSkipsAdmission() throws Exception {
+    Configuration conf = new Configuration(UTIL.getConfiguration());
+    conf.set(BucketCache.ADMISSION_POLICY_CLASS_KEY, FrequencyAdmissionPolicy.class.getName());
+    BucketCache cache = new BucketCache("offheap", 32 * 1024 * 1024, 16 * 1024, null, 1, 1000, null,
+      BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+    FileSystem fs = UTIL.getTestFileSystem();
+    Path path = new Path(UTIL.getDataTestDir(), "warmup.hfile");
+    try (HFile.Writer writer = HFile.getWriterFactoryNoCache(conf).withPath(fs, path)
+      .withFileContext(new HFileContextBuilder().withBlockSize(1024).build()).create()) {
+      for (int i = 0; i < ROWS; i++) {
+        writer.append(new KeyValue(Bytes.toBytes(String.format("row-%05d", i)), FAMILY, QUALIFIER,
+          Bytes.toBytes(i)));
+      }
+    }
+    try (HFile.Reader reader =
+      HFile.createReader(fs, path, new CacheConfig(conf, cache), true, conf)) {
+      long first = reader.getTrailer().getFirstDataBlockOffset();
+      HFileBlock block = reader.readBlock(first, -1, true, true, false, true, null, null);
+      long second = first + block.getOnDiskSizeWithHeader();
+      block.release();
+      // the policy does not let a block read once in
+      BlockCacheKey firstKey = new BlockCacheKey(reader.getName(), first);
+      assertNull(cache.getBlock(firstKey, false, false, false));
+
+      // the hot blocks of the former server are let in right away
+      assertEquals(2, RegionHotBlocks.warmUp(reader, Arrays.asList(first, second)));
+      for (long offset : Arrays.asList(first, second)) {
+        Cacheable cached =
+          cache.getBlock(new BlockCacheKey(reader.getName(), offset), false, false, false);
+        assertNotNull(cached);
+        cached.release();
+      }
+    } finally {
+      cache.shutdown();
+    }
+  }
+
+  private static Map<String, List<Long>> toMap(List<StoreFileBlocks> hotBlocks) {
+    Map<String, List<Long>> map = new HashMap<>();
+    for (StoreFileBlocks fileBlocks : hotBlocks) {
+      map.put(fileBlocks.getFileName(), fileBlocks.getOffsetList());
+    }
+    return map;
+  }
+}
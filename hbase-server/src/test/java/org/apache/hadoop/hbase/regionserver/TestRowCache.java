@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Optional;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.MockRegionServerServices;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.regionserver.throttle.CompactionThroughputControllerFactory;
+import org.apache.hadoop.hbase.regionserver.throttle.NoLimitThroughputController;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests serving Gets from the {@link RowCache} and invalidating it.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestRowCache {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestRowCache.class);
+
+  private static final HBaseTestingUtility UTIL = HBaseTestingUtility.createLocalHTU();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] TTL_FAMILY = Bytes.toBytes("t");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final byte[] ROW = Bytes.toBytes("row");
+
+  @Rule
+  public TestName name = new TestName();
+
+  private RowCache rowCache;
+  private HRegion region;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = new Configuration(UTIL.getConfiguration());
+    conf.set(CompactionThroughputControllerFactory.HBASE_THROUGHPUT_CONTROLLER_KEY,
+      NoLimitThroughputController.class.getName());
+    rowCache = new RowCache(1024 * 1024);
+    MockRegionServerServices rss = new MockRegionServerServices(conf) {
+      @Override
+      public Optional<RowCache> getRowCache() {
+        return Optional.of(rowCache);
+      }
+
+      @Override
+      public ServerName getServerName() {
+        return ServerName.valueOf("localhost", 16020, 1);
+      }
+    };
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+      .setValue(RowCache.ROW_CACHE_ENABLED_KEY, "true")
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).setColumnFamily(
+        ColumnFamilyDescriptorBuilder.newBuilder(TTL_FAMILY).setTimeToLive(3600).build())
+      .build();
+    RegionInfo info = RegionInfoBuilder.newBuilder(htd.getTableName()).build();
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    ChunkCreator.initialize(MemStoreLAB.CHUNK_SIZE_DEFAULT, false, 0, 0, 0, null,
+      MemStoreLAB.INDEX_CHUNK_SIZE_PERCENTAGE_DEFAULT);
+    WAL wal = HBaseTestingUtility.createWal(conf, rootDir, info);
+    region = HRegion.createHRegion(info, rootDir, conf, htd, wal, true, rss);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  private void put(int value) throws IOException {
+    region.put(new Put(ROW).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(value)));
+  }
+
+  private int get() throws IOException {
+    Result result = region.get(new Get(ROW).addFamily(FAMILY));
+    return result.isEmpty() ? -1 : Bytes.toInt(result.getValue(FAMILY, QUALIFIER));
+  }
+
+  private RowCache.Token token(Get get) throws IOException {
+    region.prepareGet(get);
+    return region.getRowCacheToken(get);
+  }
+
+  @Test
+  public void testGetIsCached() throws IOException {
+    assertNotNull(region.getRowCache());
+    put(1);
+    assertEquals(1, get());
+    assertEquals(0, rowCache.getHitCount());
+    assertEquals(1, rowCache.getMissCount());
+    assertEquals(1, get());
+    assertEquals(1, get());
+    assertEquals(2, rowCache.getHitCount());
+    assertEquals(1, rowCache.getCount());
+  }
+
+  @Test
+  public void testWriteInvalidatesRow() throws IOException {
+    put(1);
+    assertEquals(1, get());
+    assertEquals(1, get());
+    put(2);
+    assertEquals(2, get());
+    assertEquals(2, get());
+    region.delete(new Delete(ROW));
+    assertEquals(-1, get());
+    assertEquals(-1, get());
+    assertEquals(3, rowCache.getHitCount());
+    assertEquals(3, rowCache.getMissCount());
+  }
+
+  @Test
+  public void testFlushAndCompactionInvalidateRegion() throws IOException {
+    put(1);
+    assertEquals(1, get());
+    region.flush(true);
+    assertEquals(1, get());
+    assertEquals(0, rowCache.getHitCount());
+    put(2);
+    region.flush(true);
+    assertEquals(2, get());
+    region.compact(true);
+    assertEquals(2, get());
+    assertEquals(2, get());
+    assertEquals(1, rowCache.getHitCount());
+    assertEquals(4, rowCache.getMissCount());
+  }
+
+  @Test
+  public void testUncacheableGets() throws IOException {
+    put(1);
+    region.put(new Put(ROW).addColumn(TTL_FAMILY, QUALIFIER, Bytes.toBytes(1)));
+    assertNull(token(new Get(ROW).addFamily(TTL_FAMILY)));
+    assertNull(token(new Get(ROW).addColumn(FAMILY, QUALIFIER)));
+    assertNull(token(new Get(ROW).readVersions(2)));
+    assertNull(token(new Get(ROW).setFilter(new PrefixFilter(ROW))));
+    assertNull(token(new Get(ROW).setTimeRange(0, 100)));
+    assertNotNull(token(new Get(ROW).addFamily(FAMILY)));
+    region.get(new Get(ROW).addFamily(TTL_FAMILY));
+    region.get(new Get(ROW));
+    assertEquals(0, rowCache.getHitCount());
+    assertEquals(0, rowCache.getMissCount());
+  }
+}
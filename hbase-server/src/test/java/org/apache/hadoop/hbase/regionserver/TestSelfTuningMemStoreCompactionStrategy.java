@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.regionserver.MemStoreCompactionStrategy.Action;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestSelfTuningMemStoreCompactionStrategy {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestSelfTuningMemStoreCompactionStrategy.class);
+
+  private static ImmutableSegment segment(int cells, int uniques, long cellSize) {
+    ImmutableSegment segment = mock(ImmutableSegment.class);
+    when(segment.getCellsCount()).thenReturn(cells);
+    when(segment.getNumUniqueKeys()).thenReturn(uniques);
+    when(segment.getDataSize()).thenReturn(cells * cellSize);
+    return segment;
+  }
+
+  private static VersionedSegmentsList pipeline(ImmutableSegment... segments) {
+    return new VersionedSegmentsList(Arrays.asList(segments), 1);
+  }
+
+  @Test
+  public void testAppendOnlyIsOnlyFlattened() {
+    SelfTuningMemStoreCompactionStrategy strategy =
+      new SelfTuningMemStoreCompactionStrategy(HBaseConfiguration.create(), "cf", 1);
+    assertEquals(Action.FLATTEN_COUNT_UNIQUE_KEYS,
+      strategy.getAction(pipeline(segment(1000, CellSet.UNKNOWN_NUM_UNIQUES, 100))));
+    assertEquals(Action.FLATTEN_COUNT_UNIQUE_KEYS,
+      strategy.getAction(pipeline(segment(1000, 1000, 100), segment(1000, 990, 100))));
+    assertEquals(0.005, strategy.getDuplicateFraction(), 1e-9);
+    // too many segments, merge them
+    assertEquals(Action.MERGE_COUNT_UNIQUE_KEYS, strategy.getAction(
+      pipeline(segment(1000, 1000, 100), segment(1000, 1000, 100), segment(1000, 1000, 100))));
+  }
+
+  @Test
+  public void testUpdateHeavyIsCompacted() {
+    SelfTuningMemStoreCompactionStrategy strategy =
+      new SelfTuningMemStoreCompactionStrategy(HBaseConfiguration.create(), "cf", 1);
+    VersionedSegmentsList versionedList = pipeline(segment(1000, 400, 100));
+    assertEquals(Action.COMPACT, strategy.getAction(versionedList));
+    assertEquals(0.6, strategy.getDuplicateFraction(), 1e-9);
+
+    // the compactions removed little, e.g. the cells were deleted ones kept, so stop compacting
+    strategy.updateStats(segment(950, 950, 100));
+    assertEquals(0.325, strategy.getDuplicateFraction(), 1e-9);
+    assertEquals(Action.COMPACT,
+      strategy.getAction(pipeline(segment(1000, CellSet.UNKNOWN_NUM_UNIQUES, 100))));
+    strategy.updateStats(segment(950, 950, 100));
+    assertEquals(0.1875, strategy.getDuplicateFraction(), 1e-9);
+    assertEquals(Action.FLATTEN_COUNT_UNIQUE_KEYS,
+      strategy.getAction(pipeline(segment(1000, CellSet.UNKNOWN_NUM_UNIQUES, 100))));
+  }
+
+  @Test
+  public void testKeptVersionsAreNotCompacted() {
+    // every key is written three times, which the family keeps, so a compaction removes nothing
+    VersionedSegmentsList versionedList = pipeline(segment(900, 300, 100));
+    SelfTuningMemStoreCompactionStrategy strategy =
+      new SelfTuningMemStoreCompactionStrategy(HBaseConfiguration.create(), "cf", 3);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Action.FLATTEN_COUNT_UNIQUE_KEYS, strategy.getAction(versionedList));
+      assertEquals(0, strategy.getDuplicateFraction(), 1e-9);
+    }
+    // a family keeping one version would compact them away
+    strategy = new SelfTuningMemStoreCompactionStrategy(HBaseConfiguration.create(), "cf", 1);
+    assertEquals(Action.COMPACT, strategy.getAction(versionedList));
+  }
+
+  @Test
+  public void testSettlesWithVersions() {
+    // every key is written five times and the family keeps three of them
+    SelfTuningMemStoreCompactionStrategy strategy =
+      new SelfTuningMemStoreCompactionStrategy(HBaseConfiguration.create(), "cf", 3);
+    VersionedSegmentsList versionedList = pipeline(segment(1000, 200, 100));
+    for (int i = 0; i < 10; i++) {
+      // counting the keys and compacting agree on the duplicates, the action does not flip
+      assertEquals(Action.COMPACT, strategy.getAction(versionedList));
+      assertEquals(0.4, strategy.getDuplicateFraction(), 1e-9);
+      strategy.updateStats(segment(600, 200, 100));
+      assertEquals(0.4, strategy.getDuplicateFraction(), 1e-9);
+    }
+  }
+
+  @Test
+  public void testIndexTypeFollowsCellSize() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setBoolean(MemStoreLAB.USEMSLAB_KEY, true);
+    conf.setInt(MemStoreLAB.MAX_ALLOC_KEY, 1024);
+    SelfTuningMemStoreCompactionStrategy strategy =
+      new SelfTuningMemStoreCompactionStrategy(conf, "cf", 1);
+    strategy.getAction(pipeline(segment(1000, 1000, 100)));
+    assertEquals(100, strategy.getAverageCellSize(), 1e-9);
+    assertEquals(CompactingMemStore.IndexType.CHUNK_MAP, strategy.getIndexType());
+    strategy.getAction(pipeline(segment(10, 10, 4096)));
+    assertEquals(CompactingMemStore.IndexType.ARRAY_MAP, strategy.getIndexType());
+
+    conf.setBoolean(MemStoreLAB.USEMSLAB_KEY, false);
+    strategy = new SelfTuningMemStoreCompactionStrategy(conf, "cf", 1);
+    strategy.getAction(pipeline(segment(1000, 1000, 100)));
+    assertEquals(CompactingMemStore.IndexType.ARRAY_MAP, strategy.getIndexType());
+  }
+}
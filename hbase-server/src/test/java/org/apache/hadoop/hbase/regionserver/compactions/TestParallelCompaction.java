@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.compactions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseClassTestRule;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.MockRegionServerServices;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.regionserver.ChunkCreator;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.HStoreFile;
+import org.apache.hadoop.hbase.regionserver.MemStoreLAB;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.throttle.CompactionThroughputControllerFactory;
+import org.apache.hadoop.hbase.regionserver.throttle.NoLimitThroughputController;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests splitting a major compaction into row ranges that are compacted concurrently.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestParallelCompaction {
+
+  @ClassRule
+  public static final HBaseClassTestRule CLASS_RULE =
+    HBaseClassTestRule.forClass(TestParallelCompaction.class);
+
+  private static final HBaseTestingUtility UTIL = HBaseTestingUtility.createLocalHTU();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int ROWS = 3000;
+  private static final int FILES = 3;
+
+  @Rule
+  public TestName name = new TestName();
+
+  private HRegion region;
+  private ThreadPoolExecutor pool;
+
+  private HRegion createRegion(int threads, long minSize) throws IOException {
+    return createRegion(threads, minSize, HStore.DEFAULT_BLOCKING_STOREFILE_COUNT);
+  }
+
+  private HRegion createRegion(int threads, long minSize, int blockingFiles) throws IOException {
+    Configuration conf = new Configuration(UTIL.getConfiguration());
+    conf.setInt(DefaultCompactor.PARALLEL_COMPACTION_THREADS_KEY, threads);
+    conf.setLong(DefaultCompactor.PARALLEL_COMPACTION_MIN_SIZE_KEY, minSize);
+    conf.setInt(HStore.BLOCKING_STOREFILES_KEY, blockingFiles);
+    conf.set(CompactionThroughputControllerFactory.HBASE_THROUGHPUT_CONTROLLER_KEY,
+      NoLimitThroughputController.class.getName());
+    pool = DefaultCompactor.createRangePool(name.getMethodName(), conf);
+    MockRegionServerServices rss = new MockRegionServerServices(conf) {
+      @Override
+      public Optional<ThreadPoolExecutor> getCompactionRangePool() {
+        return Optional.ofNullable(pool);
+      }
+
+      @Override
+      public ServerName getServerName() {
+        return ServerName.valueOf("localhost", 16020, 1);
+      }
+    };
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+      .setColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY).setBlocksize(1024).build())
+      .build();
+    RegionInfo info = RegionInfoBuilder.newBuilder(htd.getTableName()).build();
+    Path rootDir = UTIL.getDataTestDir(name.getMethodName());
+    ChunkCreator.initialize(MemStoreLAB.CHUNK_SIZE_DEFAULT, false, 0, 0, 0, null,
+      MemStoreLAB.INDEX_CHUNK_SIZE_PERCENTAGE_DEFAULT);
+    WAL wal = HBaseTestingUtility.createWal(conf, rootDir, info);
+    region = HRegion.createHRegion(info, rootDir, conf, htd, wal, true, rss);
+    return region;
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      WAL wal = region.getWAL();
+      region.close();
+      wal.close();
+    }
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+  }
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row-%05d", i));
+  }
+
+  /**
+   * Writes each row into one of the files, and deletes every tenth row in the last one.
+   */
+  private void loadFiles() throws IOException {
+    for (int file = 0; file < FILES; file++) {
+      for (int i = file; i < ROWS; i += FILES) {
+        region.put(new Put(row(i)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(i)));
+      }
+      if (file == FILES - 1) {
+        for (int i = 0; i < ROWS; i += 10) {
+          region.delete(new Delete(row(i)));
+        }
+      }
+      region.flush(true);
+    }
+  }
+
+  private void verifyRows() throws IOException {
+    List<Integer> found = new ArrayList<>();
+    try (RegionScanner scanner = region.getScanner(new Scan())) {
+      List<Cell> cells = new ArrayList<>();
+      boolean more;
+      do {
+        more = scanner.next(cells);
+        if (!cells.isEmpty()) {
+          Result result = Result.create(cells);
+          found.add(Bytes.toInt(result.getValue(FAMILY, QUALIFIER)));
+          cells.clear();
+        }
+      } while (more);
+    }
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < ROWS; i++) {
+      if (i % 10 != 0) {
+        expected.add(i);
+      }
+    }
+    assertEquals(expected, found);
+  }
+
+  @Test
+  public void testSplitRows() throws IOException {
+    createRegion(1, 0);
+    loadFiles();
+    HStore store = region.getStore(FAMILY);
+    List<byte[]> splitRows =
+      DefaultCompactor.selectSplitRows(store.getStorefiles(), 4, CellComparator.getInstance());
+    assertEquals(3, splitRows.size());
+    for (int i = 1; i < splitRows.size(); i++) {
+      assertTrue(Bytes.compareTo(splitRows.get(i - 1), splitRows.get(i)) < 0);
+    }
+    // The files overlap evenly, so the ranges should be close to a quarter of the rows each. The
+    // index keys may be shortened to separators between rows, so compare with the rows around.
+    for (int i = 0; i < splitRows.size(); i++) {
+      int expected = ROWS * (i + 1) / 4;
+      byte[] splitRow = splitRows.get(i);
+      assertTrue("split row " + Bytes.toString(splitRow) + " far from " + expected,
+        Bytes.compareTo(row(expected - ROWS / 20), splitRow) < 0
+          && Bytes.compareTo(splitRow, row(expected + ROWS / 20)) < 0);
+    }
+    assertTrue(DefaultCompactor.selectSplitRows(new ArrayList<>(), 4, CellComparator.getInstance())
+      .isEmpty());
+  }
+
+  @Test
+  public void testParallelMajorCompaction() throws IOException {
+    createRegion(FILES, 0);
+    loadFiles();
+    HStore store = region.getStore(FAMILY);
+    assertEquals(FILES, store.getStorefilesCount());
+    region.compact(true);
+    List<HStoreFile> files = new ArrayList<>(store.getStorefiles());
+    assertEquals(FILES, files.size());
+    files.sort(
+      (a, b) -> CellComparator.getInstance().compare(a.getFirstKey().get(), b.getFirstKey().get()));
+    for (int i = 0; i < files.size(); i++) {
+      assertTrue(files.get(i).excludeFromMinorCompaction());
+      if (i > 0) {
+        // The ranges do not overlap
+        assertTrue(CellComparator.getInstance().compareRows(files.get(i - 1).getLastKey().get(),
+          files.get(i).getFirstKey().get()) < 0);
+      }
+    }
+    assertArrayEquals(row(1), CellUtil.cloneRow(files.get(0).getFirstKey().get()));
+    verifyRows();
+  }
+
+  @Test
+  public void testRangesCappedByBlockingFiles() throws IOException {
+    // the range files are kept out of minor compactions, at most a quarter of the blocking files
+    createRegion(FILES, 0, 8);
+    loadFiles();
+    region.compact(true);
+    HStore store = region.getStore(FAMILY);
+    assertEquals(2, store.getStorefilesCount());
+    verifyRows();
+  }
+
+  @Test
+  public void testRangesOnCallingThreadOncePoolShutDown() throws IOException {
+    createRegion(FILES, 0);
+    loadFiles();
+    // a region server stopping shuts its pool down, the compaction then runs the ranges itself
+    pool.shutdown();
+    region.compact(true);
+    assertEquals(FILES, region.getStore(FAMILY).getStorefilesCount());
+    verifyRows();
+  }
+
+  @Test
+  public void testNotSplitWithoutPool() throws IOException {
+    // a region not opened by a region server, e.g. by the compaction tool, has no pool
+    Configuration conf = UTIL.getConfiguration();
+    conf.setInt(DefaultCompactor.PARALLEL_COMPACTION_THREADS_KEY, FILES);
+    conf.setLong(DefaultCompactor.PARALLEL_COMPACTION_MIN_SIZE_KEY, 0);
+    try {
+      region = UTIL.createLocalHRegion(
+        TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+          .setColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).build(),
+        null, null);
+    } finally {
+      conf.unset(DefaultCompactor.PARALLEL_COMPACTION_THREADS_KEY);
+      conf.unset(DefaultCompactor.PARALLEL_COMPACTION_MIN_SIZE_KEY);
+    }
+    loadFiles();
+    region.compact(true);
+    assertEquals(1, region.getStore(FAMILY).getStorefilesCount());
+    verifyRows();
+  }
+
+  @Test
+  public void testSmallCompactionNotSplit() throws IOException {
+    createRegion(FILES, Long.MAX_VALUE);
+    loadFiles();
+    region.compact(true);
+    HStore store = region.getStore(FAMILY);
+    assertEquals(1, store.getStorefilesCount());
+    assertFalse(store.getStorefiles().iterator().next().excludeFromMinorCompaction());
+    verifyRows();
+  }
+}
@@ -196,4 +196,57 @@ public class TestBloomFilterChunk {
     assertEquals(128, BloomFilterUtil.computeFoldableByteSize(1000, 5));
     assertEquals(640, BloomFilterUtil.computeFoldableByteSize(5001, 4));
   }
+
+  @Test
+  public void testBlockedBloom() throws Exception {
+    float err = (float) 0.01;
+    BloomFilterChunk b = BloomFilterUtil.createBlockedBySize(128 * 1024, err, Hash.MURMUR_HASH);
+    b.allocBloom();
+    assertEquals(128 * 1024, b.getByteSize());
+    assertEquals(BloomFilterUtil.BLOCKED_HASH_COUNT, b.getHashCount());
+    // a blocked filter needs a few more bits per key than a classic one for the same error rate
+    long classicMaxKeys = BloomFilterUtil.idealMaxKeys(b.getByteSize() * 8, err);
+    assertTrue(b.getMaxKeys() < classicMaxKeys);
+    assertTrue(b.getMaxKeys() > classicMaxKeys * 3 / 4);
+
+    int keys = (int) b.getMaxKeys();
+    for (int i = 0; i < keys; ++i) {
+      byte[] ib = Bytes.toBytes("row-" + i);
+      b.add(ib, 0, ib.length);
+    }
+    assertEquals(err, b.actualErrorRate(), err * 0.01);
+
+    int falsePositives = 0;
+    for (int i = 0; i < 2 * keys; ++i) {
+      byte[] bytes = Bytes.toBytes("row-" + i);
+      if (
+        BloomFilterUtil.containsBlocked(bytes, 0, bytes.length, new MultiByteBuff(b.bloom), 0,
+          (int) b.byteSize)
+      ) {
+        if (i >= keys) falsePositives++;
+      } else {
+        assertFalse(i < keys);
+      }
+    }
+    assertTrue("False positives: " + falsePositives, falsePositives <= keys * err * 1.2);
+  }
+
+  @Test
+  public void testBlockedBloomFold() throws Exception {
+    BloomFilterChunk b = BloomFilterUtil.createBlockedBySize(1024, (float) 0.01, Hash.MURMUR_HASH);
+    b.allocBloom();
+    assertEquals(1024, b.getByteSize());
+    for (int i = 0; i < 12; ++i) {
+      byte[] ib = Bytes.toBytes(i);
+      b.add(ib, 0, ib.length);
+    }
+    b.compactBloom();
+    // folded down to a single block, not below
+    assertEquals(BloomFilterUtil.BLOCK_BYTE_SIZE, b.getByteSize());
+    for (int i = 0; i < 12; ++i) {
+      byte[] bytes = Bytes.toBytes(i);
+      assertTrue(BloomFilterUtil.containsBlocked(bytes, 0, bytes.length, new MultiByteBuff(b.bloom),
+        0, (int) b.byteSize));
+    }
+  }
 }
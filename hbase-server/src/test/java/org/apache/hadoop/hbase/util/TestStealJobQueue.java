@@ -66,6 +66,22 @@ public class TestStealJobQueue {
     assertTrue(stealJobQueue.isEmpty());
   }
 
+  @Test
+  public void testTakeComparingAcrossQueues() throws InterruptedException {
+    StealJobQueue<Integer> queue = new StealJobQueue<>(Integer::compare, true);
+    BlockingQueue<Integer> stealFrom = queue.getStealFromQueue();
+    queue.offer(3);
+    stealFrom.offer(10);
+    queue.offer(15);
+    stealFrom.offer(4);
+    assertEquals(3, queue.take().intValue());
+    assertEquals(4, queue.take().intValue());
+    assertEquals("take the first job of both queues", 10, queue.take().intValue());
+    assertEquals(15, queue.poll(1, TimeUnit.SECONDS).intValue());
+    assertTrue(stealFrom.isEmpty());
+    assertTrue(queue.isEmpty());
+  }
+
   @Test
   public void testOfferInStealQueueFromShouldUnblock() throws InterruptedException {
     final AtomicInteger taken = new AtomicInteger();